@@ -12,8 +12,10 @@ import androidx.navigation.compose.rememberNavController
 import kotlinx.coroutines.launch
 import ru.wassertech.core.auth.UserAuthService
 import ru.wassertech.core.auth.SessionManager
+import ru.wassertech.client.permissions.PermissionIndexRepository
 import ru.wassertech.core.ui.auth.SessionExpiredHandler
 import ru.wassertech.core.network.ApiClient
+import ru.wassertech.core.network.HttpClientRegistry
 import ru.wassertech.core.ui.theme.WassertechTheme
 import ru.wassertech.core.ui.dialogs.SessionExpiredDialog
 import ru.wassertech.navigation.AppNavigation
@@ -24,6 +26,9 @@ class MainActivity : ComponentActivity() {
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         
+        // HTTP-кэш для условных запросов (до создания сетевых клиентов)
+        HttpClientRegistry.installCache(applicationContext)
+        
         setContent {
             WassertechTheme {
                 Surface(
@@ -67,6 +72,8 @@ class MainActivity : ComponentActivity() {
                             scope.launch {
                                 // Очищаем сессию
                                 SessionManager.getInstance(context).clearSession()
+                                // Индекс прав прежнего пользователя больше не действителен
+                                PermissionIndexRepository.getInstance(context).onSessionChanged()
                                 UserAuthService.logout(context)
                                 showSessionExpiredDialog = false
                                 navController.navigate(AuthRoutes.LOGIN) {
@@ -77,6 +77,7 @@ class AuthRepository(private val context: Context) {
                             email = userDto.email
                         )
                         ru.wassertech.core.auth.SessionManager.getInstance(context).setCurrentSession(session)
+                        ru.wassertech.client.permissions.PermissionIndexRepository.getInstance(context).onSessionChanged()
                         Log.d(TAG, "=== СОЗДАНА СЕССИЯ ===")
                         Log.d(TAG, "  - userId: ${session.userId}")
                         Log.d(TAG, "  - role: ${session.role} (name: ${session.role.name})")
@@ -192,7 +193,9 @@ class AuthRepository(private val context: Context) {
         }
         
         tokenStorage.clearTokensAsync()
+        ru.wassertech.core.network.HttpClientRegistry.evictCache()
         ru.wassertech.core.auth.SessionManager.getInstance(context).clearSession()
+        ru.wassertech.client.permissions.PermissionIndexRepository.getInstance(context).onSessionChanged()
         Log.d(TAG, "Пользователь вышел из системы, сессия очищена")
     }
 }
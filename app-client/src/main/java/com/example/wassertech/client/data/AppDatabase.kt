@@ -48,6 +48,7 @@ abstract class AppDatabase : RoomDatabase() {
     abstract fun iconPackDao(): ru.wassertech.client.data.dao.IconPackDao
     abstract fun iconDao(): ru.wassertech.client.data.dao.IconDao
     abstract fun reportsDao(): ru.wassertech.client.data.dao.ReportsDao
+    abstract fun sessionReportDao(): SessionReportDao
     abstract fun userMembershipDao(): ru.wassertech.client.data.dao.UserMembershipDao
 
     companion object {
@@ -3,6 +3,10 @@ package ru.wassertech.client.data.dao
 import androidx.room.*
 import ru.wassertech.client.data.entities.*
 import kotlinx.coroutines.flow.Flow
+import ru.wassertech.client.data.relations.ComponentWithIcon
+import ru.wassertech.client.data.relations.InstallationWithIcon
+import ru.wassertech.client.data.relations.SiteClientLink
+import ru.wassertech.client.data.relations.SiteWithIcon
 
 import ru.wassertech.client.data.entities.ComponentEntity
 import ru.wassertech.client.data.entities.InstallationEntity
@@ -29,6 +33,24 @@ interface HierarchyDao {
     """)
     fun observeSitesIncludingArchived(clientId: String): Flow<List<SiteEntity>>
 
+    /**
+     * Поток объектов клиента вместе с иконкой (одним запросом LEFT JOIN icons).
+     * @param includeArchived включать архивные объекты (режим редактирования)
+     */
+    @Query("""
+        SELECT s.*, i.id AS joinedIconId, i.androidResName AS iconAndroidResName, i.code AS iconCode
+        FROM sites s
+        LEFT JOIN icons i ON i.id = s.icon_id
+        WHERE s.clientId = :clientId
+        AND (:includeArchived = 1 OR s.isArchived = 0 OR s.isArchived IS NULL)
+        ORDER BY s.orderIndex ASC, s.name COLLATE NOCASE
+    """)
+    fun observeSitesWithIcons(clientId: String, includeArchived: Boolean): Flow<List<SiteWithIcon>>
+
+    /** Поток связей объект → клиент для индекса прав (HierarchyPermissionIndex). */
+    @Query("SELECT id AS siteId, clientId FROM sites")
+    fun observeSiteClientLinks(): Flow<List<SiteClientLink>>
+
     /** Поток одного объекта по id (удобно для подписи «Объект: Клиент — Объект»). */
     @Query("SELECT * FROM sites WHERE id = :id LIMIT 1")
     fun observeSite(id: String): Flow<SiteEntity?>
@@ -69,6 +91,17 @@ interface HierarchyDao {
     """)
     fun observeInstallationsIncludingArchived(siteId: String): Flow<List<InstallationEntity>>
 
+    /** Поток неархивных установок объекта вместе с иконкой (LEFT JOIN icons). */
+    @Query("""
+        SELECT inst.*, i.id AS joinedIconId, i.androidResName AS iconAndroidResName, i.code AS iconCode
+        FROM installations inst
+        LEFT JOIN icons i ON i.id = inst.icon_id
+        WHERE inst.siteId = :siteId
+        AND (inst.isArchived = 0 OR inst.isArchived IS NULL)
+        ORDER BY inst.orderIndex ASC, inst.name COLLATE NOCASE
+    """)
+    fun observeInstallationsWithIcons(siteId: String): Flow<List<InstallationWithIcon>>
+
     /** Поток одной установки по id. */
     @Query("SELECT * FROM installations WHERE id = :id LIMIT 1")
     fun observeInstallation(id: String): Flow<InstallationEntity?>
@@ -92,6 +125,18 @@ interface HierarchyDao {
     @Query("SELECT * FROM components WHERE installationId = :installationId ORDER BY orderIndex ASC, name COLLATE NOCASE")
     fun observeComponents(installationId: String): Flow<List<ComponentEntity>>
 
+    /** Поток компонентов установки вместе с иконкой и названием шаблона (LEFT JOIN icons, component_templates). */
+    @Query("""
+        SELECT c.*, i.id AS joinedIconId, i.androidResName AS iconAndroidResName, i.code AS iconCode,
+               t.name AS templateName
+        FROM components c
+        LEFT JOIN icons i ON i.id = c.icon_id
+        LEFT JOIN component_templates t ON t.id = c.templateId
+        WHERE c.installationId = :installationId
+        ORDER BY c.orderIndex ASC, c.name COLLATE NOCASE
+    """)
+    fun observeComponentsWithIcons(installationId: String): Flow<List<ComponentWithIcon>>
+
     @Query("SELECT * FROM components WHERE id = :id LIMIT 1")
     suspend fun getComponent(id: String): ComponentEntity?
 
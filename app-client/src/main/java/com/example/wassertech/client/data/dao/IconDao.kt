@@ -84,6 +84,12 @@ interface IconDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun upsertAll(icons: List<IconEntity>)
     
+    /**
+     * Обновить локальный путь к миниатюре иконки.
+     */
+    @Query("UPDATE icons SET thumbnailLocalPath = :path WHERE id = :id")
+    suspend fun updateThumbnailLocalPath(id: String, path: String?)
+    
     /**
      * Удалить все иконки, которых нет в списке разрешенных iconIds.
      * Используется для очистки данных после синхронизации для роли CLIENT.
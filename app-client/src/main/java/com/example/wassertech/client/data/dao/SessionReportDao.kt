@@ -0,0 +1,73 @@
+package ru.wassertech.client.data.dao
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Transaction
+import ru.wassertech.client.data.entities.ClientEntity
+import ru.wassertech.client.data.entities.InstallationEntity
+import ru.wassertech.client.data.entities.SiteEntity
+import ru.wassertech.client.data.relations.ComponentWithTemplateFields
+import ru.wassertech.client.data.relations.SessionWithValues
+
+/**
+ * Полный набор данных сессии ТО для отчёта, прочитанный в одной транзакции.
+ */
+data class SessionReportBundle(
+    val session: SessionWithValues,
+    val installation: InstallationEntity?,
+    val site: SiteEntity?,
+    val client: ClientEntity?,
+    val components: List<ComponentWithTemplateFields>
+)
+
+/**
+ * DAO для сборки PDF-отчёта: сессия → установка → объект → клиент →
+ * компоненты → шаблоны → поля → значения одним транзакционным чтением.
+ */
+@Dao
+interface SessionReportDao {
+
+    @Transaction
+    @Query("SELECT * FROM maintenance_sessions WHERE id = :sessionId LIMIT 1")
+    suspend fun getSessionWithValues(sessionId: String): SessionWithValues?
+
+    @Query("SELECT * FROM installations WHERE id = :id LIMIT 1")
+    suspend fun getInstallation(id: String): InstallationEntity?
+
+    @Query("SELECT * FROM sites WHERE id = :id LIMIT 1")
+    suspend fun getSite(id: String): SiteEntity?
+
+    @Query("SELECT * FROM clients WHERE id = :id LIMIT 1")
+    suspend fun getClient(id: String): ClientEntity?
+
+    /**
+     * Компоненты установки плюс компоненты, для которых в сессии есть значения,
+     * вместе с шаблоном и его полями.
+     */
+    @Transaction
+    @Query("""
+    SELECT * FROM components
+    WHERE installationId = :installationId
+       OR id IN (SELECT componentId FROM maintenance_values WHERE sessionId = :sessionId)
+    ORDER BY
+      CASE WHEN orderIndex IS NULL THEN 1 ELSE 0 END,
+      orderIndex ASC, name COLLATE NOCASE ASC
+""")
+    suspend fun getReportComponents(installationId: String?, sessionId: String): List<ComponentWithTemplateFields>
+
+    /** Прочитать все данные сессии для отчёта в одной транзакции. */
+    @Transaction
+    suspend fun loadReportBundle(sessionId: String): SessionReportBundle? {
+        val session = getSessionWithValues(sessionId) ?: return null
+        val installation = session.session.installationId?.let { getInstallation(it) }
+        val site = installation?.let { getSite(it.siteId) }
+        val client = site?.let { getClient(it.clientId) }
+        return SessionReportBundle(
+            session = session,
+            installation = installation,
+            site = site,
+            client = client,
+            components = getReportComponents(installation?.id, sessionId)
+        )
+    }
+}
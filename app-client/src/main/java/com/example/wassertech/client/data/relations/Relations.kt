@@ -0,0 +1,57 @@
+package ru.wassertech.client.data.relations
+
+import androidx.room.Embedded
+import androidx.room.Relation
+import ru.wassertech.client.data.entities.*
+
+/** Сессия ТО со значениями и наблюдениями (для сборки отчёта) */
+data class SessionWithValues(
+    @Embedded val session: MaintenanceSessionEntity,
+    @Relation(parentColumn = "id", entityColumn = "sessionId")
+    val values: List<MaintenanceValueEntity>,
+    @Relation(parentColumn = "id", entityColumn = "sessionId")
+    val observations: List<ObservationEntity>
+)
+
+/** Компонент с шаблоном чек-листа и его полями (для сборки отчёта) */
+data class ComponentWithTemplateFields(
+    @Embedded val component: ComponentEntity,
+    @Relation(parentColumn = "templateId", entityColumn = "id")
+    val template: ChecklistTemplateEntity?,
+    @Relation(parentColumn = "templateId", entityColumn = "templateId")
+    val fields: List<ChecklistFieldEntity>
+)
+
+/**
+ * Объект с полями иконки (sites LEFT JOIN icons).
+ * joinedIconId = null, если иконка не задана или отсутствует в справочнике.
+ */
+data class SiteWithIcon(
+    @Embedded val site: SiteEntity,
+    val joinedIconId: String?,
+    val iconAndroidResName: String?,
+    val iconCode: String?
+)
+
+/** Установка с полями иконки (installations LEFT JOIN icons) */
+data class InstallationWithIcon(
+    @Embedded val installation: InstallationEntity,
+    val joinedIconId: String?,
+    val iconAndroidResName: String?,
+    val iconCode: String?
+)
+
+/** Компонент с полями иконки и названием шаблона (components LEFT JOIN icons, component_templates) */
+data class ComponentWithIcon(
+    @Embedded val component: ComponentEntity,
+    val joinedIconId: String?,
+    val iconAndroidResName: String?,
+    val iconCode: String?,
+    val templateName: String?
+)
+
+/** Связь объект → клиент (sites.id, sites.clientId) */
+data class SiteClientLink(
+    val siteId: String,
+    val clientId: String
+)
@@ -9,13 +9,20 @@ import ru.wassertech.client.api.ApiConfig
 import ru.wassertech.client.data.AppDatabase
 import ru.wassertech.client.data.dao.IconDao
 import ru.wassertech.client.data.dao.IconPackDao
+import ru.wassertech.client.data.entities.IconEntity
 import ru.wassertech.core.auth.DataStoreTokenStorage
-import ru.wassertech.core.network.ApiClient
+import ru.wassertech.core.network.HttpClientRegistry
 import ru.wassertech.core.network.ApiConfig as CoreApiConfig
+import ru.wassertech.core.ui.icons.IconBitmapCache
 import ru.wassertech.core.ui.icons.IconDataSource
+import ru.wassertech.core.ui.icons.IconDownloadEngine
+import ru.wassertech.core.ui.icons.IconPackArchiveDownloader
 import ru.wassertech.core.ui.icons.IconPackSyncStatus
 import java.io.File
 import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Репозиторий для работы с иконками и загрузкой изображений в app-client.
@@ -40,6 +47,41 @@ class IconRepository(private val context: Context) : IconDataSource {
     companion object {
         private const val TAG = "IconRepository"
         private const val ICONS_DIR_NAME = "icons"
+        
+        /**
+         * Загружать пак одним ZIP-архивом ([downloadPackArchive]).
+         * Иконки, которых не оказалось в архиве (или при ошибке архива), догружаются поштучно.
+         */
+        private const val USE_PACK_ARCHIVE = true
+        
+        /**
+         * Общий для процесса движок загрузки: ограничение параллелизма и
+         * дедупликация одновременных запросов одной иконки между экземплярами репозитория
+         */
+        private val downloadEngine = IconDownloadEngine(IconDownloadEngine.DEFAULT_PARALLELISM)
+    }
+    
+    /**
+     * Записывает файл иконки через временный .part и переименование:
+     * оборванная загрузка не оставляет файл, который isIconDownloaded() счёл бы готовым,
+     * поэтому повторная загрузка пака продолжается с недостающих иконок.
+     */
+    private fun writeIconFile(input: InputStream, file: File) {
+        val partFile = File(file.parentFile, "${file.name}.part")
+        input.use {
+            FileOutputStream(partFile).use { output ->
+                input.copyTo(output)
+            }
+        }
+        if (!partFile.renameTo(file)) {
+            file.delete()
+            if (!partFile.renameTo(file)) {
+                partFile.delete()
+                throw IOException("Не удалось сохранить файл ${file.name}")
+            }
+        }
+        // Показанные IconImage перечитают обновлённый файл
+        IconBitmapCache.invalidate(file.absolutePath)
     }
     
     /**
@@ -58,8 +100,12 @@ class IconRepository(private val context: Context) : IconDataSource {
      */
     fun getIconFile(iconId: String, type: String = "image"): File {
         val iconsDir = getIconsDirectory()
+        return File(iconsDir, iconFileName(iconId, type))
+    }
+    
+    private fun iconFileName(iconId: String, type: String): String {
         val extension = "png" // По умолчанию PNG, можно определить по URL
-        return File(iconsDir, "${iconId}_$type.$extension")
+        return "${iconId}_$type.$extension"
     }
     
     /**
@@ -73,7 +119,22 @@ class IconRepository(private val context: Context) : IconDataSource {
             null
         }
     }
-    
+
+    /**
+     * Локальные пути к изображениям для набора иконок.
+     * Директория иконок читается один раз вместо проверки файла на каждую иконку.
+     * @return map iconId → абсолютный путь (только для скачанных иконок)
+     */
+    suspend fun getLocalIconPaths(iconIds: Collection<String>): Map<String, String> = withContext(Dispatchers.IO) {
+        if (iconIds.isEmpty()) return@withContext emptyMap()
+        val iconsDir = getIconsDirectory()
+        val existing = iconsDir.list()?.toHashSet() ?: return@withContext emptyMap()
+        iconIds.mapNotNull { iconId ->
+            val fileName = iconFileName(iconId, "image")
+            if (fileName in existing) iconId to File(iconsDir, fileName).absolutePath else null
+        }.toMap()
+    }
+
     /**
      * Получить локальный путь к миниатюре иконки по ID.
      */
@@ -125,7 +186,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             
             Log.d(TAG, "Загрузка миниатюры иконки $iconId с URL: $fullUrl (исходный: $thumbnailUrl)")
             
-            val okHttpClient = ApiClient.createOkHttpClient(tokenStorage, enableLogging = false)
+            val okHttpClient = HttpClientRegistry.client(tokenStorage, enableLogging = false)
             val request = Request.Builder()
                 .url(fullUrl)
                 .get()
@@ -144,11 +205,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             )
             
             val file = getIconFile(iconId, "thumbnail")
-            body.byteStream().use { input ->
-                FileOutputStream(file).use { output ->
-                    input.copyTo(output)
-                }
-            }
+            writeIconFile(body.byteStream(), file)
             
             // Обновляем путь в БД
             val icon = iconDao.getById(iconId)
@@ -188,7 +245,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             
             Log.d(TAG, "Загрузка изображения иконки $iconId с URL: $fullUrl (исходный: $imageUrl)")
             
-            val okHttpClient = ApiClient.createOkHttpClient(tokenStorage, enableLogging = false)
+            val okHttpClient = HttpClientRegistry.client(tokenStorage, enableLogging = false)
             val request = Request.Builder()
                 .url(fullUrl)
                 .get()
@@ -207,11 +264,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             )
             
             val file = getIconFile(iconId, "image")
-            body.byteStream().use { input ->
-                FileOutputStream(file).use { output ->
-                    input.copyTo(output)
-                }
-            }
+            writeIconFile(body.byteStream(), file)
             
             Log.d(TAG, "Изображение иконки $iconId загружено: ${file.absolutePath}")
             Result.success(file)
@@ -240,7 +293,6 @@ class IconRepository(private val context: Context) : IconDataSource {
             
             val icons = allIcons
             
-            var downloadedCount = 0
             var totalCount = 0
             var skippedNoUrl = 0
             var skippedAndroidRes = 0
@@ -267,29 +319,44 @@ class IconRepository(private val context: Context) : IconDataSource {
                 return@withContext Result.success(Unit)
             }
             
-            icons.forEachIndexed { index, icon ->
-                // Пропускаем иконки без imageUrl или с androidResName (встроенные ресурсы)
-                if (icon.imageUrl.isNullOrBlank() || !icon.androidResName.isNullOrBlank()) {
-                    return@forEachIndexed
-                }
-                
-                // Пропускаем уже загруженные иконки
-                if (isIconDownloaded(icon.id)) {
-                    downloadedCount++
-                    onProgress?.invoke(downloadedCount, totalCount)
-                    return@forEachIndexed
-                }
-                
-                val imageUrl = icon.imageUrl ?: return@forEachIndexed
-                val result = downloadIconImage(icon.id, imageUrl)
-                if (result.isSuccess) {
-                    downloadedCount++
+            // Уже загруженные иконки не запрашиваем повторно — так продолжается прерванная загрузка пака
+            var pending = icons.filter { icon ->
+                !icon.imageUrl.isNullOrBlank() && icon.androidResName.isNullOrBlank() && !isIconDownloaded(icon.id)
+            }
+            
+            if (USE_PACK_ARCHIVE && pending.isNotEmpty()) {
+                val archiveResult = downloadPackArchive(packId, pending)
+                if (archiveResult.isSuccess) {
+                    val extractedIds = archiveResult.getOrThrow()
+                    pending = pending.filter { it.id !in extractedIds }
+                    Log.d(TAG, "Пак $packId: из архива получено ${extractedIds.size}, поштучно осталось ${pending.size}")
                 } else {
-                    Log.w(TAG, "Не удалось загрузить изображение иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                    Log.w(TAG, "Пак $packId: архив недоступен, загружаем поштучно: ${archiveResult.exceptionOrNull()?.message}")
                 }
-                
-                onProgress?.invoke(downloadedCount, totalCount)
             }
+            val alreadyDownloaded = totalCount - pending.size
+            if (alreadyDownloaded > 0) {
+                Log.d(TAG, "Пак $packId: уже загружено $alreadyDownloaded/$totalCount, догружаем ${pending.size}")
+            }
+            onProgress?.invoke(alreadyDownloaded, totalCount)
+            
+            val downloaded = AtomicInteger(alreadyDownloaded)
+            downloadEngine.downloadAll(
+                items = pending,
+                key = { icon -> "${icon.id}_image" },
+                onResult = { icon, result ->
+                    val count = if (result.isSuccess) {
+                        downloaded.incrementAndGet()
+                    } else {
+                        Log.w(TAG, "Не удалось загрузить изображение иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                        downloaded.get()
+                    }
+                    onProgress?.invoke(count, totalCount)
+                }
+            ) { icon ->
+                downloadIconImage(icon.id, icon.imageUrl!!)
+            }
+            val downloadedCount = downloaded.get()
             
             Log.d(TAG, "Загрузка пака $packId завершена: $downloadedCount/$totalCount")
             Result.success(Unit)
@@ -299,6 +366,35 @@ class IconRepository(private val context: Context) : IconDataSource {
         }
     }
     
+    /**
+     * Загрузить изображения пака одним ZIP-архивом ([IconPackArchiveDownloader]) и распаковать в filesDir/icons.
+     * В app-client нет поля localImagePath, наличие изображения определяется по файлу;
+     * для полученных миниатюр проставляется thumbnailLocalPath.
+     *
+     * @param icons Иконки пака, которые нужно получить
+     * @return ID иконок, изображения которых получены из архива
+     */
+    private suspend fun downloadPackArchive(packId: String, icons: List<IconEntity>): Result<Set<String>> {
+        val result = IconPackArchiveDownloader(apiBaseUrl, tokenStorage, getIconsDirectory())
+            .download(packId)
+            .getOrElse { return Result.failure(it) }
+        
+        // Имя записи архива совпадает с именем локального файла
+        val extractedIds = icons.filter { result.files.containsKey(getIconFile(it.id, "image").name) }
+            .map { it.id }
+            .toSet()
+        var thumbnails = 0
+        icons.forEach { icon ->
+            result.files[getIconFile(icon.id, "thumbnail").name]?.let { file ->
+                iconDao.updateThumbnailLocalPath(icon.id, file.absolutePath)
+                thumbnails++
+            }
+        }
+        
+        Log.d(TAG, "Пак $packId из архива: изображений=${extractedIds.size}, миниатюр=$thumbnails")
+        return Result.success(extractedIds)
+    }
+    
     /**
      * Получить статус синхронизации пака.
      * 
@@ -368,9 +464,9 @@ class IconRepository(private val context: Context) : IconDataSource {
     suspend fun downloadMissingThumbnails(): Result<Int> = withContext(Dispatchers.IO) {
         try {
             val allIcons = iconDao.getAllActive()
-            var downloadedCount = 0
             var skippedCount = 0
             
+            val pending = mutableListOf<IconEntity>()
             allIcons.forEach { icon ->
                 // Пропускаем иконки без thumbnailUrl
                 if (icon.thumbnailUrl.isNullOrBlank()) {
@@ -398,14 +494,25 @@ class IconRepository(private val context: Context) : IconDataSource {
                     }
                 }
                 
-                // Загружаем миниатюру
-                val result = downloadThumbnail(icon.id, icon.thumbnailUrl!!)
-                if (result.isSuccess) {
-                    downloadedCount++
-                } else {
-                    Log.w(TAG, "Не удалось загрузить миниатюру иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                pending += icon
+            }
+            
+            // Загружаем недостающие миниатюры параллельно
+            val downloaded = AtomicInteger(0)
+            downloadEngine.downloadAll(
+                items = pending,
+                key = { icon -> "${icon.id}_thumbnail" },
+                onResult = { icon, result ->
+                    if (result.isSuccess) {
+                        downloaded.incrementAndGet()
+                    } else {
+                        Log.w(TAG, "Не удалось загрузить миниатюру иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                    }
                 }
+            ) { icon ->
+                downloadThumbnail(icon.id, icon.thumbnailUrl!!)
             }
+            val downloadedCount = downloaded.get()
             
             Log.d(TAG, "Загрузка миниатюр завершена: загружено=$downloadedCount, пропущено=$skippedCount")
             Result.success(downloadedCount)
@@ -431,6 +538,8 @@ class IconRepository(private val context: Context) : IconDataSource {
                     if (thumbFile.exists()) {
                         thumbFile.delete()
                     }
+                    IconBitmapCache.invalidate(file.absolutePath)
+                    IconBitmapCache.invalidate(thumbFile.absolutePath)
                     // Очищаем путь в БД
                     if (icon.thumbnailLocalPath != null) {
                         val updatedIcon = icon.copy(thumbnailLocalPath = null)
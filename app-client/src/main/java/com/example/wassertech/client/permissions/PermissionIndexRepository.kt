@@ -0,0 +1,69 @@
+package ru.wassertech.client.permissions
+
+import android.content.Context
+import android.util.Log
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.stateIn
+import ru.wassertech.client.data.AppDatabase
+import ru.wassertech.client.data.entities.toUserMembershipInfoList
+import ru.wassertech.core.auth.HierarchyPermissionIndex
+import ru.wassertech.core.auth.SessionManager
+
+/**
+ * Общий индекс прав просмотра иерархии для экранов и SyncEngine.
+ *
+ * Индекс перестраивается только при изменении user_membership, связей объект → клиент
+ * или сессии пользователя; между изменениями все проверки canView* идут по готовым
+ * хеш-множествам, без перебора списка membership на каждую строку.
+ */
+class PermissionIndexRepository private constructor(context: Context) {
+
+    private val database = AppDatabase.getInstance(context)
+    private val sessionManager = SessionManager.getInstance(context)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    /** Версия сессии: увеличивается при входе/выходе, чтобы перестроить индекс */
+    private val sessionVersion = MutableStateFlow(0)
+
+    /**
+     * Актуальный индекс прав текущего пользователя; null — индекс ещё строится
+     * (экраны в это время показывают загрузку, а не пустой отфильтрованный список)
+     */
+    val index: StateFlow<HierarchyPermissionIndex?> = combine(
+        database.userMembershipDao().observeAll(),
+        database.hierarchyDao().observeSiteClientLinks(),
+        sessionVersion
+    ) { memberships, links, _ ->
+        val index = HierarchyPermissionIndex.build(
+            currentUser = sessionManager.getCurrentSession(),
+            memberships = memberships.toUserMembershipInfoList(),
+            siteClientIds = links.associate { it.siteId to it.clientId }
+        )
+        Log.d(TAG, "Индекс прав перестроен: memberships=${memberships.size}, sites=${links.size}")
+        index
+    }.stateIn(scope, SharingStarted.Eagerly, null)
+
+    /** Сообщить о смене сессии (вход/выход) */
+    fun onSessionChanged() {
+        sessionVersion.value++
+    }
+
+    companion object {
+        private const val TAG = "PermissionIndexRepository"
+
+        @Volatile
+        private var INSTANCE: PermissionIndexRepository? = null
+
+        fun getInstance(context: Context): PermissionIndexRepository {
+            return INSTANCE ?: synchronized(this) {
+                INSTANCE ?: PermissionIndexRepository(context.applicationContext).also { INSTANCE = it }
+            }
+        }
+    }
+}
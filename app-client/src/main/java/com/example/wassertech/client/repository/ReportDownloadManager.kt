@@ -0,0 +1,227 @@
+package ru.wassertech.client.repository
+
+import android.util.Log
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import okhttp3.CacheControl
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import ru.wassertech.client.data.dao.ReportsDao
+import ru.wassertech.client.data.entities.ReportEntity
+import java.io.File
+import java.io.FileOutputStream
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Параллельное возобновляемое скачивание PDF-отчётов.
+ *
+ * - одновременно скачивается не больше [MAX_PARALLEL_DOWNLOADS] файлов;
+ * - файл пишется в `<id>.pdf.part`; после обрыва скачивание продолжается запросом
+ *   `Range: bytes=<размер .part>-` (сервер без поддержки Range отвечает 200 — файл качается заново);
+ *   ответ 206 дописывается, только если `Content-Range` начинается с размера `.part`;
+ * - готовый файл сверяется с [ReportEntity.fileSize] и только потом переименовывается в `<id>.pdf`;
+ * - прогресс (файлы и байты) отдаётся как Flow.
+ *
+ * PDF не сохраняются в HTTP-кэше (запросы с no-store): файлы и так хранятся локально.
+ */
+class ReportDownloadManager(
+    private val httpClient: OkHttpClient,
+    private val reportsDao: ReportsDao,
+    private val reportsDir: File,
+    private val baseUrl: String,
+    private val accessToken: String
+) {
+
+    companion object {
+        private const val TAG = "ReportDownloadManager"
+
+        /** Сколько файлов скачиваются одновременно */
+        private const val MAX_PARALLEL_DOWNLOADS = 4
+
+        private const val PART_SUFFIX = ".part"
+
+        /** Шаг публикации прогресса по байтам */
+        private const val PROGRESS_STEP_BYTES = 256L * 1024
+    }
+
+    /**
+     * Прогресс скачивания
+     *
+     * @param total всего файлов
+     * @param completed скачано (или уже было на устройстве)
+     * @param failed не удалось скачать (останутся на следующую попытку)
+     * @param bytesDownloaded получено байт за этот проход
+     */
+    data class Progress(
+        val total: Int,
+        val completed: Int,
+        val failed: Int,
+        val bytesDownloaded: Long
+    ) {
+        val isFinished: Boolean get() = completed + failed >= total
+    }
+
+    /**
+     * Скачивает [reports]; Flow завершается, когда обработаны все файлы.
+     * Последнее значение — итог по счётчикам после завершения всех скачиваний (промежуточные
+     * значения конфлатируются и могут отставать). Отмена сбора оставляет недокачанные `.part`
+     * для продолжения в следующий раз.
+     */
+    fun download(reports: List<ReportEntity>): Flow<Progress> = channelFlow {
+        val total = reports.size
+        val completed = AtomicInteger()
+        val failed = AtomicInteger()
+        val bytes = AtomicLong()
+        fun snapshot() = Progress(total, completed.get(), failed.get(), bytes.get())
+
+        send(snapshot())
+        reportsDir.mkdirs()
+        val permits = Semaphore(MAX_PARALLEL_DOWNLOADS)
+        coroutineScope {
+            reports.forEach { report ->
+                launch(Dispatchers.IO) {
+                    permits.withPermit {
+                        val ok = try {
+                            downloadOne(report) { delta ->
+                                bytes.addAndGet(delta)
+                                trySend(snapshot())
+                            }
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Exception) {
+                            // Недокачанный .part остаётся — продолжим со следующего прохода
+                            Log.w(TAG, "Ошибка при скачивании отчёта ${report.id}: ${e.message}")
+                            false
+                        }
+                        if (ok) completed.incrementAndGet() else failed.incrementAndGet()
+                        send(snapshot())
+                    }
+                }
+            }
+        }
+        // Снимки параллельных заданий могут прийти не по порядку — итог отправляем после всех
+        send(snapshot())
+    }.conflate()
+
+    /**
+     * Скачивает один отчёт с продолжением из `.part`.
+     * @return true, если файл на устройстве и отмечен скачанным
+     */
+    private suspend fun downloadOne(report: ReportEntity, onBytes: (Long) -> Unit): Boolean {
+        val fileUrl = report.fileUrl
+        if (fileUrl.isNullOrBlank()) {
+            Log.w(TAG, "Пропускаем отчёт ${report.id}: fileUrl пустой")
+            return false
+        }
+        val expectedSize = report.fileSize?.takeIf { it > 0 }
+        val target = File(reportsDir, "${report.id}.pdf")
+        val part = File(reportsDir, "${report.id}.pdf$PART_SUFFIX")
+
+        // Файл уже скачан ранее (например, отметка в БД потерялась)
+        if (target.exists() && expectedSize != null && target.length() == expectedSize) {
+            reportsDao.updateReportDownloadStatus(report.id, target.absolutePath)
+            return true
+        }
+
+        val offset = if (part.exists()) part.length() else 0L
+        if (expectedSize != null && offset > expectedSize) {
+            part.delete()
+            return downloadOne(report, onBytes)
+        }
+
+        val fullUrl = if (fileUrl.startsWith("http")) fileUrl else "${baseUrl.removeSuffix("/")}/$fileUrl"
+        val requestBuilder = Request.Builder()
+            .url(fullUrl)
+            .header("Authorization", "Bearer $accessToken")
+            .cacheControl(CacheControl.Builder().noStore().build())
+            .get()
+        if (offset > 0) requestBuilder.header("Range", "bytes=$offset-")
+        Log.d(TAG, "Скачиваем отчёт ${report.id}${if (offset > 0) " с байта $offset" else ""}")
+
+        httpClient.newCall(requestBuilder.build()).execute().use { response ->
+            val append = when {
+                response.code == 206 -> {
+                    val rangeStart = parseContentRangeStart(response.header("Content-Range"))
+                    if (rangeStart != offset) {
+                        // Сервер отдал другой диапазон: дописывать нельзя, начнём файл заново в следующий раз
+                        Log.w(TAG, "Отчёт ${report.id}: Content-Range начинается с $rangeStart вместо $offset, .part удалён")
+                        part.delete()
+                        return false
+                    }
+                    true
+                }
+                response.code == 416 && offset > 0 -> {
+                    // Сервер считает, что .part уже полный; если размер не совпал — .part испорчен
+                    return finish(report, part, target, expectedSize, deleteOnMismatch = true)
+                }
+                response.isSuccessful -> false // 200: сервер отдал файл целиком
+                else -> {
+                    Log.w(TAG, "Ошибка скачивания отчёта ${report.id}: HTTP ${response.code}")
+                    return false
+                }
+            }
+            val body = response.body ?: return false
+
+            FileOutputStream(part, append).use { output ->
+                body.byteStream().use { input ->
+                    val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+                    var pending = 0L
+                    while (true) {
+                        coroutineContext.ensureActive()
+                        val read = input.read(buffer)
+                        if (read < 0) break
+                        output.write(buffer, 0, read)
+                        pending += read
+                        if (pending >= PROGRESS_STEP_BYTES) {
+                            onBytes(pending)
+                            pending = 0
+                        }
+                    }
+                    if (pending > 0) onBytes(pending)
+                }
+            }
+        }
+        return finish(report, part, target, expectedSize)
+    }
+
+    /**
+     * Проверка размера и перенос `.part` в итоговый файл.
+     * Более длинный `.part` удаляется всегда, более короткий — при [deleteOnMismatch]
+     * (после 416 докачка с того же места не продвинется).
+     */
+    private suspend fun finish(
+        report: ReportEntity,
+        part: File,
+        target: File,
+        expectedSize: Long?,
+        deleteOnMismatch: Boolean = false
+    ): Boolean {
+        if (expectedSize != null && part.length() != expectedSize) {
+            Log.w(TAG, "Размер отчёта ${report.id} не совпал: ${part.length()} вместо $expectedSize, повтор при следующей синхронизации")
+            if (deleteOnMismatch || part.length() > expectedSize) part.delete()
+            return false
+        }
+        if (target.exists()) target.delete()
+        if (!part.renameTo(target)) {
+            Log.w(TAG, "Не удалось переименовать ${part.name} в ${target.name}")
+            return false
+        }
+        reportsDao.updateReportDownloadStatus(report.id, target.absolutePath)
+        Log.d(TAG, "Отчёт ${report.id} скачан: ${target.absolutePath}")
+        return true
+    }
+
+    /** Начало диапазона из `Content-Range: bytes <start>-<end>/<total>`; null — заголовка нет или он неразборчив */
+    private fun parseContentRangeStart(header: String?): Long? =
+        header?.trim()?.removePrefix("bytes")?.trim()?.substringBefore('-')?.toLongOrNull()
+}
@@ -3,9 +3,9 @@ package ru.wassertech.client.repository
 import android.content.Context
 import android.util.Log
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.last
+import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.withContext
-import okhttp3.OkHttpClient
-import okhttp3.Request
 import retrofit2.HttpException
 import ru.wassertech.client.api.ApiConfig
 import ru.wassertech.client.api.ReportsApi
@@ -14,6 +14,8 @@ import ru.wassertech.client.data.entities.ReportEntity
 import ru.wassertech.core.auth.SessionManager
 import ru.wassertech.core.auth.UserRole
 import ru.wassertech.core.network.ApiClient
+import ru.wassertech.core.network.HttpClientRegistry
+import ru.wassertech.core.network.isNotModified
 import ru.wassertech.core.auth.DataStoreTokenStorage
 import java.io.File
 
@@ -80,7 +82,10 @@ class ReportsRepository(private val context: Context) {
             // Выполняем запрос к API
             val response = api.getReports(sinceUpdatedAtEpoch = lastUpdatedAtEpoch)
             
-            if (response.isSuccessful) {
+            if (response.isNotModified()) {
+                Log.d(TAG, "Список отчётов не изменился (304)")
+                Result.success(Unit)
+            } else if (response.isSuccessful) {
                 val reportsDto = response.body()
                 if (reportsDto != null) {
                     Log.d(TAG, "Получено ${reportsDto.size} отчётов с сервера")
@@ -132,6 +137,8 @@ class ReportsRepository(private val context: Context) {
     /**
      * Скачивает недостающие PDF-файлы для текущего клиента.
      * 
+     * Файлы скачиваются параллельно и с докачкой (см. [ReportDownloadManager]).
+     * 
      * @param onProgress Callback для отслеживания прогресса (current, total)
      * 
      * @return Result.success(Unit) при успехе, Result.failure(Exception) при ошибке
@@ -176,8 +183,8 @@ class ReportsRepository(private val context: Context) {
                 }
             }
             
-            // Создаём HTTP-клиент для скачивания файлов
-            val httpClient = OkHttpClient.Builder()
+            // HTTP-клиент для скачивания файлов (общий пул соединений приложения)
+            val httpClient = HttpClientRegistry.baseClient.newBuilder()
                 .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
                 .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
                 .build()
@@ -189,80 +196,23 @@ class ReportsRepository(private val context: Context) {
                 return@withContext Result.failure(error)
             }
             
-            var current = 0
-            var hasErrors = false
-            
-            // Скачиваем каждый отчёт
-            for (report in reportsToDownload) {
-                try {
-                    val fileUrl = report.fileUrl
-                    if (fileUrl.isNullOrBlank()) {
-                        Log.w(TAG, "Пропускаем отчёт ${report.id}: fileUrl пустой")
-                        current++
-                        onProgress(current, total)
-                        continue
-                    }
-                    
-                    // Формируем полный URL
-                    val baseUrl = ApiConfig.getBaseUrl().removeSuffix("/")
-                    val fullUrl = if (fileUrl.startsWith("http")) {
-                        fileUrl
-                    } else {
-                        "$baseUrl/$fileUrl"
-                    }
-                    
-                    Log.d(TAG, "Скачиваем отчёт ${report.id} из $fullUrl")
-                    
-                    // Создаём запрос
-                    val request = Request.Builder()
-                        .url(fullUrl)
-                        .header("Authorization", "Bearer $token")
-                        .get()
-                        .build()
-                    
-                    // Выполняем запрос
-                    val response = httpClient.newCall(request).execute()
-                    
-                    if (response.isSuccessful) {
-                        val responseBody = response.body
-                        if (responseBody != null) {
-                            // Сохраняем файл
-                            val localFile = File(reportsDir, "${report.id}.pdf")
-                            localFile.outputStream().use { output ->
-                                responseBody.byteStream().use { input ->
-                                    input.copyTo(output)
-                                }
-                            }
-                            
-                            // Обновляем запись в БД
-                            reportsDao.updateReportDownloadStatus(
-                                reportId = report.id,
-                                localFilePath = localFile.absolutePath
-                            )
-                            
-                            Log.d(TAG, "Отчёт ${report.id} успешно скачан: ${localFile.absolutePath}")
-                        } else {
-                            Log.w(TAG, "Пустое тело ответа для отчёта ${report.id}")
-                            hasErrors = true
-                        }
-                    } else {
-                        Log.w(TAG, "Ошибка скачивания отчёта ${report.id}: HTTP ${response.code}")
-                        hasErrors = true
-                    }
-                } catch (e: Exception) {
-                    Log.e(TAG, "Ошибка при скачивании отчёта ${report.id}", e)
-                    hasErrors = true
-                }
-                
-                current++
-                onProgress(current, total)
-            }
-            
-            if (hasErrors) {
-                Log.w(TAG, "Скачивание завершено с ошибками")
+            // Параллельное скачивание с докачкой из .part и проверкой размера
+            val downloadManager = ReportDownloadManager(
+                httpClient = httpClient,
+                reportsDao = reportsDao,
+                reportsDir = reportsDir,
+                baseUrl = ApiConfig.getBaseUrl(),
+                accessToken = token
+            )
+            val progress = downloadManager.download(reportsToDownload)
+                .onEach { onProgress(it.completed + it.failed, it.total) }
+                .last()
+            
+            if (progress.failed > 0) {
+                Log.w(TAG, "Скачивание завершено с ошибками: ${progress.failed} из $total")
                 // Возвращаем успех, но с предупреждением - часть файлов могла быть скачана
             } else {
-                Log.d(TAG, "Все отчёты успешно скачаны")
+                Log.d(TAG, "Все отчёты успешно скачаны (${progress.bytesDownloaded} байт)")
             }
             
             Result.success(Unit)
@@ -8,6 +8,7 @@ import retrofit2.HttpException
 import ru.wassertech.core.auth.DataStoreTokenStorage
 import ru.wassertech.core.network.ApiClient
 import ru.wassertech.core.network.ApiConfig
+import ru.wassertech.core.network.isNotModified
 import ru.wassertech.core.network.api.SyncApi
 import ru.wassertech.core.network.dto.SyncPullResponse
 import ru.wassertech.core.network.dto.SyncPushRequest
@@ -184,6 +185,16 @@ class SyncEngine(private val context: Context) {
                     )
                 }
                 
+                // Изменений нет: timestamp не сдвигаем, чтобы следующий pull повторил тот же URL
+                // условным запросом через HTTP-кэш и получил 304 без тела
+                if (pullResponse.hasNoChanges()) {
+                    Log.d(TAG, if (response.isNotModified()) "Данные не изменились (304)" else "Изменений нет")
+                    return@withContext SyncResult(
+                        success = true,
+                        message = "Изменений нет"
+                    )
+                }
+                
                 Log.d(TAG, "Получен ответ: sites=${pullResponse.sites.size}, installations=${pullResponse.installations.size}, components=${pullResponse.components.size}")
                 
                 // Детальное логирование полученных данных
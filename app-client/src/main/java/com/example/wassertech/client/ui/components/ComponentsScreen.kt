@@ -51,8 +51,8 @@ import kotlinx.coroutines.flow.map
 import java.util.UUID
 import ru.wassertech.core.screens.hierarchy.InstallationComponentsScreenShared
 import ru.wassertech.core.screens.hierarchy.ui.InstallationComponentsUiState
-import ru.wassertech.client.ui.hierarchy.ClientHierarchyUiStateMapper
-import ru.wassertech.client.data.entities.toUserMembershipInfoList
+import ru.wassertech.client.viewmodel.ClientHierarchyViewModel
+import androidx.lifecycle.viewmodel.compose.viewModel
 import ru.wassertech.client.ui.common.LocalEditingState
 import kotlinx.coroutines.withContext
 
@@ -73,6 +73,7 @@ fun ComponentsScreen(
     val db = remember { AppDatabase.getInstance(context) }
     val iconRepository = remember { IconRepository(context) }
     val scope = rememberCoroutineScope()
+    val hierarchyViewModel: ClientHierarchyViewModel = viewModel()
     val layoutDir = LocalLayoutDirection.current
     
     // Получаем состояние редактирования из CompositionLocal
@@ -136,76 +137,14 @@ fun ComponentsScreen(
         }
     }
     
-    // Получаем шаблоны компонентов для отображения названий
+    // Шаблоны компонентов для диалога добавления
     val templates by db.componentTemplatesDao().observeAll().collectAsState(initial = emptyList())
-    val templateTitleById = remember(templates) {
-        templates.associate { it.id to it.name }
-    }
-    
-    // Получаем membership для текущего пользователя
-    val memberships by remember(currentUser?.userId) {
-        if (currentUser?.userId != null) {
-            db.userMembershipDao().observeForUser(currentUser.userId)
-        } else {
-            kotlinx.coroutines.flow.flowOf(emptyList())
-        }
-    }.collectAsState(initial = emptyList())
-    val membershipsInfo = remember(memberships) {
-        memberships.toUserMembershipInfoList()
-    }
-    
-    // Загружаем иконки для всех компонентов
-    var componentIcons by remember {
-        mutableStateOf<Map<String, ru.wassertech.client.data.entities.IconEntity?>>(emptyMap())
-    }
-    LaunchedEffect(components) {
-        scope.launch(Dispatchers.IO) {
-            val iconsMap = mutableMapOf<String, ru.wassertech.client.data.entities.IconEntity?>()
-            components.forEach { component ->
-                if (component.iconId != null) {
-                    val icon = db.iconDao().getById(component.iconId)
-                    iconsMap[component.id] = icon
-                } else {
-                    iconsMap[component.id] = null
-                }
-            }
-            componentIcons = iconsMap
-        }
-    }
     
-    // Преобразуем в UI State с учётом прав доступа
-    var uiState by remember {
-        mutableStateOf<InstallationComponentsUiState?>(null)
-    }
-    LaunchedEffect(components, componentIcons, currentUser, membershipsInfo, installation, site, templateTitleById) {
-        if (currentUser != null && installation != null) {
-            scope.launch(Dispatchers.IO) {
-                val currentUserNonNull = currentUser!!
-                val currentInstallation = installation!!
-                val currentSite = site
-                val componentItems = components.mapNotNull { component ->
-                    val icon = componentIcons[component.id]
-                    val templateName = component.templateId?.let { templateTitleById[it] }
-                    withContext(Dispatchers.IO) {
-                        ClientHierarchyUiStateMapper.run {
-                            component.toComponentItemUi(iconRepository, currentUserNonNull, membershipsInfo, currentInstallation, currentSite, icon, templateName)
-                        }
-                    }
-                }
-                val canAddComponent = currentInstallation.createdByUserId == currentUserNonNull.userId
-                uiState = InstallationComponentsUiState(
-                    installationId = installationId,
-                    installationName = currentInstallation.name,
-                    siteName = site?.name,
-                    clientName = clientName,
-                    components = componentItems,
-                    canAddComponent = canAddComponent,
-                    canEditInstallation = false, // В app-client не редактируем установки
-                    isLoading = false
-                )
-            }
-        }
-    }
+    // UI State собирается во ViewModel из проекции components LEFT JOIN icons, component_templates
+    // (один запрос на эмиссию)
+    val uiState by remember(installationId) {
+        hierarchyViewModel.observeComponentsUiState(installationId)
+    }.collectAsState(initial = null)
     
     var showAddDialog by remember { mutableStateOf(false) }
     var newComponentName by remember { mutableStateOf("") }
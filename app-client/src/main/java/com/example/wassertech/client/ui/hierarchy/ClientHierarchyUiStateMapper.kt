@@ -1,43 +1,49 @@
 package ru.wassertech.client.ui.hierarchy
 
 import ru.wassertech.client.data.entities.*
+import ru.wassertech.client.data.relations.ComponentWithIcon
+import ru.wassertech.client.data.relations.InstallationWithIcon
+import ru.wassertech.client.data.relations.SiteWithIcon
 import ru.wassertech.core.screens.hierarchy.ui.*
 import ru.wassertech.core.auth.*
-import ru.wassertech.client.data.repository.IconRepository
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.withContext
 
 /**
  * Mapper для преобразования Entity в UI State для shared-экранов в app-client.
- * Учитывает права доступа через HierarchyPermissionChecker и user_membership.
+ * Учитывает права доступа через HierarchyPermissionChecker и индекс user_membership
+ * (HierarchyPermissionIndex).
+ *
+ * Работает с проекциями (entity LEFT JOIN icons) и заранее собранной картой локальных
+ * путей иконок, поэтому не обращается ни к БД, ни к файловой системе.
  */
 object ClientHierarchyUiStateMapper {
     
     /**
      * Преобразует SiteEntity в SiteItemUi с учётом прав доступа.
      */
-    suspend fun SiteEntity.toSiteItemUi(
-        iconRepository: IconRepository,
+    fun SiteWithIcon.toSiteItemUi(
         currentUser: UserSession,
-        memberships: List<UserMembershipInfo>,
-        icon: IconEntity? = null
+        permissions: HierarchyPermissionIndex,
+        localIconPaths: Map<String, String>
+    ): SiteItemUi? = site.toSiteItemUi(
+        currentUser = currentUser,
+        permissions = permissions,
+        iconAndroidResName = iconAndroidResName,
+        iconCode = iconCode,
+        localImagePath = joinedIconId?.let { localIconPaths[it] }
+    )
+
+    private fun SiteEntity.toSiteItemUi(
+        currentUser: UserSession,
+        permissions: HierarchyPermissionIndex,
+        iconAndroidResName: String?,
+        iconCode: String?,
+        localImagePath: String?
     ): SiteItemUi? {
         // Проверяем, может ли пользователь просматривать объект
-        if (!HierarchyPermissionChecker.canViewSite(
-            siteId = this.id,
-            siteClientId = this.clientId,
-            currentUser = currentUser,
-            memberships = memberships
-        )) {
+        if (!permissions.canViewSite(siteId = this.id, siteClientId = this.clientId)) {
             return null // Не включаем в список, если нет прав на просмотр
         }
         
-        val localImagePath = icon?.id?.let { 
-            withContext(Dispatchers.IO) { 
-                iconRepository.getLocalIconPath(it) 
-            } 
-        }
-        
         // Проверяем права доступа
         val canEdit = HierarchyPermissionChecker.canEditSite(
             siteCreatedByUserId = this.createdByUserId,
@@ -64,8 +70,8 @@ object ClientHierarchyUiStateMapper {
             name = this.name,
             address = this.address,
             iconId = this.iconId,
-            iconAndroidResName = icon?.androidResName,
-            iconCode = icon?.code,
+            iconAndroidResName = iconAndroidResName,
+            iconCode = iconCode,
             iconLocalImagePath = localImagePath,
             isArchived = this.isArchived,
             clientId = this.clientId,
@@ -81,31 +87,39 @@ object ClientHierarchyUiStateMapper {
     /**
      * Преобразует InstallationEntity в InstallationItemUi с учётом прав доступа.
      */
-    suspend fun InstallationEntity.toInstallationItemUi(
-        iconRepository: IconRepository,
+    fun InstallationWithIcon.toInstallationItemUi(
+        currentUser: UserSession,
+        permissions: HierarchyPermissionIndex,
+        site: SiteEntity?,
+        localIconPaths: Map<String, String>
+    ): InstallationItemUi? = installation.toInstallationItemUi(
+        currentUser = currentUser,
+        permissions = permissions,
+        site = site,
+        iconAndroidResName = iconAndroidResName,
+        iconCode = iconCode,
+        localImagePath = joinedIconId?.let { localIconPaths[it] }
+    )
+
+    private fun InstallationEntity.toInstallationItemUi(
         currentUser: UserSession,
-        memberships: List<UserMembershipInfo>,
+        permissions: HierarchyPermissionIndex,
         site: SiteEntity?,
-        icon: IconEntity? = null
+        iconAndroidResName: String?,
+        iconCode: String?,
+        localImagePath: String?
     ): InstallationItemUi? {
         // Проверяем, может ли пользователь просматривать установку
-        val siteClientId = site?.clientId ?: ""
-        if (!HierarchyPermissionChecker.canViewInstallation(
+        // Если объект не загружен, clientId берётся из индекса (связь объект → клиент)
+        val siteClientId = site?.clientId
+        if (!permissions.canViewInstallation(
             installationId = this.id,
             installationSiteId = this.siteId,
-            siteClientId = siteClientId,
-            currentUser = currentUser,
-            memberships = memberships
+            siteClientId = siteClientId
         )) {
             return null // Не включаем в список, если нет прав на просмотр
         }
         
-        val localImagePath = icon?.id?.let { 
-            withContext(Dispatchers.IO) { 
-                iconRepository.getLocalIconPath(it) 
-            } 
-        }
-        
         // Проверяем права доступа
         val canEdit = HierarchyPermissionChecker.canEditInstallation(
             installationCreatedByUserId = this.createdByUserId,
@@ -131,8 +145,8 @@ object ClientHierarchyUiStateMapper {
             id = this.id,
             name = this.name,
             iconId = this.iconId,
-            iconAndroidResName = icon?.androidResName,
-            iconCode = icon?.code,
+            iconAndroidResName = iconAndroidResName,
+            iconCode = iconCode,
             iconLocalImagePath = localImagePath,
             isArchived = this.isArchived,
             siteId = this.siteId,
@@ -150,34 +164,45 @@ object ClientHierarchyUiStateMapper {
     /**
      * Преобразует ComponentEntity в ComponentItemUi с учётом прав доступа.
      */
-    suspend fun ComponentEntity.toComponentItemUi(
-        iconRepository: IconRepository,
+    fun ComponentWithIcon.toComponentItemUi(
+        currentUser: UserSession,
+        permissions: HierarchyPermissionIndex,
+        installation: InstallationEntity?,
+        site: SiteEntity?,
+        localIconPaths: Map<String, String>
+    ): ComponentItemUi? = component.toComponentItemUi(
+        currentUser = currentUser,
+        permissions = permissions,
+        installation = installation,
+        site = site,
+        iconAndroidResName = iconAndroidResName,
+        iconCode = iconCode,
+        localImagePath = joinedIconId?.let { localIconPaths[it] },
+        templateName = templateName
+    )
+
+    private fun ComponentEntity.toComponentItemUi(
         currentUser: UserSession,
-        memberships: List<UserMembershipInfo>,
+        permissions: HierarchyPermissionIndex,
         installation: InstallationEntity?,
         site: SiteEntity?,
-        icon: IconEntity? = null,
-        templateName: String? = null
+        iconAndroidResName: String?,
+        iconCode: String?,
+        localImagePath: String?,
+        templateName: String?
     ): ComponentItemUi? {
         // Проверяем, может ли пользователь просматривать компонент
-        val siteClientId = site?.clientId ?: ""
+        // Если объект не загружен, clientId берётся из индекса (связь объект → клиент)
+        val siteClientId = site?.clientId
         val installationSiteId = installation?.siteId ?: ""
-        if (!HierarchyPermissionChecker.canViewComponent(
+        if (!permissions.canViewComponent(
             componentInstallationId = this.installationId,
             installationSiteId = installationSiteId,
-            siteClientId = siteClientId,
-            currentUser = currentUser,
-            memberships = memberships
+            siteClientId = siteClientId
         )) {
             return null // Не включаем в список, если нет прав на просмотр
         }
         
-        val localImagePath = icon?.id?.let { 
-            withContext(Dispatchers.IO) { 
-                iconRepository.getLocalIconPath(it) 
-            } 
-        }
-        
         // Проверяем права доступа
         val canEdit = HierarchyPermissionChecker.canEditComponent(
             componentCreatedByUserId = this.createdByUserId,
@@ -201,8 +226,8 @@ object ClientHierarchyUiStateMapper {
             type = this.type.name,
             templateName = templateName,
             iconId = this.iconId,
-            iconAndroidResName = icon?.androidResName,
-            iconCode = icon?.code,
+            iconAndroidResName = iconAndroidResName,
+            iconCode = iconCode,
             iconLocalImagePath = localImagePath,
             isArchived = this.isArchived,
             installationId = this.installationId,
@@ -27,8 +27,10 @@ import java.io.File
 import java.text.SimpleDateFormat
 import java.util.*
 import ru.wassertech.feature.reports.ReportAssembler
+import ru.wassertech.client.ui.reports.RoomReportDataSource
 import ru.wassertech.feature.reports.HtmlTemplateEngine
 import ru.wassertech.feature.reports.PdfExporter
+import ru.wassertech.feature.reports.ReportWebViewRenderer
 import ru.wassertech.feature.reports.ShareUtils
 import ru.wassertech.core.auth.SessionManager
 import ru.wassertech.client.permissions.canGeneratePdf
@@ -63,6 +65,11 @@ fun MaintenanceSessionDetailScreen(
     val currentUser = remember { SessionManager.getInstance(context).getCurrentSession() }
     val canGenerate = canGeneratePdf(currentUser)
 
+    // Прогреваем WebView для PDF заранее, пока пользователь смотрит отчёт
+    LaunchedEffect(Unit) {
+        ReportWebViewRenderer.warmUp(context, "templates/maintenance_v3.html")
+    }
+
     LaunchedEffect(sessionId) {
         withContext(Dispatchers.IO) {
             val s = db.sessionsDao().getSessionById(sessionId)
@@ -151,8 +158,8 @@ fun MaintenanceSessionDetailScreen(
                 // Подготовка DTO на IO потоке
                 Log.d("PDF", "Assembling report DTO...")
                 val dto = withContext(Dispatchers.IO) {
-                    // ReportAssembler требует AppDatabase, используем существующий экземпляр
-                    ReportAssembler.assemble(db, context, sessionId)
+                    // ReportAssembler читает данные через типизированный источник поверх Room
+                    ReportAssembler.assemble(RoomReportDataSource(db), context, sessionId)
                 }
                 Log.d("PDF", "Report DTO assembled successfully, reportNumber: ${dto.reportNumber}")
 
@@ -0,0 +1,89 @@
+package ru.wassertech.client.ui.reports
+
+import ru.wassertech.client.data.AppDatabase
+import ru.wassertech.client.data.relations.ComponentWithTemplateFields
+import ru.wassertech.client.data.types.ComponentType
+import ru.wassertech.feature.reports.ReportClientData
+import ru.wassertech.feature.reports.ReportComponentData
+import ru.wassertech.feature.reports.ReportDataSource
+import ru.wassertech.feature.reports.ReportFieldData
+import ru.wassertech.feature.reports.ReportObservationData
+import ru.wassertech.feature.reports.ReportValueData
+import ru.wassertech.feature.reports.SessionReportData
+
+/**
+ * Источник данных отчёта поверх Room (SessionReportDao.loadReportBundle).
+ */
+class RoomReportDataSource(private val db: AppDatabase) : ReportDataSource {
+
+    override suspend fun loadSessionReportData(sessionId: String): SessionReportData? {
+        val bundle = db.sessionReportDao().loadReportBundle(sessionId) ?: return null
+        val session = bundle.session.session
+        val installationId = bundle.installation?.id
+
+        val components = bundle.components.map { it.toReportComponent() }
+
+        return SessionReportData(
+            sessionId = session.id,
+            startedAtEpoch = session.startedAtEpoch,
+            technician = session.technician,
+            notes = session.notes,
+            installationName = bundle.installation?.name,
+            siteName = bundle.site?.name,
+            client = bundle.client?.let { client ->
+                ReportClientData(
+                    name = client.name,
+                    addressFull = client.addressFull,
+                    phone = client.phone,
+                    contactPerson = client.contactPerson
+                )
+            },
+            installationComponents = if (installationId == null) {
+                emptyList()
+            } else {
+                bundle.components.zip(components)
+                    .filter { (row, _) -> row.component.installationId == installationId }
+                    .map { (_, component) -> component }
+            },
+            components = components.associateBy { it.id },
+            observations = bundle.session.observations.map { o ->
+                ReportObservationData(
+                    componentId = o.componentId,
+                    fieldKey = o.fieldKey,
+                    valueText = o.valueText,
+                    valueNumber = o.valueNumber,
+                    valueBool = o.valueBool
+                )
+            },
+            values = bundle.session.values.map { v ->
+                ReportValueData(
+                    componentId = v.componentId,
+                    fieldKey = v.fieldKey,
+                    valueText = v.valueText,
+                    valueBool = v.valueBool
+                )
+            }
+        )
+    }
+
+    private fun ComponentWithTemplateFields.toReportComponent(): ReportComponentData =
+        ReportComponentData(
+            id = component.id,
+            name = component.name,
+            type = component.type.name,
+            orderIndex = component.orderIndex,
+            // Тип компонента для отчёта берётся из шаблона чек-листа
+            componentType = template?.componentType?.name ?: ComponentType.COMMON.name,
+            // В отчёт идут только поля, участвующие в ТО
+            fields = fields
+                .filter { it.isForMaintenance }
+                .map { field ->
+                    ReportFieldData(
+                        key = field.key,
+                        label = field.label,
+                        unit = field.unit,
+                        type = field.type.name
+                    )
+                }
+        )
+}
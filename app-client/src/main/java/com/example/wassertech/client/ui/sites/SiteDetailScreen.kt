@@ -54,8 +54,8 @@ import java.util.UUID
 import ru.wassertech.core.screens.hierarchy.SiteInstallationsScreenShared
 import ru.wassertech.core.screens.hierarchy.ui.SiteInstallationsUiState
 import ru.wassertech.core.screens.hierarchy.ui.InstallationItemUi
-import ru.wassertech.client.ui.hierarchy.ClientHierarchyUiStateMapper
-import ru.wassertech.client.data.entities.toUserMembershipInfoList
+import ru.wassertech.client.viewmodel.ClientHierarchyViewModel
+import androidx.lifecycle.viewmodel.compose.viewModel
 import ru.wassertech.core.auth.HierarchyPermissionChecker
 import ru.wassertech.client.ui.common.LocalEditingState
 import kotlinx.coroutines.flow.first
@@ -77,6 +77,7 @@ fun SiteDetailScreen(
     val db = remember { AppDatabase.getInstance(context) }
     val iconRepository = remember { IconRepository(context) }
     val scope = rememberCoroutineScope()
+    val hierarchyViewModel: ClientHierarchyViewModel = viewModel()
     val layoutDir = LocalLayoutDirection.current
     
     // Получаем состояние редактирования из CompositionLocal
@@ -87,18 +88,6 @@ fun SiteDetailScreen(
     // Получаем текущую сессию пользователя
     val currentUser = remember { SessionManager.getInstance(context).getCurrentSession() }
     
-    // Получаем user_membership для текущего пользователя
-    val membershipsRaw by remember(currentUser?.userId) {
-        if (currentUser?.userId != null) {
-            db.userMembershipDao().observeForUser(currentUser.userId)
-        } else {
-            kotlinx.coroutines.flow.flowOf(emptyList<ru.wassertech.client.data.entities.UserMembershipEntity>())
-        }
-    }.collectAsState(initial = emptyList())
-    val memberships = remember(membershipsRaw) {
-        membershipsRaw.toUserMembershipInfoList()
-    }
-    
     // Получаем данные объекта
     val site by db.hierarchyDao().observeSite(siteId).collectAsState(initial = null)
     val siteName = site?.name ?: "Объект"
@@ -188,55 +177,10 @@ fun SiteDetailScreen(
     var iconPickerStateForInstallation by remember { mutableStateOf<IconPickerUiState?>(null) }
     var iconPickerInstallationId by remember { mutableStateOf<String?>(null) }
     
-    // Загружаем иконки для всех установок
-    var installationIcons by remember {
-        mutableStateOf<Map<String, ru.wassertech.client.data.entities.IconEntity?>>(emptyMap())
-    }
-    LaunchedEffect(installations) {
-        scope.launch(Dispatchers.IO) {
-            val iconsMap = mutableMapOf<String, ru.wassertech.client.data.entities.IconEntity?>()
-            installations.forEach { installation ->
-                if (installation.iconId != null) {
-                    val icon = db.iconDao().getById(installation.iconId)
-                    iconsMap[installation.id] = icon
-                } else {
-                    iconsMap[installation.id] = null
-                }
-            }
-            installationIcons = iconsMap
-        }
-    }
-    
-    // Преобразуем в UI State с учётом прав доступа
-    var uiState by remember {
-        mutableStateOf<SiteInstallationsUiState?>(null)
-    }
-    LaunchedEffect(installations, installationIcons, currentUser, memberships, site) {
-        if (currentUser != null && site != null) {
-            scope.launch(Dispatchers.IO) {
-                val currentUserNonNull = currentUser!!
-                val currentSite = site!!
-                val installationItems = installations.mapNotNull { installation ->
-                    val icon = installationIcons[installation.id]
-                    withContext(Dispatchers.IO) {
-                        ClientHierarchyUiStateMapper.run {
-                            installation.toInstallationItemUi(iconRepository, currentUserNonNull, memberships, currentSite, icon)
-                        }
-                    }
-                }
-                val canAddInstallation = currentSite.createdByUserId == currentUserNonNull.userId
-                uiState = SiteInstallationsUiState(
-                    siteId = siteId,
-                    siteName = siteName,
-                    clientName = clientName,
-                    installations = installationItems,
-                    canAddInstallation = canAddInstallation,
-                    canEditSite = canEditSite(currentUserNonNull, currentSite),
-                    isLoading = false
-                )
-            }
-        }
-    }
+    // UI State собирается во ViewModel из проекции installations LEFT JOIN icons (один запрос на эмиссию)
+    val uiState by remember(siteId) {
+        hierarchyViewModel.observeInstallationsUiState(siteId)
+    }.collectAsState(initial = null)
     
     // Логирование для FAB (вынесено наружу)
     LaunchedEffect(site, currentUser) {
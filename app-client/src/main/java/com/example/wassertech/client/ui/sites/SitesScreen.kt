@@ -58,9 +58,8 @@ import kotlinx.coroutines.flow.map
 import java.util.UUID
 import ru.wassertech.core.screens.hierarchy.ClientSitesScreenShared
 import ru.wassertech.core.screens.hierarchy.ui.ClientSitesUiState
-import ru.wassertech.client.ui.hierarchy.ClientHierarchyUiStateMapper
-import ru.wassertech.client.data.entities.toUserMembershipInfoList
-import ru.wassertech.core.auth.HierarchyPermissionChecker
+import ru.wassertech.client.viewmodel.ClientHierarchyViewModel
+import androidx.lifecycle.viewmodel.compose.viewModel
 
 /**
  * Экран списка объектов для app-client.
@@ -78,6 +77,7 @@ fun SitesScreen(
     val db = remember { AppDatabase.getInstance(context) }
     val iconRepository = remember { IconRepository(context) }
     val scope = rememberCoroutineScope()
+    val hierarchyViewModel: ClientHierarchyViewModel = viewModel()
     
     // Получаем состояние редактирования из CompositionLocal
     val editingState = LocalEditingState.current
@@ -87,18 +87,6 @@ fun SitesScreen(
     // Получаем текущую сессию пользователя
     val currentUser = remember { SessionManager.getInstance(context).getCurrentSession() }
     
-    // Получаем user_membership для текущего пользователя
-    val membershipsRaw by remember(currentUser?.userId) {
-        if (currentUser?.userId != null) {
-            db.userMembershipDao().observeForUser(currentUser.userId)
-        } else {
-            kotlinx.coroutines.flow.flowOf(emptyList<ru.wassertech.client.data.entities.UserMembershipEntity>())
-        }
-    }.collectAsState(initial = emptyList())
-    val memberships = remember(membershipsRaw) {
-        membershipsRaw.toUserMembershipInfoList()
-    }
-    
     // Получаем список объектов для текущего клиента (включая архивные в режиме редактирования)
     val sites by if (isEditing) {
         db.hierarchyDao().observeSitesIncludingArchived(clientId)
@@ -130,55 +118,10 @@ fun SitesScreen(
     
     // Локальный порядок теперь управляется shared-экраном
     
-    // Загружаем иконки для всех сайтов
-    var siteIcons by remember {
-        mutableStateOf<Map<String, ru.wassertech.client.data.entities.IconEntity?>>(emptyMap())
-    }
-    LaunchedEffect(sites) {
-        scope.launch(Dispatchers.IO) {
-            val iconsMap = mutableMapOf<String, ru.wassertech.client.data.entities.IconEntity?>()
-            sites.forEach { site ->
-                if (site.iconId != null) {
-                    val icon = db.iconDao().getById(site.iconId)
-                    iconsMap[site.id] = icon
-                } else {
-                    iconsMap[site.id] = null
-                }
-            }
-            siteIcons = iconsMap
-        }
-    }
-    
-    // Преобразуем в UI State с учётом прав доступа
-    var uiState by remember {
-        mutableStateOf<ClientSitesUiState?>(null)
-    }
-    LaunchedEffect(sites, siteIcons, currentUser, memberships) {
-        if (currentUser != null) {
-            scope.launch(Dispatchers.IO) {
-                val siteItems = sites.mapNotNull { site ->
-                    val icon = siteIcons[site.id]
-                    withContext(Dispatchers.IO) {
-                        ClientHierarchyUiStateMapper.run {
-                            site.toSiteItemUi(iconRepository, currentUser, memberships, icon)
-                        }
-                    }
-                }
-                // Для CLIENT роли пользователь может создавать объекты, если он является клиентом
-                val canAddSite = currentUser.isClient() && currentUser.clientId != null
-                uiState = ClientSitesUiState(
-                    clientId = clientId,
-                    clientName = clientName,
-                    isCorporate = isCorporate,
-                    sites = siteItems,
-                    includeArchived = isEditing,
-                    canAddSite = canAddSite,
-                    canEditClient = false,
-                    isLoading = false
-                )
-            }
-        }
-    }
+    // UI State собирается во ViewModel из проекции sites LEFT JOIN icons (один запрос на эмиссию)
+    val uiState by remember(clientId, isEditing) {
+        hierarchyViewModel.observeSitesUiState(clientId, includeArchived = isEditing)
+    }.collectAsState(initial = null)
     
     // Используем shared-экран с черным заголовком
     Column(
@@ -505,26 +448,17 @@ fun SitesScreen(
                                 dirtyFlag = true,
                                 syncStatus = 1 // QUEUED
                             )
-                            db.hierarchyDao().upsertSite(updatedSite)
-                            
-                            // Обновляем локальное состояние иконки для немедленной перерисовки
-                            val icon = if (newIconId != null) {
-                                db.iconDao().getById(newIconId)
-                            } else {
-                                null
-                            }
-                            siteIcons = siteIcons.toMutableMap().apply {
-                                put(siteId, icon)
-                            }
-                            
-                            // Обновляем localImagePath для иконки
+                            // Сначала загружаем изображение, если его еще нет: обновление объекта
+                            // перезапустит проекцию, и она уже увидит локальный файл
+                            val icon = newIconId?.let { db.iconDao().getById(it) }
                             if (icon != null && icon.imageUrl != null) {
                                 val localPath = iconRepository.getLocalIconPath(icon.id)
                                 if (localPath == null) {
-                                    // Загружаем изображение, если его еще нет
                                     iconRepository.downloadIconImage(icon.id, icon.imageUrl)
                                 }
                             }
+                            
+                            db.hierarchyDao().upsertSite(updatedSite)
                         }
                     }
                 }
@@ -0,0 +1,139 @@
+package ru.wassertech.client.viewmodel
+
+import android.app.Application
+import androidx.lifecycle.AndroidViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import ru.wassertech.client.data.AppDatabase
+import ru.wassertech.client.data.repository.IconRepository
+import ru.wassertech.client.permissions.PermissionIndexRepository
+import ru.wassertech.client.permissions.canEditSite
+import ru.wassertech.client.ui.hierarchy.ClientHierarchyUiStateMapper.toComponentItemUi
+import ru.wassertech.client.ui.hierarchy.ClientHierarchyUiStateMapper.toInstallationItemUi
+import ru.wassertech.client.ui.hierarchy.ClientHierarchyUiStateMapper.toSiteItemUi
+import ru.wassertech.core.auth.HierarchyPermissionIndex
+import ru.wassertech.core.auth.SessionManager
+import ru.wassertech.core.screens.hierarchy.ui.ClientSitesUiState
+import ru.wassertech.core.screens.hierarchy.ui.InstallationComponentsUiState
+import ru.wassertech.core.screens.hierarchy.ui.SiteInstallationsUiState
+
+/**
+ * ViewModel для экранов иерархии app-client (объекты → установки → компоненты).
+ *
+ * Списки читаются проекциями Room (entity LEFT JOIN icons) как Flow; на каждую эмиссию
+ * UI State собирается один раз вне главного потока: локальные пути иконок берутся
+ * одним чтением директории, права просмотра проверяются по общему индексу
+ * (PermissionIndexRepository), который перестраивается только при изменении membership.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class ClientHierarchyViewModel(application: Application) : AndroidViewModel(application) {
+
+    private val db = AppDatabase.getInstance(application)
+    private val hierarchyDao = db.hierarchyDao()
+    private val clientDao = db.clientDao()
+    private val iconRepository = IconRepository(application)
+
+    private val currentUser = SessionManager.getInstance(application).getCurrentSession()
+
+    /**
+     * Индекс прав просмотра (user_membership + связь клиент → объекты).
+     * Пока он null, UI State отдаётся с isLoading = true и пустым списком.
+     */
+    private val permissions: Flow<HierarchyPermissionIndex?> =
+        PermissionIndexRepository.getInstance(application).index
+
+    /**
+     * Объекты клиента.
+     * @param includeArchived включать архивные (режим редактирования)
+     * @return null, пока нет сессии пользователя
+     */
+    fun observeSitesUiState(clientId: String, includeArchived: Boolean): Flow<ClientSitesUiState?> {
+        val user = currentUser ?: return flowOf(null)
+        return combine(
+            hierarchyDao.observeSitesWithIcons(clientId, includeArchived),
+            clientDao.observeClientRaw(clientId),
+            permissions
+        ) { rows, client, index ->
+            val localIconPaths = iconRepository.getLocalIconPaths(rows.mapNotNull { it.joinedIconId })
+            ClientSitesUiState(
+                clientId = clientId,
+                clientName = client.firstOrNull()?.name ?: "Мои объекты",
+                isCorporate = client.firstOrNull()?.isCorporate ?: false,
+                sites = if (index == null) emptyList() else rows.mapNotNull { it.toSiteItemUi(user, index, localIconPaths) },
+                includeArchived = includeArchived,
+                // Для CLIENT роли пользователь может создавать объекты, если он является клиентом
+                canAddSite = user.isClient() && user.clientId != null,
+                canEditClient = false,
+                isLoading = index == null
+            )
+        }.flowOn(Dispatchers.Default)
+    }
+
+    /**
+     * Установки объекта.
+     * @return null, пока нет сессии пользователя или объект не загружен
+     */
+    fun observeInstallationsUiState(siteId: String): Flow<SiteInstallationsUiState?> {
+        val user = currentUser ?: return flowOf(null)
+        return hierarchyDao.observeSite(siteId).flatMapLatest { site ->
+            if (site == null) return@flatMapLatest flowOf(null)
+            val clientId = site.effectiveOwnerClientId()
+            combine(
+                hierarchyDao.observeInstallationsWithIcons(siteId),
+                clientDao.observeClientRaw(clientId),
+                permissions
+            ) { rows, client, index ->
+                val localIconPaths = iconRepository.getLocalIconPaths(rows.mapNotNull { it.joinedIconId })
+                SiteInstallationsUiState(
+                    siteId = siteId,
+                    siteName = site.name,
+                    clientName = client.firstOrNull()?.name,
+                    installations = if (index == null) emptyList() else {
+                        rows.mapNotNull { it.toInstallationItemUi(user, index, site, localIconPaths) }
+                    },
+                    canAddInstallation = site.createdByUserId == user.userId,
+                    canEditSite = canEditSite(user, site),
+                    isLoading = index == null
+                )
+            }
+        }.flowOn(Dispatchers.Default)
+    }
+
+    /**
+     * Компоненты установки.
+     * @return null, пока нет сессии пользователя или установка не загружена
+     */
+    fun observeComponentsUiState(installationId: String): Flow<InstallationComponentsUiState?> {
+        val user = currentUser ?: return flowOf(null)
+        return hierarchyDao.observeInstallation(installationId).flatMapLatest { installation ->
+            if (installation == null) return@flatMapLatest flowOf(null)
+            hierarchyDao.observeSite(installation.siteId).flatMapLatest { site ->
+                val clientId = site?.effectiveOwnerClientId()
+                combine(
+                    hierarchyDao.observeComponentsWithIcons(installationId),
+                    clientId?.let { clientDao.observeClientRaw(it) } ?: flowOf(emptyList()),
+                    permissions
+                ) { rows, client, index ->
+                    val localIconPaths = iconRepository.getLocalIconPaths(rows.mapNotNull { it.joinedIconId })
+                    InstallationComponentsUiState(
+                        installationId = installationId,
+                        installationName = installation.name,
+                        siteName = site?.name,
+                        clientName = client.firstOrNull()?.name,
+                        components = if (index == null) emptyList() else rows.mapNotNull {
+                            it.toComponentItemUi(user, index, installation, site, localIconPaths)
+                        },
+                        canAddComponent = installation.createdByUserId == user.userId,
+                        canEditInstallation = false, // В app-client не редактируем установки
+                        isLoading = index == null
+                    )
+                }
+            }
+        }.flowOn(Dispatchers.Default)
+    }
+}
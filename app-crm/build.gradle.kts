@@ -166,6 +166,9 @@ dependencies {
     // Coroutines
     implementation("org.jetbrains.kotlinx:kotlinx-coroutines-android:1.9.0")
     
+    // WorkManager (фоновая синхронизация)
+    implementation("androidx.work:work-runtime-ktx:2.9.1")
+    
     // DOCX processing
     implementation("org.apache.poi:poi:5.2.5")
     implementation("org.apache.poi:poi-ooxml:5.2.5")
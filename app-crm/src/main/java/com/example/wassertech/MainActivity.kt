@@ -16,7 +16,9 @@ import ru.wassertech.core.ui.dialogs.SessionExpiredDialog
 import ru.wassertech.core.ui.auth.SessionExpiredHandler
 import ru.wassertech.core.auth.SessionManager
 import ru.wassertech.core.network.ApiClient
+import ru.wassertech.core.network.HttpClientRegistry
 import ru.wassertech.feature.auth.AuthRoutes
+import ru.wassertech.sync.SyncScheduler
 import androidx.navigation.compose.rememberNavController
 import androidx.navigation.compose.NavHost
 import androidx.navigation.compose.composable
@@ -25,6 +27,14 @@ class MainActivity : ComponentActivity() {
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         
+        // HTTP-кэш для условных запросов (до создания сетевых клиентов)
+        HttpClientRegistry.installCache(applicationContext)
+        
+        // Периодическая фоновая синхронизация (уже запланированная задача сохраняется)
+        SyncScheduler.schedulePeriodic(applicationContext)
+        // Досылаем отчёты, оставшиеся в очереди отправки (задача могла быть отменена при выходе)
+        SyncScheduler.requestReportUpload(applicationContext)
+        
         setContent {
             WassertechTheme {
                 Surface(color = MaterialTheme.colorScheme.background) {
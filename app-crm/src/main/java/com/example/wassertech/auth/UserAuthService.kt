@@ -46,6 +46,8 @@ object UserAuthService {
             .putString(KEY_CURRENT_USER_ID, user.id)
             .putBoolean(KEY_OFFLINE_MODE, isOfflineMode)
             .apply()
+        // Периодическая синхронизация отменяется при выходе — планируем заново при входе
+        ru.wassertech.sync.SyncScheduler.schedulePeriodic(context)
         
         // Добавляем/обновляем пользователя в списке локальных пользователей
         val localUsers = getLocalUsers(context).toMutableList()
@@ -78,6 +80,10 @@ object UserAuthService {
         prefs.edit()
             .remove(KEY_CURRENT_USER_ID)
             .apply()
+        // Фоновая синхронизация без пользователя не нужна
+        ru.wassertech.sync.SyncScheduler.cancelAll(context)
+        // Закэшированные ответы сервера относятся к вышедшему пользователю
+        ru.wassertech.core.network.HttpClientRegistry.evictCache()
     }
     
     /**
@@ -159,6 +165,7 @@ object UserAuthService {
             .putString(KEY_CURRENT_USER_ID, userId)
             .putBoolean(KEY_OFFLINE_MODE, true) // Устанавливаем флаг оффлайн режима
             .apply()
+        ru.wassertech.sync.SyncScheduler.schedulePeriodic(context)
         
         // Обновляем время последнего входа для этого пользователя
         val localUsers = getLocalUsers(context).toMutableList()
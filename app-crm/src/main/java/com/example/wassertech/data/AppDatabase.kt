@@ -29,9 +29,12 @@ import ru.wassertech.data.migrations.MIGRATION_16_17  // ← Добавлени
 import ru.wassertech.data.migrations.MIGRATION_17_18  // ← Добавление поля thumbnailLocalPath в icons
 import ru.wassertech.data.migrations.MIGRATION_18_19  // ← Добавление таблицы reports
 import ru.wassertech.data.migrations.MIGRATION_19_20  // ← Добавление таблицы sensor_temperature_logs
+import ru.wassertech.data.migrations.MIGRATION_20_21  // ← Добавление поля localImagePath в icons
+import ru.wassertech.data.migrations.MIGRATION_21_22  // ← Добавление таблицы report_batch_jobs
+import ru.wassertech.data.migrations.MIGRATION_22_23  // ← Добавление таблицы report_upload_outbox
 
 @Database(
-    version = 20, // ← Обновлено: добавление таблицы sensor_temperature_logs
+    version = 23, // ← Обновлено: добавление таблицы report_upload_outbox
     exportSchema = true,
     entities = [
         ClientEntity::class,
@@ -52,7 +55,9 @@ import ru.wassertech.data.migrations.MIGRATION_19_20  // ← Добавлени
         IconPackSyncStatusEntity::class, // ← Сущность для отслеживания статуса загрузки
         UserMembershipEntity::class, // ← Сущность для контроля доступа пользователей
         ReportEntity::class, // ← Сущность для PDF-отчётов
-        SensorTemperatureLogEntity::class // ← Сущность для логов температуры датчиков
+        SensorTemperatureLogEntity::class, // ← Сущность для логов температуры датчиков
+        ReportBatchJobEntity::class, // ← Сущность для заданий пакетной генерации отчётов
+        ReportUploadEntity::class // ← Сущность очереди отправки PDF-отчётов
     ]
 )
 @TypeConverters(Converters::class)
@@ -73,7 +78,10 @@ abstract class AppDatabase : RoomDatabase() {
     abstract fun iconPackSyncStatusDao(): ru.wassertech.data.dao.IconPackSyncStatusDao
     abstract fun userMembershipDao(): ru.wassertech.data.dao.UserMembershipDao
     abstract fun reportDao(): ru.wassertech.data.dao.ReportDao
+    abstract fun sessionReportDao(): SessionReportDao
     abstract fun sensorTemperatureLogsDao(): SensorTemperatureLogsDao
+    abstract fun reportBatchJobsDao(): ReportBatchJobsDao
+    abstract fun reportUploadOutboxDao(): ReportUploadOutboxDao
 
     companion object {
         @Volatile private var INSTANCE: AppDatabase? = null
@@ -105,7 +113,10 @@ abstract class AppDatabase : RoomDatabase() {
                         MIGRATION_16_17,  // ← Добавление таблицы user_membership
                         MIGRATION_17_18,  // ← Добавление поля thumbnailLocalPath в icons
                         MIGRATION_18_19,  // ← Добавление таблицы reports
-                        MIGRATION_19_20  // ← Добавление таблицы sensor_temperature_logs
+                        MIGRATION_19_20,  // ← Добавление таблицы sensor_temperature_logs
+                        MIGRATION_20_21,  // ← Добавление поля localImagePath в icons
+                        MIGRATION_21_22,  // ← Добавление таблицы report_batch_jobs
+                        MIGRATION_22_23  // ← Добавление таблицы report_upload_outbox
                     )
                     // В проде обычно не используем destructive-опции, оставляю как у тебя:
                     //.fallbackToDestructiveMigration()
@@ -143,6 +143,14 @@ interface ClientDao {
 
     // ========== Методы синхронизации ==========
     
+    /** Получить клиентов по списку id (пакетное применение sync/pull) */
+    @Query("SELECT * FROM clients WHERE id IN (:ids)")
+    fun getClientsByIdsNow(ids: List<String>): List<ClientEntity>
+    
+    /** Массовый upsert клиентов (пакетное применение sync/pull) */
+    @Upsert
+    fun upsertClients(clients: List<ClientEntity>)
+    
     /** Получить всех "грязных" клиентов (требующих синхронизации) */
     @Query("SELECT * FROM clients WHERE dirtyFlag = 1")
     fun getDirtyClientsNow(): List<ClientEntity>
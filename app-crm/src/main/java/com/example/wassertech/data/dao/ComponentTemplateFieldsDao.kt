@@ -54,6 +54,9 @@ interface ComponentTemplateFieldsDao {
     @Query("SELECT * FROM component_template_fields WHERE id = :id LIMIT 1")
     suspend fun getFieldById(id: String): ComponentTemplateFieldEntity?
 
+    @Query("SELECT * FROM component_template_fields WHERE id IN (:ids)")
+    suspend fun getFieldsByIds(ids: List<String>): List<ComponentTemplateFieldEntity>
+
     // ---------- UPSERT / UPDATE ----------
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
@@ -19,6 +19,12 @@ interface ComponentTemplatesDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun upsert(item: ComponentTemplateEntity)
 
+    @Query("SELECT * FROM component_templates WHERE id IN (:ids)")
+    suspend fun getByIds(ids: List<String>): List<ComponentTemplateEntity>
+
+    @Upsert
+    suspend fun upsertAll(items: List<ComponentTemplateEntity>)
+
     @Update
     suspend fun update(item: ComponentTemplateEntity)
 
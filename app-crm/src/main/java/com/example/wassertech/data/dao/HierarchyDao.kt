@@ -167,6 +167,30 @@ interface HierarchyDao {
     
     // ========== Методы синхронизации ==========
     
+    /** Получить объекты по списку id (пакетное применение sync/pull) */
+    @Query("SELECT * FROM sites WHERE id IN (:ids)")
+    suspend fun getSitesByIdsNow(ids: List<String>): List<SiteEntity>
+    
+    /** Получить установки по списку id (пакетное применение sync/pull) */
+    @Query("SELECT * FROM installations WHERE id IN (:ids)")
+    suspend fun getInstallationsByIdsNow(ids: List<String>): List<InstallationEntity>
+    
+    /** Получить компоненты по списку id (пакетное применение sync/pull) */
+    @Query("SELECT * FROM components WHERE id IN (:ids)")
+    suspend fun getComponentsByIdsNow(ids: List<String>): List<ComponentEntity>
+    
+    /** Массовый upsert объектов (пакетное применение sync/pull) */
+    @Upsert
+    suspend fun upsertSites(sites: List<SiteEntity>)
+    
+    /** Массовый upsert установок (пакетное применение sync/pull) */
+    @Upsert
+    suspend fun upsertInstallations(installations: List<InstallationEntity>)
+    
+    /** Массовый upsert компонентов (пакетное применение sync/pull) */
+    @Upsert
+    suspend fun upsertComponents(components: List<ComponentEntity>)
+    
     /** Получить все "грязные" объекты */
     @Query("SELECT * FROM sites WHERE dirtyFlag = 1")
     fun getDirtySitesNow(): List<SiteEntity>
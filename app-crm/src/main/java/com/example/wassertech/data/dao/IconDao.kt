@@ -83,6 +83,24 @@ interface IconDao {
      */
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun upsertAll(icons: List<IconEntity>)
+
+    /**
+     * Обновить локальный путь к изображению иконки.
+     */
+    @Query("UPDATE icons SET localImagePath = :path WHERE id = :id")
+    suspend fun updateLocalImagePath(id: String, path: String?)
+
+    /**
+     * Обновить локальный путь к миниатюре иконки.
+     */
+    @Query("UPDATE icons SET thumbnailLocalPath = :path WHERE id = :id")
+    suspend fun updateThumbnailLocalPath(id: String, path: String?)
+
+    /**
+     * Сбросить локальные пути изображений всех иконок пака.
+     */
+    @Query("UPDATE icons SET localImagePath = NULL WHERE packId = :packId")
+    suspend fun clearLocalImagePaths(packId: String)
 }
 
 
@@ -0,0 +1,91 @@
+package ru.wassertech.data.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import kotlinx.coroutines.flow.Flow
+import ru.wassertech.data.entities.ReportBatchJobEntity
+
+/**
+ * DAO для заданий пакетной генерации отчётов.
+ */
+@Dao
+interface ReportBatchJobsDao {
+
+    /**
+     * Добавление заданий; задание для той же сессии перезаписывается (генерация заново).
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertAll(jobs: List<ReportBatchJobEntity>)
+
+    @Query("SELECT * FROM report_batch_jobs ORDER BY createdAtEpoch ASC")
+    fun observeAll(): Flow<List<ReportBatchJobEntity>>
+
+    @Query("SELECT * FROM report_batch_jobs WHERE sessionId IN (:sessionIds)")
+    suspend fun getByIds(sessionIds: List<String>): List<ReportBatchJobEntity>
+
+    /**
+     * Незавершённые задания: ожидают рендеринга или загрузки, а также ошибочные,
+     * у которых ещё остались попытки (меньше [maxAttempts]).
+     */
+    @Query("""
+        SELECT * FROM report_batch_jobs
+        WHERE state IN ('PENDING', 'RENDERED') OR (state = 'FAILED' AND attempts < :maxAttempts)
+        ORDER BY createdAtEpoch ASC
+    """)
+    suspend fun getUnfinished(maxAttempts: Int): List<ReportBatchJobEntity>
+
+    /**
+     * Резервирует номер отчёта за заданием (до первой сборки); уже зарезервированный не меняется.
+     */
+    @Query("UPDATE report_batch_jobs SET reportNumber = :reportNumber WHERE sessionId = :sessionId AND reportNumber IS NULL")
+    suspend fun reserveReportNumber(sessionId: String, reportNumber: String)
+
+    @Query("""
+        UPDATE report_batch_jobs
+        SET state = 'RENDERED', reportNumber = :reportNumber, pdfPath = :pdfPath, lastError = NULL, updatedAtEpoch = :now
+        WHERE sessionId = :sessionId
+    """)
+    suspend fun markRendered(sessionId: String, reportNumber: String, pdfPath: String, now: Long = System.currentTimeMillis())
+
+    @Query("UPDATE report_batch_jobs SET state = 'DONE', lastError = NULL, updatedAtEpoch = :now WHERE sessionId = :sessionId")
+    suspend fun markDone(sessionId: String, now: Long = System.currentTimeMillis())
+
+    @Query("""
+        UPDATE report_batch_jobs
+        SET state = 'FAILED', attempts = attempts + 1, lastError = :error, updatedAtEpoch = :now
+        WHERE sessionId = :sessionId
+    """)
+    suspend fun markFailed(sessionId: String, error: String?, now: Long = System.currentTimeMillis())
+
+    /**
+     * Ошибка постановки в очередь отправки: задание остаётся RENDERED, повтор при следующем запуске.
+     */
+    @Query("""
+        UPDATE report_batch_jobs
+        SET attempts = attempts + 1, lastError = :error, updatedAtEpoch = :now
+        WHERE sessionId = :sessionId
+    """)
+    suspend fun markUploadFailed(sessionId: String, error: String?, now: Long = System.currentTimeMillis())
+
+    /**
+     * Удалить выполненные задания перед новым пакетом. Ошибочные остаются: их повторяют
+     * или убирает пользователь ([retryFailed] / [deleteFailed]).
+     */
+    @Query("DELETE FROM report_batch_jobs WHERE state = 'DONE'")
+    suspend fun deleteDone()
+
+    /**
+     * Вернуть ошибочные задания в очередь с новым запасом попыток (номер отчёта сохраняется).
+     */
+    @Query("""
+        UPDATE report_batch_jobs
+        SET state = 'PENDING', attempts = 0, updatedAtEpoch = :now
+        WHERE state = 'FAILED'
+    """)
+    suspend fun retryFailed(now: Long = System.currentTimeMillis())
+
+    @Query("DELETE FROM report_batch_jobs WHERE state = 'FAILED'")
+    suspend fun deleteFailed()
+}
@@ -0,0 +1,78 @@
+package ru.wassertech.data.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import kotlinx.coroutines.flow.Flow
+import ru.wassertech.data.entities.ReportUploadEntity
+
+/**
+ * DAO очереди отправки PDF-отчётов.
+ */
+@Dao
+interface ReportUploadOutboxDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsert(entry: ReportUploadEntity)
+
+    @Query("SELECT * FROM report_upload_outbox WHERE sessionId = :sessionId LIMIT 1")
+    suspend fun get(sessionId: String): ReportUploadEntity?
+
+    /**
+     * Записи, которые пора отправлять (по времени следующей попытки), и записи UPLOADING с истёкшей
+     * арендой (отправка прервана вместе с процессом: [updatedAtEpoch] раньше [leaseExpiredBefore]).
+     */
+    @Query("""
+        SELECT * FROM report_upload_outbox
+        WHERE (state = 'PENDING' AND nextAttemptAtEpoch <= :now)
+           OR (state = 'UPLOADING' AND updatedAtEpoch <= :leaseExpiredBefore)
+        ORDER BY nextAttemptAtEpoch ASC, updatedAtEpoch ASC
+    """)
+    suspend fun getDue(now: Long, leaseExpiredBefore: Long): List<ReportUploadEntity>
+
+    /**
+     * Захват записи для отправки (PENDING или UPLOADING с истёкшей арендой → UPLOADING).
+     * @return 1 — запись захвачена; 0 — её уже отправляет другой воркер или файл сессии заменили
+     */
+    @Query("""
+        UPDATE report_upload_outbox SET state = 'UPLOADING', updatedAtEpoch = :now
+        WHERE sessionId = :sessionId AND contentHash = :contentHash
+          AND (state = 'PENDING' OR (state = 'UPLOADING' AND updatedAtEpoch <= :leaseExpiredBefore))
+    """)
+    suspend fun claim(sessionId: String, contentHash: String, leaseExpiredBefore: Long, now: Long = System.currentTimeMillis()): Int
+
+    /**
+     * Время ближайшей отложенной попытки; null — ожидающих записей нет.
+     */
+    @Query("SELECT MIN(nextAttemptAtEpoch) FROM report_upload_outbox WHERE state = 'PENDING'")
+    suspend fun getNextAttemptAt(): Long?
+
+    @Query("SELECT COUNT(*) FROM report_upload_outbox WHERE state = 'PENDING'")
+    fun observePendingCount(): Flow<Int>
+
+    @Query("""
+        UPDATE report_upload_outbox
+        SET state = 'DONE', reportId = :reportId, lastError = NULL, updatedAtEpoch = :now
+        WHERE sessionId = :sessionId AND contentHash = :contentHash
+    """)
+    suspend fun markDone(sessionId: String, contentHash: String, reportId: String, now: Long = System.currentTimeMillis())
+
+    /**
+     * Ошибка отправки: следующая попытка в [nextAttemptAtEpoch] либо окончательный FAILED.
+     */
+    @Query("""
+        UPDATE report_upload_outbox
+        SET state = :state, attempts = attempts + 1, nextAttemptAtEpoch = :nextAttemptAtEpoch,
+            lastError = :error, updatedAtEpoch = :now
+        WHERE sessionId = :sessionId AND contentHash = :contentHash
+    """)
+    suspend fun markAttemptFailed(
+        sessionId: String,
+        contentHash: String,
+        state: String,
+        nextAttemptAtEpoch: Long,
+        error: String?,
+        now: Long = System.currentTimeMillis()
+    )
+}
@@ -0,0 +1,42 @@
+package ru.wassertech.data.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import ru.wassertech.data.entities.SensorTemperatureLogEntity
+
+/**
+ * DAO для логов температуры датчиков.
+ */
+@Dao
+interface SensorTemperatureLogsDao {
+
+    /**
+     * Вставка точек; уже сохранённые (тот же датчик и время) пропускаются.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    suspend fun insertAll(logs: List<SensorTemperatureLogEntity>)
+
+    /**
+     * Время последней сохранённой точки датчика.
+     */
+    @Query("SELECT MAX(timestampMillis) FROM sensor_temperature_logs WHERE deviceId = :deviceId")
+    suspend fun getLatestTimestamp(deviceId: String): Long?
+
+    /**
+     * Точки датчика начиная с [fromMillis], по возрастанию времени.
+     */
+    @Query("""
+        SELECT * FROM sensor_temperature_logs
+        WHERE deviceId = :deviceId AND timestampMillis >= :fromMillis
+        ORDER BY timestampMillis ASC
+    """)
+    suspend fun getSince(deviceId: String, fromMillis: Long): List<SensorTemperatureLogEntity>
+
+    /**
+     * Удалить точки датчика старше [beforeMillis].
+     */
+    @Query("DELETE FROM sensor_temperature_logs WHERE deviceId = :deviceId AND timestampMillis < :beforeMillis")
+    suspend fun deleteOlderThan(deviceId: String, beforeMillis: Long)
+}
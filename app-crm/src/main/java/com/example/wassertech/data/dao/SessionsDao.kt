@@ -6,6 +6,7 @@ import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import androidx.room.Transaction
+import androidx.room.Upsert
 import ru.wassertech.data.entities.IssueEntity
 import ru.wassertech.data.entities.MaintenanceSessionEntity
 import ru.wassertech.data.entities.MaintenanceValueEntity
@@ -67,6 +68,28 @@ interface SessionsDao {
     )
     fun observeAllSessions(): Flow<List<MaintenanceSessionEntity>>
 
+    /**
+     * id сессий за период [fromEpoch, toEpoch) для пакетной генерации отчётов.
+     * Фильтры по установке и клиенту необязательны (null — без фильтра).
+     */
+    @Query(
+        """
+        SELECT s.id FROM maintenance_sessions s
+        LEFT JOIN sites st ON st.id = s.siteId
+        WHERE s.startedAtEpoch >= :fromEpoch AND s.startedAtEpoch < :toEpoch
+          AND (:installationId IS NULL OR s.installationId = :installationId)
+          AND (:clientId IS NULL OR st.clientId = :clientId)
+          AND s.isArchived = 0
+        ORDER BY s.startedAtEpoch ASC
+        """
+    )
+    suspend fun getSessionIdsInRange(
+        fromEpoch: Long,
+        toEpoch: Long,
+        installationId: String? = null,
+        clientId: String? = null
+    ): List<String>
+
     /** Наблюдение одной сессии (удобно для детального экрана, если понадобится) */
     @Query("SELECT * FROM maintenance_sessions WHERE id = :sessionId LIMIT 1")
     fun observeSession(sessionId: String): Flow<MaintenanceSessionEntity?>
@@ -83,6 +106,10 @@ interface SessionsDao {
     @Query("SELECT * FROM maintenance_values WHERE sessionId = :sessionId")
     suspend fun getValuesForSession(sessionId: String): List<MaintenanceValueEntity>
 
+    /** Все значения для набора сессий одним запросом (не более 999 id за вызов) */
+    @Query("SELECT * FROM maintenance_values WHERE sessionId IN (:sessionIds)")
+    suspend fun getValuesForSessions(sessionIds: List<String>): List<MaintenanceValueEntity>
+
     /** Массовая вставка значений */
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insertValues(values: List<MaintenanceValueEntity>)
@@ -174,6 +201,18 @@ interface SessionsDao {
     
     // ========== Методы синхронизации ==========
     
+    /** Получить сессии ТО по списку id (пакетное применение sync/pull) */
+    @Query("SELECT * FROM maintenance_sessions WHERE id IN (:ids)")
+    suspend fun getSessionsByIdsNow(ids: List<String>): List<MaintenanceSessionEntity>
+    
+    /** Получить значения ТО по списку id (пакетное применение sync/pull) */
+    @Query("SELECT * FROM maintenance_values WHERE id IN (:ids)")
+    suspend fun getValuesByIdsNow(ids: List<String>): List<MaintenanceValueEntity>
+    
+    /** Массовый upsert сессий ТО (пакетное применение sync/pull) */
+    @Upsert
+    suspend fun upsertSessions(sessions: List<MaintenanceSessionEntity>)
+    
     /** Получить все "грязные" сессии ТО */
     @Query("SELECT * FROM maintenance_sessions WHERE dirtyFlag = 1")
     fun getDirtySessionsNow(): List<MaintenanceSessionEntity>
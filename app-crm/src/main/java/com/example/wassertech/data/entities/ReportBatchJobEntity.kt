@@ -0,0 +1,41 @@
+package ru.wassertech.data.entities
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Задание пакетной генерации отчёта ТО (одна сессия).
+ *
+ * Состояние каждого задания сохраняется, чтобы прерванный пакет (приложение закрыто или убито)
+ * продолжился с места остановки: сформированные PDF не генерируются повторно, а только загружаются.
+ * Статусы — см. [ReportBatchJobState].
+ */
+@Entity(
+    tableName = "report_batch_jobs",
+    indices = [Index("state")]
+)
+data class ReportBatchJobEntity(
+    @PrimaryKey val sessionId: String,
+    val state: String = ReportBatchJobState.PENDING,
+    val reportNumber: String? = null, // Резервируется до первой сборки и сохраняется при повторах
+    val pdfPath: String? = null, // Путь к сформированному PDF (после RENDERED)
+    val attempts: Int = 0,
+    val lastError: String? = null,
+    val createdAtEpoch: Long = System.currentTimeMillis(),
+    val updatedAtEpoch: Long = System.currentTimeMillis()
+)
+
+/**
+ * Статусы задания пакетной генерации
+ */
+object ReportBatchJobState {
+    /** Ожидает сборки данных и рендеринга */
+    const val PENDING = "PENDING"
+    /** PDF сформирован, ожидает постановки в очередь отправки */
+    const val RENDERED = "RENDERED"
+    /** PDF сформирован и передан в очередь отправки (report_upload_outbox) */
+    const val DONE = "DONE"
+    /** Сборка или рендеринг завершились ошибкой; повторяется, пока не исчерпаны попытки */
+    const val FAILED = "FAILED"
+}
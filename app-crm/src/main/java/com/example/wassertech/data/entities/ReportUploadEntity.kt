@@ -0,0 +1,46 @@
+package ru.wassertech.data.entities
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * Запись очереди отправки PDF-отчёта на сервер (outbox).
+ *
+ * Одна запись на сессию ТО: новый PDF той же сессии заменяет ожидающий.
+ * После успешной отправки запись остаётся в статусе DONE с хешем файла —
+ * повторная постановка того же файла (совпал [contentHash]) пропускается.
+ * На время отправки запись переводится в UPLOADING (аренда): другие запуски воркера её не берут,
+ * пока аренда не истечёт. Файл отправляется целиком: повторная попытка передаёт его заново.
+ */
+@Entity(
+    tableName = "report_upload_outbox",
+    indices = [Index("state", "nextAttemptAtEpoch")]
+)
+data class ReportUploadEntity(
+    @PrimaryKey val sessionId: String,
+    val filePath: String,
+    val fileName: String,
+    val fileSize: Long,
+    val contentHash: String, // SHA-256 файла (hex)
+    val state: String = ReportUploadState.PENDING,
+    val attempts: Int = 0,
+    val nextAttemptAtEpoch: Long = 0,
+    val lastError: String? = null,
+    val reportId: String? = null, // id отчёта на сервере (после DONE)
+    val updatedAtEpoch: Long = System.currentTimeMillis()
+)
+
+/**
+ * Статусы записи очереди отправки
+ */
+object ReportUploadState {
+    /** Ожидает отправки (в т.ч. повторной после ошибки) */
+    const val PENDING = "PENDING"
+    /** Отправляется сейчас (аренда до updatedAtEpoch + срок аренды воркера) */
+    const val UPLOADING = "UPLOADING"
+    /** Отправлен */
+    const val DONE = "DONE"
+    /** Попытки исчерпаны или файл недоступен */
+    const val FAILED = "FAILED"
+}
@@ -0,0 +1,20 @@
+package ru.wassertech.data.entities
+
+import androidx.room.Entity
+
+/**
+ * Точка лога температуры датчика удалённого мониторинга.
+ *
+ * Локальное хранилище временного ряда: точки догружаются инкрементально
+ * (только новее последней сохранённой) и хранятся ограниченное время.
+ * Первичный ключ (deviceId, timestampMillis) исключает дубликаты при повторной загрузке.
+ */
+@Entity(
+    tableName = "sensor_temperature_logs",
+    primaryKeys = ["deviceId", "timestampMillis"]
+)
+data class SensorTemperatureLogEntity(
+    val deviceId: String,
+    val timestampMillis: Long, // Время измерения (epoch, мс)
+    val valueCelsius: Float
+)
@@ -0,0 +1,27 @@
+package ru.wassertech.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import android.util.Log
+
+/**
+ * Миграция с версии 19 на версию 20
+ * 
+ * Добавление таблицы sensor_temperature_logs для локального хранения логов температуры датчиков.
+ */
+val MIGRATION_19_20 = object : Migration(19, 20) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        Log.d("MIGRATION_19_20", "Начало миграции: добавление таблицы sensor_temperature_logs")
+        
+        database.execSQL("""
+            CREATE TABLE IF NOT EXISTS sensor_temperature_logs (
+                deviceId TEXT NOT NULL,
+                timestampMillis INTEGER NOT NULL,
+                valueCelsius REAL NOT NULL,
+                PRIMARY KEY(deviceId, timestampMillis)
+            )
+        """.trimIndent())
+        
+        Log.d("MIGRATION_19_20", "Миграция завершена: таблица sensor_temperature_logs создана")
+    }
+}
@@ -0,0 +1,24 @@
+package ru.wassertech.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import android.util.Log
+
+/**
+ * Миграция с версии 20 на версию 21
+ * 
+ * Добавление поля localImagePath в таблицу icons для хранения локального пути к изображению
+ * (заполняется при загрузке пака иконок архивом или поштучно).
+ */
+val MIGRATION_20_21 = object : Migration(20, 21) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        Log.d("MIGRATION_20_21", "Начало миграции: добавление поля localImagePath в таблицу icons")
+        
+        database.execSQL("""
+            ALTER TABLE icons 
+            ADD COLUMN localImagePath TEXT
+        """.trimIndent())
+        
+        Log.d("MIGRATION_20_21", "Миграция завершена: поле localImagePath добавлено в таблицу icons")
+    }
+}
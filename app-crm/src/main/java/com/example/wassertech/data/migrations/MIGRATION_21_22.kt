@@ -0,0 +1,33 @@
+package ru.wassertech.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import android.util.Log
+
+/**
+ * Миграция с версии 21 на версию 22
+ * 
+ * Добавление таблицы report_batch_jobs для хранения состояния пакетной генерации отчётов.
+ */
+val MIGRATION_21_22 = object : Migration(21, 22) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        Log.d("MIGRATION_21_22", "Начало миграции: добавление таблицы report_batch_jobs")
+        
+        database.execSQL("""
+            CREATE TABLE IF NOT EXISTS report_batch_jobs (
+                sessionId TEXT NOT NULL,
+                state TEXT NOT NULL,
+                reportNumber TEXT,
+                pdfPath TEXT,
+                attempts INTEGER NOT NULL,
+                lastError TEXT,
+                createdAtEpoch INTEGER NOT NULL,
+                updatedAtEpoch INTEGER NOT NULL,
+                PRIMARY KEY(sessionId)
+            )
+        """.trimIndent())
+        database.execSQL("CREATE INDEX IF NOT EXISTS index_report_batch_jobs_state ON report_batch_jobs(state)")
+        
+        Log.d("MIGRATION_21_22", "Миграция завершена: таблица report_batch_jobs создана")
+    }
+}
@@ -0,0 +1,38 @@
+package ru.wassertech.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import android.util.Log
+
+/**
+ * Миграция с версии 22 на версию 23
+ * 
+ * Добавление таблицы report_upload_outbox — очереди отправки PDF-отчётов на сервер.
+ */
+val MIGRATION_22_23 = object : Migration(22, 23) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        Log.d("MIGRATION_22_23", "Начало миграции: добавление таблицы report_upload_outbox")
+        
+        database.execSQL("""
+            CREATE TABLE IF NOT EXISTS report_upload_outbox (
+                sessionId TEXT NOT NULL,
+                filePath TEXT NOT NULL,
+                fileName TEXT NOT NULL,
+                fileSize INTEGER NOT NULL,
+                contentHash TEXT NOT NULL,
+                state TEXT NOT NULL,
+                attempts INTEGER NOT NULL,
+                nextAttemptAtEpoch INTEGER NOT NULL,
+                lastError TEXT,
+                reportId TEXT,
+                updatedAtEpoch INTEGER NOT NULL,
+                PRIMARY KEY(sessionId)
+            )
+        """.trimIndent())
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_report_upload_outbox_state_nextAttemptAtEpoch ON report_upload_outbox(state, nextAttemptAtEpoch)"
+        )
+        
+        Log.d("MIGRATION_22_23", "Миграция завершена: таблица report_upload_outbox создана")
+    }
+}
@@ -21,3 +21,21 @@ data class InstallationWithComponents(
     @Relation(parentColumn = "id", entityColumn = "installationId")
     val components: List<ComponentEntity>
 )
+
+/** Сессия ТО со значениями и наблюдениями (для сборки отчёта) */
+data class SessionWithValues(
+    @Embedded val session: MaintenanceSessionEntity,
+    @Relation(parentColumn = "id", entityColumn = "sessionId")
+    val values: List<MaintenanceValueEntity>,
+    @Relation(parentColumn = "id", entityColumn = "sessionId")
+    val observations: List<ObservationEntity>
+)
+
+/** Компонент с шаблоном и полями шаблона (для сборки отчёта) */
+data class ComponentWithTemplateFields(
+    @Embedded val component: ComponentEntity,
+    @Relation(parentColumn = "templateId", entityColumn = "id")
+    val template: ComponentTemplateEntity?,
+    @Relation(parentColumn = "templateId", entityColumn = "templateId")
+    val fields: List<ComponentTemplateFieldEntity>
+)
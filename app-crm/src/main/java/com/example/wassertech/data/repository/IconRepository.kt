@@ -2,14 +2,20 @@ package ru.wassertech.data.repository
 
 import android.content.Context
 import android.util.Log
+import androidx.room.withTransaction
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import ru.wassertech.core.auth.DataStoreTokenStorage
-import ru.wassertech.core.network.ApiClient
+import ru.wassertech.core.network.HttpClientRegistry
 import ru.wassertech.core.network.ApiConfig
+import ru.wassertech.core.ui.icons.IconBitmapCache
 import ru.wassertech.core.ui.icons.IconDataSource
+import ru.wassertech.core.ui.icons.IconDownloadEngine
+import ru.wassertech.core.ui.icons.IconPackArchiveDownloader
 import ru.wassertech.core.ui.icons.IconPackSyncStatus
 import ru.wassertech.data.AppDatabase
 import ru.wassertech.data.dao.IconDao
@@ -19,6 +25,9 @@ import ru.wassertech.data.entities.IconEntity
 import ru.wassertech.data.entities.IconPackSyncStatusEntity
 import java.io.File
 import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Репозиторий для работы с иконками и загрузкой изображений.
@@ -44,6 +53,44 @@ class IconRepository(private val context: Context) : IconDataSource {
     companion object {
         private const val TAG = "IconRepository"
         private const val ICONS_DIR_NAME = "icons"
+        
+        /**
+         * Загружать пак одним ZIP-архивом ([downloadPackArchive]).
+         * Иконки, которых не оказалось в архиве (или при ошибке архива), догружаются поштучно.
+         */
+        private const val USE_PACK_ARCHIVE = true
+        
+        /** Прогресс пака сохраняется в icon_pack_sync_status не чаще, чем раз в столько иконок */
+        private const val PROGRESS_SAVE_BATCH = 25
+        
+        /**
+         * Общий для процесса движок загрузки: ограничение параллелизма и
+         * дедупликация одновременных запросов одной иконки между экземплярами репозитория
+         */
+        private val downloadEngine = IconDownloadEngine(IconDownloadEngine.DEFAULT_PARALLELISM)
+    }
+    
+    /**
+     * Записывает файл иконки через временный .part и переименование:
+     * оборванная загрузка не оставляет файл, который isIconDownloaded() счёл бы готовым,
+     * поэтому повторная загрузка пака продолжается с недостающих иконок.
+     */
+    private fun writeIconFile(input: InputStream, file: File) {
+        val partFile = File(file.parentFile, "${file.name}.part")
+        input.use {
+            FileOutputStream(partFile).use { output ->
+                input.copyTo(output)
+            }
+        }
+        if (!partFile.renameTo(file)) {
+            file.delete()
+            if (!partFile.renameTo(file)) {
+                partFile.delete()
+                throw IOException("Не удалось сохранить файл ${file.name}")
+            }
+        }
+        // Показанные IconImage перечитают обновлённый файл
+        IconBitmapCache.invalidate(file.absolutePath)
     }
     
     /**
@@ -68,16 +115,25 @@ class IconRepository(private val context: Context) : IconDataSource {
     
     /**
      * Получить локальный путь к изображению иконки.
-     * @deprecated Используйте getLocalIconPath(iconId: String)
+     * Сначала используется сохранённый в БД localImagePath (без обращения к БД — поле уже в entity),
+     * затем стандартное расположение файла.
      */
     suspend fun getLocalIconPath(icon: IconEntity): String? {
-        return getLocalIconPath(icon.id)
+        icon.localImagePath?.let { path ->
+            if (File(path).exists()) return path
+        }
+        return getLocalIconFilePath(icon.id)
     }
     
     /**
      * Получить локальный путь к изображению иконки по ID.
      */
     override suspend fun getLocalIconPath(iconId: String): String? {
+        val icon = iconDao.getById(iconId) ?: return getLocalIconFilePath(iconId)
+        return getLocalIconPath(icon)
+    }
+    
+    private fun getLocalIconFilePath(iconId: String): String? {
         val file = getIconFile(iconId, "image")
         return if (file.exists()) {
             file.absolutePath
@@ -148,7 +204,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             
             Log.d(TAG, "Загрузка миниатюры иконки $iconId с URL: $fullUrl (исходный: $thumbnailUrl)")
             
-            val okHttpClient = ApiClient.createOkHttpClient(tokenStorage, enableLogging = false)
+            val okHttpClient = HttpClientRegistry.client(tokenStorage, enableLogging = false)
             val request = Request.Builder()
                 .url(fullUrl)
                 .get()
@@ -167,11 +223,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             )
             
             val file = getIconFile(iconId, "thumbnail")
-            body.byteStream().use { input ->
-                FileOutputStream(file).use { output ->
-                    input.copyTo(output)
-                }
-            }
+            writeIconFile(body.byteStream(), file)
             
             // Обновляем путь в БД
             val icon = iconDao.getById(iconId)
@@ -212,7 +264,7 @@ class IconRepository(private val context: Context) : IconDataSource {
             
             Log.d(TAG, "Загрузка изображения иконки $iconId с URL: $fullUrl (исходный: $imageUrl)")
             
-            val okHttpClient = ApiClient.createOkHttpClient(tokenStorage, enableLogging = false)
+            val okHttpClient = HttpClientRegistry.client(tokenStorage, enableLogging = false)
             val request = Request.Builder()
                 .url(fullUrl)
                 .get()
@@ -231,11 +283,8 @@ class IconRepository(private val context: Context) : IconDataSource {
             )
             
             val file = getIconFile(iconId, "image")
-            body.byteStream().use { input ->
-                FileOutputStream(file).use { output ->
-                    input.copyTo(output)
-                }
-            }
+            writeIconFile(body.byteStream(), file)
+            iconDao.updateLocalImagePath(iconId, file.absolutePath)
             
             Log.d(TAG, "Изображение иконки $iconId загружено: ${file.absolutePath}")
             Result.success(file)
@@ -268,11 +317,9 @@ class IconRepository(private val context: Context) : IconDataSource {
             
             val icons = allIcons
             
-            var downloadedCount = 0
             var totalCount = 0
             var skippedNoUrl = 0
             var skippedAndroidRes = 0
-            var skippedAlreadyDownloaded = 0
             
             // Подсчитываем только те иконки, которые нужно загружать
             icons.forEach { icon ->
@@ -296,53 +343,63 @@ class IconRepository(private val context: Context) : IconDataSource {
                 return@withContext Result.success(Unit)
             }
             
-            icons.forEachIndexed { index, icon ->
-                // Пропускаем иконки без imageUrl или с androidResName (встроенные ресурсы)
-                if (icon.imageUrl.isNullOrBlank() || !icon.androidResName.isNullOrBlank()) {
-                    return@forEachIndexed
-                }
-                
-                // Пропускаем уже загруженные иконки
-                if (isIconDownloaded(icon.id)) {
-                    downloadedCount++
-                    onProgress?.invoke(downloadedCount, totalCount)
-                    return@forEachIndexed
-                }
-                
-                val imageUrl = icon.imageUrl ?: return@forEachIndexed
-                val result = downloadIconImage(icon.id, imageUrl)
-                if (result.isSuccess) {
-                    downloadedCount++
+            // Уже загруженные иконки не запрашиваем повторно — так продолжается прерванная загрузка пака
+            var pending = icons.filter { icon ->
+                !icon.imageUrl.isNullOrBlank() && icon.androidResName.isNullOrBlank() && !isIconDownloaded(icon.id)
+            }
+            
+            if (USE_PACK_ARCHIVE && pending.isNotEmpty()) {
+                val archiveResult = downloadPackArchive(packId, pending)
+                if (archiveResult.isSuccess) {
+                    val extractedIds = archiveResult.getOrThrow()
+                    pending = pending.filter { it.id !in extractedIds }
+                    Log.d(TAG, "Пак $packId: из архива получено ${extractedIds.size}, поштучно осталось ${pending.size}")
                 } else {
-                    Log.w(TAG, "Не удалось загрузить изображение иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                    Log.w(TAG, "Пак $packId: архив недоступен, загружаем поштучно: ${archiveResult.exceptionOrNull()?.message}")
                 }
-                
-                onProgress?.invoke(downloadedCount, totalCount)
             }
+            val alreadyDownloaded = totalCount - pending.size
+            if (alreadyDownloaded > 0) {
+                Log.d(TAG, "Пак $packId: уже загружено $alreadyDownloaded/$totalCount, догружаем ${pending.size}")
+            }
+            onProgress?.invoke(alreadyDownloaded, totalCount)
+            
+            val downloaded = AtomicInteger(alreadyDownloaded)
+            val progressMutex = Mutex()
+            var lastSavedCount = alreadyDownloaded
+            downloadEngine.downloadAll(
+                items = pending,
+                key = { icon -> "${icon.id}_image" },
+                onResult = { icon, result ->
+                    val count = if (result.isSuccess) {
+                        downloaded.incrementAndGet()
+                    } else {
+                        Log.w(TAG, "Не удалось загрузить изображение иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                        downloaded.get()
+                    }
+                    onProgress?.invoke(count, totalCount)
+                    // Промежуточный прогресс пишем пачками, а не на каждую иконку
+                    if (count - lastSavedCount >= PROGRESS_SAVE_BATCH) {
+                        progressMutex.withLock {
+                            if (count - lastSavedCount >= PROGRESS_SAVE_BATCH) {
+                                savePackStatus(packId, isDownloaded = false, downloadedIcons = count, totalIcons = totalCount)
+                                lastSavedCount = count
+                            }
+                        }
+                    }
+                }
+            ) { icon ->
+                downloadIconImage(icon.id, icon.imageUrl!!)
+            }
+            val downloadedCount = downloaded.get()
             
             // Обновляем статус синхронизации
-            val isFullyDownloaded = downloadedCount == totalCount
-            val status = syncStatusDao.getByPackId(packId)
-            
-            if (status != null) {
-                syncStatusDao.updateDownloadStatus(
-                    packId = packId,
-                    isDownloaded = isFullyDownloaded,
-                    downloadedIcons = downloadedCount,
-                    totalIcons = totalCount,
-                    lastSyncEpoch = System.currentTimeMillis()
-                )
-            } else {
-                syncStatusDao.upsert(
-                    IconPackSyncStatusEntity(
-                        packId = packId,
-                        lastSyncEpoch = System.currentTimeMillis(),
-                        isDownloaded = isFullyDownloaded,
-                        totalIcons = totalCount,
-                        downloadedIcons = downloadedCount
-                    )
-                )
-            }
+            savePackStatus(
+                packId = packId,
+                isDownloaded = downloadedCount == totalCount,
+                downloadedIcons = downloadedCount,
+                totalIcons = totalCount
+            )
             
             Log.d(TAG, "Загрузка пака $packId завершена: $downloadedCount/$totalCount")
             Result.success(Unit)
@@ -352,6 +409,63 @@ class IconRepository(private val context: Context) : IconDataSource {
         }
     }
     
+    /**
+     * Загрузить изображения пака одним ZIP-архивом ([IconPackArchiveDownloader]) и распаковать в filesDir/icons.
+     * localImagePath и thumbnailLocalPath всех полученных иконок проставляются одной транзакцией.
+     *
+     * @param icons Иконки пака, которые нужно получить
+     * @return ID иконок, изображения которых получены из архива
+     */
+    private suspend fun downloadPackArchive(packId: String, icons: List<IconEntity>): Result<Set<String>> {
+        val result = IconPackArchiveDownloader(apiBaseUrl, tokenStorage, getIconsDirectory())
+            .download(packId)
+            .getOrElse { return Result.failure(it) }
+        
+        // Имя записи архива совпадает с именем локального файла
+        val images = icons.mapNotNull { icon ->
+            result.files[getIconFile(icon.id, "image").name]?.let { icon.id to it.absolutePath }
+        }
+        val thumbnails = icons.mapNotNull { icon ->
+            result.files[getIconFile(icon.id, "thumbnail").name]?.let { icon.id to it.absolutePath }
+        }
+        
+        // Отмечаем все полученные файлы одной транзакцией
+        database.withTransaction {
+            images.forEach { (iconId, path) -> iconDao.updateLocalImagePath(iconId, path) }
+            thumbnails.forEach { (iconId, path) -> iconDao.updateThumbnailLocalPath(iconId, path) }
+        }
+        
+        Log.d(TAG, "Пак $packId из архива: изображений=${images.size}, миниатюр=${thumbnails.size}")
+        return Result.success(images.map { it.first }.toSet())
+    }
+    
+    /**
+     * Сохраняет статус загрузки пака в icon_pack_sync_status.
+     */
+    private suspend fun savePackStatus(packId: String, isDownloaded: Boolean, downloadedIcons: Int, totalIcons: Int) {
+        val status = syncStatusDao.getByPackId(packId)
+        
+        if (status != null) {
+            syncStatusDao.updateDownloadStatus(
+                packId = packId,
+                isDownloaded = isDownloaded,
+                downloadedIcons = downloadedIcons,
+                totalIcons = totalIcons,
+                lastSyncEpoch = System.currentTimeMillis()
+            )
+        } else {
+            syncStatusDao.upsert(
+                IconPackSyncStatusEntity(
+                    packId = packId,
+                    lastSyncEpoch = System.currentTimeMillis(),
+                    isDownloaded = isDownloaded,
+                    totalIcons = totalIcons,
+                    downloadedIcons = downloadedIcons
+                )
+            )
+        }
+    }
+    
     /**
      * Получить статус синхронизации пака.
      */
@@ -444,9 +558,9 @@ class IconRepository(private val context: Context) : IconDataSource {
             // Получаем все иконки (включая неактивные) для загрузки миниатюр
             // Используем getAllActive() для получения только активных, так как миниатюры нужны только для активных иконок
             val allIcons = iconDao.getAllActive()
-            var downloadedCount = 0
             var skippedCount = 0
             
+            val pending = mutableListOf<IconEntity>()
             allIcons.forEach { icon ->
                 // Пропускаем иконки без thumbnailUrl
                 if (icon.thumbnailUrl.isNullOrBlank()) {
@@ -474,14 +588,25 @@ class IconRepository(private val context: Context) : IconDataSource {
                     }
                 }
                 
-                // Загружаем миниатюру
-                val result = downloadThumbnail(icon.id, icon.thumbnailUrl!!)
-                if (result.isSuccess) {
-                    downloadedCount++
-                } else {
-                    Log.w(TAG, "Не удалось загрузить миниатюру иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                pending += icon
+            }
+            
+            // Загружаем недостающие миниатюры параллельно
+            val downloaded = AtomicInteger(0)
+            downloadEngine.downloadAll(
+                items = pending,
+                key = { icon -> "${icon.id}_thumbnail" },
+                onResult = { icon, result ->
+                    if (result.isSuccess) {
+                        downloaded.incrementAndGet()
+                    } else {
+                        Log.w(TAG, "Не удалось загрузить миниатюру иконки ${icon.id}: ${result.exceptionOrNull()?.message}")
+                    }
                 }
+            ) { icon ->
+                downloadThumbnail(icon.id, icon.thumbnailUrl!!)
             }
+            val downloadedCount = downloaded.get()
             
             Log.d(TAG, "Загрузка миниатюр завершена: загружено=$downloadedCount, пропущено=$skippedCount")
             Result.success(downloadedCount)
@@ -507,6 +632,8 @@ class IconRepository(private val context: Context) : IconDataSource {
                     if (thumbFile.exists()) {
                         thumbFile.delete()
                     }
+                    IconBitmapCache.invalidate(file.absolutePath)
+                    IconBitmapCache.invalidate(thumbFile.absolutePath)
                     // Очищаем путь в БД
                     if (icon.thumbnailLocalPath != null) {
                         val updatedIcon = icon.copy(thumbnailLocalPath = null)
@@ -514,6 +641,8 @@ class IconRepository(private val context: Context) : IconDataSource {
                     }
                 }
                 
+                iconDao.clearLocalImagePaths(packId)
+                
                 // Удаляем статус синхронизации
                 syncStatusDao.deleteByPackId(packId)
                 
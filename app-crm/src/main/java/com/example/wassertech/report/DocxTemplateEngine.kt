@@ -2,6 +2,8 @@ package ru.wassertech.report
 
 import android.content.Context
 import ru.wassertech.report.model.ReportDTO
+import ru.wassertech.feature.reports.ReportTemplateCompiler
+import ru.wassertech.feature.reports.TemplateScope
 import org.apache.poi.xwpf.usermodel.XWPFDocument
 import org.apache.poi.xwpf.usermodel.XWPFParagraph
 import org.apache.poi.xwpf.usermodel.XWPFTable
@@ -16,26 +18,28 @@ object DocxTemplateEngine {
         val document = XWPFDocument(templateStream)
         
         try {
+            val scope = createScope(dto)
+            
             // Обрабатываем параграфы
             document.paragraphs.forEach { paragraph ->
-                processParagraph(paragraph, dto)
+                processParagraph(paragraph, scope)
             }
             
             // Обрабатываем таблицы
             document.tables.forEach { table ->
-                processTable(table, dto)
+                processTable(table, scope)
             }
             
             // Обрабатываем заголовки/футеры, если есть
             document.headerList.forEach { header ->
                 header.paragraphs.forEach { paragraph ->
-                    processParagraph(paragraph, dto)
+                    processParagraph(paragraph, scope)
                 }
             }
             
             document.footerList.forEach { footer ->
                 footer.paragraphs.forEach { paragraph ->
-                    processParagraph(paragraph, dto)
+                    processParagraph(paragraph, scope)
                 }
             }
             
@@ -49,47 +53,56 @@ object DocxTemplateEngine {
         }
     }
     
-    private fun processParagraph(paragraph: XWPFParagraph, dto: ReportDTO) {
-        val text = paragraph.text
-        if (text.isBlank()) return
-        
-        var newText = text
-        
-        // Заменяем плейсхолдеры компании
-        dto.companyConfig?.let { company ->
-            newText = newText.replace("{{company.legal_name}}", company.legal_name)
-            newText = newText.replace("{{company.inn}}", company.inn)
-            newText = newText.replace("{{company.phone1}}", company.phone1)
-            newText = newText.replace("{{company.phone2}}", company.phone2)
-            newText = newText.replace("{{company.email}}", company.email)
-            newText = newText.replace("{{company.website}}", company.website)
-            newText = newText.replace("{{company.sign_name}}", company.sign_name)
-            newText = newText.replace("{{company.sign_short}}", company.sign_short)
-        }
-        
-        // Документ
-        newText = newText.replace("{{doc.number}}", dto.reportNumber)
-        newText = newText.replace("{{doc.date_rus}}", dto.reportDateRus)
-        
-        // Договор
-        dto.contractConfig?.let { contract ->
-            newText = newText.replace("{{contract.number}}", contract.number)
-            newText = newText.replace("{{contract.date_rus}}", contract.date_rus)
+    /**
+     * Набор плейсхолдеров DOCX-шаблона. Секции ({{#works}} и т.п.) в DOCX не поддерживаются
+     * и остаются в тексте как есть.
+     */
+    private fun createScope(dto: ReportDTO): TemplateScope = TemplateScope.of(
+        buildMap {
+            // Плейсхолдеры компании
+            dto.companyConfig?.let { company ->
+                put("company.legal_name", company.legal_name)
+                put("company.inn", company.inn)
+                put("company.phone1", company.phone1)
+                put("company.phone2", company.phone2)
+                put("company.email", company.email)
+                put("company.website", company.website)
+                put("company.sign_name", company.sign_name)
+                put("company.sign_short", company.sign_short)
+            }
+            
+            // Документ
+            put("doc.number", dto.reportNumber)
+            put("doc.date_rus", dto.reportDateRus)
+            
+            // Договор
+            dto.contractConfig?.let { contract ->
+                put("contract.number", contract.number)
+                put("contract.date_rus", contract.date_rus)
+            }
+            
+            // Клиент
+            put("client.name", dto.clientName)
+            put("client.sign_name", dto.clientSignName ?: "")
+            
+            // Объект и установка
+            put("site.name", dto.siteName ?: "")
+            put("installation.name", dto.installationName)
+            
+            // Комментарии
+            put("comments", dto.comments ?: "")
+            
+            // Заключение
+            put("conclusion", dto.conclusions ?: "")
         }
+    )
+    
+    private fun processParagraph(paragraph: XWPFParagraph, scope: TemplateScope) {
+        val text = paragraph.text
+        if (text.isBlank() || !text.contains("{{")) return
         
-        // Клиент
-        newText = newText.replace("{{client.name}}", dto.clientName)
-        newText = newText.replace("{{client.sign_name}}", dto.clientSignName ?: "")
-        
-        // Объект и установка
-        newText = newText.replace("{{site.name}}", dto.siteName ?: "")
-        newText = newText.replace("{{installation.name}}", dto.installationName)
-        
-        // Комментарии
-        newText = newText.replace("{{comments}}", dto.comments ?: "")
-        
-        // Заключение
-        newText = newText.replace("{{conclusion}}", dto.conclusions ?: "")
+        // Параграф компилируется один раз (кеш ReportTemplateCompiler) и рендерится за один проход
+        val newText = ReportTemplateCompiler.fromString(text).render(scope)
         
         // Если текст изменился, заменяем его
         if (newText != text) {
@@ -103,11 +116,11 @@ object DocxTemplateEngine {
         }
     }
     
-    private fun processTable(table: XWPFTable, dto: ReportDTO) {
+    private fun processTable(table: XWPFTable, scope: TemplateScope) {
         table.rows.forEach { row ->
             row.tableCells.forEach { cell ->
                 cell.paragraphs.forEach { paragraph ->
-                    processParagraph(paragraph, dto)
+                    processParagraph(paragraph, scope)
                 }
             }
         }
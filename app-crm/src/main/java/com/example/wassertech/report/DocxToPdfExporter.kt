@@ -3,6 +3,7 @@ package ru.wassertech.report
 import android.content.Context
 import android.util.Log
 import kotlinx.coroutines.withTimeout
+import ru.wassertech.feature.reports.PdfExporter
 import java.io.File
 import org.apache.poi.xwpf.usermodel.*
 
@@ -0,0 +1,302 @@
+package ru.wassertech.report
+
+import android.app.Activity
+import android.content.Context
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import ru.wassertech.data.AppDatabase
+import ru.wassertech.data.entities.ReportBatchJobEntity
+import ru.wassertech.data.entities.ReportBatchJobState
+import ru.wassertech.feature.reports.HtmlTemplateEngine
+import ru.wassertech.feature.reports.PdfExporter
+import ru.wassertech.feature.reports.ReportAssembler
+import ru.wassertech.feature.reports.ReportNumberGenerator
+import ru.wassertech.repository.ReportsRepository
+import java.io.File
+import java.lang.ref.WeakReference
+
+/**
+ * Очередь пакетной генерации отчётов ТО (например, все акты клиента за месяц).
+ *
+ * Работа идёт конвейером:
+ * - сборка данных и HTML — параллельно на IO (до [ASSEMBLE_PARALLELISM] сессий);
+ * - рендеринг PDF — строго по одному на главном потоке (WebView), через прогретый ReportWebViewRenderer;
+ * - отправка на сервер — через очередь report_upload_outbox (ReportsRepository.enqueueReportUpload).
+ * Между этапами — каналы с ограниченным буфером, поэтому готовые HTML не копятся в памяти.
+ *
+ * Состояние каждой сессии хранится в report_batch_jobs: если приложение закрыли во время пакета,
+ * [resume] продолжит его — сформированные PDF только загружаются, остальные генерируются заново.
+ * Номер отчёта резервируется за заданием один раз (до первой сборки) и используется при всех повторах,
+ * поэтому прерванные и ошибочные задания не расходуют номера актов.
+ * Задания с ошибкой повторяются при следующих запусках, пока не исчерпаны [MAX_ATTEMPTS] попыток;
+ * после этого они остаются в прогрессе как ошибочные до [retryFailed] или [dismissFailed].
+ * Рендерингу нужна живая Activity: она передаётся в [enqueue]/[resume] и хранится по слабой ссылке;
+ * если Activity уничтожена, пакет приостанавливается до следующего [resume].
+ */
+object ReportBatchQueue {
+
+    private const val TAG = "ReportBatchQueue"
+    private const val TEMPLATE_ASSET_PATH = "templates/maintenance_v3.html"
+
+    /** Сколько сессий собираются одновременно */
+    private const val ASSEMBLE_PARALLELISM = 4
+
+    /** Сколько готовых HTML может ждать рендеринга */
+    private const val RENDER_BUFFER = 2
+
+    /** Попыток сборки и рендеринга на задание до ручного повтора */
+    private const val MAX_ATTEMPTS = 3
+
+    /** Максимум id в одном запросе IN (...) — ниже лимита переменных SQLite (999) */
+    private const val SQL_IN_BATCH_SIZE = 500
+
+    /**
+     * Прогресс пакета
+     *
+     * @param total всего заданий в пакете
+     * @param rendered сформировано PDF (включая загруженные)
+     * @param uploaded передано в очередь отправки на сервер
+     * @param failed заданий с ошибкой сборки или рендеринга
+     * @param running пакет выполняется сейчас
+     */
+    data class Progress(
+        val total: Int,
+        val rendered: Int,
+        val uploaded: Int,
+        val failed: Int,
+        val running: Boolean
+    )
+
+    /** Подготовленный к рендерингу отчёт */
+    private class PreparedReport(
+        val sessionId: String,
+        val reportNumber: String,
+        val html: String,
+        val outFile: File
+    )
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+    private val running = MutableStateFlow(false)
+    private var runJob: Job? = null
+    private var rerunRequested = false
+    private var activityRef: WeakReference<Activity>? = null
+
+    /**
+     * Поставить в очередь генерацию отчётов для [sessionIds] и запустить пакет.
+     * Сессии, уже стоящие в очереди, генерируются заново (с прежним номером отчёта).
+     */
+    suspend fun enqueue(activity: Activity, sessionIds: Collection<String>) {
+        if (sessionIds.isEmpty()) return
+        val dao = AppDatabase.getInstance(activity).reportBatchJobsDao()
+        withContext(Dispatchers.IO) {
+            if (!running.value) dao.deleteDone()
+            val ids = sessionIds.distinct()
+            val reserved = ids.chunked(SQL_IN_BATCH_SIZE)
+                .flatMap { dao.getByIds(it) }
+                .associate { it.sessionId to it.reportNumber }
+            dao.insertAll(ids.map { ReportBatchJobEntity(sessionId = it, reportNumber = reserved[it]) })
+        }
+        Log.d(TAG, "В очередь добавлено сессий: ${sessionIds.size}")
+        resume(activity)
+    }
+
+    /**
+     * Поставить в очередь все сессии за период [fromEpoch, toEpoch) —
+     * по установке, по клиенту или все (фильтры необязательны).
+     * @return число поставленных в очередь сессий
+     */
+    suspend fun enqueueRange(
+        activity: Activity,
+        fromEpoch: Long,
+        toEpoch: Long,
+        installationId: String? = null,
+        clientId: String? = null
+    ): Int {
+        val ids = withContext(Dispatchers.IO) {
+            AppDatabase.getInstance(activity).sessionsDao()
+                .getSessionIdsInRange(fromEpoch, toEpoch, installationId, clientId)
+        }
+        enqueue(activity, ids)
+        return ids.size
+    }
+
+    /**
+     * Продолжить незавершённый пакет (вызывается с экранов при открытии).
+     * Если пакет уже выполняется — только обновляет Activity для рендеринга.
+     */
+    fun resume(activity: Activity) {
+        activityRef = WeakReference(activity)
+        if (runJob?.isActive == true) {
+            rerunRequested = true
+            return
+        }
+        val appContext = activity.applicationContext
+        runJob = scope.launch {
+            running.value = true
+            try {
+                do {
+                    rerunRequested = false
+                    runPipeline(appContext)
+                } while (rerunRequested)
+            } catch (e: CancellationException) {
+                Log.d(TAG, "Пакет приостановлен: ${e.message}")
+            } catch (e: Exception) {
+                Log.e(TAG, "Ошибка пакетной генерации", e)
+            } finally {
+                running.value = false
+            }
+        }
+    }
+
+    /**
+     * Повторить задания, исчерпавшие попытки (номера отчётов сохраняются).
+     */
+    suspend fun retryFailed(activity: Activity) {
+        withContext(Dispatchers.IO) {
+            AppDatabase.getInstance(activity).reportBatchJobsDao().retryFailed()
+        }
+        resume(activity)
+    }
+
+    /**
+     * Убрать ошибочные задания из очереди (пользователь отказался от повтора).
+     */
+    suspend fun dismissFailed(context: Context) {
+        if (running.value) return
+        withContext(Dispatchers.IO) {
+            AppDatabase.getInstance(context).reportBatchJobsDao().deleteFailed()
+        }
+    }
+
+    /**
+     * Прогресс текущего (или последнего) пакета; null — пакетов нет.
+     */
+    fun observeProgress(context: Context): Flow<Progress?> =
+        combine(AppDatabase.getInstance(context).reportBatchJobsDao().observeAll(), running) { jobs, isRunning ->
+            if (jobs.isEmpty()) return@combine null
+            Progress(
+                total = jobs.size,
+                rendered = jobs.count { it.state == ReportBatchJobState.RENDERED || it.state == ReportBatchJobState.DONE },
+                uploaded = jobs.count { it.state == ReportBatchJobState.DONE },
+                failed = jobs.count { it.state == ReportBatchJobState.FAILED },
+                running = isRunning
+            )
+        }
+
+    private suspend fun runPipeline(appContext: Context) = coroutineScope {
+        val db = AppDatabase.getInstance(appContext)
+        val dao = db.reportBatchJobsDao()
+        val jobs = withContext(Dispatchers.IO) { dao.getUnfinished(MAX_ATTEMPTS) }
+        if (jobs.isEmpty()) return@coroutineScope
+        Log.d(TAG, "Запуск пакета: заданий ${jobs.size}")
+
+        val dataSource = RoomReportDataSource(db)
+        val reportsRepository = ReportsRepository(appContext)
+        val reportsDir = File(appContext.getExternalFilesDir(null), "Reports").apply { mkdirs() }
+        val saveHtml = withContext(Dispatchers.IO) {
+            db.settingsDao().getValueSync("save_html")?.toBoolean() ?: false
+        }
+
+        val toRender = Channel<PreparedReport>(RENDER_BUFFER)
+        val toUpload = Channel<ReportBatchJobEntity>(Channel.UNLIMITED)
+
+        // Уже сформированные PDF сразу идут на загрузку
+        jobs.filter { it.state == ReportBatchJobState.RENDERED && it.pdfPath != null }.forEach { toUpload.send(it) }
+
+        // Этап 1: сборка данных и HTML параллельно на IO (ошибочные задания — повторно)
+        launch(Dispatchers.IO) {
+            val permits = Semaphore(ASSEMBLE_PARALLELISM)
+            jobs.filter { it.state == ReportBatchJobState.PENDING || it.state == ReportBatchJobState.FAILED }.map { job ->
+                launch {
+                    permits.withPermit {
+                        try {
+                            // Номер резервируется один раз и сохраняется до сборки: повтор его не расходует
+                            val reportNumber = job.reportNumber
+                                ?: ReportNumberGenerator.generateReportNumber(appContext).also {
+                                    dao.reserveReportNumber(job.sessionId, it)
+                                }
+                            val dto = ReportAssembler.assemble(dataSource, appContext, job.sessionId, reportNumber)
+                            val html = HtmlTemplateEngine.render(appContext, TEMPLATE_ASSET_PATH, dto)
+                            val fileName = "Report_${dto.reportNumber.replace("/", "_")}.pdf"
+                            if (saveHtml) {
+                                File(reportsDir, fileName.replace(".pdf", ".html")).writeText(html, Charsets.UTF_8)
+                            }
+                            toRender.send(PreparedReport(job.sessionId, dto.reportNumber, html, File(reportsDir, fileName)))
+                        } catch (e: CancellationException) {
+                            throw e
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Ошибка сборки отчёта для сессии ${job.sessionId}", e)
+                            dao.markFailed(job.sessionId, e.message ?: e.javaClass.simpleName)
+                        }
+                    }
+                }
+            }.joinAll()
+            toRender.close()
+        }
+
+        // Этап 2: рендеринг PDF по одному на главном потоке
+        launch(Dispatchers.Main) {
+            for (report in toRender) {
+                val activity = activityRef?.get()?.takeUnless { it.isFinishing || it.isDestroyed }
+                if (activity == null) {
+                    // Задания остаются в очереди и продолжатся при следующем resume()
+                    this@coroutineScope.cancel("Activity недоступна для рендеринга")
+                    return@launch
+                }
+                try {
+                    PdfExporter.exportHtmlToPdf(activity, report.html, report.outFile, report.reportNumber)
+                    withContext(Dispatchers.IO) {
+                        dao.markRendered(report.sessionId, report.reportNumber, report.outFile.absolutePath)
+                    }
+                    Log.d(TAG, "PDF сформирован: ${report.outFile.name}")
+                    toUpload.send(
+                        ReportBatchJobEntity(
+                            sessionId = report.sessionId,
+                            state = ReportBatchJobState.RENDERED,
+                            reportNumber = report.reportNumber,
+                            pdfPath = report.outFile.absolutePath
+                        )
+                    )
+                } catch (e: Exception) {
+                    if (e is CancellationException && !isActive) throw e
+                    Log.e(TAG, "Ошибка рендеринга отчёта для сессии ${report.sessionId}", e)
+                    withContext(Dispatchers.IO) {
+                        dao.markFailed(report.sessionId, e.message ?: e.javaClass.simpleName)
+                    }
+                }
+            }
+            toUpload.close()
+        }
+
+        // Этап 3: передача PDF в очередь отправки (отправляет ReportUploadWorker с повторами)
+        launch(Dispatchers.IO) {
+            for (job in toUpload) {
+                val pdfFile = File(job.pdfPath ?: continue)
+                try {
+                    reportsRepository.enqueueReportUpload(job.sessionId, pdfFile, pdfFile.name)
+                    dao.markDone(job.sessionId)
+                } catch (e: Exception) {
+                    // PDF уже есть локально — постановка повторится при следующем запуске пакета
+                    Log.w(TAG, "Не удалось поставить отчёт ${pdfFile.name} в очередь отправки", e)
+                    dao.markUploadFailed(job.sessionId, e.message ?: e.javaClass.simpleName)
+                }
+            }
+        }
+    }
+}
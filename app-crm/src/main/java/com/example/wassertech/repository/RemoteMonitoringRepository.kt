@@ -11,7 +11,11 @@ import ru.wassertech.core.network.api.RemoteMonitoringApi
 import ru.wassertech.core.screens.remote.TemperaturePoint
 import ru.wassertech.core.screens.remote.toTemperaturePoint
 import ru.wassertech.core.network.ApiConfig.BASE_URL
-import ru.wassertech.core.screens.remote.toTemperaturePoint
+import ru.wassertech.data.AppDatabase
+import ru.wassertech.data.entities.SensorTemperatureLogEntity
+import java.time.Instant
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
 
 /**
  * Репозиторий для работы с удалённым мониторингом датчиков
@@ -19,6 +23,7 @@ import ru.wassertech.core.screens.remote.toTemperaturePoint
 class RemoteMonitoringRepository(private val context: Context) {
     
     private val tokenStorage = DataStoreTokenStorage(context)
+    private val logsDao = AppDatabase.getInstance(context).sensorTemperatureLogsDao()
     
     // Базовый URL для API мониторинга (без /public/, так как sensors API находится в /api/sensors/)
     //private val monitoringBaseUrl: String = "https://2024.wassertech.ru/api/public/"
@@ -35,6 +40,98 @@ class RemoteMonitoringRepository(private val context: Context) {
     
     companion object {
         private const val TAG = "RemoteMonitoringRepository"
+        
+        /** Максимум точек в одном запросе (как в полной загрузке окна) */
+        private const val FETCH_LIMIT = 1000
+        
+        /**
+         * Максимум запросов за одну загрузку: окно 10 ч при точке раз в 10 с — около 3600 точек (4 страницы).
+         * Защита от бесконечного цикла, если сервер игнорирует to.
+         */
+        private const val MAX_FETCH_PAGES = 10
+        
+        /** Сколько хранить точки в sensor_temperature_logs */
+        private const val STORE_RETENTION_MS = 48L * 60 * 60 * 1000
+        
+        /** Формат from/to для API: "YYYY-MM-DD+HH:MM:SS" */
+        private val REQUEST_DATE_FORMAT: DateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd+HH:mm:ss")
+    }
+    
+    /**
+     * Точки датчика из локального хранилища начиная с [fromMillis] (для мгновенного показа графика).
+     */
+    suspend fun loadStoredTemperaturePoints(
+        deviceId: String,
+        fromMillis: Long
+    ): List<TemperaturePoint> = withContext(Dispatchers.IO) {
+        logsDao.getSince(deviceId, fromMillis).map {
+            TemperaturePoint(timestampMillis = it.timestampMillis, valueCelsius = it.valueCelsius)
+        }
+    }
+    
+    /**
+     * Инкрементальная загрузка: запрашивает только точки новее последней сохранённой
+     * (но не старше [windowMillis] от текущего момента), сохраняет их в sensor_temperature_logs
+     * и удаляет точки старше срока хранения.
+     *
+     * С limit API отдаёт самые новые точки интервала (см. [RemoteMonitoringApi.getTemperatureLogs]).
+     * Если пришла полная страница, интервал дочитывается страницами назад: тот же from, а to сдвигается
+     * к самой старой полученной точке — пока не придёт неполная страница. Точки сохраняются одной
+     * вставкой после загрузки всех страниц: иначе последняя сохранённая точка сдвинулась бы к «сейчас»,
+     * и прерванная загрузка оставила бы невосполнимый пропуск в начале окна.
+     * @return новые точки по возрастанию времени
+     */
+    suspend fun fetchNewTemperaturePoints(
+        deviceId: String,
+        windowMillis: Long
+    ): List<TemperaturePoint> = withContext(Dispatchers.IO) {
+        val nowMillis = System.currentTimeMillis()
+        val lastMillis = logsDao.getLatestTimestamp(deviceId)
+        // API принимает время с точностью до секунды: запрашиваем со следующей секунды после последней точки
+        val fromMillis = maxOf(nowMillis - windowMillis, lastMillis?.let { it + 1000 } ?: 0L)
+        val zone = ZoneId.systemDefault()
+        val from = Instant.ofEpochMilli(fromMillis).atZone(zone).format(REQUEST_DATE_FORMAT)
+        
+        val received = HashMap<Long, TemperaturePoint>()
+        var toMillis = nowMillis
+        var pages = 0
+        while (pages < MAX_FETCH_PAGES) {
+            val to = Instant.ofEpochMilli(toMillis).atZone(zone).format(REQUEST_DATE_FORMAT)
+            val response = api.getTemperatureLogs(deviceId, from, to, limit = FETCH_LIMIT)
+            if (!response.isSuccessful) {
+                Log.e(TAG, "HTTP ${response.code()}: ${response.message()}")
+                throw HttpException(response)
+            }
+            pages++
+            val page = response.body()?.data.orEmpty().map { it.toTemperaturePoint(zone) }
+            page.forEach { received[it.timestampMillis] = it }
+            if (page.size < FETCH_LIMIT) break
+            // to включителен: точки на границе придут повторно и схлопнутся по времени
+            val oldestMillis = page.minOf { it.timestampMillis }
+            if (oldestMillis >= toMillis || oldestMillis <= fromMillis) break
+            toMillis = oldestMillis
+        }
+        if (pages == MAX_FETCH_PAGES) {
+            Log.w(TAG, "Загрузка $deviceId остановлена после $pages страниц")
+        }
+        
+        val newPoints = received.values
+            .filter { lastMillis == null || it.timestampMillis > lastMillis }
+            .sortedBy { it.timestampMillis }
+        
+        if (newPoints.isNotEmpty()) {
+            logsDao.insertAll(newPoints.map {
+                SensorTemperatureLogEntity(
+                    deviceId = deviceId,
+                    timestampMillis = it.timestampMillis,
+                    valueCelsius = it.valueCelsius
+                )
+            })
+        }
+        logsDao.deleteOlderThan(deviceId, nowMillis - STORE_RETENTION_MS)
+        
+        Log.d(TAG, "Новых точек для $deviceId: ${newPoints.size} (from=$from, страниц=$pages)")
+        newPoints
     }
     
     /**
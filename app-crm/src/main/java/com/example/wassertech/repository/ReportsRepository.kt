@@ -17,7 +17,11 @@ import ru.wassertech.core.network.TokenStorage
 import ru.wassertech.core.network.dto.ReportDto
 import ru.wassertech.data.AppDatabase
 import ru.wassertech.data.entities.ReportEntity
+import ru.wassertech.data.entities.ReportUploadEntity
+import ru.wassertech.data.entities.ReportUploadState
+import ru.wassertech.sync.SyncScheduler
 import java.io.File
+import java.security.MessageDigest
 
 /**
  * Репозиторий для работы с отчётами в app-crm.
@@ -28,6 +32,7 @@ class ReportsRepository(private val context: Context) {
     private val tokenStorage: TokenStorage = DataStoreTokenStorage(context)
     private val database = AppDatabase.getInstance(context)
     private val reportDao = database.reportDao()
+    private val outboxDao = database.reportUploadOutboxDao()
     
     private val api: ReportsApi by lazy {
         ApiClient.createService<ReportsApi>(
@@ -109,6 +114,58 @@ class ReportsRepository(private val context: Context) {
         }
     }
     
+    /**
+     * Ставит PDF-отчёт сессии в очередь отправки (report_upload_outbox) и запускает фоновую отправку.
+     * Если этот же файл (по SHA-256) уже отправлен или ждёт отправки — ничего не делает.
+     * 
+     * @return true, если файл поставлен в очередь; false — пропущен как неизменившийся
+     */
+    suspend fun enqueueReportUpload(
+        sessionId: String,
+        pdfFile: File,
+        fileName: String? = null
+    ): Boolean = withContext(Dispatchers.IO) {
+        require(pdfFile.exists()) { "PDF файл не существует: ${pdfFile.absolutePath}" }
+        val hash = sha256(pdfFile)
+        val existing = outboxDao.get(sessionId)
+        if (existing != null && existing.contentHash == hash && existing.state != ReportUploadState.FAILED) {
+            Log.d(TAG, "Отчёт сессии $sessionId не изменился (${existing.state}), отправка пропущена")
+            return@withContext false
+        }
+        outboxDao.upsert(
+            ReportUploadEntity(
+                sessionId = sessionId,
+                filePath = pdfFile.absolutePath,
+                fileName = fileName ?: pdfFile.name,
+                fileSize = pdfFile.length(),
+                contentHash = hash
+            )
+        )
+        Log.d(TAG, "Отчёт сессии $sessionId поставлен в очередь отправки: ${pdfFile.name}")
+        SyncScheduler.requestReportUpload(context)
+        true
+    }
+    
+    /**
+     * Отправляет запись очереди целиком через reports/upload.
+     * Статус записи в outbox не меняется — это делает вызывающий (ReportUploadWorker).
+     */
+    suspend fun uploadOutboxEntry(entry: ReportUploadEntity): Result<ReportEntity> =
+        uploadReportForSession(entry.sessionId, File(entry.filePath), entry.fileName)
+    
+    private fun sha256(file: File): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        file.inputStream().use { input ->
+            val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+    
     /**
      * Маппинг ReportDto → ReportEntity
      */
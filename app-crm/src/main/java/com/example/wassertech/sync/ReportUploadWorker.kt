@@ -0,0 +1,103 @@
+package ru.wassertech.sync
+
+import android.content.Context
+import android.util.Log
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import retrofit2.HttpException
+import ru.wassertech.core.network.HttpClientRegistry
+import ru.wassertech.data.AppDatabase
+import ru.wassertech.data.entities.ReportUploadEntity
+import ru.wassertech.data.entities.ReportUploadState
+import ru.wassertech.repository.ReportsRepository
+import java.io.File
+
+/**
+ * Отправка PDF-отчётов из очереди report_upload_outbox (см. [SyncScheduler.requestReportUpload]).
+ *
+ * За запуск отправляются все записи, время попытки которых наступило, не больше [UPLOAD_PARALLELISM]
+ * одновременно. Перед отправкой запись захватывается (UPLOADING, аренда [LEASE_MS]): немедленный
+ * и отложенный запуски воркера могут выполняться одновременно, но один отчёт отправляет только один из них.
+ * После ошибки следующая попытка записи откладывается с экспоненциальной задержкой;
+ * если в очереди остались отложенные записи, воркер планирует себя на время ближайшей.
+ */
+class ReportUploadWorker(
+    appContext: Context,
+    params: WorkerParameters
+) : CoroutineWorker(appContext, params) {
+
+    companion object {
+        private const val TAG = "ReportUploadWorker"
+
+        /** Сколько отчётов отправляются одновременно */
+        private const val UPLOAD_PARALLELISM = 2
+
+        /** После стольких неудачных попыток запись переводится в FAILED */
+        private const val MAX_ATTEMPTS = 8
+
+        private const val BASE_RETRY_DELAY_MS = 30_000L
+
+        /** Срок аренды записи: после него запись, зависшая в UPLOADING (процесс убит), отправляется снова */
+        private const val LEASE_MS = 15 * 60_000L
+        private const val MAX_RETRY_DELAY_MS = 3_600_000L
+    }
+
+    override suspend fun doWork(): Result {
+        // Процесс мог быть запущен WorkManager'ом без MainActivity
+        HttpClientRegistry.installCache(applicationContext)
+        val dao = AppDatabase.getInstance(applicationContext).reportUploadOutboxDao()
+        val repository = ReportsRepository(applicationContext)
+
+        val now = System.currentTimeMillis()
+        val due = dao.getDue(now, leaseExpiredBefore = now - LEASE_MS)
+        Log.d(TAG, "Очередь отправки отчётов: к отправке ${due.size}")
+
+        val permits = Semaphore(UPLOAD_PARALLELISM)
+        coroutineScope {
+            due.map { entry ->
+                async { permits.withPermit { upload(entry, repository) } }
+            }.awaitAll()
+        }
+
+        // Отложенные после ошибок записи — следующий запуск на время ближайшей попытки
+        dao.getNextAttemptAt()?.let { nextAt ->
+            SyncScheduler.requestReportUpload(applicationContext, delayMs = nextAt - System.currentTimeMillis())
+        }
+        return Result.success()
+    }
+
+    private suspend fun upload(entry: ReportUploadEntity, repository: ReportsRepository) {
+        val dao = AppDatabase.getInstance(applicationContext).reportUploadOutboxDao()
+        if (dao.claim(entry.sessionId, entry.contentHash, System.currentTimeMillis() - LEASE_MS) == 0) {
+            Log.d(TAG, "Отчёт сессии ${entry.sessionId} уже отправляется или заменён, пропускаем")
+            return
+        }
+        if (!File(entry.filePath).exists()) {
+            Log.w(TAG, "Файл отчёта удалён, отправка отменена: ${entry.filePath}")
+            dao.markAttemptFailed(entry.sessionId, entry.contentHash, ReportUploadState.FAILED, 0L, "Файл удалён")
+            return
+        }
+
+        repository.uploadOutboxEntry(entry)
+            .onSuccess { report ->
+                dao.markDone(entry.sessionId, entry.contentHash, report.id)
+                Log.d(TAG, "Отчёт сессии ${entry.sessionId} отправлен: id=${report.id}")
+            }
+            .onFailure { error ->
+                val attempts = entry.attempts + 1
+                // Ошибки клиента (кроме авторизации и лимитов) повтором не исправить
+                val code = (error as? HttpException)?.code()
+                val permanent = code != null && code in 400..499 && code != 401 && code != 408 && code != 429
+                val state = if (permanent || attempts >= MAX_ATTEMPTS) ReportUploadState.FAILED else ReportUploadState.PENDING
+                val delay = (BASE_RETRY_DELAY_MS shl (attempts - 1).coerceAtMost(16)).coerceAtMost(MAX_RETRY_DELAY_MS)
+                val message = error.message ?: error.javaClass.simpleName
+                dao.markAttemptFailed(entry.sessionId, entry.contentHash, state, System.currentTimeMillis() + delay, message)
+                Log.w(TAG, "Отчёт сессии ${entry.sessionId} не отправлен (попытка $attempts, $state): $message")
+            }
+    }
+}
@@ -0,0 +1,274 @@
+package ru.wassertech.sync
+
+import ru.wassertech.core.network.dto.*
+import ru.wassertech.data.entities.*
+import ru.wassertech.data.types.ComponentType
+import ru.wassertech.data.types.FieldType
+import ru.wassertech.data.types.SyncStatus
+
+/**
+ * Маппинг DTO sync/pull → Room Entity.
+ *
+ * Вынесено из SyncEngine, чтобы одни и те же преобразования использовались
+ * и построчным применением, и пакетным [SyncPullApplier].
+ * Все записи, полученные с сервера, помечаются как синхронизированные (dirtyFlag = false).
+ */
+
+internal fun SyncClientDto.toEntity() = ClientEntity(
+    id = id,
+    name = name,
+    legalName = legalName,
+    contactPerson = contactPerson,
+    phone = phone,
+    phone2 = phone2,
+    email = email,
+    addressFull = addressFull,
+    city = city,
+    region = region,
+    country = country,
+    postalCode = postalCode,
+    latitude = latitude,
+    longitude = longitude,
+    taxId = taxId,
+    vatNumber = vatNumber,
+    externalId = externalId,
+    tagsJson = tagsJson,
+    notes = notes,
+    isCorporate = isCorporate,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    deletedAtEpoch = null,
+    dirtyFlag = false, // При получении с сервера - не грязная
+    syncStatus = SyncStatus.SYNCED.value,
+    sortOrder = sortOrder,
+    clientGroupId = clientGroupId
+)
+
+internal fun SyncSiteDto.toEntity() = SiteEntity(
+    id = id,
+    clientId = clientId,
+    name = name,
+    address = address,
+    orderIndex = orderIndex,
+    iconId = iconId,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value,
+    origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+    createdByUserId = created_by_user_id
+)
+
+internal fun SyncInstallationDto.toEntity() = InstallationEntity(
+    id = id,
+    siteId = siteId,
+    name = name,
+    orderIndex = orderIndex,
+    iconId = iconId,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value,
+    origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+    createdByUserId = created_by_user_id
+)
+
+internal fun SyncComponentDto.toEntity() = ComponentEntity(
+    id = id,
+    installationId = installationId,
+    name = name,
+    type = ComponentType.valueOf(type),
+    orderIndex = orderIndex,
+    templateId = templateId,
+    iconId = iconId,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value,
+    origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+    createdByUserId = created_by_user_id
+)
+
+internal fun SyncMaintenanceSessionDto.toEntity() = MaintenanceSessionEntity(
+    id = id,
+    siteId = siteId,
+    installationId = installationId,
+    startedAtEpoch = startedAtEpoch,
+    finishedAtEpoch = finishedAtEpoch,
+    technician = technician,
+    notes = notes,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value,
+    synced = true,
+    origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+    createdByUserId = created_by_user_id
+)
+
+internal fun SyncMaintenanceValueDto.toEntity(): MaintenanceValueEntity {
+    val valueId = id ?: java.util.UUID.randomUUID().toString()
+    // Преобразуем valueNumber в valueText, если есть
+    val finalValueText = valueText ?: valueNumber?.toString()
+    return MaintenanceValueEntity(
+        id = valueId,
+        sessionId = sessionId,
+        siteId = siteId,
+        installationId = installationId,
+        componentId = componentId,
+        fieldKey = fieldKey,
+        valueText = finalValueText,
+        valueBool = valueBool,
+        createdAtEpoch = createdAtEpoch ?: 0,
+        updatedAtEpoch = updatedAtEpoch ?: 0,
+        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+        createdByUserId = created_by_user_id,
+        isArchived = false,
+        archivedAtEpoch = null,
+        deletedAtEpoch = null,
+        dirtyFlag = false,
+        syncStatus = SyncStatus.SYNCED.value
+    )
+}
+
+internal fun SyncChecklistTemplateDto.toEntity() = ChecklistTemplateEntity(
+    id = id,
+    title = title ?: "", // Используем пустую строку, если title null
+    componentType = ComponentType.valueOf(componentType),
+    componentTemplateId = componentTemplateId,
+    createdAtEpoch = createdAtEpoch ?: 0,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value,
+    sortOrder = sortOrder
+)
+
+internal fun SyncChecklistFieldDto.toEntity() = ChecklistFieldEntity(
+    id = id,
+    templateId = templateId,
+    key = key,
+    label = label ?: "",
+    type = FieldType.valueOf(type),
+    unit = unit,
+    min = minValue,
+    max = maxValue,
+    isForMaintenance = isForMaintenance,
+    createdAtEpoch = createdAtEpoch ?: 0,
+    updatedAtEpoch = updatedAtEpoch ?: 0,
+    isArchived = false,
+    archivedAtEpoch = null,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value
+)
+
+internal fun SyncComponentTemplateDto.toEntity() = ComponentTemplateEntity(
+    id = id,
+    name = name,
+    category = category,
+    sortOrder = sortOrder,
+    defaultParamsJson = defaultParamsJson,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value,
+    origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+    createdByUserId = created_by_user_id
+)
+
+internal fun SyncIconPackDto.toEntity() = IconPackEntity(
+    id = id,
+    code = code,
+    name = name,
+    description = description,
+    folder = folder,
+    isBuiltin = isBuiltin,
+    isPremium = isPremium,
+    origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+    createdByUserId = createdByUserId,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch
+)
+
+internal fun SyncIconDto.toEntity(): IconEntity {
+    // packId должен быть не null, проверка уже выполнена в processPullResponse
+    val packIdValue = packId ?: throw IllegalArgumentException("packId не может быть null для иконки $id")
+    
+    // entityType может быть null на сервере, используем "ANY" по умолчанию
+    val entityTypeValue = entityType ?: "ANY"
+    
+    return IconEntity(
+        id = id,
+        packId = packIdValue,
+        code = code,
+        label = label,
+        entityType = entityTypeValue,
+        imageUrl = imageUrl,
+        thumbnailUrl = thumbnailUrl,
+        thumbnailLocalPath = null, // Будет заполнено после загрузки миниатюры
+        androidResName = androidResName,
+        isActive = isActive,
+        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
+        createdByUserId = createdByUserId,
+        createdAtEpoch = createdAtEpoch,
+        updatedAtEpoch = updatedAtEpoch
+    )
+}
+
+/**
+ * Маппинг SyncChecklistFieldDto → ComponentTemplateFieldEntity (при получении с сервера)
+ */
+internal fun SyncChecklistFieldDto.toComponentTemplateFieldEntity(componentTemplateId: String) = ComponentTemplateFieldEntity(
+    id = id,
+    templateId = componentTemplateId,
+    key = key,
+    label = label ?: "",
+    type = FieldType.valueOf(type),
+    unit = unit,
+    isCharacteristic = !isForMaintenance, // Маппинг обратный: isForMaintenance = false → isCharacteristic = true
+    isRequired = required,
+    defaultValueText = null,
+    defaultValueNumber = null,
+    defaultValueBool = null,
+    min = minValue,
+    max = maxValue,
+    sortOrder = sortOrder,
+    createdAtEpoch = createdAtEpoch ?: 0,
+    updatedAtEpoch = updatedAtEpoch ?: 0,
+    isArchived = false,
+    archivedAtEpoch = null,
+    deletedAtEpoch = null,
+    dirtyFlag = false,
+    syncStatus = SyncStatus.SYNCED.value
+)
+
+internal fun ru.wassertech.core.network.dto.sync.SyncUserMembershipDto.toEntity() = UserMembershipEntity(
+    userId = userId,
+    scope = scope,
+    targetId = targetId,
+    createdAtEpoch = createdAtEpoch,
+    updatedAtEpoch = updatedAtEpoch,
+    isArchived = isArchived,
+    archivedAtEpoch = archivedAtEpoch,
+    dirtyFlag = false, // При получении с сервера - не dirty
+    syncStatus = SyncStatus.SYNCED.value
+)
@@ -2,15 +2,21 @@ package ru.wassertech.sync
 
 import android.content.Context
 import android.util.Log
+import androidx.room.withTransaction
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import retrofit2.HttpException
+import retrofit2.Response
 import ru.wassertech.core.auth.DataStoreTokenStorage
 import ru.wassertech.core.network.ApiClient
 import ru.wassertech.core.network.ApiConfig
+import ru.wassertech.core.network.isNotModified
 import ru.wassertech.core.network.api.SyncApi
 import ru.wassertech.core.network.dto.*
 import ru.wassertech.core.network.interceptor.NetworkException
+import ru.wassertech.core.network.sync.SyncPullStreamReader
 import ru.wassertech.data.AppDatabase
 import ru.wassertech.data.dao.SettingsDao
 import ru.wassertech.data.entities.*
@@ -67,6 +73,9 @@ class SyncEngine(private val context: Context) {
     private val database = AppDatabase.getInstance(context)
     private val tokenStorage = DataStoreTokenStorage(context)
     private val settingsDao = database.settingsDao()
+    private val pullApplier = SyncPullApplier(database)
+    private val pullCheckpointStore = SyncPullCheckpointStore(settingsDao)
+    private val watermarks = SyncWatermarkStore(settingsDao, SETTINGS_KEY_LAST_SYNC_TIMESTAMP)
     
     private val syncApi: SyncApi by lazy {
         ApiClient.createService<SyncApi>(
@@ -76,6 +85,18 @@ class SyncEngine(private val context: Context) {
         )
     }
     
+    /**
+     * Сервис для sync/pull: без логирования тела, т.к. HttpLoggingInterceptor.Level.BODY
+     * буферизует ответ целиком и сводит на нет потоковый разбор ([syncPullPaged])
+     */
+    private val syncPullApi: SyncApi by lazy {
+        ApiClient.createService<SyncApi>(
+            tokenStorage = tokenStorage,
+            baseUrl = ApiConfig.getBaseUrl(),
+            enableLogging = false
+        )
+    }
+    
     private val reportsApi: ReportsApi by lazy {
         ApiClient.createService<ReportsApi>(
             tokenStorage = tokenStorage,
@@ -86,26 +107,92 @@ class SyncEngine(private val context: Context) {
     
     companion object {
         private const val TAG = "SyncEngine"
+        
+        /**
+         * Общая блокировка push/pull для всех экземпляров SyncEngine: WorkManager, SyncOrchestrator
+         * и ручная синхронизация из настроек не выполняют обмен одновременно.
+         */
+        private val syncMutex = Mutex()
         private const val SETTINGS_KEY_LAST_SYNC_TIMESTAMP = "last_sync_timestamp"
         private const val SETTINGS_KEY_LAST_REPORTS_SYNC_EPOCH = "last_reports_sync_epoch"
+        private const val SETTINGS_KEY_PUSH_FLAT_VALUES = "sync_push_flat_values"
+        
+        /** Максимум id в одном запросе IN (...) — ниже лимита переменных SQLite (999) */
+        private const val SQL_IN_BATCH_SIZE = 500
+        
+        /**
+         * Пакетное применение sync/pull ([SyncPullApplier]): одна транзакция и списочные upsert.
+         * false — построчное применение (для сравнения скорости по логам).
+         */
+        private const val USE_BATCHED_PULL_APPLY = true
+        
+        /**
+         * Постраничный pull ([syncPullPaged]): по одной сущности за запрос, страницами по [PULL_PAGE_SIZE].
+         * Каждая страница фиксируется вместе с контрольной точкой, прерванная синхронизация продолжается с неё.
+         * false — весь ответ одним запросом.
+         */
+        private const val USE_PAGED_PULL = true
+        private const val PULL_PAGE_SIZE = 500
+        
+        /**
+         * Размер пачки потокового разбора страницы ([SyncPullStreamReader]): записи применяются
+         * по мере чтения ответа, в памяти одновременно не больше одной пачки.
+         */
+        private const val PULL_STREAM_BATCH_SIZE = 100
+        
+        /** Секция удалённых записей sync/pull */
+        private const val PULL_ENTITY_DELETED = "deleted"
+        
+        /**
+         * Отправка sync/push частями ([syncPushChunked], [SyncPushChunker]) в порядке зависимостей сущностей.
+         * Каждая подтверждённая сервером часть сразу помечается синхронизированной, поэтому после обрыва
+         * следующая синхронизация отправляет только оставшиеся записи.
+         * false — все изменения одним запросом.
+         */
+        private const val USE_CHUNKED_PUSH = true
+        private const val PUSH_CHUNK_MAX_ROWS = 500
+        private const val PUSH_CHUNK_MAX_BYTES = 256L * 1024
+        
+        /**
+         * Сущности, получаемые с сервера (в постраничном режиме — в этом порядке, родители раньше дочерних).
+         * Сервер отдаёт секцию deleted только по явному запросу; она идёт последней,
+         * чтобы к её применению основные списки уже были в Room.
+         */
+        private val PULL_ENTITIES = listOf(
+            "clients", "sites", "installations", "components",
+            "maintenance_sessions", "maintenance_values",
+            "component_templates", "component_template_fields",
+            "icon_packs", "icons", // Добавляем икон-паки и иконки
+            "user_membership", // Добавляем user_membership для контроля доступа
+            PULL_ENTITY_DELETED
+        )
+        
+        /**
+         * Минимальный интервал между загрузками сущности в постраничном pull (от последней проверки, [SyncWatermarkStore.getChecked]).
+         * Справочники иконок меняются редко — обновляем их реже, чем данные ТО. Не указанные сущности — при каждом pull.
+         */
+        private val PULL_ENTITY_MIN_INTERVAL_MS = mapOf(
+            "icon_packs" to 24 * 60 * 60 * 1000L,
+            "icons" to 24 * 60 * 60 * 1000L
+        )
     }
     
     /**
      * Полная синхронизация: сначала push, затем pull
      */
-    suspend fun syncFull(): SyncResult {
-        return withContext(Dispatchers.IO) {
+    suspend fun syncFull(): SyncResult = syncMutex.withLock {
+        withContext(Dispatchers.IO) {
             try {
                 Log.d(TAG, "Начало полной синхронизации")
                 
                 // 1. Push локальных изменений
-                val pushResult = syncPush()
+                val pushResult = pushLocked()
                 if (!pushResult.success) {
                     return@withContext pushResult
                 }
                 
                 // 2. Pull изменений с сервера
-                val pullResult = syncPull()
+                val pullResult = pullLocked()
                 
                 SyncResult(
                     success = pushResult.success && pullResult.success,
@@ -126,7 +213,9 @@ class SyncEngine(private val context: Context) {
     /**
      * Отправка локальных изменений на сервер
      */
-    suspend fun syncPush(): SyncResult {
+    suspend fun syncPush(): SyncResult = syncMutex.withLock { pushLocked() }
+    
+    private suspend fun pushLocked(): SyncResult {
         return withContext(Dispatchers.IO) {
             try {
                 Log.d(TAG, "Начало отправки локальных изменений")
@@ -202,90 +291,11 @@ class SyncEngine(private val context: Context) {
                 
                 Log.d(TAG, "Отправка $totalCount записей на сервер через sync/push")
                 
-                // Отправляем запрос
-                val response = syncApi.syncPush(request)
-                Log.d(TAG, "Получен ответ от sync/push: код=${response.code()}, успешно=${response.isSuccessful}")
-                
-                if (!response.isSuccessful) {
-                    val errorCode = response.code()
-                    val errorBody = try {
-                        response.errorBody()?.string()
-                    } catch (e: Exception) {
-                        null
-                    }
-                    
-                    val errorMsg = when (errorCode) {
-                        401 -> {
-                            Log.e(TAG, "Ошибка 401: Токен недействителен или истек. Тело ошибки: $errorBody")
-                            Log.e(TAG, "Текущий токен: ${token.take(50)}...")
-                            "Токен авторизации недействителен или истек. Необходимо войти в систему заново."
-                        }
-                        403 -> {
-                            Log.e(TAG, "Ошибка 403: Доступ запрещен. Тело ошибки: $errorBody")
-                            "Доступ запрещен. Проверьте права доступа."
-                        }
-                        else -> {
-                            Log.e(TAG, "Ошибка отправки: код=$errorCode, тело=$errorBody")
-                            "Ошибка отправки: код $errorCode${if (errorBody != null) " ($errorBody)" else ""}"
-                        }
-                    }
-                    
-                    return@withContext SyncResult(
-                        success = false,
-                        message = errorMsg
-                    )
-                }
-                
-                val pushResponse = response.body()
-                if (pushResponse == null) {
-                    Log.e(TAG, "Пустой ответ от сервера sync/push")
-                    return@withContext SyncResult(
-                        success = false,
-                        message = "Пустой ответ от сервера"
-                    )
-                }
-                
-                // Логируем ответ от сервера
-                // ВАЖНО: сохраняем в локальную переменную, чтобы избежать smart cast проблем
-                // Никаких повторных обращений pushResponse.processed.xxx — только через локальный processed
-                val processed = pushResponse.processed
-                Log.d(TAG, "Ответ sync/push: success=${pushResponse.success}, " +
-                        "processed=$processed, errors=${pushResponse.errors.size}")
-                if (processed != null) {
-                    val templatesCount = processed.component_templates
-                    val fieldsCount = processed.component_template_fields
-                    Log.d(TAG, "Обработано сервером: component_templates=$templatesCount, " +
-                            "component_template_fields=$fieldsCount")
-                } else {
-                    Log.w(TAG, "pushResponse.processed is null, nothing to mark as synced")
-                }
-                if (pushResponse.errors.isNotEmpty()) {
-                    pushResponse.errors.forEach { error ->
-                        Log.e(TAG, "Ошибка синхронизации: entityType=${error.entityType}, entityId=${error.entityId}, message=${error.message}")
-                    }
-                }
-                
-                // Обрабатываем ответ и обновляем статусы в Room
-                processPushResponse(pushResponse, request)
-                
-                val stats = calculatePushStats(pushResponse)
-                val message = buildString {
-                    append("Отправлено: ")
-                    append("вставлено=${stats.inserted}, ")
-                    append("обновлено=${stats.updated}, ")
-                    append("пропущено=${stats.skipped}")
-                    if (pushResponse.errors.isNotEmpty()) {
-                        append(", ошибок=${pushResponse.errors.size}")
-                    }
+                if (USE_CHUNKED_PUSH) {
+                    return@withContext syncPushChunked(request, token)
                 }
                 
-                Log.d(TAG, message)
-                
-                SyncResult(
-                    success = pushResponse.success,
-                    message = message,
-                    pushStats = stats
-                )
+                sendPushRequest(request, token)
             } catch (e: HttpException) {
                 Log.e(TAG, "HTTP ошибка при отправке", e)
                 SyncResult(
@@ -308,10 +318,139 @@ class SyncEngine(private val context: Context) {
         }
     }
     
+    /**
+     * Отправить один запрос sync/push и пометить подтверждённые записи в Room.
+     */
+    private suspend fun sendPushRequest(request: SyncPushRequest, token: String): SyncResult {
+        // Отправляем запрос
+        val response = syncApi.syncPush(request)
+        Log.d(TAG, "Получен ответ от sync/push: код=${response.code()}, успешно=${response.isSuccessful}")
+        
+        if (!response.isSuccessful) {
+            val errorCode = response.code()
+            val errorBody = try {
+                response.errorBody()?.string()
+            } catch (e: Exception) {
+                null
+            }
+        
+            val errorMsg = when (errorCode) {
+                401 -> {
+                    Log.e(TAG, "Ошибка 401: Токен недействителен или истек. Тело ошибки: $errorBody")
+                    Log.e(TAG, "Текущий токен: ${token.take(50)}...")
+                    "Токен авторизации недействителен или истек. Необходимо войти в систему заново."
+                }
+                403 -> {
+                    Log.e(TAG, "Ошибка 403: Доступ запрещен. Тело ошибки: $errorBody")
+                    "Доступ запрещен. Проверьте права доступа."
+                }
+                else -> {
+                    Log.e(TAG, "Ошибка отправки: код=$errorCode, тело=$errorBody")
+                    "Ошибка отправки: код $errorCode${if (errorBody != null) " ($errorBody)" else ""}"
+                }
+            }
+        
+            return SyncResult(
+                success = false,
+                message = errorMsg
+            )
+        }
+        
+        val pushResponse = response.body()
+        if (pushResponse == null) {
+            Log.e(TAG, "Пустой ответ от сервера sync/push")
+            return SyncResult(
+                success = false,
+                message = "Пустой ответ от сервера"
+            )
+        }
+        
+        // Логируем ответ от сервера
+        // ВАЖНО: сохраняем в локальную переменную, чтобы избежать smart cast проблем
+        // Никаких повторных обращений pushResponse.processed.xxx — только через локальный processed
+        val processed = pushResponse.processed
+        Log.d(TAG, "Ответ sync/push: success=${pushResponse.success}, " +
+                "processed=$processed, errors=${pushResponse.errors.size}")
+        if (processed != null) {
+            val templatesCount = processed.component_templates
+            val fieldsCount = processed.component_template_fields
+            Log.d(TAG, "Обработано сервером: component_templates=$templatesCount, " +
+                    "component_template_fields=$fieldsCount")
+        } else {
+            Log.w(TAG, "pushResponse.processed is null, nothing to mark as synced")
+        }
+        if (pushResponse.errors.isNotEmpty()) {
+            pushResponse.errors.forEach { error ->
+                Log.e(TAG, "Ошибка синхронизации: entityType=${error.entityType}, entityId=${error.entityId}, message=${error.message}")
+            }
+        }
+        
+        // Обрабатываем ответ и обновляем статусы в Room
+        processPushResponse(pushResponse, request)
+        savePushCapabilities(pushResponse.capabilities)
+        
+        val stats = calculatePushStats(pushResponse)
+        val message = buildString {
+            append("Отправлено: ")
+            append("вставлено=${stats.inserted}, ")
+            append("обновлено=${stats.updated}, ")
+            append("пропущено=${stats.skipped}")
+            if (pushResponse.errors.isNotEmpty()) {
+                append(", ошибок=${pushResponse.errors.size}")
+            }
+        }
+        
+        Log.d(TAG, message)
+        
+        return SyncResult(
+            success = pushResponse.success,
+            message = message,
+            pushStats = stats
+        )
+    }
+    
+    /**
+     * Отправка изменений частями (см. [USE_CHUNKED_PUSH]).
+     * Части отправляются последовательно; при ошибке уже подтверждённые части остаются
+     * синхронизированными, остальные записи остаются dirty и уйдут при следующей синхронизации.
+     */
+    private suspend fun syncPushChunked(request: SyncPushRequest, token: String): SyncResult {
+        val chunks = SyncPushChunker(PUSH_CHUNK_MAX_ROWS, PUSH_CHUNK_MAX_BYTES).split(request)
+        Log.d(TAG, "Отправка частями: частей=${chunks.size} (до $PUSH_CHUNK_MAX_ROWS строк / $PUSH_CHUNK_MAX_BYTES байт)")
+        
+        var inserted = 0
+        var updated = 0
+        var skipped = 0
+        chunks.forEachIndexed { index, chunk ->
+            Log.d(TAG, "Часть ${index + 1}/${chunks.size}: clients=${chunk.clients.size}, sites=${chunk.sites.size}, " +
+                "installations=${chunk.installations.size}, components=${chunk.components.size}, " +
+                "sessions=${chunk.maintenance_sessions.size}, values=${chunk.maintenance_values.size}, " +
+                "deleted=${chunk.deleted.size}")
+            val result = sendPushRequest(chunk, token)
+            if (!result.success) {
+                Log.w(TAG, "Отправка прервана на части ${index + 1}/${chunks.size}, подтверждено частей: $index")
+                return result.copy(message = "Отправлено частей $index из ${chunks.size}. ${result.message}")
+            }
+            inserted += result.pushStats?.inserted ?: 0
+            updated += result.pushStats?.updated ?: 0
+            skipped += result.pushStats?.skipped ?: 0
+        }
+        
+        val message = "Отправлено частей: ${chunks.size}, вставлено=$inserted, обновлено=$updated, пропущено=$skipped"
+        Log.d(TAG, message)
+        return SyncResult(
+            success = true,
+            message = message,
+            pushStats = SyncPushStats(inserted = inserted, updated = updated, skipped = skipped)
+        )
+    }
+    
     /**
      * Получение изменений с сервера
      */
-    suspend fun syncPull(): SyncResult {
+    suspend fun syncPull(): SyncResult = syncMutex.withLock { pullLocked() }
+    
+    private suspend fun pullLocked(): SyncResult {
         return withContext(Dispatchers.IO) {
             try {
                 Log.d(TAG, "Начало получения изменений с сервера")
@@ -327,67 +466,23 @@ class SyncEngine(private val context: Context) {
                     )
                 }
                 
-                // Получаем timestamp последней синхронизации (в миллисекундах)
-                var lastSyncTimestampMs = getLastSyncTimestamp() ?: 0L
-                
-                // Проверяем, что timestamp разумен (не больше текущего времени + небольшой запас)
-                val currentTimeMs = System.currentTimeMillis()
-                val maxReasonableTimestamp = currentTimeMs + 86400000L // +1 день запас
-                
-                if (lastSyncTimestampMs > maxReasonableTimestamp) {
-                    Log.w(TAG, "Обнаружен некорректный timestamp: ${lastSyncTimestampMs}ms (текущее время: ${currentTimeMs}ms). Сбрасываем.")
-                    lastSyncTimestampMs = 0L
-                    // Очищаем некорректный timestamp
-                    saveLastSyncTimestamp(0L)
+                if (USE_PAGED_PULL) {
+                    return@withContext syncPullPaged()
                 }
                 
-                // Backend ожидает timestamp в секундах и требует since > 0
-                // При первом запуске используем 1 вместо 0
-                val lastSyncTimestampSec = if (lastSyncTimestampMs == 0L) 1L else lastSyncTimestampMs / 1000
-                Log.d(TAG, "Последняя синхронизация: ${lastSyncTimestampMs}ms = ${lastSyncTimestampSec}s (${if (lastSyncTimestampMs == 0L) "первый запуск, используем since=1" else "timestamp=$lastSyncTimestampSec"})")
+                val lastSyncTimestampSec = oldestWatermarkSinceSec()
                 
                 // Указываем, какие сущности нужно получить с сервера
                 // Включаем икон-паки и иконки для загрузки метаданных
-                val entities = listOf(
-                    "clients", "sites", "installations", "components",
-                    "maintenance_sessions", "maintenance_values",
-                    "component_templates", "component_template_fields",
-                    "icon_packs", "icons", // Добавляем икон-паки и иконки
-                    "user_membership" // Добавляем user_membership для контроля доступа
-                )
+                val entities = PULL_ENTITIES
                 
                 Log.d(TAG, "Вызываю syncPull(since=$lastSyncTimestampSec, entities=$entities)")
                 
                 // Запрашиваем изменения (since в секундах, всегда > 0)
-                val response = syncApi.syncPull(since = lastSyncTimestampSec, entities = entities)
+                val response = syncPullApi.syncPull(since = lastSyncTimestampSec, entities = entities)
                 
                 if (!response.isSuccessful) {
-                    val errorCode = response.code()
-                    val errorBody = try {
-                        response.errorBody()?.string()
-                    } catch (e: Exception) {
-                        null
-                    }
-                    
-                    val errorMsg = when (errorCode) {
-                        401 -> {
-                            Log.e(TAG, "Ошибка 401: Токен недействителен или истек. Тело ошибки: $errorBody")
-                            "Токен авторизации недействителен или истек. Необходимо войти в систему заново."
-                        }
-                        403 -> {
-                            Log.e(TAG, "Ошибка 403: Доступ запрещен. Тело ошибки: $errorBody")
-                            "Доступ запрещен. Проверьте права доступа."
-                        }
-                        else -> {
-                            Log.e(TAG, "Ошибка получения: код=$errorCode, тело=$errorBody")
-                            "Ошибка получения: код $errorCode${if (errorBody != null) " ($errorBody)" else ""}"
-                        }
-                    }
-                    
-                    return@withContext SyncResult(
-                        success = false,
-                        message = errorMsg
-                    )
+                    return@withContext pullErrorResult(response)
                 }
                 
                 val pullResponse = response.body()
@@ -401,31 +496,14 @@ class SyncEngine(private val context: Context) {
                 // Применяем изменения к Room
                 processPullResponse(pullResponse)
                 
-                // Обновляем timestamp последней синхронизации
+                // Обновляем отметки всех сущностей
                 // Сервер возвращает timestamp в миллисекундах, сохраняем как есть
                 val timestampMs = pullResponse.timestamp
-                saveLastSyncTimestamp(timestampMs)
+                saveAllWatermarks(timestampMs)
                 Log.d(TAG, "Сохранён новый timestamp последней синхронизации: ${timestampMs}ms (${timestampMs / 1000}s)")
                 
                 val stats = calculatePullStats(pullResponse)
-                val iconPacksCount = pullResponse.iconPacks.size
-                val iconsCount = pullResponse.icons.size
-                
-                val message = buildString {
-                    append("Загружено: ")
-                    append("клиентов=${stats.clients}, ")
-                    append("объектов=${stats.sites}, ")
-                    append("установок=${stats.installations}, ")
-                    append("компонентов=${stats.components}, ")
-                    append("сессий ТО=${stats.sessions}, ")
-                    append("значений ТО=${stats.values}, ")
-                    append("шаблонов=${stats.templates}, ")
-                    if (iconPacksCount > 0 || iconsCount > 0) {
-                        append("икон-паков=$iconPacksCount, ")
-                        append("иконок=$iconsCount, ")
-                    }
-                    append("удалено=${stats.deleted}")
-                }
+                val message = buildPullMessage(stats, pullResponse.iconPacks.size, pullResponse.icons.size)
                 
                 Log.d(TAG, message)
                 
@@ -465,14 +543,26 @@ class SyncEngine(private val context: Context) {
         val installations = database.hierarchyDao().getDirtyInstallationsNow().map { it.toSyncDto() }
         val components = database.hierarchyDao().getDirtyComponentsNow().map { it.toSyncDto() }
         
-        // Для сессий нужно получать связанные values, поэтому используем suspend функцию
+        // Значения всех dirty-сессий читаем одним запросом (по пачкам id), а не по сессии
         val dirtySessions = database.sessionsDao().getDirtySessionsNow()
-        val sessions = mutableListOf<SyncMaintenanceSessionDto>()
-        for (session in dirtySessions) {
-            sessions.add(session.toSyncDto())
-        }
+        val sessionValues = loadValuesForSessions(dirtySessions.map { it.id })
+        val dirtyValues = database.sessionsDao().getDirtyValuesNow()
         
-        val values = database.sessionsDao().getDirtyValuesNow().map { it.toSyncDto() }
+        // Если сервер принимает плоский формат — каждое значение уходит один раз в maintenance_values,
+        // иначе прежний формат: вложенные values в сессии + dirty values плоским списком
+        val flatValues = isFlatValuesPushSupported()
+        val sessions = dirtySessions.map { session ->
+            session.toSyncDto(values = if (flatValues) emptyList() else sessionValues[session.id].orEmpty())
+        }
+        val values = if (flatValues) {
+            (dirtyValues + sessionValues.values.flatten())
+                .distinctBy { it.id }
+                .map { it.toSyncDto() }
+        } else {
+            dirtyValues.map { it.toSyncDto() }
+        }
+        Log.d(TAG, "Значения ТО для отправки: формат=${if (flatValues) "flat" else "nested"}, " +
+                "сессий=${sessions.size}, значений=${values.size}")
         
         // Новая модель: собираем componentTemplates и componentTemplateFields
         val componentTemplates = database.componentTemplatesDao().getDirtyComponentTemplatesNow().map { it.toSyncDto() }
@@ -528,7 +618,35 @@ class SyncEngine(private val context: Context) {
             component_templates = componentTemplates,
             component_template_fields = componentTemplateFieldsDto,
             userMembership = userMembership,
-            deleted = deleted
+            deleted = deleted,
+            valuesEncoding = if (flatValues) SyncCapabilities.VALUES_ENCODING_FLAT else null
+        )
+    }
+    
+    /** Значения ТО для набора сессий, сгруппированные по sessionId */
+    private suspend fun loadValuesForSessions(sessionIds: List<String>): Map<String, List<MaintenanceValueEntity>> {
+        if (sessionIds.isEmpty()) return emptyMap()
+        return sessionIds.chunked(SQL_IN_BATCH_SIZE)
+            .flatMap { database.sessionsDao().getValuesForSessions(it) }
+            .groupBy { it.sessionId }
+    }
+    
+    /** Объявил ли сервер поддержку плоского формата значений ТО ([SyncCapabilities.PUSH_FLAT_VALUES]) */
+    private suspend fun isFlatValuesPushSupported(): Boolean =
+        settingsDao.getValueSync(SETTINGS_KEY_PUSH_FLAT_VALUES) == "1"
+    
+    /** Запомнить возможности сервера из ответа sync/push; отсутствие поля не меняет сохранённое значение */
+    private suspend fun savePushCapabilities(capabilities: List<String>?) {
+        if (capabilities == null) return
+        val flatValues = SyncCapabilities.PUSH_FLAT_VALUES in capabilities
+        if (flatValues != isFlatValuesPushSupported()) {
+            Log.d(TAG, "Сервер ${if (flatValues) "поддерживает" else "не поддерживает"} плоский формат значений ТО")
+        }
+        settingsDao.setValue(
+            SettingsEntity(
+                key = SETTINGS_KEY_PUSH_FLAT_VALUES,
+                value = if (flatValues) "1" else "0"
+            )
         )
     }
     
@@ -664,8 +782,14 @@ class SyncEngine(private val context: Context) {
             Log.d(TAG, "Обработано user_membership: успешно=$successCount, ошибок=$errorCount")
         }
         
-        // Обрабатываем удаления: помечаем как синхронизированные после успешного push
-        val deletedRecords = database.deletedRecordsDao().getDirtyDeletedRecordsNow()
+        // Обрабатываем удаления: помечаем как синхронизированные только отправленные в этом запросе
+        val sentDeletedKeys = request.deleted.map { "${it.entity}:${it.recordId}" }.toSet()
+        val deletedRecords = if (sentDeletedKeys.isEmpty()) {
+            emptyList()
+        } else {
+            database.deletedRecordsDao().getDirtyDeletedRecordsNow()
+                .filter { "${it.entity}:${it.recordId}" in sentDeletedKeys }
+        }
         val deletedRecordIds = deletedRecords.map { it.id }
         if (deletedRecordIds.isNotEmpty()) {
             database.deletedRecordsDao().markAsSynced(deletedRecordIds)
@@ -681,203 +805,348 @@ class SyncEngine(private val context: Context) {
         }
     }
     
+    /**
+     * Постраничный pull.
+     *
+     * Сущности запрашиваются по одной в порядке [PULL_ENTITIES], каждая со своим since из
+     * [SyncWatermarkStore], страницами по [PULL_PAGE_SIZE] с курсором after_id. Сущности, загруженные
+     * недавно (см. [PULL_ENTITY_MIN_INTERVAL_MS]), пропускаются.
+     *
+     * Страница читается потоково ([SyncPullStreamReader] поверх тела ответа, без Gson-конвертера
+     * и без логирования тела): записи применяются пачками по [PULL_STREAM_BATCH_SIZE] по мере чтения,
+     * поэтому пиковая память определяется размером пачки. После разбора всей страницы в отдельной
+     * транзакции сохраняется [SyncPullCheckpoint]; на последней странице сущности — её новая отметка
+     * (timestamp сервера из первой страницы), и контрольная точка удаляется. Если чтение оборвалось
+     * посреди страницы, следующий pull повторит её с прежней контрольной точки — применение
+     * идемпотентно (last-write-wins по updatedAtEpoch).
+     * Секция deleted запрашивается последней; записи, архивированные локально или изменённые на сервере
+     * после удаления, не удаляются (см. [SyncPullApplier.collectRetainedIds]).
+     *
+     * Если контрольная точка осталась от прерванного прохода по сущности с тем же since — продолжаем с неё.
+     * Пустой ответ отметку не сдвигает: следующий pull повторит тот же URL условным запросом
+     * через HTTP-кэш, и сервер без изменений ответит 304.
+     */
+    private suspend fun syncPullPaged(): SyncResult {
+        val checkpoint = pullCheckpointStore.load()
+        val nowMs = System.currentTimeMillis()
+        
+        var stats = SyncPullStats(0, 0, 0, 0, 0, 0, 0, 0)
+        var iconPacksCount = 0
+        var iconsCount = 0
+        var pages = 0
+        val skipped = mutableListOf<String>()
+        
+        for (entity in PULL_ENTITIES) {
+            val watermarkMs = watermarks.get(entity)
+            val checked = watermarks.getChecked(entity)
+            val minIntervalMs = PULL_ENTITY_MIN_INTERVAL_MS[entity] ?: 0L
+            // Интервал считается от последней проверки, а не от отметки: без изменений отметка не сдвигается
+            if (watermarkMs > 0L && checked != null && nowMs - checked.checkedAtMs in 0 until minIntervalMs) {
+                skipped += entity
+                continue
+            }
+            val sinceSec = watermarks.toSinceSec(watermarkMs)
+            
+            val resume = checkpoint?.takeIf { it.entity == entity && it.since == sinceSec }
+            if (resume != null) {
+                Log.d(TAG, "Продолжаем прерванный pull: entity=$entity, after_id=${resume.afterId}")
+            }
+            var snapshotTimestamp = resume?.snapshotTimestamp
+            var afterId = resume?.afterId
+            
+            do {
+                Log.d(TAG, "Вызываю syncPull(since=$sinceSec, entity=$entity, limit=$PULL_PAGE_SIZE, after_id=$afterId)")
+                val response = syncPullApi.syncPullStream(
+                    since = sinceSec,
+                    entities = listOf(entity),
+                    limit = PULL_PAGE_SIZE,
+                    afterId = afterId
+                )
+                if (!response.isSuccessful) {
+                    return pullErrorResult(response)
+                }
+                val body = response.body()
+                    ?: return SyncResult(success = false, message = "Пустой ответ от сервера")
+                
+                // Ответ из кэша на тот же since, что уже применён полностью (since не сдвинулся,
+                // потому что сервер отдал отметку в ту же секунду): повторно не применяем
+                if (afterId == null && response.isNotModified() && checked?.sinceSec == sinceSec) {
+                    body.close()
+                    Log.d(TAG, "$entity: не изменилось (304), ответ уже применён")
+                    watermarks.saveChecked(entity, sinceSec, nowMs)
+                    pages++
+                    break
+                }
+                
+                val pageStarted = System.nanoTime()
+                val reports = mutableListOf<PullApplyReport>()
+                val page = SyncPullStreamReader(PULL_STREAM_BATCH_SIZE).read(body) { batch ->
+                    // Страница deleted не содержит основных списков — архивные записи определяем по Room
+                    val presentIds = if (entity == PULL_ENTITY_DELETED) {
+                        pullApplier.collectRetainedIds(batch.deleted)
+                    } else {
+                        pullApplier.collectPresentIds(batch)
+                    }
+                    reports += pullApplier.apply(batch, presentIds)
+                    stats += calculatePullStats(batch)
+                    iconPacksCount += batch.iconPacks.size
+                    iconsCount += batch.icons.size
+                }
+                
+                // Изменений нет: отметку не сдвигаем, чтобы следующий pull повторил тот же URL
+                // условным запросом (If-None-Match / If-Modified-Since) и получил 304 без тела;
+                // время проверки сохраняем — по нему работает PULL_ENTITY_MIN_INTERVAL_MS
+                if (afterId == null && !page.hasMore && page.counts.values.sum() == 0) {
+                    if (response.isNotModified()) {
+                        Log.d(TAG, "$entity: не изменилось (304), применение пропущено")
+                    }
+                    watermarks.saveChecked(entity, sinceSec, nowMs)
+                    pages++
+                    break
+                }
+                
+                val snapshot = snapshotTimestamp ?: page.timestamp
+                snapshotTimestamp = snapshot
+                val nextAfterId = page.nextAfterId.takeIf { page.hasMore }
+                
+                database.withTransaction {
+                    if (nextAfterId != null) {
+                        pullCheckpointStore.save(SyncPullCheckpoint(sinceSec, snapshot, entity, nextAfterId))
+                    } else {
+                        watermarks.save(entity, snapshot)
+                        watermarks.saveChecked(entity, sinceSec, nowMs)
+                        pullCheckpointStore.clear()
+                    }
+                }
+                PullApplyReport.merge(reports, (System.nanoTime() - pageStarted) / 1_000_000)
+                    .log(TAG, "страница $entity, пачек=${reports.size}")
+                
+                pages++
+                afterId = nextAfterId
+            } while (nextAfterId != null)
+        }
+        
+        if (skipped.isNotEmpty()) {
+            Log.d(TAG, "Пропущены недавно загруженные сущности: $skipped")
+        }
+        // Общий last_sync_timestamp — самая старая из отметок (для режима одним запросом)
+        saveLastSyncTimestamp(PULL_ENTITIES.minOf { watermarks.get(it) })
+        
+        Log.d(TAG, "Постраничный pull завершён: страниц=$pages")
+        
+        if (iconsCount > 0) {
+            downloadThumbnailsAfterPull()
+        }
+        
+        val message = buildPullMessage(stats, iconPacksCount, iconsCount)
+        Log.d(TAG, message)
+        return SyncResult(
+            success = true,
+            message = message,
+            pullStats = stats
+        )
+    }
+    
+    private operator fun SyncPullStats.plus(other: SyncPullStats) = SyncPullStats(
+        clients = clients + other.clients,
+        sites = sites + other.sites,
+        installations = installations + other.installations,
+        components = components + other.components,
+        sessions = sessions + other.sessions,
+        values = values + other.values,
+        templates = templates + other.templates,
+        deleted = deleted + other.deleted
+    )
+    
+    private fun buildPullMessage(stats: SyncPullStats, iconPacksCount: Int, iconsCount: Int): String = buildString {
+        append("Загружено: ")
+        append("клиентов=${stats.clients}, ")
+        append("объектов=${stats.sites}, ")
+        append("установок=${stats.installations}, ")
+        append("компонентов=${stats.components}, ")
+        append("сессий ТО=${stats.sessions}, ")
+        append("значений ТО=${stats.values}, ")
+        append("шаблонов=${stats.templates}, ")
+        if (iconPacksCount > 0 || iconsCount > 0) {
+            append("икон-паков=$iconPacksCount, ")
+            append("иконок=$iconsCount, ")
+        }
+        append("удалено=${stats.deleted}")
+    }
+    
+    private fun pullErrorResult(response: Response<*>): SyncResult {
+        val errorCode = response.code()
+        val errorBody = try {
+            response.errorBody()?.string()
+        } catch (e: Exception) {
+            null
+        }
+        
+        val errorMsg = when (errorCode) {
+            401 -> {
+                Log.e(TAG, "Ошибка 401: Токен недействителен или истек. Тело ошибки: $errorBody")
+                "Токен авторизации недействителен или истек. Необходимо войти в систему заново."
+            }
+            403 -> {
+                Log.e(TAG, "Ошибка 403: Доступ запрещен. Тело ошибки: $errorBody")
+                "Доступ запрещен. Проверьте права доступа."
+            }
+            else -> {
+                Log.e(TAG, "Ошибка получения: код=$errorCode, тело=$errorBody")
+                "Ошибка получения: код $errorCode${if (errorBody != null) " ($errorBody)" else ""}"
+            }
+        }
+        
+        return SyncResult(
+            success = false,
+            message = errorMsg
+        )
+    }
+    
     private suspend fun processPullResponse(response: SyncPullResponse) {
         // Применяем изменения к Room по принципу last-write-wins
+        if (USE_BATCHED_PULL_APPLY) {
+            pullApplier.apply(response).log(TAG, "пакетно")
+        } else {
+            processPullResponseLegacy(response)
+        }
+        
+        if (response.icons.isNotEmpty()) {
+            downloadThumbnailsAfterPull()
+        }
+    }
+    
+    /**
+     * Загружает миниатюры для новых/обновлённых иконок (вне транзакции применения)
+     */
+    private suspend fun downloadThumbnailsAfterPull() {
+        try {
+            val iconRepository = ru.wassertech.data.repository.IconRepository(context)
+            val downloadResult = iconRepository.downloadMissingThumbnails()
+            if (downloadResult.isSuccess) {
+                Log.d(TAG, "Загружено миниатюр: ${downloadResult.getOrNull()}")
+            } else {
+                Log.w(TAG, "Ошибка при загрузке миниатюр: ${downloadResult.exceptionOrNull()?.message}")
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Ошибка при загрузке миниатюр после синхронизации", e)
+            // Не прерываем синхронизацию из-за ошибок загрузки миниатюр
+        }
+    }
+    
+    /**
+     * Построчное применение ответа sync/pull (без общей транзакции).
+     * Оставлено для сравнения скорости с [SyncPullApplier].
+     */
+    private suspend fun processPullResponseLegacy(response: SyncPullResponse) {
+        val started = System.nanoTime()
+        val metrics = mutableListOf<PullApplyMetric>()
         
         // Обрабатываем каждую сущность
-        response.clients.forEach { dto ->
-            applyClientToRoom(dto)
+        metrics += measurePullApply("clients", response.clients.size) {
+            response.clients.forEach { dto -> applyClientToRoom(dto) }
+            response.clients.size
         }
         
-        response.sites.forEach { dto ->
-            applySiteToRoom(dto)
+        metrics += measurePullApply("sites", response.sites.size) {
+            response.sites.forEach { dto -> applySiteToRoom(dto) }
+            response.sites.size
         }
         
-        response.installations.forEach { dto ->
-            applyInstallationToRoom(dto)
+        metrics += measurePullApply("installations", response.installations.size) {
+            response.installations.forEach { dto -> applyInstallationToRoom(dto) }
+            response.installations.size
         }
         
-        response.components.forEach { dto ->
-            applyComponentToRoom(dto)
+        metrics += measurePullApply("components", response.components.size) {
+            response.components.forEach { dto -> applyComponentToRoom(dto) }
+            response.components.size
         }
         
-        response.maintenance_sessions.forEach { dto ->
-            applyMaintenanceSessionToRoom(dto)
+        metrics += measurePullApply("maintenance_sessions", response.maintenance_sessions.size) {
+            response.maintenance_sessions.forEach { dto -> applyMaintenanceSessionToRoom(dto) }
+            response.maintenance_sessions.size
         }
         
-        response.maintenance_values.forEach { dto ->
-            applyMaintenanceValueToRoom(dto)
+        metrics += measurePullApply("maintenance_values", response.maintenance_values.size) {
+            response.maintenance_values.forEach { dto -> applyMaintenanceValueToRoom(dto) }
+            response.maintenance_values.size
         }
         
         // Обрабатываем поля шаблонов компонентов
-        if (response.component_template_fields.isNotEmpty()) {
-            Log.d(TAG, "Получено полей шаблонов компонентов с сервера: ${response.component_template_fields.size}")
-            var appliedCount = 0
-            var skippedCount = 0
-            response.component_template_fields.forEach { dto ->
-                val before = database.componentTemplateFieldsDao().getFieldById(dto.id)
-                applyChecklistFieldToComponentTemplateField(dto)
-                val after = database.componentTemplateFieldsDao().getFieldById(dto.id)
-                if (after != null) {
-                    appliedCount++
-                    if (before == null) {
-                        Log.d(TAG, "  - Создано поле: id=${dto.id}, templateId=${dto.templateId}, label=${dto.label}")
-                    } else {
-                        Log.d(TAG, "  - Обновлено поле: id=${dto.id}, templateId=${dto.templateId}, label=${dto.label}")
-                    }
-                } else {
-                    skippedCount++
-                }
-            }
-            Log.d(TAG, "Обработано полей шаблонов компонентов: применено=$appliedCount, пропущено=$skippedCount")
+        metrics += measurePullApply("component_template_fields", response.component_template_fields.size) {
+            response.component_template_fields.forEach { dto -> applyChecklistFieldToComponentTemplateField(dto) }
+            response.component_template_fields.size
         }
         
         // Обрабатываем шаблоны компонентов
-        if (response.component_templates.isNotEmpty()) {
-            Log.d(TAG, "Получено шаблонов компонентов с сервера: ${response.component_templates.size}")
-            var appliedCount = 0
-            var skippedCount = 0
-            response.component_templates.forEach { dto ->
-                val before = database.componentTemplatesDao().getById(dto.id)
-                applyComponentTemplateToRoom(dto)
-                val after = database.componentTemplatesDao().getById(dto.id)
-                if (after != null) {
-                    appliedCount++
-                    if (before == null) {
-                        Log.d(TAG, "  - Создан шаблон: id=${dto.id}, name=${dto.name}")
-                    } else {
-                        Log.d(TAG, "  - Обновлён шаблон: id=${dto.id}, name=${dto.name}")
-                    }
-                } else {
-                    skippedCount++
-                }
-            }
-            Log.d(TAG, "Обработано шаблонов компонентов: применено=$appliedCount, пропущено=$skippedCount")
+        metrics += measurePullApply("component_templates", response.component_templates.size) {
+            response.component_templates.forEach { dto -> applyComponentTemplateToRoom(dto) }
+            response.component_templates.size
         }
         
         // Обрабатываем паки иконок
-        if (response.iconPacks.isNotEmpty()) {
-            Log.d(TAG, "Получено паков иконок с сервера: ${response.iconPacks.size}")
-            var appliedCount = 0
-            response.iconPacks.forEach { dto ->
-                val entity = dto.toEntity()
-                database.iconPackDao().upsert(entity)
-                appliedCount++
-            }
-            Log.d(TAG, "Обработано паков иконок: применено=$appliedCount")
+        metrics += measurePullApply("icon_packs", response.iconPacks.size) {
+            response.iconPacks.forEach { dto -> database.iconPackDao().upsert(dto.toEntity()) }
+            response.iconPacks.size
         }
         
         // Обрабатываем иконки
-        if (response.icons.isNotEmpty()) {
-            Log.d(TAG, "Получено иконок с сервера: ${response.icons.size}")
+        metrics += measurePullApply("icons", response.icons.size) {
             var appliedCount = 0
-            var skippedCount = 0
             response.icons.forEach { dto ->
                 // Пропускаем иконки без packId
                 if (dto.packId.isNullOrBlank()) {
                     Log.w(TAG, "Пропуск иконки ${dto.id} (${dto.label}): packId отсутствует или пустой")
-                    skippedCount++
                     return@forEach
                 }
                 try {
-                    val entity = dto.toEntity()
-                    database.iconDao().upsert(entity)
+                    database.iconDao().upsert(dto.toEntity())
                     appliedCount++
                 } catch (e: Exception) {
                     Log.e(TAG, "Ошибка при обработке иконки ${dto.id} (${dto.label}): ${e.message}", e)
-                    skippedCount++
-                }
-            }
-            Log.d(TAG, "Обработано иконок: применено=$appliedCount, пропущено=$skippedCount")
-            
-            // Загружаем миниатюры для новых/обновлённых иконок в фоне
-            try {
-                val iconRepository = ru.wassertech.data.repository.IconRepository(context)
-                val downloadResult = iconRepository.downloadMissingThumbnails()
-                if (downloadResult.isSuccess) {
-                    Log.d(TAG, "Загружено миниатюр: ${downloadResult.getOrNull()}")
-                } else {
-                    Log.w(TAG, "Ошибка при загрузке миниатюр: ${downloadResult.exceptionOrNull()?.message}")
                 }
-            } catch (e: Exception) {
-                Log.e(TAG, "Ошибка при загрузке миниатюр после синхронизации", e)
-                // Не прерываем синхронизацию из-за ошибок загрузки миниатюр
             }
+            appliedCount
         }
         
         // Обрабатываем user_membership
-        val userMembershipList = response.userMembership
-        if (userMembershipList != null && userMembershipList.isNotEmpty()) {
-            Log.d(TAG, "Получено user_membership записей с сервера: ${userMembershipList.size}")
+        val userMembershipList = response.userMembership.orEmpty()
+        metrics += measurePullApply("user_membership", userMembershipList.size) {
             var appliedCount = 0
             userMembershipList.forEach { dto ->
                 try {
-                    val entity = dto.toEntity()
-                    database.userMembershipDao().upsert(entity)
+                    database.userMembershipDao().upsert(dto.toEntity())
                     appliedCount++
                 } catch (e: Exception) {
                     Log.e(TAG, "Ошибка при обработке user_membership: userId=${dto.userId}, scope=${dto.scope}, targetId=${dto.targetId}, error=${e.message}", e)
                 }
             }
-            Log.d(TAG, "Обработано user_membership записей: применено=$appliedCount")
+            appliedCount
         }
         
         // Обрабатываем удаления
         // ВАЖНО: обрабатываем удаления ПОСЛЕ обработки основных списков,
         // чтобы не удалить записи, которые просто архивированы (сервер может отправлять их в deleted)
-        if (response.deleted.isNotEmpty()) {
-            val deletedByEntity = response.deleted.groupBy { it.getEntityName() ?: "unknown" }
-            Log.d(TAG, "Получено удалений с сервера: всего=${response.deleted.size}, по сущностям=${deletedByEntity.mapValues { it.value.size }}")
-            
-            // Собираем ID всех записей, которые присутствуют в основных списках
-            val existingIds = mutableSetOf<String>()
-            response.clients.forEach { existingIds.add(it.id) }
-            response.sites.forEach { existingIds.add(it.id) }
-            response.installations.forEach { existingIds.add(it.id) }
-            response.components.forEach { existingIds.add(it.id) }
-            response.maintenance_sessions.forEach { existingIds.add(it.id) }
-            response.maintenance_values.forEach { value ->
-                value.id?.let { id -> existingIds.add(id) }
-            }
-            response.component_templates.forEach { existingIds.add(it.id) }
-            response.component_template_fields.forEach { existingIds.add(it.id) }
-            response.iconPacks.forEach { existingIds.add(it.id) }
-            response.icons.forEach { existingIds.add(it.id) }
-            // Для user_membership используем составной ключ (userId, scope, targetId)
-            // поэтому не добавляем в existingIds
-            
-            var deletedCount = 0
-            var skippedCount = 0
-            response.deleted.forEach { deleted ->
-                val entityName = deleted.getEntityName()
-                val recordId = deleted.recordId
-                
-                // Проверяем, что recordId не пустой
-                if (recordId.isNullOrBlank()) {
-                    Log.w(TAG, "Пропускаем удаление $entityName: пустой id")
-                    skippedCount++
-                    return@forEach
-                }
-                
-                // Проверяем, не присутствует ли запись в основных списках
-                // Если присутствует - это не удаление, а архивирование (сервер отправляет неправильно)
-                if (existingIds.contains(recordId)) {
-                    Log.w(TAG, "Пропущено удаление $entityName/$recordId: запись присутствует в основном списке (вероятно, архивирована, а не удалена). Сервер не должен отправлять архивные записи в секции deleted.")
-                    skippedCount++
-                } else {
-                    // Запись действительно удалена на сервере - удаляем локально
-                    Log.d(TAG, "Обработка удаления $entityName/$recordId: запись отсутствует в основном списке, удаляем локально")
-                    handleDeletedRecord(entityName, recordId)
-                    deletedCount++
-                }
-            }
-            Log.d(TAG, "Обработано удалений локально: $deletedCount, пропущено (присутствуют в основном списке): $skippedCount")
+        metrics += measurePullApply("deleted", response.deleted.size) {
+            pullApplier.applyDeleted(response.deleted, pullApplier.collectPresentIds(response))
         }
+        
+        PullApplyReport(metrics, (System.nanoTime() - started) / 1_000_000).log(TAG, "построчно")
+    }
+    
+    /** since (в секундах) по самой старой отметке — для режимов, запрашивающих все сущности сразу */
+    private suspend fun oldestWatermarkSinceSec(): Long {
+        val oldestMs = PULL_ENTITIES.minOf { watermarks.get(it) }
+        val sinceSec = watermarks.toSinceSec(oldestMs)
+        Log.d(TAG, "Последняя синхронизация (самая старая отметка): ${oldestMs}ms = ${sinceSec}s")
+        return sinceSec
     }
     
-    private suspend fun getLastSyncTimestamp(): Long? {
-        val value = settingsDao.getValueSync(SETTINGS_KEY_LAST_SYNC_TIMESTAMP)
-        return value?.toLongOrNull()
+    /** Сохранить одну отметку для всех сущностей и общий last_sync_timestamp */
+    private suspend fun saveAllWatermarks(timestampMs: Long) {
+        PULL_ENTITIES.forEach { watermarks.save(it, timestampMs) }
+        saveLastSyncTimestamp(timestampMs)
     }
     
     private suspend fun saveLastSyncTimestamp(timestamp: Long) {
@@ -964,11 +1233,10 @@ class SyncEngine(private val context: Context) {
         iconId = iconId
     )
     
-    private suspend fun MaintenanceSessionEntity.toSyncDto(): SyncMaintenanceSessionDto {
-        // Получаем связанные values для этой сессии
-        val values = database.sessionsDao().getValuesForSession(id)
-            .map { it.toSyncDto() }
-        
+    /**
+     * @param values значения сессии для вложенного формата; пустой список — без вложенных values
+     */
+    private fun MaintenanceSessionEntity.toSyncDto(values: List<MaintenanceValueEntity>): SyncMaintenanceSessionDto {
         return SyncMaintenanceSessionDto(
             id = id,
             siteId = siteId,
@@ -983,7 +1251,7 @@ class SyncEngine(private val context: Context) {
             archivedAtEpoch = archivedAtEpoch,
             origin = origin,
             created_by_user_id = createdByUserId,
-            values = values.ifEmpty { null }
+            values = values.map { it.toSyncDto() }.ifEmpty { null }
         )
     }
     
@@ -1180,291 +1448,6 @@ class SyncEngine(private val context: Context) {
         }
     }
     
-    private suspend fun handleDeletedRecord(entity: String?, recordId: String?) {
-        // Защита от null/пустого id
-        if (recordId.isNullOrBlank()) {
-            Log.w(TAG, "Пропускаем удаление $entity: пустой id")
-            return
-        }
-        
-        // Защита от null entity
-        if (entity == null) {
-            Log.w(TAG, "Пропускаем удаление: не удалось определить тип сущности для recordId=$recordId")
-            return
-        }
-        
-        when (entity) {
-            "clients" -> {
-                database.clientDao().deleteClient(recordId)
-                Log.d(TAG, "Удалён клиент: $recordId")
-            }
-            "client_groups" -> {
-                database.clientDao().deleteGroup(recordId)
-                Log.d(TAG, "Удалена группа клиентов: $recordId")
-            }
-            "sites" -> {
-                database.hierarchyDao().deleteSite(recordId)
-                Log.d(TAG, "Удалён объект: $recordId")
-            }
-            "installations" -> {
-                database.hierarchyDao().deleteInstallation(recordId)
-                Log.d(TAG, "Удалена установка: $recordId")
-            }
-            "components" -> {
-                database.hierarchyDao().deleteComponent(recordId)
-                Log.d(TAG, "Удалён компонент: $recordId")
-            }
-            "maintenance_sessions" -> {
-                database.sessionsDao().deleteSession(recordId)
-                Log.d(TAG, "Удалена сессия ТО: $recordId")
-            }
-            "maintenance_values" -> {
-                database.sessionsDao().deleteValue(recordId)
-                Log.d(TAG, "Удалено значение ТО: $recordId")
-            }
-            "component_template_fields" -> {
-                val field = database.componentTemplateFieldsDao().getFieldById(recordId)
-                if (field != null) {
-                    database.componentTemplateFieldsDao().deleteField(recordId)
-                    Log.d(TAG, "Удалено поле шаблона компонента: id=$recordId, templateId=${field.templateId}, label=${field.label}")
-                } else {
-                    Log.w(TAG, "Попытка удалить несуществующее поле шаблона: id=$recordId")
-                }
-            }
-            "component_templates" -> {
-                val template = database.componentTemplatesDao().getById(recordId)
-                if (template != null) {
-                    database.componentTemplatesDao().delete(template)
-                    Log.d(TAG, "Удалён шаблон компонента: id=$recordId, name=${template.name}")
-                } else {
-                    Log.w(TAG, "Попытка удалить несуществующий шаблон компонента: id=$recordId")
-                }
-            }
-            else -> Log.w(TAG, "Неизвестная сущность для удаления: $entity")
-        }
-    }
-    
-    // Вспомогательные методы для преобразования DTO -> Entity
-    private fun SyncClientDto.toEntity() = ClientEntity(
-        id = id,
-        name = name,
-        legalName = legalName,
-        contactPerson = contactPerson,
-        phone = phone,
-        phone2 = phone2,
-        email = email,
-        addressFull = addressFull,
-        city = city,
-        region = region,
-        country = country,
-        postalCode = postalCode,
-        latitude = latitude,
-        longitude = longitude,
-        taxId = taxId,
-        vatNumber = vatNumber,
-        externalId = externalId,
-        tagsJson = tagsJson,
-        notes = notes,
-        isCorporate = isCorporate,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        deletedAtEpoch = null,
-        dirtyFlag = false, // При получении с сервера - не грязная
-        syncStatus = SyncStatus.SYNCED.value,
-        sortOrder = sortOrder,
-        clientGroupId = clientGroupId
-    )
-    
-    private fun SyncSiteDto.toEntity() = SiteEntity(
-        id = id,
-        clientId = clientId,
-        name = name,
-        address = address,
-        orderIndex = orderIndex,
-        iconId = iconId,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value,
-        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-        createdByUserId = created_by_user_id
-    )
-    
-    private fun SyncInstallationDto.toEntity() = InstallationEntity(
-        id = id,
-        siteId = siteId,
-        name = name,
-        orderIndex = orderIndex,
-        iconId = iconId,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value,
-        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-        createdByUserId = created_by_user_id
-    )
-    
-    private fun SyncComponentDto.toEntity() = ComponentEntity(
-        id = id,
-        installationId = installationId,
-        name = name,
-        type = ComponentType.valueOf(type),
-        orderIndex = orderIndex,
-        templateId = templateId,
-        iconId = iconId,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value,
-        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-        createdByUserId = created_by_user_id
-    )
-    
-    private fun SyncMaintenanceSessionDto.toEntity() = MaintenanceSessionEntity(
-        id = id,
-        siteId = siteId,
-        installationId = installationId,
-        startedAtEpoch = startedAtEpoch,
-        finishedAtEpoch = finishedAtEpoch,
-        technician = technician,
-        notes = notes,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value,
-        synced = true,
-        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-        createdByUserId = created_by_user_id
-    )
-    
-    private fun SyncMaintenanceValueDto.toEntity(): MaintenanceValueEntity {
-        val valueId = id ?: java.util.UUID.randomUUID().toString()
-        // Преобразуем valueNumber в valueText, если есть
-        val finalValueText = valueText ?: valueNumber?.toString()
-        return MaintenanceValueEntity(
-            id = valueId,
-            sessionId = sessionId,
-            siteId = siteId,
-            installationId = installationId,
-            componentId = componentId,
-            fieldKey = fieldKey,
-            valueText = finalValueText,
-            valueBool = valueBool,
-            createdAtEpoch = createdAtEpoch ?: 0,
-            updatedAtEpoch = updatedAtEpoch ?: 0,
-            origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-            createdByUserId = created_by_user_id,
-            isArchived = false,
-            archivedAtEpoch = null,
-            deletedAtEpoch = null,
-            dirtyFlag = false,
-            syncStatus = SyncStatus.SYNCED.value
-        )
-    }
-    
-    private fun SyncChecklistTemplateDto.toEntity() = ChecklistTemplateEntity(
-        id = id,
-        title = title ?: "", // Используем пустую строку, если title null
-        componentType = ComponentType.valueOf(componentType),
-        componentTemplateId = componentTemplateId,
-        createdAtEpoch = createdAtEpoch ?: 0,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value,
-        sortOrder = sortOrder
-    )
-    
-    private fun SyncChecklistFieldDto.toEntity() = ChecklistFieldEntity(
-        id = id,
-        templateId = templateId,
-        key = key,
-        label = label ?: "",
-        type = FieldType.valueOf(type),
-        unit = unit,
-        min = minValue,
-        max = maxValue,
-        isForMaintenance = isForMaintenance,
-        createdAtEpoch = createdAtEpoch ?: 0,
-        updatedAtEpoch = updatedAtEpoch ?: 0,
-        isArchived = false,
-        archivedAtEpoch = null,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value
-    )
-    
-    private fun SyncComponentTemplateDto.toEntity() = ComponentTemplateEntity(
-        id = id,
-        name = name,
-        category = category,
-        sortOrder = sortOrder,
-        defaultParamsJson = defaultParamsJson,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value,
-        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-        createdByUserId = created_by_user_id
-    )
-    
-    private fun SyncIconPackDto.toEntity() = IconPackEntity(
-        id = id,
-        code = code,
-        name = name,
-        description = description,
-        folder = folder,
-        isBuiltin = isBuiltin,
-        isPremium = isPremium,
-        origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-        createdByUserId = createdByUserId,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch
-    )
-    
-    private fun SyncIconDto.toEntity(): IconEntity {
-        // packId должен быть не null, проверка уже выполнена в processPullResponse
-        val packIdValue = packId ?: throw IllegalArgumentException("packId не может быть null для иконки $id")
-        
-        // entityType может быть null на сервере, используем "ANY" по умолчанию
-        val entityTypeValue = entityType ?: "ANY"
-        
-        return IconEntity(
-            id = id,
-            packId = packIdValue,
-            code = code,
-            label = label,
-            entityType = entityTypeValue,
-            imageUrl = imageUrl,
-            thumbnailUrl = thumbnailUrl,
-            thumbnailLocalPath = null, // Будет заполнено после загрузки миниатюры
-            androidResName = androidResName,
-            isActive = isActive,
-            origin = origin ?: "CRM", // По умолчанию CRM для старых данных
-            createdByUserId = createdByUserId,
-            createdAtEpoch = createdAtEpoch,
-            updatedAtEpoch = updatedAtEpoch
-        )
-    }
-    
     /**
      * Маппинг ComponentTemplateFieldEntity → SyncChecklistFieldDto (для обратной совместимости с API)
      */
@@ -1483,34 +1466,6 @@ class SyncEngine(private val context: Context) {
         createdAtEpoch = createdAtEpoch.takeIf { it > 0 },
         updatedAtEpoch = updatedAtEpoch.takeIf { it > 0 }
     )
-    
-    /**
-     * Маппинг SyncChecklistFieldDto → ComponentTemplateFieldEntity (при получении с сервера)
-     */
-    private fun SyncChecklistFieldDto.toComponentTemplateFieldEntity(componentTemplateId: String) = ComponentTemplateFieldEntity(
-        id = id,
-        templateId = componentTemplateId,
-        key = key,
-        label = label ?: "",
-        type = FieldType.valueOf(type),
-        unit = unit,
-        isCharacteristic = !isForMaintenance, // Маппинг обратный: isForMaintenance = false → isCharacteristic = true
-        isRequired = required,
-        defaultValueText = null,
-        defaultValueNumber = null,
-        defaultValueBool = null,
-        min = minValue,
-        max = maxValue,
-        sortOrder = sortOrder,
-        createdAtEpoch = createdAtEpoch ?: 0,
-        updatedAtEpoch = updatedAtEpoch ?: 0,
-        isArchived = false,
-        archivedAtEpoch = null,
-        deletedAtEpoch = null,
-        dirtyFlag = false,
-        syncStatus = SyncStatus.SYNCED.value
-    )
-    
     private fun calculatePushStats(response: SyncPushResponse): SyncPushStats {
         // Упрощённая статистика: считаем только ошибки как пропущенные
         // inserted и updated считаем как 0, так как мы не парсим result
@@ -1560,18 +1515,6 @@ class SyncEngine(private val context: Context) {
         archivedAtEpoch = archivedAtEpoch
     )
     
-    private fun ru.wassertech.core.network.dto.sync.SyncUserMembershipDto.toEntity() = UserMembershipEntity(
-        userId = userId,
-        scope = scope,
-        targetId = targetId,
-        createdAtEpoch = createdAtEpoch,
-        updatedAtEpoch = updatedAtEpoch,
-        isArchived = isArchived,
-        archivedAtEpoch = archivedAtEpoch,
-        dirtyFlag = false, // При получении с сервера - не dirty
-        syncStatus = SyncStatus.SYNCED.value
-    )
-    
     /**
      * Синхронизация отчётов с сервером.
      * Отчёты синхронизируются через отдельный API GET /reports с инкрементальной загрузкой.
@@ -1609,6 +1552,11 @@ class SyncEngine(private val context: Context) {
                     return@withContext Result.failure(error)
                 }
                 
+                if (response.isNotModified()) {
+                    Log.d(TAG, "Список отчётов не изменился (304)")
+                    return@withContext Result.success(0)
+                }
+                
                 val reportsDto = response.body()
                 if (reportsDto == null) {
                     Log.w(TAG, "Пустой ответ при получении отчётов")
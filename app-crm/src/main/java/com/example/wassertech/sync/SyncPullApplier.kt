@@ -0,0 +1,560 @@
+package ru.wassertech.sync
+
+import android.util.Log
+import androidx.room.withTransaction
+import ru.wassertech.core.network.dto.*
+import ru.wassertech.core.network.dto.sync.SyncUserMembershipDto
+import ru.wassertech.data.AppDatabase
+import ru.wassertech.data.entities.*
+
+/**
+ * Метрика применения одной сущности из sync/pull.
+ */
+data class PullApplyMetric(
+    val entity: String,
+    val received: Int,
+    val written: Int,
+    val elapsedNanos: Long
+) {
+    val elapsedMs: Long get() = elapsedNanos / 1_000_000
+
+    /** Скорость применения (строк в секунду) по количеству полученных записей */
+    val rowsPerSecond: Long get() = if (received == 0) 0 else received * 1_000_000_000L / elapsedNanos.coerceAtLeast(1)
+}
+
+/**
+ * Сводка применения ответа sync/pull: метрики по сущностям и общее время.
+ */
+data class PullApplyReport(
+    val metrics: List<PullApplyMetric>,
+    val totalElapsedMs: Long
+) {
+    fun log(tag: String, mode: String) {
+        Log.d(tag, "Применение sync/pull ($mode): ${totalElapsedMs}ms")
+        metrics.filter { it.received > 0 }.forEach { m ->
+            Log.d(tag, "  ${m.entity}: получено=${m.received}, записано=${m.written}, " +
+                    "время=${m.elapsedMs}ms, скорость=${m.rowsPerSecond} строк/с")
+        }
+    }
+
+    companion object {
+        /**
+         * Суммирует метрики нескольких применений (например, пачек потокового pull) по сущностям.
+         */
+        fun merge(reports: List<PullApplyReport>, totalElapsedMs: Long): PullApplyReport {
+            val merged = reports.flatMap { it.metrics }
+                .groupBy { it.entity }
+                .map { (entity, items) ->
+                    PullApplyMetric(
+                        entity = entity,
+                        received = items.sumOf { it.received },
+                        written = items.sumOf { it.written },
+                        elapsedNanos = items.sumOf { it.elapsedNanos }
+                    )
+                }
+            return PullApplyReport(merged, totalElapsedMs)
+        }
+    }
+}
+
+/**
+ * Замеряет время применения одной сущности.
+ * [block] возвращает количество записанных строк.
+ */
+internal inline fun measurePullApply(entity: String, received: Int, block: () -> Int): PullApplyMetric {
+    val started = System.nanoTime()
+    val written = block()
+    return PullApplyMetric(entity, received, written, System.nanoTime() - started)
+}
+
+/**
+ * Пакетное применение ответа sync/pull к Room.
+ *
+ * В отличие от построчного применения в SyncEngine:
+ * - весь ответ применяется в одной транзакции (одна фиксация и одна волна инвалидаций Flow);
+ * - существующие записи каждой таблицы загружаются одним запросом `IN (...)` (с разбиением на чанки);
+ * - новые и более свежие записи сохраняются списочными upsert-методами DAO.
+ *
+ * Как и при построчном применении, некорректная запись пропускается с записью в лог:
+ * проверка и маппинг выполняются построчно до открытия транзакции.
+ * Правило разрешения конфликтов то же — last-write-wins по updatedAtEpoch.
+ */
+class SyncPullApplier(private val database: AppDatabase) {
+
+    companion object {
+        private const val TAG = "SyncPullApplier"
+
+        /** SQLite ограничивает число параметров запроса (999), поэтому IN (...) разбиваем на чанки */
+        private const val IN_QUERY_CHUNK_SIZE = 500
+    }
+
+    /**
+     * Ответ sync/pull, проверенный и преобразованный в Entity до открытия транзакции ([prepare]).
+     * Записи, которые не удалось преобразовать, уже отброшены.
+     */
+    private class PreparedPull(
+        val clients: List<ClientEntity>,
+        val sites: List<SiteEntity>,
+        val installations: List<InstallationEntity>,
+        val components: List<ComponentEntity>,
+        val sessions: List<PreparedSession>,
+        val values: List<PreparedValue>,
+        val templateFields: List<ComponentTemplateFieldEntity>,
+        val templates: List<ComponentTemplateEntity>,
+        val iconPacks: List<IconPackEntity>,
+        val icons: List<IconEntity>,
+        val memberships: List<UserMembershipEntity>
+    )
+
+    /** Сессия ТО с вложенными значениями */
+    private class PreparedSession(
+        val entity: MaintenanceSessionEntity,
+        val values: List<PreparedValue>
+    )
+
+    /**
+     * Значение ТО: [hasId] и [updatedAtEpoch] — из DTO (значение без id всегда новое,
+     * без updatedAtEpoch — не перезаписывает существующее)
+     */
+    private class PreparedValue(
+        val hasId: Boolean,
+        val updatedAtEpoch: Long?,
+        val entity: MaintenanceValueEntity
+    )
+
+    /**
+     * Применяет весь ответ в одной транзакции.
+     *
+     * Проверка и преобразование DTO → Entity выполняются до транзакции построчно:
+     * некорректная запись пропускается с записью в лог и не откатывает остальной ответ.
+     *
+     * @param presentIds ID записей, присутствующих в основных списках (защита от удаления архивных записей).
+     *   Для страницы deleted постраничного pull — см. [collectRetainedIds].
+     * @param inTransaction Дополнительные записи, фиксируемые атомарно вместе с ответом (например, контрольная точка)
+     */
+    suspend fun apply(
+        response: SyncPullResponse,
+        presentIds: Set<String> = collectPresentIds(response),
+        inTransaction: suspend () -> Unit = {}
+    ): PullApplyReport {
+        val started = System.nanoTime()
+        val prepared = prepare(response)
+        val metrics = database.withTransaction {
+            applyInTransaction(response, prepared, presentIds).also { inTransaction() }
+        }
+        return PullApplyReport(metrics, (System.nanoTime() - started) / 1_000_000)
+    }
+
+    private fun prepare(response: SyncPullResponse) = PreparedPull(
+        clients = prepareRows("clients", response.clients, { it.id }) { requireId(it.id); it.toEntity() },
+        sites = prepareRows("sites", response.sites, { it.id }) { requireId(it.id); it.toEntity() },
+        installations = prepareRows("installations", response.installations, { it.id }) {
+            requireId(it.id)
+            it.toEntity()
+        },
+        components = prepareRows("components", response.components, { it.id }) { requireId(it.id); it.toEntity() },
+        sessions = prepareRows("maintenance_sessions", response.maintenance_sessions, { it.id }) {
+            requireId(it.id)
+            PreparedSession(it.toEntity(), prepareValues(it.values.orEmpty()))
+        },
+        values = prepareValues(response.maintenance_values),
+        templateFields = prepareRows("component_template_fields", response.component_template_fields, { it.id }) {
+            requireId(it.id)
+            requireId(it.templateId)
+            it.toComponentTemplateFieldEntity(it.templateId)
+        },
+        templates = prepareRows("component_templates", response.component_templates, { it.id }) {
+            requireId(it.id)
+            it.toEntity()
+        },
+        iconPacks = prepareRows("icon_packs", response.iconPacks, { it.id }) { requireId(it.id); it.toEntity() },
+        icons = prepareRows("icons", response.icons, { "${it.id} (${it.label})" }) {
+            requireId(it.id)
+            require(!it.packId.isNullOrBlank()) { "packId отсутствует или пустой" }
+            it.toEntity()
+        },
+        memberships = prepareRows(
+            "user_membership",
+            response.userMembership.orEmpty(),
+            { "userId=${it.userId}, scope=${it.scope}, targetId=${it.targetId}" }
+        ) { it.toEntity() }
+    )
+
+    private fun prepareValues(dtos: List<SyncMaintenanceValueDto>): List<PreparedValue> =
+        prepareRows("maintenance_values", dtos, { it.id ?: "без id" }) {
+            PreparedValue(hasId = it.id != null, updatedAtEpoch = it.updatedAtEpoch, entity = it.toEntity())
+        }
+
+    private suspend fun applyInTransaction(
+        response: SyncPullResponse,
+        prepared: PreparedPull,
+        presentIds: Set<String>
+    ): List<PullApplyMetric> {
+        val metrics = mutableListOf<PullApplyMetric>()
+        metrics += measurePullApply("clients", response.clients.size) { applyClients(prepared.clients) }
+        metrics += measurePullApply("sites", response.sites.size) { applySites(prepared.sites) }
+        metrics += measurePullApply("installations", response.installations.size) {
+            applyInstallations(prepared.installations)
+        }
+        metrics += measurePullApply("components", response.components.size) { applyComponents(prepared.components) }
+        metrics += measurePullApply("maintenance_sessions", response.maintenance_sessions.size) {
+            applySessions(prepared.sessions)
+        }
+        metrics += measurePullApply("maintenance_values", response.maintenance_values.size) {
+            applyValues(prepared.values)
+        }
+        // Поля применяются до шаблонов — тот же порядок, что и в построчном применении
+        metrics += measurePullApply("component_template_fields", response.component_template_fields.size) {
+            applyComponentTemplateFields(prepared.templateFields)
+        }
+        metrics += measurePullApply("component_templates", response.component_templates.size) {
+            applyComponentTemplates(prepared.templates)
+        }
+        metrics += measurePullApply("icon_packs", response.iconPacks.size) { applyIconPacks(prepared.iconPacks) }
+        metrics += measurePullApply("icons", response.icons.size) { applyIcons(prepared.icons) }
+        metrics += measurePullApply("user_membership", response.userMembership.orEmpty().size) {
+            applyUserMemberships(prepared.memberships)
+        }
+        // Удаления — после основных списков, чтобы не удалить архивированные записи
+        metrics += measurePullApply("deleted", response.deleted.size) {
+            applyDeleted(response.deleted, presentIds)
+        }
+        return metrics
+    }
+
+    private suspend fun applyClients(entities: List<ClientEntity>): Int {
+        if (entities.isEmpty()) return 0
+        val latest = latestById(entities, { it.id }, { it.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) { database.clientDao().getClientsByIdsNow(it) }
+        val toWrite = latest.values
+            .filter { entity -> existing[entity.id]?.let { entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (toWrite.isNotEmpty()) database.clientDao().upsertClients(toWrite)
+        return toWrite.size
+    }
+
+    private suspend fun applySites(entities: List<SiteEntity>): Int {
+        if (entities.isEmpty()) return 0
+        val latest = latestById(entities, { it.id }, { it.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) { database.hierarchyDao().getSitesByIdsNow(it) }
+        val toWrite = latest.values
+            .filter { entity -> existing[entity.id]?.let { entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (toWrite.isNotEmpty()) database.hierarchyDao().upsertSites(toWrite)
+        return toWrite.size
+    }
+
+    private suspend fun applyInstallations(entities: List<InstallationEntity>): Int {
+        if (entities.isEmpty()) return 0
+        val latest = latestById(entities, { it.id }, { it.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) { database.hierarchyDao().getInstallationsByIdsNow(it) }
+        val toWrite = latest.values
+            .filter { entity -> existing[entity.id]?.let { entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (toWrite.isNotEmpty()) database.hierarchyDao().upsertInstallations(toWrite)
+        return toWrite.size
+    }
+
+    private suspend fun applyComponents(entities: List<ComponentEntity>): Int {
+        if (entities.isEmpty()) return 0
+        val latest = latestById(entities, { it.id }, { it.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) { database.hierarchyDao().getComponentsByIdsNow(it) }
+        val toWrite = latest.values
+            .filter { entity -> existing[entity.id]?.let { entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (toWrite.isNotEmpty()) database.hierarchyDao().upsertComponents(toWrite)
+        return toWrite.size
+    }
+
+    /**
+     * Применяет сессии ТО. Вложенные values применяются только для принятых (новых или более свежих) сессий.
+     */
+    private suspend fun applySessions(sessions: List<PreparedSession>): Int {
+        if (sessions.isEmpty()) return 0
+        val latest = latestById(sessions, { it.entity.id }, { it.entity.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) { database.sessionsDao().getSessionsByIdsNow(it) }
+        val accepted = latest.values
+            .filter { session -> existing[session.entity.id]?.let { session.entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (accepted.isNotEmpty()) {
+            database.sessionsDao().upsertSessions(accepted.map { it.entity })
+            applyValues(accepted.flatMap { it.values })
+        }
+        return accepted.size
+    }
+
+    private suspend fun applyValues(values: List<PreparedValue>): Int {
+        if (values.isEmpty()) return 0
+        // Значения без id всегда вставляются как новые
+        val (withId, withoutId) = values.partition { it.hasId }
+        val latest = latestById(withId, { it.entity.id }, { it.updatedAtEpoch ?: 0 })
+        val existing = loadExisting(latest.keys, { it.id }) { database.sessionsDao().getValuesByIdsNow(it) }
+        val toWrite = latest.values
+            .filter { value ->
+                val current = existing[value.entity.id] ?: return@filter true
+                val valueUpdatedAt = value.updatedAtEpoch
+                valueUpdatedAt != null && valueUpdatedAt > current.updatedAtEpoch
+            }
+            .map { it.entity } + withoutId.map { it.entity }
+        if (toWrite.isNotEmpty()) database.sessionsDao().insertValues(toWrite)
+        return toWrite.size
+    }
+
+    private suspend fun applyComponentTemplateFields(entities: List<ComponentTemplateFieldEntity>): Int {
+        if (entities.isEmpty()) return 0
+        val latest = latestById(entities, { it.id }, { it.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) {
+            database.componentTemplateFieldsDao().getFieldsByIds(it)
+        }
+        val toWrite = latest.values
+            .filter { entity -> existing[entity.id]?.let { entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (toWrite.isNotEmpty()) database.componentTemplateFieldsDao().upsertFields(toWrite)
+        return toWrite.size
+    }
+
+    private suspend fun applyComponentTemplates(entities: List<ComponentTemplateEntity>): Int {
+        if (entities.isEmpty()) return 0
+        val latest = latestById(entities, { it.id }, { it.updatedAtEpoch })
+        val existing = loadExisting(latest.keys, { it.id }) { database.componentTemplatesDao().getByIds(it) }
+        val toWrite = latest.values
+            .filter { entity -> existing[entity.id]?.let { entity.updatedAtEpoch > it.updatedAtEpoch } ?: true }
+        if (toWrite.isNotEmpty()) database.componentTemplatesDao().upsertAll(toWrite)
+        return toWrite.size
+    }
+
+    /** Паки иконок — справочник, перезаписываются без сравнения версий */
+    private suspend fun applyIconPacks(entities: List<IconPackEntity>): Int {
+        if (entities.isEmpty()) return 0
+        database.iconPackDao().upsertAll(entities)
+        return entities.size
+    }
+
+    /** Иконки — справочник, перезаписываются без сравнения версий (иконки без packId отброшены в [prepare]) */
+    private suspend fun applyIcons(entities: List<IconEntity>): Int {
+        if (entities.isEmpty()) return 0
+        // Локальный путь к загруженному изображению не приходит с сервера — сохраняем его,
+        // пока URL изображения не изменился
+        val existing = loadExisting(entities.map { it.id }.toSet(), { it.id }) { database.iconDao().getByIds(it) }
+        val toWrite = entities.map { entity ->
+            val current = existing[entity.id]
+            if (current?.localImagePath != null && current.imageUrl == entity.imageUrl) {
+                entity.copy(localImagePath = current.localImagePath)
+            } else {
+                entity
+            }
+        }
+        database.iconDao().upsertAll(toWrite)
+        return toWrite.size
+    }
+
+    private suspend fun applyUserMemberships(entities: List<UserMembershipEntity>): Int {
+        if (entities.isEmpty()) return 0
+        database.userMembershipDao().upsertAll(entities)
+        return entities.size
+    }
+
+    /**
+     * Применяет удаления с сервера.
+     * Записи, присутствующие в основных списках ответа ([presentIds]), не удаляются:
+     * сервер может ошибочно отправлять архивированные записи в секции deleted.
+     */
+    suspend fun applyDeleted(deleted: List<DeletedRecordDto>, presentIds: Set<String>): Int {
+        var deletedCount = 0
+        var skippedCount = 0
+        deleted.forEach { record ->
+            val entityName = record.getEntityName()
+            val recordId = record.recordId
+            if (recordId.isNullOrBlank()) {
+                Log.w(TAG, "Пропускаем удаление $entityName: пустой id")
+                skippedCount++
+            } else if (presentIds.contains(recordId)) {
+                Log.w(TAG, "Пропущено удаление $entityName/$recordId: запись присутствует в основном списке (вероятно, архивирована, а не удалена)")
+                skippedCount++
+            } else {
+                deleteRecord(entityName, recordId)
+                deletedCount++
+            }
+        }
+        if (deleted.isNotEmpty()) {
+            Log.d(TAG, "Обработано удалений локально: $deletedCount, пропущено: $skippedCount")
+        }
+        return deletedCount
+    }
+
+    /**
+     * ID всех записей, присутствующих в основных списках ответа.
+     * Для user_membership используется составной ключ, поэтому он не учитывается.
+     */
+    fun collectPresentIds(response: SyncPullResponse): Set<String> {
+        val ids = HashSet<String>()
+        response.clients.forEach { ids.add(it.id) }
+        response.sites.forEach { ids.add(it.id) }
+        response.installations.forEach { ids.add(it.id) }
+        response.components.forEach { ids.add(it.id) }
+        response.maintenance_sessions.forEach { ids.add(it.id) }
+        response.maintenance_values.forEach { value -> value.id?.let { ids.add(it) } }
+        response.component_templates.forEach { ids.add(it.id) }
+        response.component_template_fields.forEach { ids.add(it.id) }
+        response.iconPacks.forEach { ids.add(it.id) }
+        response.icons.forEach { ids.add(it.id) }
+        return ids
+    }
+
+    /**
+     * ID записей из [deleted], которые локально нужно сохранить: архивированные или изменённые
+     * на сервере позже отметки удаления. В постраничном pull секция deleted приходит отдельной
+     * страницей без основных списков, поэтому защита от удаления архивных записей строится по Room
+     * (основные списки к этому моменту уже применены).
+     */
+    suspend fun collectRetainedIds(deleted: List<DeletedRecordDto>): Set<String> {
+        val ids = HashSet<String>()
+        deleted.filter { !it.recordId.isNullOrBlank() }
+            .groupBy { it.getEntityName() }
+            .forEach { (entity, records) ->
+                val deletedAt = records.associate { it.recordId to it.deletedAtEpoch }
+                fun retain(id: String, isArchived: Boolean, updatedAtEpoch: Long) {
+                    val deletedAtEpoch = deletedAt[id] ?: return
+                    if (isArchived || updatedAtEpoch > deletedAtEpoch) ids.add(id)
+                }
+                when (entity) {
+                    "clients" -> loadExisting(deletedAt.keys, { it.id }) { database.clientDao().getClientsByIdsNow(it) }
+                        .values.forEach { retain(it.id, it.isArchived, it.updatedAtEpoch) }
+                    "sites" -> loadExisting(deletedAt.keys, { it.id }) { database.hierarchyDao().getSitesByIdsNow(it) }
+                        .values.forEach { retain(it.id, it.isArchived, it.updatedAtEpoch) }
+                    "installations" -> loadExisting(deletedAt.keys, { it.id }) { database.hierarchyDao().getInstallationsByIdsNow(it) }
+                        .values.forEach { retain(it.id, it.isArchived, it.updatedAtEpoch) }
+                    "components" -> loadExisting(deletedAt.keys, { it.id }) { database.hierarchyDao().getComponentsByIdsNow(it) }
+                        .values.forEach { retain(it.id, it.isArchived, it.updatedAtEpoch) }
+                }
+            }
+        return ids
+    }
+
+    /**
+     * Удаляет одну запись локально по имени сущности.
+     */
+    suspend fun deleteRecord(entity: String?, recordId: String?) {
+        // Защита от null/пустого id
+        if (recordId.isNullOrBlank()) {
+            Log.w(TAG, "Пропускаем удаление $entity: пустой id")
+            return
+        }
+
+        // Защита от null entity
+        if (entity == null) {
+            Log.w(TAG, "Пропускаем удаление: не удалось определить тип сущности для recordId=$recordId")
+            return
+        }
+
+        when (entity) {
+            "clients" -> {
+                database.clientDao().deleteClient(recordId)
+                Log.d(TAG, "Удалён клиент: $recordId")
+            }
+            "client_groups" -> {
+                database.clientDao().deleteGroup(recordId)
+                Log.d(TAG, "Удалена группа клиентов: $recordId")
+            }
+            "sites" -> {
+                database.hierarchyDao().deleteSite(recordId)
+                Log.d(TAG, "Удалён объект: $recordId")
+            }
+            "installations" -> {
+                database.hierarchyDao().deleteInstallation(recordId)
+                Log.d(TAG, "Удалена установка: $recordId")
+            }
+            "components" -> {
+                database.hierarchyDao().deleteComponent(recordId)
+                Log.d(TAG, "Удалён компонент: $recordId")
+            }
+            "maintenance_sessions" -> {
+                database.sessionsDao().deleteSession(recordId)
+                Log.d(TAG, "Удалена сессия ТО: $recordId")
+            }
+            "maintenance_values" -> {
+                database.sessionsDao().deleteValue(recordId)
+                Log.d(TAG, "Удалено значение ТО: $recordId")
+            }
+            "component_template_fields" -> {
+                val field = database.componentTemplateFieldsDao().getFieldById(recordId)
+                if (field != null) {
+                    database.componentTemplateFieldsDao().deleteField(recordId)
+                    Log.d(TAG, "Удалено поле шаблона компонента: id=$recordId, templateId=${field.templateId}, label=${field.label}")
+                } else {
+                    Log.w(TAG, "Попытка удалить несуществующее поле шаблона: id=$recordId")
+                }
+            }
+            "component_templates" -> {
+                val template = database.componentTemplatesDao().getById(recordId)
+                if (template != null) {
+                    database.componentTemplatesDao().delete(template)
+                    Log.d(TAG, "Удалён шаблон компонента: id=$recordId, name=${template.name}")
+                } else {
+                    Log.w(TAG, "Попытка удалить несуществующий шаблон компонента: id=$recordId")
+                }
+            }
+            else -> Log.w(TAG, "Неизвестная сущность для удаления: $entity")
+        }
+    }
+
+    /**
+     * Проверяет и преобразует записи одной сущности построчно (вне транзакции).
+     * Запись, на которой проверка или маппинг бросили исключение, пропускается с записью в лог.
+     */
+    private inline fun <D, E> prepareRows(
+        entity: String,
+        dtos: List<D>,
+        describe: (D) -> String,
+        map: (D) -> E
+    ): List<E> {
+        if (dtos.isEmpty()) return emptyList()
+        val result = ArrayList<E>(dtos.size)
+        var skipped = 0
+        dtos.forEach { dto ->
+            try {
+                result += map(dto)
+            } catch (e: Exception) {
+                skipped++
+                Log.e(TAG, "Пропуск записи $entity ${describe(dto)}: ${e.message}", e)
+            }
+        }
+        if (skipped > 0) {
+            Log.w(TAG, "$entity: пропущено некорректных записей $skipped из ${dtos.size}")
+        }
+        return result
+    }
+
+    /** Gson не проверяет обязательные поля DTO: пустой id приходит как null */
+    private fun requireId(id: String?) {
+        require(!id.isNullOrBlank()) { "пустой id" }
+    }
+
+    /**
+     * Схлопывает дубликаты по id, оставляя самую свежую версию записи.
+     */
+    private inline fun <D> latestById(
+        dtos: List<D>,
+        id: (D) -> String,
+        updatedAt: (D) -> Long
+    ): Map<String, D> {
+        val result = LinkedHashMap<String, D>(dtos.size)
+        dtos.forEach { dto ->
+            val key = id(dto)
+            val current = result[key]
+            if (current == null || updatedAt(dto) >= updatedAt(current)) {
+                result[key] = dto
+            }
+        }
+        return result
+    }
+
+    /**
+     * Загружает существующие строки таблицы по набору id запросами IN (...) с разбиением на чанки.
+     */
+    private suspend inline fun <E> loadExisting(
+        ids: Collection<String>,
+        key: (E) -> String,
+        query: (List<String>) -> List<E>
+    ): Map<String, E> {
+        val result = HashMap<String, E>(ids.size)
+        ids.chunked(IN_QUERY_CHUNK_SIZE).forEach { chunk ->
+            query(chunk).forEach { result[key(it)] = it }
+        }
+        return result
+    }
+}
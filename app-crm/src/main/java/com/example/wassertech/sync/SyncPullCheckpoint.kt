@@ -0,0 +1,59 @@
+package ru.wassertech.sync
+
+import org.json.JSONObject
+import ru.wassertech.data.dao.SettingsDao
+import ru.wassertech.data.entities.SettingsEntity
+
+/**
+ * Контрольная точка постраничного sync/pull.
+ * Сохраняется в settings вместе с каждой зафиксированной страницей,
+ * чтобы прерванная синхронизация продолжилась с места остановки, а не заново с `since`.
+ */
+data class SyncPullCheckpoint(
+    /** since (в секундах), с которым начат проход */
+    val since: Long,
+    /** timestamp сервера из первой страницы (мс) — станет новым last_sync_timestamp после последней страницы */
+    val snapshotTimestamp: Long,
+    /** Сущность, с которой нужно продолжить */
+    val entity: String,
+    /** Курсор внутри сущности (next_after_id), null — с начала сущности */
+    val afterId: String?
+)
+
+/**
+ * Хранение [SyncPullCheckpoint] в таблице settings (одна запись в JSON).
+ */
+class SyncPullCheckpointStore(private val settingsDao: SettingsDao) {
+
+    companion object {
+        private const val SETTINGS_KEY_PULL_CHECKPOINT = "sync_pull_checkpoint"
+    }
+
+    suspend fun load(): SyncPullCheckpoint? {
+        val raw = settingsDao.getValueSync(SETTINGS_KEY_PULL_CHECKPOINT) ?: return null
+        return try {
+            val json = JSONObject(raw)
+            SyncPullCheckpoint(
+                since = json.getLong("since"),
+                snapshotTimestamp = json.getLong("snapshotTimestamp"),
+                entity = json.getString("entity"),
+                afterId = if (json.isNull("afterId")) null else json.getString("afterId")
+            )
+        } catch (e: Exception) {
+            null
+        }
+    }
+
+    suspend fun save(checkpoint: SyncPullCheckpoint) {
+        val json = JSONObject()
+            .put("since", checkpoint.since)
+            .put("snapshotTimestamp", checkpoint.snapshotTimestamp)
+            .put("entity", checkpoint.entity)
+            .put("afterId", checkpoint.afterId ?: JSONObject.NULL)
+        settingsDao.setValue(SettingsEntity(key = SETTINGS_KEY_PULL_CHECKPOINT, value = json.toString()))
+    }
+
+    suspend fun clear() {
+        settingsDao.delete(SETTINGS_KEY_PULL_CHECKPOINT)
+    }
+}
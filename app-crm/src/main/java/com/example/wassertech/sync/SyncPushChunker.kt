@@ -0,0 +1,84 @@
+package ru.wassertech.sync
+
+import com.google.gson.Gson
+import ru.wassertech.core.network.dto.*
+import ru.wassertech.core.network.dto.sync.SyncUserMembershipDto
+
+/**
+ * Разбиение sync/push на части ограниченного размера.
+ *
+ * Записи раскладываются в порядке зависимостей (шаблоны → клиенты → объекты → установки →
+ * компоненты → сессии ТО → значения ТО → user_membership → удаления), поэтому родительские
+ * записи всегда уходят в той же или более ранней части, чем дочерние. Часть закрывается,
+ * когда следующая запись превысила бы [maxRows] строк или [maxBytes] байт JSON.
+ * Запись, которая одна больше [maxBytes], отправляется отдельной частью.
+ */
+class SyncPushChunker(
+    private val maxRows: Int,
+    private val maxBytes: Long,
+    private val gson: Gson = Gson()
+) {
+
+    fun split(request: SyncPushRequest): List<SyncPushRequest> {
+        val chunks = mutableListOf<SyncPushRequest>()
+        var current = ChunkBuilder()
+        var rows = 0
+        var bytes = 0L
+
+        fun <T : Any> addAll(items: List<T>, target: (ChunkBuilder) -> MutableList<T>) {
+            for (item in items) {
+                val size = gson.toJson(item).toByteArray(Charsets.UTF_8).size.toLong()
+                if (rows > 0 && (rows + 1 > maxRows || bytes + size > maxBytes)) {
+                    chunks.add(current.build(request.valuesEncoding))
+                    current = ChunkBuilder()
+                    rows = 0
+                    bytes = 0L
+                }
+                target(current).add(item)
+                rows++
+                bytes += size
+            }
+        }
+
+        addAll(request.component_templates) { it.componentTemplates }
+        addAll(request.component_template_fields) { it.componentTemplateFields }
+        addAll(request.clients) { it.clients }
+        addAll(request.sites) { it.sites }
+        addAll(request.installations) { it.installations }
+        addAll(request.components) { it.components }
+        addAll(request.maintenance_sessions) { it.sessions }
+        addAll(request.maintenance_values) { it.values }
+        addAll(request.userMembership) { it.userMembership }
+        addAll(request.deleted) { it.deleted }
+
+        if (rows > 0) chunks.add(current.build(request.valuesEncoding))
+        return chunks
+    }
+
+    private class ChunkBuilder {
+        val clients = mutableListOf<SyncClientDto>()
+        val sites = mutableListOf<SyncSiteDto>()
+        val installations = mutableListOf<SyncInstallationDto>()
+        val components = mutableListOf<SyncComponentDto>()
+        val sessions = mutableListOf<SyncMaintenanceSessionDto>()
+        val values = mutableListOf<SyncMaintenanceValueDto>()
+        val componentTemplates = mutableListOf<SyncComponentTemplateDto>()
+        val componentTemplateFields = mutableListOf<SyncChecklistFieldDto>()
+        val userMembership = mutableListOf<SyncUserMembershipDto>()
+        val deleted = mutableListOf<DeletedRecordDto>()
+
+        fun build(valuesEncoding: String?) = SyncPushRequest(
+            clients = clients,
+            sites = sites,
+            installations = installations,
+            components = components,
+            maintenance_sessions = sessions,
+            maintenance_values = values,
+            component_templates = componentTemplates,
+            component_template_fields = componentTemplateFields,
+            userMembership = userMembership,
+            deleted = deleted,
+            valuesEncoding = valuesEncoding
+        )
+    }
+}
@@ -0,0 +1,235 @@
+package ru.wassertech.sync
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.util.Log
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.OutOfQuotaPolicy
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkInfo
+import androidx.work.WorkManager
+import androidx.work.workDataOf
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.withContext
+import ru.wassertech.core.ui.sync.SyncError
+import ru.wassertech.core.ui.sync.SyncErrorType
+import ru.wassertech.core.ui.sync.SyncStep
+import ru.wassertech.core.ui.sync.SyncUiState
+import java.util.UUID
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Планировщик фоновой синхронизации на WorkManager.
+ *
+ * Все разовые запросы (полная синхронизация и срочный push) идут через одну уникальную задачу
+ * [WORK_SYNC]: пока следующая задача ещё не начала выполняться, новые запросы объединяются с ней,
+ * поэтому одновременно выполняется не больше одного обмена, а в очереди ждёт не больше одного.
+ * Объединённый режим хранится в SharedPreferences по id задачи: он переживает перезапуск процесса
+ * и повторы задачи с backoff. Ожидает ли задача запуска, решается по её [WorkInfo], а не по тому,
+ * стартовала ли она: задача, завершённая без запуска (за упавшей в цепочке APPEND), больше не
+ * принимает запросы, и следующий запрос ставит новую.
+ * Периодическая задача только ставит такой же разовый запрос. Задачи выполняются при наличии сети
+ * и повторяются с экспоненциальным backoff.
+ * Состояние задач отдаётся в виде [SyncUiState] для неблокирующего индикатора.
+ */
+object SyncScheduler {
+
+    private const val TAG = "SyncScheduler"
+
+    /** Тег всех задач синхронизации (для наблюдения за состоянием) */
+    private const val WORK_TAG = "sync"
+
+    private const val WORK_PERIODIC = "sync_periodic"
+    private const val WORK_SYNC = "sync_now"
+    private const val WORK_REPORT_UPLOAD = "report_upload"
+    private const val WORK_REPORT_UPLOAD_RETRY = "report_upload_retry"
+
+    private const val PERIODIC_INTERVAL_HOURS = 2L
+    private const val BACKOFF_DELAY_SECONDS = 30L
+
+    private const val PREFS_NAME = "sync_scheduler"
+    private const val KEY_PENDING_WORK_ID = "pending_work_id"
+    private const val KEY_MODE_PREFIX = "mode_"
+
+    private val networkConstraints = Constraints.Builder()
+        .setRequiredNetworkType(NetworkType.CONNECTED)
+        .build()
+
+    /**
+     * Запросы и старт задач обрабатываются последовательно в одном потоке: проверка состояния
+     * ожидающей задачи и запись объединённого режима не перемежаются с чтением режима воркером.
+     */
+    private val serialExecutor = Executors.newSingleThreadExecutor()
+    private val serialDispatcher = serialExecutor.asCoroutineDispatcher()
+
+    /**
+     * Периодическая полная синхронизация. Безопасно вызывать при каждом запуске и входе:
+     * уже запланированная задача не сдвигается.
+     */
+    fun schedulePeriodic(context: Context) {
+        val request = PeriodicWorkRequestBuilder<SyncWorker>(PERIODIC_INTERVAL_HOURS, TimeUnit.HOURS)
+            .setConstraints(
+                Constraints.Builder()
+                    .setRequiredNetworkType(NetworkType.CONNECTED)
+                    .setRequiresBatteryNotLow(true)
+                    .build()
+            )
+            .setInputData(workDataOf(SyncWorker.KEY_MODE to SyncWorker.MODE_PERIODIC))
+            .addTag(WORK_TAG)
+            .build()
+        WorkManager.getInstance(context)
+            // UPDATE: расписание сохраняется, а параметры ранее запланированной задачи обновляются
+            .enqueueUniquePeriodicWork(WORK_PERIODIC, ExistingPeriodicWorkPolicy.UPDATE, request)
+        Log.d(TAG, "Периодическая синхронизация запланирована: каждые $PERIODIC_INTERVAL_HOURS ч")
+    }
+
+    /**
+     * Разовая полная синхронизация (push + pull), например при запуске приложения.
+     * Если задача ещё ждёт выполнения — запрос объединяется с ней.
+     */
+    fun requestSync(context: Context) {
+        request(context, SyncWorker.MODE_FULL)
+    }
+
+    /**
+     * Срочная отправка локальных изменений (после сохранения сессии ТО).
+     * Если обмен уже идёт — задача ставится за ним, чтобы изменения, сохранённые во время обмена, тоже ушли.
+     */
+    fun requestPush(context: Context) {
+        request(context, SyncWorker.MODE_PUSH)
+        Log.d(TAG, "Запрошена срочная отправка изменений")
+    }
+
+    private fun request(context: Context, mode: String) {
+        val appContext = context.applicationContext
+        serialExecutor.execute {
+            val workManager = WorkManager.getInstance(appContext)
+            val prefs = prefs(appContext)
+            val pendingId = prefs.getString(KEY_PENDING_WORK_ID, null)?.let(UUID::fromString)
+            if (pendingId != null) {
+                val state = workManager.getWorkInfoById(pendingId).get()?.state
+                if (state == WorkInfo.State.ENQUEUED || state == WorkInfo.State.BLOCKED) {
+                    // Задача ещё не стартовала — заберёт объединённый режим при запуске
+                    val merged = SyncWorker.mergeModes(prefs.getString(modeKey(pendingId), null), mode)
+                    prefs.edit().putString(modeKey(pendingId), merged).apply()
+                    return@execute
+                }
+                // Задача уже выполняется или завершилась (в т.ч. без запуска — за упавшей в цепочке)
+                val edit = prefs.edit().remove(KEY_PENDING_WORK_ID)
+                if (state == null || state.isFinished) edit.remove(modeKey(pendingId))
+                edit.apply()
+            }
+            val request = OneTimeWorkRequestBuilder<SyncWorker>()
+                .setConstraints(networkConstraints)
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .setInputData(workDataOf(SyncWorker.KEY_MODE to mode))
+                .addTag(WORK_TAG)
+                .build()
+            prefs.edit()
+                .putString(KEY_PENDING_WORK_ID, request.id.toString())
+                .putString(modeKey(request.id), mode)
+                .apply()
+            workManager.enqueueUniqueWork(WORK_SYNC, ExistingWorkPolicy.APPEND_OR_REPLACE, request)
+        }
+    }
+
+    /**
+     * Режим запуска задачи [workId] (вызывает [SyncWorker] в начале каждой попытки):
+     * объединённый с запросами, поступившими до её старта. Режим сохраняется до [finishRun],
+     * поэтому повтор после Result.retry() выполняет тот же объединённый режим.
+     * После первого старта новые запросы ставят следующую задачу.
+     */
+    internal suspend fun runMode(context: Context, workId: UUID, requested: String): String =
+        withContext(serialDispatcher) {
+            val prefs = prefs(context)
+            val edit = prefs.edit()
+            if (prefs.getString(KEY_PENDING_WORK_ID, null) == workId.toString()) {
+                edit.remove(KEY_PENDING_WORK_ID)
+            }
+            val mode = SyncWorker.mergeModes(prefs.getString(modeKey(workId), null), requested)
+            edit.putString(modeKey(workId), mode).apply()
+            mode
+        }
+
+    /** Задача [workId] завершилась (успешно или окончательной ошибкой) — её режим больше не нужен */
+    internal fun finishRun(context: Context, workId: UUID) {
+        prefs(context).edit().remove(modeKey(workId)).apply()
+    }
+
+    private fun prefs(context: Context): SharedPreferences =
+        context.applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+    private fun modeKey(workId: UUID) = KEY_MODE_PREFIX + workId
+
+    /**
+     * Отправка PDF-отчётов из очереди ([ReportUploadWorker]).
+     * Без задержки — сразу; если отправка уже идёт, новая ставится за ней, чтобы отчёты,
+     * добавленные во время отправки, тоже ушли. С задержкой [delayMs] — отложенный повтор после ошибок
+     * (отдельная задача: новый повтор заменяет ранее запланированный).
+     * Отдельные имена задач — отправка отчётов не отображается как синхронизация.
+     */
+    fun requestReportUpload(context: Context, delayMs: Long = 0L) {
+        val delayed = delayMs > 0L
+        val request = OneTimeWorkRequestBuilder<ReportUploadWorker>()
+            .setConstraints(networkConstraints)
+            .setInitialDelay(delayMs.coerceAtLeast(0L), TimeUnit.MILLISECONDS)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+            .build()
+        WorkManager.getInstance(context).enqueueUniqueWork(
+            if (delayed) WORK_REPORT_UPLOAD_RETRY else WORK_REPORT_UPLOAD,
+            if (delayed) ExistingWorkPolicy.REPLACE else ExistingWorkPolicy.APPEND_OR_REPLACE,
+            request
+        )
+        Log.d(TAG, if (delayed) "Повтор отправки отчётов через ${delayMs / 1000} с" else "Запрошена отправка отчётов")
+    }
+
+    /** Отменить все задачи синхронизации и отправки отчётов (при выходе из аккаунта) */
+    fun cancelAll(context: Context) {
+        val appContext = context.applicationContext
+        serialExecutor.execute { prefs(appContext).edit().clear().apply() }
+        WorkManager.getInstance(context).cancelAllWorkByTag(WORK_TAG)
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_REPORT_UPLOAD)
+        WorkManager.getInstance(context).cancelUniqueWork(WORK_REPORT_UPLOAD_RETRY)
+    }
+
+    /**
+     * Состояние фоновой синхронизации для UI (неблокирующее).
+     * Выполняющаяся задача — isRunning с текущим шагом; ошибка — error.
+     * Смотрим только цепочку [WORK_SYNC]: новый запрос после ошибки заменяет её (APPEND_OR_REPLACE),
+     * поэтому FAILED в цепочке — всегда результат последнего обмена.
+     */
+    fun observeUiState(context: Context): Flow<SyncUiState> =
+        WorkManager.getInstance(context)
+            .getWorkInfosForUniqueWorkFlow(WORK_SYNC)
+            .map { infos -> infos.toSyncUiState() }
+
+    private fun List<WorkInfo>.toSyncUiState(): SyncUiState {
+        firstOrNull { it.state == WorkInfo.State.RUNNING }?.let { running ->
+            val step = running.progress.getString(SyncWorker.KEY_STEP)
+                ?.let { name -> SyncStep.values().firstOrNull { it.name == name } }
+            return SyncUiState(
+                isRunning = true,
+                isBlocking = false,
+                currentStep = step
+            )
+        }
+        val failed = firstOrNull { it.state == WorkInfo.State.FAILED }
+        if (failed != null) {
+            val message = failed.outputData.getString(SyncWorker.KEY_MESSAGE) ?: "Ошибка фоновой синхронизации"
+            return SyncUiState(
+                isBlocking = false,
+                error = SyncError(type = SyncErrorType.Unknown, message = message)
+            )
+        }
+        return SyncUiState(isBlocking = false)
+    }
+}
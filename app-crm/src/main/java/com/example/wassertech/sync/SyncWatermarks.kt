@@ -0,0 +1,70 @@
+package ru.wassertech.sync
+
+import android.util.Log
+import ru.wassertech.data.dao.SettingsDao
+import ru.wassertech.data.entities.SettingsEntity
+
+/**
+ * Отметки delta-синхронизации по сущностям: для каждой сущности sync/pull свой since.
+ *
+ * Хранятся в settings под ключами `sync_watermark_<entity>` (timestamp сервера в мс).
+ * Пока отметки для сущности нет, используется прежний общий last_sync_timestamp,
+ * поэтому после обновления приложения полной перезагрузки не происходит.
+ * Значение 0 означает «загрузить сущность заново».
+ *
+ * Отдельно (ключи `sync_checked_<entity>`) хранится последняя завершённая проверка сущности —
+ * since запроса и время по часам устройства. Она сдвигается и тогда, когда изменений нет
+ * (отметка в этом случае остаётся прежней, чтобы запрос повторялся условным).
+ */
+class SyncWatermarkStore(
+    private val settingsDao: SettingsDao,
+    private val legacyKey: String
+) {
+
+    companion object {
+        private const val TAG = "SyncWatermarkStore"
+        private const val KEY_PREFIX = "sync_watermark_"
+        private const val CHECKED_KEY_PREFIX = "sync_checked_"
+
+        /** Допустимое опережение часов сервера; отметка дальше в будущем считается повреждённой */
+        private const val MAX_CLOCK_SKEW_MS = 86_400_000L
+    }
+
+    /** Отметка сущности в мс; 0 — загрузить с начала */
+    suspend fun get(entity: String): Long {
+        val raw = settingsDao.getValueSync(KEY_PREFIX + entity) ?: settingsDao.getValueSync(legacyKey)
+        val value = raw?.toLongOrNull() ?: 0L
+        if (value > System.currentTimeMillis() + MAX_CLOCK_SKEW_MS) {
+            Log.w(TAG, "Некорректная отметка $entity: ${value}ms, загружаем сущность заново")
+            save(entity, 0L)
+            return 0L
+        }
+        return value
+    }
+
+    suspend fun save(entity: String, timestampMs: Long) {
+        settingsDao.setValue(SettingsEntity(key = KEY_PREFIX + entity, value = timestampMs.toString()))
+    }
+
+    /**
+     * Завершённая проверка сущности
+     *
+     * @param sinceSec since запроса, ответ на который применён полностью
+     * @param checkedAtMs время проверки по часам устройства
+     */
+    data class Checked(val sinceSec: Long, val checkedAtMs: Long)
+
+    suspend fun getChecked(entity: String): Checked? {
+        val parts = settingsDao.getValueSync(CHECKED_KEY_PREFIX + entity)?.split(':') ?: return null
+        val sinceSec = parts.getOrNull(0)?.toLongOrNull() ?: return null
+        val checkedAtMs = parts.getOrNull(1)?.toLongOrNull() ?: return null
+        return Checked(sinceSec, checkedAtMs)
+    }
+
+    suspend fun saveChecked(entity: String, sinceSec: Long, checkedAtMs: Long) {
+        settingsDao.setValue(SettingsEntity(key = CHECKED_KEY_PREFIX + entity, value = "$sinceSec:$checkedAtMs"))
+    }
+
+    /** since для запроса (в секундах); backend требует since > 0 */
+    fun toSinceSec(timestampMs: Long): Long = if (timestampMs <= 0L) 1L else timestampMs / 1000
+}
@@ -0,0 +1,127 @@
+package ru.wassertech.sync
+
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.content.Context
+import android.content.pm.ServiceInfo
+import android.os.Build
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import androidx.work.CoroutineWorker
+import androidx.work.ForegroundInfo
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import ru.wassertech.core.network.HttpClientRegistry
+import ru.wassertech.core.ui.sync.SyncStep
+
+/**
+ * Фоновая синхронизация через WorkManager (см. [SyncScheduler]).
+ *
+ * Режим [MODE_FULL] — push, затем pull (как [SyncHelper.createSyncFunction]);
+ * [MODE_PUSH] — только отправка локальных изменений (после сохранения ТО);
+ * [MODE_PERIODIC] — периодический запуск, который только ставит разовую полную синхронизацию.
+ * Режим, запрошенный до старта задачи, объединяется с режимом задачи ([SyncScheduler.runMode])
+ * и сохраняется для повторов с backoff до окончательного результата.
+ * Текущий шаг публикуется в progress ([KEY_STEP]), сообщение результата — в output ([KEY_MESSAGE]).
+ */
+class SyncWorker(
+    appContext: Context,
+    params: WorkerParameters
+) : CoroutineWorker(appContext, params) {
+
+    companion object {
+        private const val TAG = "SyncWorker"
+
+        const val KEY_MODE = "mode"
+        const val KEY_STEP = "step"
+        const val KEY_MESSAGE = "message"
+
+        const val MODE_FULL = "full"
+        const val MODE_PUSH = "push"
+        const val MODE_PERIODIC = "periodic"
+
+        /** Объединение запросов: полная синхронизация включает push */
+        fun mergeModes(a: String?, b: String): String =
+            if (a == MODE_FULL || b == MODE_FULL) MODE_FULL else b
+
+        /** После стольких неудачных попыток задача завершается ошибкой, а не уходит в backoff */
+        private const val MAX_ATTEMPTS = 5
+
+        private const val NOTIFICATION_CHANNEL_ID = "sync"
+        private const val NOTIFICATION_ID = 1001
+    }
+
+    override suspend fun doWork(): Result {
+        val requested = inputData.getString(KEY_MODE) ?: MODE_FULL
+        if (requested == MODE_PERIODIC) {
+            SyncScheduler.requestSync(applicationContext)
+            return Result.success()
+        }
+        val mode = SyncScheduler.runMode(applicationContext, id, requested)
+        // Процесс мог быть запущен WorkManager'ом без MainActivity
+        HttpClientRegistry.installCache(applicationContext)
+        Log.d(TAG, "Фоновая синхронизация: mode=$mode, попытка=${runAttemptCount + 1}")
+
+        val result = try {
+            if (mode == MODE_PUSH) {
+                setProgress(workDataOf(KEY_STEP to SyncStep.PUSH_CLIENTS.name))
+                SyncEngine(applicationContext).syncPush().let { it.success to it.message }
+            } else {
+                SyncHelper.createSyncFunction(applicationContext).invoke { step ->
+                    setProgressAsync(workDataOf(KEY_STEP to step.name))
+                }.let { it.success to it.message }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Ошибка фоновой синхронизации", e)
+            false to (e.message ?: "Неизвестная ошибка")
+        }
+        val (success, message) = result
+
+        return when {
+            success -> {
+                Log.d(TAG, "Фоновая синхронизация завершена: $message")
+                SyncScheduler.finishRun(applicationContext, id)
+                Result.success(workDataOf(KEY_MESSAGE to message))
+            }
+            isAuthError(message) || runAttemptCount + 1 >= MAX_ATTEMPTS -> {
+                // Повтор не поможет без нового входа (или попытки исчерпаны)
+                Log.w(TAG, "Фоновая синхронизация не удалась: $message")
+                SyncScheduler.finishRun(applicationContext, id)
+                Result.failure(workDataOf(KEY_MESSAGE to message))
+            }
+            else -> {
+                Log.w(TAG, "Фоновая синхронизация не удалась, повтор с backoff: $message")
+                Result.retry()
+            }
+        }
+    }
+
+    /**
+     * Нужен для expedited-задач на Android < 12: там они выполняются как foreground service.
+     */
+    override suspend fun getForegroundInfo(): ForegroundInfo {
+        val manager = applicationContext.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            manager.createNotificationChannel(
+                NotificationChannel(NOTIFICATION_CHANNEL_ID, "Синхронизация", NotificationManager.IMPORTANCE_LOW)
+            )
+        }
+        val notification = NotificationCompat.Builder(applicationContext, NOTIFICATION_CHANNEL_ID)
+            .setSmallIcon(android.R.drawable.stat_notify_sync)
+            .setContentTitle("Синхронизация")
+            .setContentText("Отправка изменений на сервер")
+            .setOngoing(true)
+            .build()
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ForegroundInfo(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC)
+        } else {
+            ForegroundInfo(NOTIFICATION_ID, notification)
+        }
+    }
+
+    /** Ошибки авторизации (те же признаки, что в SyncOrchestrator) */
+    private fun isAuthError(message: String): Boolean =
+        message.contains("401") || message.contains("403") ||
+            message.contains("токен", ignoreCase = true) ||
+            message.contains("доступ запрещен", ignoreCase = true)
+}
@@ -132,9 +132,9 @@ fun SiteRowWithDrag(
         // Отображаем иконку из БД или дефолтную
         val context = LocalContext.current
         val iconRepository = remember { ru.wassertech.data.repository.IconRepository(context) }
-        val localImagePath by remember(icon?.id) {
+        val localImagePath by remember(icon?.id, icon?.localImagePath) {
             kotlinx.coroutines.flow.flow {
-                val path = icon?.id?.let { iconRepository.getLocalIconPath(it) }
+                val path = icon?.let { iconRepository.getLocalIconPath(it) }
                 emit(path)
             }
         }.collectAsState(initial = null)
@@ -275,9 +275,9 @@ fun InstallationRowWithDrag(
             // Отображаем иконку из БД или дефолтную
             val context = LocalContext.current
             val iconRepository = remember { ru.wassertech.data.repository.IconRepository(context) }
-            val localImagePath by remember(icon?.id) {
+            val localImagePath by remember(icon?.id, icon?.localImagePath) {
                 kotlinx.coroutines.flow.flow {
-                    val path = icon?.id?.let { iconRepository.getLocalIconPath(it) }
+                    val path = icon?.let { iconRepository.getLocalIconPath(it) }
                     emit(path)
                 }
             }.collectAsState(initial = null)
@@ -407,9 +407,9 @@ fun ComponentsScreen(
                             // Иконка установки из БД
                             val installationIcon by vm.icon(installation?.iconId).collectAsState(initial = null)
                             val iconRepository = remember { ru.wassertech.data.repository.IconRepository(context) }
-                            val installationIconLocalPath by remember(installationIcon?.id) {
+                            val installationIconLocalPath by remember(installationIcon?.id, installationIcon?.localImagePath) {
                                 kotlinx.coroutines.flow.flow {
-                                    val path = installationIcon?.id?.let { iconRepository.getLocalIconPath(it) }
+                                    val path = installationIcon?.let { iconRepository.getLocalIconPath(it) }
                                     emit(path)
                                 }
                             }.collectAsState(initial = null)
@@ -797,9 +797,9 @@ private fun ComponentRowWithEdit(
         leadingIcon = {
             val context = LocalContext.current
             val iconRepository = remember { ru.wassertech.data.repository.IconRepository(context) }
-            val componentIconLocalPath by remember(icon?.id) {
+            val componentIconLocalPath by remember(icon?.id, icon?.localImagePath) {
                 kotlinx.coroutines.flow.flow {
-                    val path = icon?.id?.let { iconRepository.getLocalIconPath(it) }
+                    val path = icon?.let { iconRepository.getLocalIconPath(it) }
                     emit(path)
                 }
             }.collectAsState(initial = null)
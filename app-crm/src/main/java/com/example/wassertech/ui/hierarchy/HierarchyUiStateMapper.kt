@@ -21,7 +21,7 @@ object HierarchyUiStateMapper {
         iconRepository: IconRepository,
         icon: IconEntity? = null
     ): SiteItemUi {
-        val localImagePath = icon?.id?.let { 
+        val localImagePath = icon?.let { 
             withContext(Dispatchers.IO) { 
                 iconRepository.getLocalIconPath(it) 
             } 
@@ -54,7 +54,7 @@ object HierarchyUiStateMapper {
         iconRepository: IconRepository,
         icon: IconEntity? = null
     ): InstallationItemUi {
-        val localImagePath = icon?.id?.let { 
+        val localImagePath = icon?.let { 
             withContext(Dispatchers.IO) { 
                 iconRepository.getLocalIconPath(it) 
             } 
@@ -92,7 +92,7 @@ object HierarchyUiStateMapper {
         sensorCode: String? = null, // Код датчика для SENSOR компонентов
         temperatureValue: Double? = null // Последнее значение температуры
     ): ComponentItemUi {
-        val localImagePath = icon?.id?.let { 
+        val localImagePath = icon?.let { 
             withContext(Dispatchers.IO) { 
                 iconRepository.getLocalIconPath(it) 
             } 
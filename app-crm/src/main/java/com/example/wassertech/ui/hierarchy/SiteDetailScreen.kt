@@ -169,9 +169,9 @@ fun SiteDetailScreen(
                         }
                         // Логирование параметров перед передачей в IconImage
                         val iconRepository = remember { ru.wassertech.data.repository.IconRepository(context) }
-                        val localImagePath by remember(siteIcon?.id) {
+                        val localImagePath by remember(siteIcon?.id, siteIcon?.localImagePath) {
                             kotlinx.coroutines.flow.flow {
-                                val path = siteIcon?.id?.let { iconRepository.getLocalIconPath(it) }
+                                val path = siteIcon?.let { iconRepository.getLocalIconPath(it) }
                                 emit(path)
                             }
                         }.collectAsState(initial = null)
@@ -396,9 +396,9 @@ private fun InstallationRowWithEdit(
         leadingIcon = {
             val context = LocalContext.current
             val iconRepository = remember { ru.wassertech.data.repository.IconRepository(context) }
-            val installationIconLocalPath by remember(icon?.id) {
+            val installationIconLocalPath by remember(icon?.id, icon?.localImagePath) {
                 kotlinx.coroutines.flow.flow {
-                    val path = icon?.id?.let { iconRepository.getLocalIconPath(it) }
+                    val path = icon?.let { iconRepository.getLocalIconPath(it) }
                     emit(path)
                 }
             }.collectAsState(initial = null)
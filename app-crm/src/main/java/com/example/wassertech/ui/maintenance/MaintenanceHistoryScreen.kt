@@ -33,6 +33,8 @@ import androidx.compose.ui.unit.dp
 import ru.wassertech.data.AppDatabase
 import ru.wassertech.data.entities.MaintenanceSessionEntity
 import ru.wassertech.sync.SafeDeletionHelper
+import ru.wassertech.report.ReportBatchQueue
+import ru.wassertech.ui.reports.ReportBatchProgressBanner
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.withContext
 import kotlinx.coroutines.Dispatchers
@@ -72,6 +74,10 @@ fun MaintenanceHistoryScreen(
     var showDeleteDialog by remember { mutableStateOf(false) }
     val scope = rememberCoroutineScope()
     val snackbarHostState = remember { SnackbarHostState() }
+    // Продолжаем прерванную пакетную генерацию отчётов
+    LaunchedEffect(Unit) {
+        (context as? android.app.Activity)?.let { ReportBatchQueue.resume(it) }
+    }
     LaunchedEffect(sessions) {
         withContext(Dispatchers.IO) {
             val result = sessions.map { s ->
@@ -102,19 +108,46 @@ fun MaintenanceHistoryScreen(
         snackbarHost = { SnackbarHost(hostState = snackbarHostState) },
         floatingActionButton = {
             if (isEditing && selectedSessions.isNotEmpty()) {
-                // Красный FAB для удаления выбранных записей
-                FloatingActionButton(
-                    onClick = { showDeleteDialog = true },
-                    containerColor = Color(0xFFD32F2F), // Красный цвет
-                    contentColor = Color.White,
-                    shape = CircleShape,
-                    modifier = Modifier.size(56.dp)
-                ) {
-                    Icon(
-                        imageVector = ru.wassertech.core.ui.theme.DeleteIcon,
-                        contentDescription = "Удалить выбранные",
-                        modifier = Modifier.size(28.dp)
-                    )
+                Column(verticalArrangement = Arrangement.spacedBy(12.dp)) {
+                    // Чёрный FAB для пакетной генерации отчётов по выбранным записям
+                    FloatingActionButton(
+                        onClick = {
+                            val activity = context as? android.app.Activity ?: return@FloatingActionButton
+                            val ids = selectedSessions.toList()
+                            scope.launch {
+                                ReportBatchQueue.enqueue(activity, ids)
+                                selectedSessions = emptySet()
+                                snackbarHostState.showSnackbar(
+                                    message = "Отчётов в очереди: ${ids.size}",
+                                    duration = SnackbarDuration.Short
+                                )
+                            }
+                        },
+                        containerColor = Color(0xFF1E1E1E), // Чёрный цвет
+                        contentColor = Color.White,
+                        shape = CircleShape,
+                        modifier = Modifier.size(56.dp)
+                    ) {
+                        Icon(
+                            painter = painterResource(R.drawable.document_pdf),
+                            contentDescription = "Создать отчёты по выбранным",
+                            modifier = Modifier.size(28.dp)
+                        )
+                    }
+                    // Красный FAB для удаления выбранных записей
+                    FloatingActionButton(
+                        onClick = { showDeleteDialog = true },
+                        containerColor = Color(0xFFD32F2F), // Красный цвет
+                        contentColor = Color.White,
+                        shape = CircleShape,
+                        modifier = Modifier.size(56.dp)
+                    ) {
+                        Icon(
+                            imageVector = ru.wassertech.core.ui.theme.DeleteIcon,
+                            contentDescription = "Удалить выбранные",
+                            modifier = Modifier.size(28.dp)
+                        )
+                    }
                 }
             } else if (!isEditing && selectedSessions.isEmpty()) {
                 // Чёрный FAB для отчётов (только вне режима редактирования)
@@ -142,6 +175,7 @@ fun MaintenanceHistoryScreen(
                 .padding(bottom = padding.calculateBottomPadding())
                 .padding(horizontal = padding.calculateStartPadding(layoutDirection))
         ) {
+            ReportBatchProgressBanner(Modifier.padding(horizontal = 12.dp, vertical = 8.dp))
             if (sessions.isEmpty()) {
                 Box(Modifier.fillMaxSize(), contentAlignment = Alignment.Center) {
                     Text("Записей ТО пока нет")
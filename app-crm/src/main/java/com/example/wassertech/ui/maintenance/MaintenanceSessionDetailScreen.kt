@@ -33,8 +33,10 @@ import java.io.File
 import java.text.SimpleDateFormat
 import java.util.*
 import ru.wassertech.feature.reports.ReportAssembler
+import ru.wassertech.report.RoomReportDataSource
 import ru.wassertech.feature.reports.HtmlTemplateEngine
 import ru.wassertech.feature.reports.PdfExporter
+import ru.wassertech.feature.reports.ReportWebViewRenderer
 import ru.wassertech.feature.reports.ShareUtils
 import ru.wassertech.repository.ReportsRepository
 import android.util.Log;
@@ -64,6 +66,11 @@ fun MaintenanceSessionDetailScreen(
     var exporting by remember { mutableStateOf(false) }
     val snackbarHostState = remember { SnackbarHostState() }
 
+    // Прогреваем WebView для PDF заранее, пока пользователь смотрит отчёт
+    LaunchedEffect(Unit) {
+        ReportWebViewRenderer.warmUp(context, "templates/maintenance_v3.html")
+    }
+
     LaunchedEffect(sessionId) {
         withContext(Dispatchers.IO) {
             val s = db.sessionsDao().getSessionById(sessionId)
@@ -153,7 +160,7 @@ fun MaintenanceSessionDetailScreen(
                 Log.d("PDF", "Assembling report DTO...")
                 val dto = withContext(Dispatchers.IO) {
                     val appDb = AppDatabase.getInstance(context)
-                    ReportAssembler.assemble(appDb, context, sessionId)
+                    ReportAssembler.assemble(RoomReportDataSource(appDb), context, sessionId)
                 }
                 Log.d("PDF", "Report DTO assembled successfully, reportNumber: ${dto.reportNumber}")
 
@@ -210,31 +217,18 @@ fun MaintenanceSessionDetailScreen(
                     duration = SnackbarDuration.Short
                 )
                 
-                // Пытаемся загрузить отчёт на сервер (в фоне, не блокируя UX)
-                Log.d("PDF", "Attempting to upload report to server...")
+                // Ставим отчёт в очередь отправки на сервер (отправляется в фоне с повторами)
+                Log.d("PDF", "Enqueueing report upload...")
                 try {
-                    val reportsRepository = ReportsRepository(context)
-                    val uploadResult = reportsRepository.uploadReportForSession(
+                    val queued = ReportsRepository(context).enqueueReportUpload(
                         sessionId = sessionId,
                         pdfFile = out,
                         fileName = fileName
                     )
-                    
-                    uploadResult.onSuccess { reportEntity ->
-                        Log.d("PDF", "Report uploaded successfully: id=${reportEntity.id}, fileUrl=${reportEntity.fileUrl}")
-                        // Показываем ненавязчивое сообщение об успешной загрузке
-                        snackbarHostState.showSnackbar(
-                            "Отчёт отправлен на сервер",
-                            duration = SnackbarDuration.Short
-                        )
-                    }.onFailure { error ->
-                        Log.w("PDF", "Failed to upload report to server", error)
-                        // Не показываем ошибку пользователю - PDF уже сохранён локально
-                        // Это не критическая ошибка, можно работать дальше
-                    }
+                    Log.d("PDF", if (queued) "Report queued for upload" else "Report unchanged, upload skipped")
                 } catch (e: Exception) {
-                    Log.w("PDF", "Exception while uploading report", e)
-                    // Игнорируем ошибки загрузки - PDF уже есть локально
+                    Log.w("PDF", "Exception while enqueueing report upload", e)
+                    // Игнорируем ошибки постановки в очередь - PDF уже есть локально
                 }
             } catch (t: Throwable) {
                 Log.e("PDF", "Error creating PDF", t)
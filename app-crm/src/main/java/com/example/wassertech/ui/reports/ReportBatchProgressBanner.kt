@@ -0,0 +1,70 @@
+package ru.wassertech.ui.reports
+
+import android.app.Activity
+import androidx.compose.foundation.layout.*
+import androidx.compose.material3.*
+import androidx.compose.runtime.*
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.unit.dp
+import kotlinx.coroutines.launch
+import ru.wassertech.report.ReportBatchQueue
+
+/**
+ * Прогресс пакетной генерации отчётов.
+ * Показывается, пока пакет выполняется, либо если в последнем пакете есть ошибки:
+ * тогда ошибочные задания можно повторить или убрать.
+ */
+@Composable
+fun ReportBatchProgressBanner(
+    modifier: Modifier = Modifier,
+    onProgress: (ReportBatchQueue.Progress) -> Unit = {}
+) {
+    val context = LocalContext.current
+    val scope = rememberCoroutineScope()
+    val progressFlow = remember { ReportBatchQueue.observeProgress(context) }
+    val progress by progressFlow.collectAsState(initial = null)
+
+    val current = progress ?: return
+    LaunchedEffect(current) { onProgress(current) }
+    if (!current.running && current.failed == 0) return
+
+    ElevatedCard(modifier = modifier.fillMaxWidth()) {
+        Column(
+            Modifier.padding(12.dp),
+            verticalArrangement = Arrangement.spacedBy(6.dp)
+        ) {
+            Text(
+                if (current.running) "Пакетная генерация отчётов" else "Пакетная генерация завершена",
+                style = MaterialTheme.typography.titleSmall
+            )
+            LinearProgressIndicator(
+                progress = { (current.rendered + current.failed).toFloat() / current.total },
+                modifier = Modifier.fillMaxWidth()
+            )
+            Text(
+                buildString {
+                    append("PDF: ${current.rendered} из ${current.total}, в очереди отправки: ${current.uploaded}")
+                    if (current.failed > 0) append(", ошибок: ${current.failed}")
+                },
+                style = MaterialTheme.typography.bodySmall,
+                color = MaterialTheme.colorScheme.onSurfaceVariant
+            )
+            if (!current.running && current.failed > 0) {
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.End
+                ) {
+                    TextButton(onClick = { scope.launch { ReportBatchQueue.dismissFailed(context) } }) {
+                        Text("Убрать")
+                    }
+                    (context as? Activity)?.let { activity ->
+                        TextButton(onClick = { scope.launch { ReportBatchQueue.retryFailed(activity) } }) {
+                            Text("Повторить")
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import java.text.SimpleDateFormat
 import java.util.*
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
+import ru.wassertech.report.ReportBatchQueue
 
 @Composable
 fun ReportsScreen(
@@ -53,9 +54,10 @@ fun ReportsScreen(
             ?.sortedByDescending { it.lastModified() } ?: emptyList()
     }
     
-    // Обновляем список файлов при появлении экрана
+    // Обновляем список файлов при появлении экрана и продолжаем прерванную пакетную генерацию
     LaunchedEffect(Unit) {
         refreshFiles()
+        (context as? android.app.Activity)?.let { ReportBatchQueue.resume(it) }
     }
     
     // Диалог подтверждения удаления выбранных файлов
@@ -97,6 +99,12 @@ fun ReportsScreen(
     
     if (pdfFiles.isEmpty()) {
         Box(Modifier.fillMaxSize(), contentAlignment = Alignment.Center) {
+            ReportBatchProgressBanner(
+                modifier = Modifier
+                    .align(Alignment.TopCenter)
+                    .padding(horizontal = 12.dp, vertical = 8.dp),
+                onProgress = { refreshFiles() }
+            )
             Column(
                 horizontalAlignment = Alignment.CenterHorizontally,
                 verticalArrangement = Arrangement.spacedBy(8.dp)
@@ -149,6 +157,10 @@ fun ReportsScreen(
                 contentPadding = PaddingValues(horizontal = 12.dp, vertical = 8.dp),
                 verticalArrangement = Arrangement.spacedBy(8.dp)
             ) {
+                item(key = "batch_progress") {
+                    // Новые PDF пакета появляются в списке по мере готовности
+                    ReportBatchProgressBanner(onProgress = { refreshFiles() })
+                }
                 items(pdfFiles, key = { it.absolutePath }) { file ->
                     val isSelected = selectedFiles.contains(file)
                     val isPdf = file.name.endsWith(".pdf", ignoreCase = true)
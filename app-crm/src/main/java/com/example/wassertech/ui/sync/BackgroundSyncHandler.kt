@@ -3,31 +3,30 @@ package ru.wassertech.ui.sync
 import android.content.Context
 import androidx.compose.runtime.*
 import androidx.compose.ui.Modifier
-import androidx.lifecycle.viewmodel.compose.viewModel
 import ru.wassertech.core.ui.sync.*
-import ru.wassertech.sync.SyncHelper
+import ru.wassertech.sync.SyncScheduler
 
 /**
  * Обработчик фоновой синхронизации при запуске приложения.
  * Показывает неблокирующий индикатор синхронизации.
+ *
+ * Сама синхронизация выполняется в WorkManager ([SyncScheduler]), а не в composition:
+ * она не конкурирует с первым рендерингом и переживает уход с экрана.
  */
 @Composable
 fun BackgroundSyncHandler(
     context: Context,
     modifier: Modifier = Modifier
 ) {
-    val viewModel: SyncViewModel = viewModel()
-    val syncState by viewModel.syncState.collectAsState()
+    val appContext = context.applicationContext
+    val syncState by remember(appContext) { SyncScheduler.observeUiState(appContext) }
+        .collectAsState(initial = SyncUiState(isBlocking = false))
     
-    // Запускаем фоновую синхронизацию при первом появлении
+    // Запрашиваем фоновую синхронизацию при первом появлении (повторный запрос объединяется с уже запущенной)
     LaunchedEffect(Unit) {
-        if (!syncState.isRunning) {
-            val syncFunction = SyncHelper.createSyncFunction(context)
-            viewModel.startBackgroundSync(syncFunction)
-        }
+        SyncScheduler.requestSync(appContext)
     }
     
     // Показываем неблокирующий индикатор
     SyncIndicator(state = syncState, modifier = modifier)
 }
-
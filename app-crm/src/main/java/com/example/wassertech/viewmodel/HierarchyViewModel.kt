@@ -400,7 +400,7 @@ class HierarchyViewModel(application: Application) : AndroidViewModel(applicatio
                 },
                 iconsByPack = iconsByPack.mapValues { (_, icons) ->
                     icons.map { icon ->
-                        val localPath = iconRepository.getLocalIconPath(icon.id)
+                        val localPath = iconRepository.getLocalIconPath(icon)
                         ru.wassertech.core.ui.components.IconUiData(
                             id = icon.id,
                             packId = icon.packId,
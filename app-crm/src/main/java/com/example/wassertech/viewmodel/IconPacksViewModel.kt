@@ -260,7 +260,7 @@ class IconPacksViewModel(application: Application) : AndroidViewModel(applicatio
      * Получает локальный путь к изображению иконки.
      */
     suspend fun getLocalIconPath(icon: IconEntity): String? {
-        return iconRepository.getLocalIconPath(icon.id)
+        return iconRepository.getLocalIconPath(icon)
     }
     
     /**
@@ -7,6 +7,7 @@ import ru.wassertech.data.AppDatabase
 import ru.wassertech.data.entities.MaintenanceSessionEntity
 import ru.wassertech.data.entities.MaintenanceValueEntity
 import ru.wassertech.data.types.FieldType
+import ru.wassertech.sync.SyncScheduler
 import ru.wassertech.sync.markCreatedForSync
 import ru.wassertech.sync.markUpdatedForSync
 import kotlinx.coroutines.Dispatchers
@@ -263,6 +264,7 @@ class MaintenanceViewModel(application: Application) : AndroidViewModel(applicat
 
             // атомарно: и сессию, и значения
             sessionsDao.insertSessionWithValues(session, values)
+            SyncScheduler.requestPush(getApplication())
         }
     }
 
@@ -331,6 +333,7 @@ class MaintenanceViewModel(application: Application) : AndroidViewModel(applicat
 
             // атомарно: обновляем сессию и заменяем все значения
             sessionsDao.updateSessionWithValues(session, values)
+            SyncScheduler.requestPush(getApplication())
         }
     }
 }
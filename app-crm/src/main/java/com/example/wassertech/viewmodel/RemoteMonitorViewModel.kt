@@ -13,6 +13,8 @@ import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
 import ru.wassertech.repository.RemoteMonitoringRepository
+import ru.wassertech.core.screens.remote.TemperaturePoint
+import ru.wassertech.core.screens.remote.TemperatureRingBuffer
 import ru.wassertech.core.screens.remote.ui.RemoteMonitorUiState
 import java.text.SimpleDateFormat
 import java.util.*
@@ -29,6 +31,16 @@ class RemoteMonitorViewModel(application: Application) : AndroidViewModel(applic
         private const val DEVICE_ID_1 = "esp-test-01"
         private const val DEVICE_ID_2 = "esp-test-02"
         private const val TIME_RANGE_HOURS = 10 // Запрашиваем данные за последние 10 часов
+        
+        /**
+         * Инкрементальный опрос: догружаются только точки новее последней сохранённой
+         * (sensor_temperature_logs), график строится из кольцевого буфера.
+         * false — каждый опрос загружает всё окно заново (прежний режим).
+         */
+        private const val USE_INCREMENTAL_FETCH = true
+        
+        /** Ёмкость буфера графика: 10 часов при точке раз в 10 секунд */
+        private const val RING_BUFFER_CAPACITY = 4096
     }
 
     private val repository = RemoteMonitoringRepository(application)
@@ -73,21 +85,26 @@ class RemoteMonitorViewModel(application: Application) : AndroidViewModel(applic
         // Запускаем мониторинг первого устройства
         monitoringJob1 = viewModelScope.launch(Dispatchers.IO) {
             android.util.Log.e(TAG, "=== Job1 ЗАПУЩЕН для $deviceId1 ===")
+            val buffer = TemperatureRingBuffer(RING_BUFFER_CAPACITY)
             while (isActive) {
                 try {
                     _state.update { it.copy(isLoading = true, errorMessage = null) }
 
-                    val points = loadTemperaturePoints(deviceId1)
+                    val points = if (USE_INCREMENTAL_FETCH) {
+                        pollTemperaturePoints(deviceId1, buffer)
+                    } else {
+                        loadTemperaturePoints(deviceId1)
+                    }
 
                     _state.update {
                         it.copy(
                             isLoading = false,
-                            points1 = points,
+                            points1 = points ?: it.points1,
                             errorMessage = null
                         )
                     }
 
-                    Log.d(TAG, "Загружено ${points.size} точек температуры для $deviceId1")
+                    Log.d(TAG, "Загружено ${points?.size ?: 0} точек температуры для $deviceId1")
 
                 } catch (e: Exception) {
                     val errorMessage = e.message ?: "Ошибка загрузки данных для $deviceId1"
@@ -109,17 +126,24 @@ class RemoteMonitorViewModel(application: Application) : AndroidViewModel(applic
             monitoringJob2 = viewModelScope.launch(Dispatchers.IO) {
                 try {
                     android.util.Log.e(TAG, "=== Job2 ЗАПУЩЕН для $deviceId2 ===")
+                    val buffer = TemperatureRingBuffer(RING_BUFFER_CAPACITY)
                     while (isActive) {
                         try {
-                            val points = loadTemperaturePoints(deviceId2)
+                            val points = if (USE_INCREMENTAL_FETCH) {
+                                pollTemperaturePoints(deviceId2, buffer)
+                            } else {
+                                loadTemperaturePoints(deviceId2)
+                            }
 
-                            _state.update {
-                                it.copy(
-                                    points2 = points
-                                )
+                            if (points != null) {
+                                _state.update {
+                                    it.copy(
+                                        points2 = points
+                                    )
+                                }
                             }
 
-                            Log.d(TAG, "Загружено ${points.size} точек температуры для $deviceId2")
+                            Log.d(TAG, "Загружено ${points?.size ?: 0} точек температуры для $deviceId2")
 
                         } catch (e: Exception) {
                             Log.e(TAG, "Ошибка при загрузке данных для $deviceId2", e)
@@ -136,9 +160,28 @@ class RemoteMonitorViewModel(application: Application) : AndroidViewModel(applic
     }
 
     /**
-     * Загружает точки температуры для указанного устройства
+     * Инкрементальный опрос устройства. При первом вызове буфер заполняется из локального
+     * хранилища, затем догружаются только новые точки; точки вне окна графика вытесняются.
+     * @return снимок буфера или null, если точек не добавилось и не убыло (график не меняется)
+     */
+    private suspend fun pollTemperaturePoints(deviceId: String, buffer: TemperatureRingBuffer): List<TemperaturePoint>? {
+        val windowMillis = TIME_RANGE_HOURS * 60 * 60 * 1000L
+        val cutoffMillis = System.currentTimeMillis() - windowMillis
+        val sizeBefore = buffer.size
+        var added = 0
+        if (buffer.size == 0) {
+            added += buffer.append(repository.loadStoredTemperaturePoints(deviceId, cutoffMillis))
+        }
+        added += buffer.append(repository.fetchNewTemperaturePoints(deviceId, windowMillis))
+        buffer.dropOlderThan(cutoffMillis)
+        val changed = added > 0 || buffer.size != sizeBefore + added || sizeBefore == 0
+        return if (changed) buffer.toList() else null
+    }
+
+    /**
+     * Загружает точки температуры для указанного устройства (всё окно целиком)
      */
-    private suspend fun loadTemperaturePoints(deviceId: String): List<ru.wassertech.core.screens.remote.TemperaturePoint> {
+    private suspend fun loadTemperaturePoints(deviceId: String): List<TemperaturePoint> {
         // Вычисляем временной диапазон (последние 10 часов)
         val now = Calendar.getInstance()
         val from = Calendar.getInstance().apply {
@@ -0,0 +1,104 @@
+<?php
+/**
+ * Обработчик /icon-packs/archive?pack_id=...
+ * 
+ * Отдаёт все изображения пака иконок одним ZIP-архивом.
+ * Первая запись архива — manifest.json с SHA-256 каждого файла,
+ * имена файлов — "<iconId>_image.png" и "<iconId>_thumbnail.png" (как в локальном кэше приложений).
+ */
+
+require_once __DIR__ . '/../config/database.php';
+require_once __DIR__ . '/../auth/auth_middleware.php';
+require_once __DIR__ . '/../utils/user_context.php';
+require_once __DIR__ . '/../utils/conditional_get.php';
+
+// Проверка авторизации
+$user = getCurrentUser();
+if (!$user) {
+    http_response_code(401);
+    header('Content-Type: application/json');
+    echo json_encode(['error' => 'Unauthorized']);
+    exit;
+}
+
+$packId = isset($_GET['pack_id']) ? (string)$_GET['pack_id'] : '';
+if ($packId === '') {
+    http_response_code(400);
+    header('Content-Type: application/json');
+    echo json_encode(['error' => 'pack_id is required']);
+    exit;
+}
+
+$db = getDatabaseConnection();
+
+$stmt = $db->prepare("
+    SELECT id, imageUrl, thumbnailUrl FROM icons
+    WHERE packId = :packId
+");
+$stmt->execute(['packId' => $packId]);
+$icons = $stmt->fetchAll(PDO::FETCH_ASSOC);
+
+if (empty($icons)) {
+    http_response_code(404);
+    header('Content-Type: application/json');
+    echo json_encode(['error' => 'Icon pack not found']);
+    exit;
+}
+
+/**
+ * Преобразует URL файла иконки в путь на диске (файлы лежат в /api/uploads/).
+ */
+function iconUrlToPath(?string $url): ?string {
+    if ($url === null || $url === '') {
+        return null;
+    }
+    $path = parse_url($url, PHP_URL_PATH);
+    $path = str_replace(['/publicuploads/', '/public/uploads/'], '/uploads/', $path);
+    $pos = strpos($path, '/uploads/');
+    if ($pos === false) {
+        return null;
+    }
+    $file = __DIR__ . '/..' . substr($path, $pos);
+    return is_file($file) ? $file : null;
+}
+
+// Собираем список файлов и манифест
+$files = [];
+foreach ($icons as $icon) {
+    foreach (['image' => 'imageUrl', 'thumbnail' => 'thumbnailUrl'] as $type => $column) {
+        $file = iconUrlToPath($icon[$column]);
+        if ($file !== null) {
+            $files[$icon['id'] . '_' . $type . '.png'] = $file;
+        }
+    }
+}
+
+$manifest = ['pack_id' => $packId, 'files' => []];
+foreach ($files as $name => $file) {
+    $manifest['files'][] = [
+        'name' => $name,
+        'size' => filesize($file),
+        'sha256' => hash_file('sha256', $file)
+    ];
+}
+
+// Архив определяется манифестом (SHA-256 файлов): без изменений — 304, архив не собирается
+sendPrivateCacheHeaders();
+respondNotModifiedIfMatches(jsonEtag($manifest));
+
+// Изображения уже сжаты (PNG), поэтому записи сохраняются без компрессии
+$tmpFile = tempnam(sys_get_temp_dir(), 'iconpack_');
+$zip = new ZipArchive();
+$zip->open($tmpFile, ZipArchive::OVERWRITE);
+$zip->addFromString('manifest.json', json_encode($manifest, JSON_UNESCAPED_UNICODE));
+foreach ($files as $name => $file) {
+    $zip->addFile($file, $name);
+    $zip->setCompressionName($name, ZipArchive::CM_STORE);
+}
+$zip->close();
+
+header('Content-Type: application/zip');
+header('Content-Length: ' . filesize($tmpFile));
+header('Content-Disposition: attachment; filename="icon_pack_' . $packId . '.zip"');
+readfile($tmpFile);
+unlink($tmpFile);
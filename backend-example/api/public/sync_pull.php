@@ -9,8 +9,12 @@
 require_once __DIR__ . '/../config/database.php';
 require_once __DIR__ . '/../auth/auth_middleware.php';
 require_once __DIR__ . '/../utils/user_context.php';
+require_once __DIR__ . '/../utils/request_encoding.php';
+require_once __DIR__ . '/../utils/conditional_get.php';
 
 header('Content-Type: application/json');
+// Клиент начинает сжимать sync/push только после этого объявления
+advertiseRequestEncoding();
 
 // Проверка авторизации
 $user = getCurrentUser();
@@ -30,6 +34,46 @@ $clientId = $user['client_id']; // Для роли CLIENT
 
 $db = getDatabaseConnection();
 
+// ========== ПОСТРАНИЧНАЯ ВЫДАЧА ==========
+// Если передан limit, сущность отдаётся страницей, упорядоченной по id:
+// записи с id > after_id, не более limit штук. Клиент в этом режиме запрашивает
+// по одной сущности за раз и передаёт next_after_id из ответа, пока has_more = true.
+// Без limit поведение прежнее — вся выборка одним ответом.
+$limit = isset($_GET['limit']) ? max(1, min(5000, (int)$_GET['limit'])) : null;
+$afterId = isset($_GET['after_id']) ? (string)$_GET['after_id'] : '';
+$hasMore = false;
+$nextAfterId = null;
+
+/**
+ * Выполняет выборку без постраничной разбивки.
+ */
+function fetchAllRows(PDO $db, string $sql, array $params): array {
+    $stmt = $db->prepare($sql);
+    $stmt->execute($params);
+    return $stmt->fetchAll(PDO::FETCH_ASSOC);
+}
+
+/**
+ * Выполняет выборку сущности с учётом limit/after_id.
+ * Для страницы запрашивается limit + 1 строка, чтобы определить has_more.
+ */
+function fetchEntityRows(PDO $db, string $sql, array $params, string $idColumn = 'id'): array {
+    global $limit, $afterId, $hasMore, $nextAfterId;
+    if ($limit === null) {
+        return fetchAllRows($db, $sql, $params);
+    }
+    $pagedSql = "SELECT * FROM ($sql) AS page_src"
+        . " WHERE page_src.$idColumn > " . $db->quote($afterId)
+        . " ORDER BY page_src.$idColumn ASC LIMIT " . ($limit + 1);
+    $rows = fetchAllRows($db, $pagedSql, $params);
+    if (count($rows) > $limit) {
+        array_pop($rows);
+        $hasMore = true;
+        $nextAfterId = $rows[count($rows) - 1][$idColumn];
+    }
+    return $rows;
+}
+
 // Определяем, какие сущности нужно вернуть
 $requestedEntities = empty($entities) ? [
     'clients', 'sites', 'installations', 'components',
@@ -59,46 +103,40 @@ if ($userRole === 'CLIENT' && $clientId) {
     
     // 1. Clients - только один клиент
     if (in_array('clients', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['clients'] = fetchEntityRows($db, "
             SELECT * FROM clients 
             WHERE id = :clientId 
             AND (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['clients'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 2. Sites - только объекты текущего клиента
     if (in_array('sites', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['sites'] = fetchEntityRows($db, "
             SELECT * FROM sites 
             WHERE client_id = :clientId 
             AND (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
             ORDER BY orderIndex ASC, name ASC
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['sites'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 3. Installations - через sites
     if (in_array('installations', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['installations'] = fetchEntityRows($db, "
             SELECT i.* FROM installations i
             JOIN sites s ON i.site_id = s.id
             WHERE s.client_id = :clientId 
             AND (i.is_archived = 0 OR i.is_archived IS NULL)
             AND i.updatedAtEpoch >= :since
             ORDER BY i.orderIndex ASC, i.name ASC
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['installations'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 4. Components - через installations -> sites
     if (in_array('components', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['components'] = fetchEntityRows($db, "
             SELECT c.* FROM components c
             JOIN installations i ON c.installation_id = i.id
             JOIN sites s ON i.site_id = s.id
@@ -106,69 +144,63 @@ if ($userRole === 'CLIENT' && $clientId) {
             AND (c.is_archived = 0 OR c.is_archived IS NULL)
             AND c.updatedAtEpoch >= :since
             ORDER BY c.orderIndex ASC, c.name ASC
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['components'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 5. Maintenance sessions - через sites
     if (in_array('maintenance_sessions', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['maintenance_sessions'] = fetchEntityRows($db, "
             SELECT ms.* FROM maintenance_sessions ms
             JOIN sites s ON ms.site_id = s.id
             WHERE s.client_id = :clientId 
             AND (ms.is_archived = 0 OR ms.is_archived IS NULL)
             AND ms.updatedAtEpoch >= :since
             ORDER BY ms.startedAtEpoch DESC
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['maintenance_sessions'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 6. Maintenance values - через maintenance_sessions -> sites
     if (in_array('maintenance_values', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['maintenance_values'] = fetchEntityRows($db, "
             SELECT mv.* FROM maintenance_values mv
             JOIN maintenance_sessions ms ON mv.session_id = ms.id
             JOIN sites s ON ms.site_id = s.id
             WHERE s.client_id = :clientId 
             AND (mv.is_archived = 0 OR mv.is_archived IS NULL)
             AND mv.updatedAtEpoch >= :since
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['maintenance_values'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 7. Component templates - доступны всем (или фильтруем по необходимости)
     if (in_array('component_templates', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['component_templates'] = fetchEntityRows($db, "
             SELECT * FROM component_templates 
             WHERE updatedAtEpoch >= :since
             ORDER BY name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['component_templates'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // 8. Component template fields - через templates
     if (in_array('component_template_fields', $requestedEntities)) {
-        $templateIds = array_column($response['component_templates'], 'id');
+        // В постраничном режиме шаблоны не входят в тот же ответ — берём их id отдельным запросом
+        $templateIds = in_array('component_templates', $requestedEntities) && $limit === null
+            ? array_column($response['component_templates'], 'id')
+            : array_column(fetchAllRows($db, "
+                SELECT id FROM component_templates WHERE updatedAtEpoch >= :since
+            ", ['since' => $since]), 'id');
         if (!empty($templateIds)) {
             $placeholders = implode(',', array_fill(0, count($templateIds), '?'));
-            $stmt = $db->prepare("
+            $response['component_template_fields'] = fetchEntityRows($db, "
                 SELECT * FROM component_template_fields 
                 WHERE template_id IN ($placeholders)
                 AND updatedAtEpoch >= ?
                 ORDER BY sortOrder ASC
-            ");
-            $stmt->execute(array_merge($templateIds, [$since]));
-            $response['component_template_fields'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+            ", array_merge($templateIds, [$since]));
         }
     }
     
     // 9. Icon packs - фильтруем по доступности для клиента
-    if (in_array('icon_packs', $requestedEntities)) {
-        $stmt = $db->prepare("
+    $availablePacksSql = "
             SELECT DISTINCT ip.* FROM icon_packs ip
             WHERE ip.is_visible_in_client = 1
             AND (
@@ -191,67 +223,59 @@ if ($userRole === 'CLIENT' && $clientId) {
             )
             AND ip.updatedAtEpoch >= :since
             ORDER BY ip.name ASC
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $response['icon_packs'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ";
+    if (in_array('icon_packs', $requestedEntities)) {
+        $response['icon_packs'] = fetchEntityRows($db, $availablePacksSql, ['clientId' => $clientId, 'since' => $since]);
     }
     
     // 10. Icons - только из доступных паков и активные
     if (in_array('icons', $requestedEntities)) {
-        $packIds = array_column($response['icon_packs'], 'id');
+        // В постраничном режиме паки не входят в тот же ответ — берём их id отдельным запросом
+        $packIds = in_array('icon_packs', $requestedEntities) && $limit === null
+            ? array_column($response['icon_packs'], 'id')
+            : array_column(fetchAllRows($db, $availablePacksSql, ['clientId' => $clientId, 'since' => $since]), 'id');
         if (!empty($packIds)) {
             $placeholders = implode(',', array_fill(0, count($packIds), '?'));
-            $stmt = $db->prepare("
+            $response['icons'] = fetchEntityRows($db, "
                 SELECT * FROM icons 
                 WHERE pack_id IN ($placeholders)
                 AND is_active = 1
                 AND updatedAtEpoch >= ?
                 ORDER BY label ASC
-            ");
-            $stmt->execute(array_merge($packIds, [$since]));
-            $response['icons'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+            ", array_merge($packIds, [$since]));
         }
     }
     
     // 11. Deleted records - только для данных текущего клиента
     if (in_array('deleted', $requestedEntities) || empty($requestedEntities)) {
-        // Получаем удаленные объекты клиента
-        $stmt = $db->prepare("
+        // Удаленные объекты, установки (через sites) и компоненты (через installations -> sites)
+        // Один UNION ALL, чтобы секцию deleted можно было отдавать страницами по recordId
+        $response['deleted'] = fetchEntityRows($db, "
             SELECT 'sites' as tableName, id as recordId, deletedAtEpoch 
             FROM sites 
-            WHERE client_id = :clientId 
+            WHERE client_id = :clientId1 
             AND deletedAtEpoch IS NOT NULL 
-            AND deletedAtEpoch >= :since
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $deletedSites = $stmt->fetchAll(PDO::FETCH_ASSOC);
-        
-        // Получаем удаленные установки через sites
-        $stmt = $db->prepare("
+            AND deletedAtEpoch >= :since1
+            UNION ALL
             SELECT 'installations' as tableName, i.id as recordId, i.deletedAtEpoch 
             FROM installations i
             JOIN sites s ON i.site_id = s.id
-            WHERE s.client_id = :clientId 
+            WHERE s.client_id = :clientId2 
             AND i.deletedAtEpoch IS NOT NULL 
-            AND i.deletedAtEpoch >= :since
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $deletedInstallations = $stmt->fetchAll(PDO::FETCH_ASSOC);
-        
-        // Получаем удаленные компоненты через installations -> sites
-        $stmt = $db->prepare("
+            AND i.deletedAtEpoch >= :since2
+            UNION ALL
             SELECT 'components' as tableName, c.id as recordId, c.deletedAtEpoch 
             FROM components c
             JOIN installations i ON c.installation_id = i.id
             JOIN sites s ON i.site_id = s.id
-            WHERE s.client_id = :clientId 
+            WHERE s.client_id = :clientId3 
             AND c.deletedAtEpoch IS NOT NULL 
-            AND c.deletedAtEpoch >= :since
-        ");
-        $stmt->execute(['clientId' => $clientId, 'since' => $since]);
-        $deletedComponents = $stmt->fetchAll(PDO::FETCH_ASSOC);
-        
-        $response['deleted'] = array_merge($deletedSites, $deletedInstallations, $deletedComponents);
+            AND c.deletedAtEpoch >= :since3
+        ", [
+            'clientId1' => $clientId, 'since1' => $since,
+            'clientId2' => $clientId, 'since2' => $since,
+            'clientId3' => $clientId, 'since3' => $since
+        ], 'recordId');
     }
     
 } else {
@@ -261,139 +285,118 @@ if ($userRole === 'CLIENT' && $clientId) {
     // Clients
     if (in_array('clients', $requestedEntities)) {
         // Для ADMIN/ENGINEER можно добавить фильтрацию по user_membership если нужно
-        $stmt = $db->prepare("
+        $response['clients'] = fetchEntityRows($db, "
             SELECT * FROM clients 
             WHERE (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
             ORDER BY sortOrder ASC, name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['clients'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Sites - с учетом user_membership если нужно
     if (in_array('sites', $requestedEntities)) {
         // TODO: Добавить фильтрацию по user_membership если требуется
-        $stmt = $db->prepare("
+        $response['sites'] = fetchEntityRows($db, "
             SELECT * FROM sites 
             WHERE (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
             ORDER BY orderIndex ASC, name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['sites'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Installations
     if (in_array('installations', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['installations'] = fetchEntityRows($db, "
             SELECT * FROM installations 
             WHERE (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
             ORDER BY orderIndex ASC, name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['installations'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Components
     if (in_array('components', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['components'] = fetchEntityRows($db, "
             SELECT * FROM components 
             WHERE (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
             ORDER BY orderIndex ASC, name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['components'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Maintenance sessions
     if (in_array('maintenance_sessions', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['maintenance_sessions'] = fetchEntityRows($db, "
             SELECT * FROM maintenance_sessions 
             WHERE (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
             ORDER BY startedAtEpoch DESC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['maintenance_sessions'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Maintenance values
     if (in_array('maintenance_values', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['maintenance_values'] = fetchEntityRows($db, "
             SELECT * FROM maintenance_values 
             WHERE (is_archived = 0 OR is_archived IS NULL)
             AND updatedAtEpoch >= :since
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['maintenance_values'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Component templates
     if (in_array('component_templates', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['component_templates'] = fetchEntityRows($db, "
             SELECT * FROM component_templates 
             WHERE updatedAtEpoch >= :since
             ORDER BY name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['component_templates'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Component template fields
     if (in_array('component_template_fields', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['component_template_fields'] = fetchEntityRows($db, "
             SELECT * FROM component_template_fields 
             WHERE updatedAtEpoch >= :since
             ORDER BY sortOrder ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['component_template_fields'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Icon packs - все видимые
     if (in_array('icon_packs', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['icon_packs'] = fetchEntityRows($db, "
             SELECT * FROM icon_packs 
             WHERE updatedAtEpoch >= :since
             ORDER BY name ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['icon_packs'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Icons - все активные
     if (in_array('icons', $requestedEntities)) {
-        $stmt = $db->prepare("
+        $response['icons'] = fetchEntityRows($db, "
             SELECT * FROM icons 
             WHERE is_active = 1
             AND updatedAtEpoch >= :since
             ORDER BY label ASC
-        ");
-        $stmt->execute(['since' => $since]);
-        $response['icons'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+        ", ['since' => $since]);
     }
     
     // Deleted records
     if (in_array('deleted', $requestedEntities) || empty($requestedEntities)) {
         // Полная выборка удаленных записей для ADMIN/ENGINEER
         // TODO: Добавить фильтрацию по user_membership если требуется
-        $stmt = $db->query("
+        $response['deleted'] = fetchEntityRows($db, "
             SELECT 'sites' as tableName, id as recordId, deletedAtEpoch 
             FROM sites 
-            WHERE deletedAtEpoch IS NOT NULL AND deletedAtEpoch >= $since
+            WHERE deletedAtEpoch IS NOT NULL AND deletedAtEpoch >= :since1
             UNION ALL
             SELECT 'installations' as tableName, id as recordId, deletedAtEpoch 
             FROM installations 
-            WHERE deletedAtEpoch IS NOT NULL AND deletedAtEpoch >= $since
+            WHERE deletedAtEpoch IS NOT NULL AND deletedAtEpoch >= :since2
             UNION ALL
             SELECT 'components' as tableName, id as recordId, deletedAtEpoch 
             FROM components 
-            WHERE deletedAtEpoch IS NOT NULL AND deletedAtEpoch >= $since
-        ");
-        $response['deleted'] = $stmt->fetchAll(PDO::FETCH_ASSOC);
+            WHERE deletedAtEpoch IS NOT NULL AND deletedAtEpoch >= :since3
+        ", ['since1' => $since, 'since2' => $since, 'since3' => $since], 'recordId');
     }
 }
 
@@ -427,5 +430,16 @@ foreach ($response as $key => &$items) {
     }
 }
 
+// Признаки постраничной выдачи (только если передан limit)
+if ($limit !== null) {
+    $response['has_more'] = $hasMore;
+    $response['next_after_id'] = $nextAfterId;
+}
+
+// Условный GET: тот же since без изменений в данных — 304 без тела.
+// timestamp — время сервера, в ETag не входит; для 304 приложение использует сохранённое тело
+sendPrivateCacheHeaders();
+respondNotModifiedIfMatches(jsonEtag($response, ['timestamp'], (string)$userId));
+
 echo json_encode($response, JSON_UNESCAPED_UNICODE);
 
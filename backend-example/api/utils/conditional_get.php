@@ -0,0 +1,50 @@
+<?php
+/**
+ * Условные GET-запросы (ETag / If-None-Match).
+ *
+ * Приложения держат общий HTTP-кэш (OkHttp): ответ с ETag сохраняется, повторный запрос того же URL
+ * уходит с If-None-Match, и на 304 приложение берёт сохранённое тело без повторной загрузки.
+ * Ответы авторизованных запросов помечаются `Cache-Control: private, no-cache` и `Vary: Authorization`:
+ * сохранённый ответ используется только для того же токена и всегда перепроверяется на сервере.
+ */
+
+/**
+ * Заголовки кэширования для ответа, зависящего от пользователя.
+ * Вызывать до вывода тела ответа (в т.ч. перед 304).
+ */
+function sendPrivateCacheHeaders(): void {
+    header('Cache-Control: private, no-cache');
+    header('Vary: Authorization');
+}
+
+/**
+ * ETag JSON-ответа. Поля [$volatileKeys] (например, timestamp — время сервера, а не данных)
+ * в расчёт не входят, иначе ETag менялся бы при каждом запросе.
+ */
+function jsonEtag(array $data, array $volatileKeys = [], string $scope = ''): string {
+    foreach ($volatileKeys as $key) {
+        unset($data[$key]);
+    }
+    return '"' . sha1($scope . '|' . json_encode($data, JSON_UNESCAPED_UNICODE)) . '"';
+}
+
+/**
+ * Отправляет ETag; если он совпал с If-None-Match запроса — отвечает 304 без тела и завершает выполнение.
+ */
+function respondNotModifiedIfMatches(string $etag): void {
+    header('ETag: ' . $etag);
+    $ifNoneMatch = $_SERVER['HTTP_IF_NONE_MATCH'] ?? '';
+    if ($ifNoneMatch === '') {
+        return;
+    }
+    foreach (explode(',', $ifNoneMatch) as $candidate) {
+        $candidate = trim($candidate);
+        if (strpos($candidate, 'W/') === 0) {
+            $candidate = substr($candidate, 2);
+        }
+        if ($candidate === $etag || $candidate === '*') {
+            http_response_code(304);
+            exit;
+        }
+    }
+}
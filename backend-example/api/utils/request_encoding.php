@@ -0,0 +1,58 @@
+<?php
+/**
+ * Сжатые тела запросов (Content-Encoding: gzip).
+ *
+ * Клиент (CompressionInterceptor) сжимает тела sync/push только после того, как сервер
+ * объявил поддержку заголовком ответа `Accept-Encoding: gzip` (RFC 7694). Поэтому:
+ * - обработчики, которые клиент вызывает до push (sync/pull), вызывают advertiseRequestEncoding();
+ * - обработчики, принимающие JSON-тело (sync/push), читают его через readJsonRequestBody(),
+ *   а не file_get_contents('php://input') напрямую.
+ * Multipart-запросы (reports/upload) клиент не сжимает: PDF уже сжат, а PHP не разбирает
+ * сжатый multipart в $_FILES.
+ */
+
+/**
+ * Объявляет клиенту, что тела запросов можно отправлять в gzip.
+ * Вызывать до вывода тела ответа.
+ */
+function advertiseRequestEncoding(): void {
+    header('Accept-Encoding: gzip', false);
+}
+
+/**
+ * Читает тело запроса с учётом Content-Encoding.
+ *
+ * Неподдерживаемая кодировка — 415 с `Accept-Encoding: gzip`;
+ * повреждённый gzip — 400 с указанием на кодировку в тексте ошибки.
+ * В обоих случаях клиент повторяет запрос без сжатия. Ответ завершает выполнение.
+ */
+function readRequestBody(): string {
+    $raw = file_get_contents('php://input');
+    $encoding = strtolower(trim($_SERVER['HTTP_CONTENT_ENCODING'] ?? ''));
+    if ($encoding === '' || $encoding === 'identity') {
+        return $raw === false ? '' : $raw;
+    }
+    if ($encoding !== 'gzip') {
+        http_response_code(415);
+        header('Accept-Encoding: gzip');
+        header('Content-Type: application/json');
+        echo json_encode(['error' => "Unsupported Content-Encoding: $encoding"]);
+        exit;
+    }
+    $decoded = $raw === false ? false : @gzdecode($raw);
+    if ($decoded === false) {
+        http_response_code(400);
+        header('Content-Type: application/json');
+        echo json_encode(['error' => 'Invalid gzip request body (Content-Encoding: gzip)']);
+        exit;
+    }
+    return $decoded;
+}
+
+/**
+ * Тело запроса как JSON (ассоциативный массив); null — тело пустое или не JSON.
+ */
+function readJsonRequestBody(): ?array {
+    $data = json_decode(readRequestBody(), true);
+    return is_array($data) ? $data : null;
+}
@@ -6,13 +6,23 @@ import androidx.datastore.preferences.core.Preferences
 import androidx.datastore.preferences.core.edit
 import androidx.datastore.preferences.core.stringPreferencesKey
 import androidx.datastore.preferences.preferencesDataStore
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.catch
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicBoolean
 import ru.wassertech.core.network.TokenStorage
 
 /**
- * Реализация TokenStorage с использованием DataStore
+ * Реализация TokenStorage с использованием DataStore.
+ *
+ * Токены дублируются в памяти процесса (общий кэш для всех экземпляров):
+ * кэш поддерживается актуальным подпиской на dataStore.data и обновляется сразу при записи,
+ * поэтому AuthInterceptor читает volatile-поле, а не DataStore на каждом запросе.
  */
 class DataStoreTokenStorage(private val context: Context) : TokenStorage {
     
@@ -20,22 +30,57 @@ class DataStoreTokenStorage(private val context: Context) : TokenStorage {
         private val Context.dataStore: DataStore<Preferences> by preferencesDataStore(name = "auth_prefs")
         private val ACCESS_TOKEN_KEY = stringPreferencesKey("access_token")
         private val REFRESH_TOKEN_KEY = stringPreferencesKey("refresh_token")
+        
+        // Кэш токенов в памяти (общий для процесса, т.к. DataStore один)
+        @Volatile private var cachedAccessToken: String? = null
+        @Volatile private var cachedRefreshToken: String? = null
+        @Volatile private var cacheLoaded = false
+        
+        private val cacheScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        private val cacheObserverStarted = AtomicBoolean(false)
+        
+        private fun updateCache(preferences: Preferences) {
+            cachedAccessToken = preferences[ACCESS_TOKEN_KEY]
+            cachedRefreshToken = preferences[REFRESH_TOKEN_KEY]
+            cacheLoaded = true
+        }
     }
     
     private val dataStore = context.dataStore
     
-    override fun getAccessToken(): String? {
-        return try {
+    init {
+        // Держим кэш «горячим»: любые изменения DataStore (в т.ч. из других экземпляров) попадают в память
+        if (cacheObserverStarted.compareAndSet(false, true)) {
+            cacheScope.launch {
+                dataStore.data
+                    .catch { cacheObserverStarted.set(false) }
+                    .collect { preferences -> updateCache(preferences) }
+            }
+        }
+    }
+    
+    /**
+     * Однократная синхронная загрузка, если подписка ещё не успела получить первое значение
+     */
+    private fun ensureCacheLoaded() {
+        if (cacheLoaded) return
+        try {
             // Используем runBlocking для синхронного доступа (для совместимости с интерфейсом)
             kotlinx.coroutines.runBlocking {
-                dataStore.data.first()[ACCESS_TOKEN_KEY]
+                updateCache(dataStore.data.first())
             }
         } catch (e: Exception) {
-            null
+            // Оставляем кэш незагруженным — попробуем при следующем обращении
         }
     }
     
+    override fun getAccessToken(): String? {
+        ensureCacheLoaded()
+        return cachedAccessToken
+    }
+    
     override fun saveAccessToken(token: String) {
+        cachedAccessToken = token
         kotlinx.coroutines.runBlocking {
             dataStore.edit { preferences ->
                 preferences[ACCESS_TOKEN_KEY] = token
@@ -44,16 +89,12 @@ class DataStoreTokenStorage(private val context: Context) : TokenStorage {
     }
     
     override fun getRefreshToken(): String? {
-        return try {
-            kotlinx.coroutines.runBlocking {
-                dataStore.data.first()[REFRESH_TOKEN_KEY]
-            }
-        } catch (e: Exception) {
-            null
-        }
+        ensureCacheLoaded()
+        return cachedRefreshToken
     }
     
     override fun saveRefreshToken(token: String) {
+        cachedRefreshToken = token
         kotlinx.coroutines.runBlocking {
             dataStore.edit { preferences ->
                 preferences[REFRESH_TOKEN_KEY] = token
@@ -62,6 +103,8 @@ class DataStoreTokenStorage(private val context: Context) : TokenStorage {
     }
     
     override fun clearTokens() {
+        cachedAccessToken = null
+        cachedRefreshToken = null
         kotlinx.coroutines.runBlocking {
             dataStore.edit { preferences ->
                 preferences.remove(ACCESS_TOKEN_KEY)
@@ -83,6 +126,7 @@ class DataStoreTokenStorage(private val context: Context) : TokenStorage {
      * Сохранить токен асинхронно
      */
     suspend fun saveAccessTokenAsync(token: String) {
+        cachedAccessToken = token
         dataStore.edit { preferences ->
             preferences[ACCESS_TOKEN_KEY] = token
         }
@@ -92,6 +136,8 @@ class DataStoreTokenStorage(private val context: Context) : TokenStorage {
      * Очистить токены асинхронно
      */
     suspend fun clearTokensAsync() {
+        cachedAccessToken = null
+        cachedRefreshToken = null
         dataStore.edit { preferences ->
             preferences.remove(ACCESS_TOKEN_KEY)
             preferences.remove(REFRESH_TOKEN_KEY)
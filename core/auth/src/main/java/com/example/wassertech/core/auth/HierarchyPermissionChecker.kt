@@ -25,6 +25,9 @@ data class UserMembershipInfo(
  * 
  * Правила для ADMIN/ENGINEER:
  * - Полный доступ ко всем сущностям (независимо от membership и created_by_user_id)
+ *
+ * Для списков (проверка на каждую строку) используйте HierarchyPermissionIndex:
+ * он строится один раз на изменение membership и отвечает на canView* за O(1).
  */
 object HierarchyPermissionChecker {
     
@@ -0,0 +1,117 @@
+package ru.wassertech.core.auth
+
+/**
+ * Неизменяемый индекс прав просмотра иерархии для одного пользователя.
+ *
+ * Строится один раз на каждое изменение user_membership (или иерархии объектов) и
+ * отвечает на вопросы видимости за O(1): активные membership разложены по хеш-множествам
+ * CLIENT / SITE / INSTALLATION, а объекты, видимые через клиента, раскрыты заранее
+ * по связи клиент → объекты.
+ *
+ * Семантика совпадает со списковыми проверками HierarchyPermissionChecker.canView*.
+ */
+class HierarchyPermissionIndex private constructor(
+    /** Роль и clientId пользователя, для которого построен индекс (null — нет сессии) */
+    val currentUser: UserSession?,
+    private val clientIds: Set<String>,
+    private val siteIds: Set<String>,
+    private val installationIds: Set<String>,
+    /** siteId → clientId для всех известных объектов */
+    private val siteClientIds: Map<String, String>,
+    /** Объекты, видимые через CLIENT-membership или clientId пользователя */
+    private val sitesVisibleViaClient: Set<String>
+) {
+
+    private val hasFullAccess: Boolean =
+        currentUser != null && (currentUser.isAdmin() || currentUser.isEngineer())
+
+    private val isClient: Boolean = currentUser?.isClient() == true
+
+    /** Есть ли активная CLIENT-membership или пользователь сам является этим клиентом */
+    fun canViewClient(clientId: String): Boolean = when {
+        hasFullAccess -> true
+        isClient -> clientId in clientIds || clientId == currentUser?.clientId
+        else -> false
+    }
+
+    /**
+     * Аналог HierarchyPermissionChecker.canViewSite.
+     * @param siteClientId clientId объекта; если null — берётся из индекса объектов
+     */
+    fun canViewSite(siteId: String, siteClientId: String? = null): Boolean = when {
+        hasFullAccess -> true
+        isClient -> {
+            siteId in sitesVisibleViaClient ||
+                siteId in siteIds ||
+                (siteClientId ?: siteClientIds[siteId])?.let { canViewClient(it) } == true
+        }
+        else -> false
+    }
+
+    /**
+     * Аналог HierarchyPermissionChecker.canViewInstallation.
+     */
+    fun canViewInstallation(
+        installationId: String,
+        installationSiteId: String,
+        siteClientId: String? = null
+    ): Boolean = when {
+        hasFullAccess -> true
+        isClient -> installationId in installationIds || canViewSite(installationSiteId, siteClientId)
+        else -> false
+    }
+
+    /**
+     * Аналог HierarchyPermissionChecker.canViewComponent: компоненты видимы через установку.
+     */
+    fun canViewComponent(
+        componentInstallationId: String,
+        installationSiteId: String?,
+        siteClientId: String? = null
+    ): Boolean = canViewInstallation(componentInstallationId, installationSiteId ?: "", siteClientId)
+
+    companion object {
+        /** Пустой индекс (нет сессии) — ничего не видно */
+        val EMPTY = HierarchyPermissionIndex(null, emptySet(), emptySet(), emptySet(), emptyMap(), emptySet())
+
+        /**
+         * Построить индекс.
+         * @param memberships записи user_membership (учитываются только активные записи пользователя)
+         * @param siteClientIds siteId → clientId известных объектов (связь клиент → объекты)
+         */
+        fun build(
+            currentUser: UserSession?,
+            memberships: List<UserMembershipInfo>,
+            siteClientIds: Map<String, String> = emptyMap()
+        ): HierarchyPermissionIndex {
+            if (currentUser == null) return EMPTY
+
+            val clientIds = HashSet<String>()
+            val siteIds = HashSet<String>()
+            val installationIds = HashSet<String>()
+            for (membership in memberships) {
+                if (membership.isArchived || membership.userId != currentUser.userId) continue
+                when (membership.scope) {
+                    "CLIENT" -> clientIds.add(membership.targetId)
+                    "SITE" -> siteIds.add(membership.targetId)
+                    "INSTALLATION" -> installationIds.add(membership.targetId)
+                }
+            }
+
+            val ownClientId = currentUser.clientId
+            val sitesVisibleViaClient = HashSet<String>()
+            for ((siteId, clientId) in siteClientIds) {
+                if (clientId in clientIds || clientId == ownClientId) sitesVisibleViaClient.add(siteId)
+            }
+
+            return HierarchyPermissionIndex(
+                currentUser = currentUser,
+                clientIds = clientIds,
+                siteIds = siteIds,
+                installationIds = installationIds,
+                siteClientIds = siteClientIds,
+                sitesVisibleViaClient = sitesVisibleViaClient
+            )
+        }
+    }
+}
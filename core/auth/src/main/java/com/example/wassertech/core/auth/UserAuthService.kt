@@ -78,6 +78,8 @@ object UserAuthService {
         prefs.edit()
             .remove(KEY_CURRENT_USER_ID)
             .apply()
+        // Закэшированные ответы сервера относятся к вышедшему пользователю
+        ru.wassertech.core.network.HttpClientRegistry.evictCache()
     }
     
     /**
@@ -4,9 +4,9 @@ import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
-import java.util.concurrent.TimeUnit
 import ru.wassertech.core.network.TokenStorage
 import ru.wassertech.core.network.interceptor.AuthInterceptor
+import ru.wassertech.core.network.interceptor.CompressionInterceptor
 import ru.wassertech.core.network.interceptor.ErrorInterceptor
 import ru.wassertech.core.network.interceptor.SessionExpiredCallback
 
@@ -40,18 +40,25 @@ object ApiClient {
     }
     
     /**
-     * Создает OkHttpClient с interceptors
+     * Глобальный callback, разрешаемый в момент истечения сессии:
+     * кэшированные клиенты видят callback, установленный уже после их создания.
+     */
+    private val globalSessionExpiredDelegate = object : SessionExpiredCallback {
+        override fun onSessionExpired() {
+            globalSessionExpiredCallback?.onSessionExpired()
+        }
+    }
+    
+    /**
+     * Создает OkHttpClient с interceptors.
+     * Клиент производится от [HttpClientRegistry.baseClient] и использует общий пул соединений и диспетчер.
      */
     fun createOkHttpClient(
         tokenStorage: TokenStorage? = null,
         enableLogging: Boolean = true,
         sessionExpiredCallback: SessionExpiredCallback? = null
     ): OkHttpClient {
-        val builder = OkHttpClient.Builder()
-            .connectTimeout(60, TimeUnit.SECONDS) // Увеличено до 60 секунд
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .retryOnConnectionFailure(true) // Включаем retry при ошибках соединения
+        val builder = HttpClientRegistry.baseClient.newBuilder()
         
         // Auth interceptor (добавляем первым, чтобы токен был в заголовках)
         tokenStorage?.let {
@@ -66,9 +73,12 @@ object ApiClient {
             builder.addInterceptor(loggingInterceptor)
         }
         
+        // Compression interceptor (после логирования: в логах остаётся несжатый JSON)
+        builder.addInterceptor(CompressionInterceptor())
+        
         // Error interceptor (добавляем последним)
         // Используем переданный callback или глобальный
-        val callback = sessionExpiredCallback ?: globalSessionExpiredCallback
+        val callback = sessionExpiredCallback ?: globalSessionExpiredDelegate
         builder.addInterceptor(ErrorInterceptor(callback))
         
         return builder.build()
@@ -89,7 +99,8 @@ object ApiClient {
     }
     
     /**
-     * Создает API service
+     * Возвращает API service.
+     * Без собственного [sessionExpiredCallback] service берётся из [HttpClientRegistry] (кэш по базовому URL).
      */
     inline fun <reified T> createService(
         tokenStorage: TokenStorage? = null,
@@ -97,6 +108,9 @@ object ApiClient {
         enableLogging: Boolean = true,
         sessionExpiredCallback: SessionExpiredCallback? = null
     ): T {
+        if (sessionExpiredCallback == null) {
+            return HttpClientRegistry.service(T::class.java, baseUrl, tokenStorage, enableLogging)
+        }
         val okHttpClient = createOkHttpClient(tokenStorage, enableLogging, sessionExpiredCallback)
         val retrofit = createRetrofit(okHttpClient, baseUrl)
         return retrofit.create(T::class.java)
@@ -0,0 +1,160 @@
+package ru.wassertech.core.network
+
+import android.content.Context
+import android.util.Log
+import okhttp3.Cache
+import okhttp3.OkHttpClient
+import retrofit2.Retrofit
+import ru.wassertech.core.network.interceptor.AuthInterceptor
+import ru.wassertech.core.network.interceptor.PrivateCacheInterceptor
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Общий для процесса реестр HTTP-клиентов.
+ *
+ * Все клиенты приложения производятся от [baseClient] через `newBuilder()`, поэтому используют
+ * один пул соединений и один диспетчер (переиспользование TLS-сессий и HTTP/2-соединений).
+ * Клиенты кэшируются по набору interceptors (авторизация, логирование), Retrofit — по базовому URL
+ * и клиенту, сервисы — по интерфейсу и Retrofit.
+ *
+ * Авторизованные клиенты используют один на процесс AuthInterceptor: токен читается на каждом
+ * запросе из последнего переданного [TokenStorage]. Реализации TokenStorage держат токены в общем
+ * для процесса кэше, поэтому неважно, какой из экземпляров сохранён.
+ *
+ * После [installCache] все клиенты используют общий дисковый HTTP-кэш: GET-ответы с ETag/Last-Modified
+ * сохраняются, повторные запросы уходят условными (If-None-Match / If-Modified-Since),
+ * и на 304 OkHttp отдаёт сохранённое тело (см. [isNotModified]). Ответы авторизованных запросов
+ * сохраняются с `Vary: Authorization` ([PrivateCacheInterceptor]) и не достаются другому аккаунту.
+ */
+object HttpClientRegistry {
+
+    private const val TAG = "HttpClientRegistry"
+    private const val HTTP_CACHE_DIR = "http_cache"
+    private const val HTTP_CACHE_MAX_BYTES = 20L * 1024 * 1024
+
+    @Volatile
+    private var httpCache: Cache? = null
+
+    private val baseClientDelegate = lazy {
+        OkHttpClient.Builder()
+            .connectTimeout(60, TimeUnit.SECONDS) // Увеличено до 60 секунд
+            .readTimeout(60, TimeUnit.SECONDS)
+            .writeTimeout(60, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(true) // Включаем retry при ошибках соединения
+            .apply { httpCache?.let { cache(it) } }
+            // Записи кэша привязываются к токену (Vary: Authorization) до сохранения
+            .addNetworkInterceptor(PrivateCacheInterceptor())
+            .build()
+    }
+
+    /**
+     * Базовый клиент: таймауты, retry, общий пул соединений, диспетчер и HTTP-кэш
+     */
+    val baseClient: OkHttpClient by baseClientDelegate
+
+    /**
+     * Подключает дисковый HTTP-кэш. Вызывается при старте приложения (и фоновых задач)
+     * до первого сетевого запроса; повторные вызовы ничего не делают.
+     */
+    fun installCache(context: Context) {
+        if (httpCache != null) return
+        synchronized(this) {
+            if (httpCache != null) return
+            if (baseClientDelegate.isInitialized()) {
+                Log.w(TAG, "HTTP-кэш не подключён: клиенты уже созданы")
+                return
+            }
+            httpCache = Cache(File(context.applicationContext.cacheDir, HTTP_CACHE_DIR), HTTP_CACHE_MAX_BYTES)
+        }
+    }
+
+    /**
+     * Очищает HTTP-кэш (при выходе пользователя: освобождает место; чужие ответы и так
+     * не используются благодаря `Vary: Authorization`)
+     */
+    fun evictCache() {
+        try {
+            httpCache?.evictAll()
+        } catch (e: IOException) {
+            Log.w(TAG, "Не удалось очистить HTTP-кэш", e)
+        }
+    }
+
+    private data class ClientKey(
+        val authorized: Boolean,
+        val enableLogging: Boolean
+    )
+
+    private data class RetrofitKey(
+        val baseUrl: String,
+        val client: ClientKey
+    )
+
+    private data class ServiceKey(
+        val serviceType: Class<*>,
+        val retrofit: RetrofitKey
+    )
+
+    private val clients = ConcurrentHashMap<ClientKey, OkHttpClient>()
+    private val retrofits = ConcurrentHashMap<RetrofitKey, Retrofit>()
+    private val services = ConcurrentHashMap<ServiceKey, Any>()
+
+    /** Хранилище, из которого [authInterceptor] читает токен (последнее переданное в [client]/[service]) */
+    @Volatile
+    private var activeTokenStorage: TokenStorage? = null
+
+    /** Хранилище токена, разрешаемое в момент запроса: кэшированные клиенты видят актуальный токен */
+    private val currentTokenStorage = object : TokenStorage {
+        override fun getAccessToken(): String? = activeTokenStorage?.getAccessToken()
+        override fun saveAccessToken(token: String) { activeTokenStorage?.saveAccessToken(token) }
+        override fun getRefreshToken(): String? = activeTokenStorage?.getRefreshToken()
+        override fun saveRefreshToken(token: String) { activeTokenStorage?.saveRefreshToken(token) }
+        override fun clearTokens() { activeTokenStorage?.clearTokens() }
+    }
+
+    private val authInterceptor = AuthInterceptor(currentTokenStorage)
+
+    /**
+     * Клиент с interceptors приложения (auth, логирование, обработка ошибок) поверх общего пула
+     */
+    fun client(
+        tokenStorage: TokenStorage? = null,
+        enableLogging: Boolean = true
+    ): OkHttpClient {
+        if (tokenStorage != null) activeTokenStorage = tokenStorage
+        return clients.getOrPut(ClientKey(tokenStorage != null, enableLogging)) {
+            val client = ApiClient.createOkHttpClient(tokenStorage = null, enableLogging = enableLogging)
+            if (tokenStorage == null) {
+                client
+            } else {
+                // Auth interceptor — первым, как в ApiClient.createOkHttpClient
+                client.newBuilder()
+                    .apply { interceptors().add(0, authInterceptor) }
+                    .build()
+            }
+        }
+    }
+
+    /**
+     * API service для базового URL (кэшируется по интерфейсу, базовому URL, авторизации и логированию)
+     */
+    fun <T> service(
+        serviceType: Class<T>,
+        baseUrl: String,
+        tokenStorage: TokenStorage? = null,
+        enableLogging: Boolean = true
+    ): T {
+        val retrofitKey = RetrofitKey(baseUrl, ClientKey(tokenStorage != null, enableLogging))
+        val retrofit = retrofits.getOrPut(retrofitKey) {
+            ApiClient.createRetrofit(client(tokenStorage, enableLogging), baseUrl)
+        }
+        if (tokenStorage != null) activeTokenStorage = tokenStorage
+        val service = services.getOrPut(ServiceKey(serviceType, retrofitKey)) {
+            retrofit.create(serviceType) as Any
+        }
+        return serviceType.cast(service)!!
+    }
+}
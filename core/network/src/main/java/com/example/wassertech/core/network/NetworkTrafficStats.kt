@@ -0,0 +1,61 @@
+package ru.wassertech.core.network
+
+import android.util.Log
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Учёт трафика запросов: сколько байт передано по сети и сколько заняли бы данные без сжатия.
+ *
+ * Заполняется [ru.wassertech.core.network.interceptor.CompressionInterceptor] по каждому вызову;
+ * итоги за время жизни процесса доступны через [snapshot].
+ */
+object NetworkTrafficStats {
+
+    private const val TAG = "NetworkTrafficStats"
+
+    /**
+     * Итоги трафика
+     *
+     * @param sentRawBytes тело запросов до сжатия
+     * @param sentWireBytes тело запросов, фактически отправленное
+     * @param receivedRawBytes тело ответов после распаковки
+     * @param receivedWireBytes тело ответов, фактически полученное
+     */
+    data class Totals(
+        val sentRawBytes: Long,
+        val sentWireBytes: Long,
+        val receivedRawBytes: Long,
+        val receivedWireBytes: Long
+    )
+
+    private val sentRaw = AtomicLong()
+    private val sentWire = AtomicLong()
+    private val receivedRaw = AtomicLong()
+    private val receivedWire = AtomicLong()
+
+    /** Тело запроса: [rawBytes] до сжатия, [wireBytes] отправлено */
+    fun recordRequest(path: String, rawBytes: Long, wireBytes: Long) {
+        sentRaw.addAndGet(rawBytes)
+        sentWire.addAndGet(wireBytes)
+        Log.d(TAG, "$path: отправлено ${describe(rawBytes, wireBytes)}")
+    }
+
+    /** Тело ответа: [rawBytes] после распаковки, [wireBytes] получено */
+    fun recordResponse(path: String, rawBytes: Long, wireBytes: Long) {
+        receivedRaw.addAndGet(rawBytes)
+        receivedWire.addAndGet(wireBytes)
+        Log.d(TAG, "$path: получено ${describe(rawBytes, wireBytes)}")
+    }
+
+    fun snapshot(): Totals = Totals(
+        sentRawBytes = sentRaw.get(),
+        sentWireBytes = sentWire.get(),
+        receivedRawBytes = receivedRaw.get(),
+        receivedWireBytes = receivedWire.get()
+    )
+
+    private fun describe(rawBytes: Long, wireBytes: Long): String {
+        if (rawBytes == wireBytes || rawBytes <= 0L) return "$wireBytes байт"
+        return "$wireBytes байт вместо $rawBytes (${wireBytes * 100 / rawBytes}%)"
+    }
+}
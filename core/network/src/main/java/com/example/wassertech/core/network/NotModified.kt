@@ -0,0 +1,17 @@
+package ru.wassertech.core.network
+
+import retrofit2.Response
+
+/**
+ * Ответ отдан из HTTP-кэша без изменений на сервере: сервер ответил 304 на условный запрос
+ * (If-None-Match / If-Modified-Since) либо сохранённый ответ ещё свежий.
+ *
+ * Тело такого ответа — сохранённая копия уже полученного ранее; применять его заново
+ * нужно только если прошлое применение не завершилось.
+ */
+fun Response<*>.isNotModified(): Boolean {
+    val raw = raw()
+    if (raw.cacheResponse == null) return false
+    val network = raw.networkResponse
+    return network == null || network.code == 304
+}
@@ -15,7 +15,8 @@ interface RemoteMonitoringApi {
      * @param deviceId ID устройства
      * @param from Начальная дата и время в формате "YYYY-MM-DD+HH:MM:SS" (плюс вместо пробела)
      * @param to Конечная дата и время в формате "YYYY-MM-DD+HH:MM:SS" (плюс вместо пробела)
-     * @param limit Максимальное количество точек (опционально, для получения самых новых точек)
+     * @param limit Максимальное количество точек (опционально). С limit сервер отдаёт самые новые
+     *   точки интервала [from, to]; порядок точек в ответе не гарантирован — клиенты сортируют сами
      */
     @GET("sensors/temperature/get.php")
     suspend fun getTemperatureLogs(
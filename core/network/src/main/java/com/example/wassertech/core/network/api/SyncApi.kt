@@ -1,10 +1,12 @@
 package ru.wassertech.core.network.api
 
+import okhttp3.ResponseBody
 import retrofit2.Response
 import retrofit2.http.Body
 import retrofit2.http.GET
 import retrofit2.http.POST
 import retrofit2.http.Query
+import retrofit2.http.Streaming
 import ru.wassertech.core.network.dto.SyncPullResponse
 import ru.wassertech.core.network.dto.SyncPushRequest
 import ru.wassertech.core.network.dto.SyncPushResponse
@@ -25,12 +27,31 @@ interface SyncApi {
      * @param since Unix timestamp последней синхронизации (в секундах)
      * @param entities Список сущностей для получения (например, ["icon_packs", "icons"])
      * @param clientId Опциональный ID клиента для фильтрации данных (используется в app-client для роли CLIENT)
+     * @param limit Размер страницы для постраничной выдачи (null — вся выборка одним ответом).
+     *   В постраничном режиме запрашивается одна сущность за раз, записи упорядочены по id.
+     * @param afterId Курсор страницы: вернуть записи с id > afterId (значение next_after_id из предыдущего ответа)
      */
     @GET("sync/pull")
     suspend fun syncPull(
         @Query("since") since: Long,
         @Query("entities[]") entities: List<String>? = null,
-        @Query("client_id") clientId: String? = null
+        @Query("client_id") clientId: String? = null,
+        @Query("limit") limit: Int? = null,
+        @Query("after_id") afterId: String? = null
     ): Response<SyncPullResponse>
+    
+    /**
+     * Тот же sync/pull, но без конвертации тела: ответ читается потоково
+     * (см. [ru.wassertech.core.network.sync.SyncPullStreamReader]).
+     * Параметры — как у [syncPull].
+     */
+    @Streaming
+    @GET("sync/pull")
+    suspend fun syncPullStream(
+        @Query("since") since: Long,
+        @Query("entities[]") entities: List<String>? = null,
+        @Query("client_id") clientId: String? = null,
+        @Query("limit") limit: Int? = null,
+        @Query("after_id") afterId: String? = null
+    ): Response<ResponseBody>
 }
-
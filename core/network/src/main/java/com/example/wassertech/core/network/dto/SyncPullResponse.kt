@@ -18,8 +18,20 @@ data class SyncPullResponse(
     @SerializedName("icon_packs") val iconPacks: List<SyncIconPackDto> = emptyList(),
     val icons: List<SyncIconDto> = emptyList(),
     @SerializedName("user_membership") val userMembership: List<ru.wassertech.core.network.dto.sync.SyncUserMembershipDto>? = null,
-    val deleted: List<DeletedRecordDto> = emptyList()
-)
+    val deleted: List<DeletedRecordDto> = emptyList(),
+    // Постраничная выдача (заполняются сервером только при переданном limit)
+    @SerializedName("has_more") val hasMore: Boolean = false,
+    @SerializedName("next_after_id") val nextAfterId: String? = null
+) {
+    /**
+     * В ответе нет ни одной записи (изменений с since нет)
+     */
+    fun hasNoChanges(): Boolean =
+        clients.isEmpty() && sites.isEmpty() && installations.isEmpty() && components.isEmpty() &&
+            maintenance_sessions.isEmpty() && maintenance_values.isEmpty() &&
+            component_templates.isEmpty() && component_template_fields.isEmpty() &&
+            iconPacks.isEmpty() && icons.isEmpty() && userMembership.isNullOrEmpty() && deleted.isEmpty()
+}
 
 /**
  * Информация об удаленной записи
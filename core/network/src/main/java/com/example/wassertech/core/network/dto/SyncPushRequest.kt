@@ -15,5 +15,10 @@ data class SyncPushRequest(
     val component_templates: List<SyncComponentTemplateDto> = emptyList(),
     val component_template_fields: List<SyncChecklistFieldDto> = emptyList(), // Используем SyncChecklistFieldDto для совместимости структуры
     @SerializedName("user_membership") val userMembership: List<ru.wassertech.core.network.dto.sync.SyncUserMembershipDto> = emptyList(),
-    val deleted: List<DeletedRecordDto> = emptyList()
+    val deleted: List<DeletedRecordDto> = emptyList(),
+    /**
+     * Кодировка значений ТО: [SyncCapabilities.VALUES_ENCODING_FLAT] — значения только в maintenance_values,
+     * без вложенных maintenance_sessions[].values; null — прежний формат (не сериализуется)
+     */
+    @SerializedName("values_encoding") val valuesEncoding: String? = null
 )
@@ -7,9 +7,24 @@ data class SyncPushResponse(
     val success: Boolean,
     val processed: ProcessedCounts? = null,
     val result: PushResult? = null,
-    val errors: List<SyncError> = emptyList()
+    val errors: List<SyncError> = emptyList(),
+    /** Возможности сервера для следующих запросов push (см. [SyncCapabilities]); null — сервер не сообщает */
+    val capabilities: List<String>? = null
 )
 
+/**
+ * Возможности sync/push, которые сервер объявляет в [SyncPushResponse.capabilities].
+ */
+object SyncCapabilities {
+    /**
+     * Сервер принимает значения ТО только плоским списком maintenance_values:
+     * сессии отправляются без вложенных values ([SyncPushRequest.valuesEncoding] = [VALUES_ENCODING_FLAT]).
+     */
+    const val PUSH_FLAT_VALUES = "push_flat_values"
+
+    const val VALUES_ENCODING_FLAT = "flat"
+}
+
 /**
  * Количество обработанных записей по каждой сущности
  */
@@ -55,7 +70,3 @@ data class SyncError(
     val entityId: String,
     val message: String
 )
-
-
-
-
@@ -0,0 +1,247 @@
+package ru.wassertech.core.network.interceptor
+
+import android.util.Log
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.MultipartBody
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okio.Buffer
+import okio.BufferedSink
+import okio.ForwardingSource
+import okio.GzipSink
+import okio.GzipSource
+import okio.Source
+import okio.buffer
+import ru.wassertech.core.network.NetworkTrafficStats
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Interceptor сжатия трафика.
+ *
+ * Тела запросов на [compressedPaths] (sync/push, загрузка отчётов) больше [minBodyBytes]
+ * отправляются в gzip с заголовком `Content-Encoding: gzip`, если сжатие действительно
+ * уменьшает размер. Сжатие включается только для хоста, который объявил поддержку
+ * заголовком ответа `Accept-Encoding: gzip` (RFC 7694; в backend-example — `utils/request_encoding.php`).
+ * Если сервер отклонил именно сжатие (415 либо 400 с указанием на кодировку в заголовке
+ * `Accept-Encoding` или в теле ответа), запрос повторяется без сжатия и для хоста оно больше
+ * не используется; прочие 400 (ошибки валидации) возвращаются как есть, без повтора.
+ * Тела с PDF (в т.ч. multipart) не сжимаются и не буферизуются: PDF уже сжат.
+ * Для ответов запрашивается `Accept-Encoding: gzip` и выполняется потоковая распаковка —
+ * ответ не буферизуется целиком, поэтому потоковый разбор sync/pull сохраняется.
+ * Размеры до и после сжатия по каждому вызову пишутся в [NetworkTrafficStats]
+ * (ответы из HTTP-кэша учитываются с нулевым сетевым объёмом).
+ *
+ * Запросы с заголовком Range или собственным Accept-Encoding не трогаются.
+ */
+class CompressionInterceptor(
+    private val compressedPaths: Set<String> = DEFAULT_COMPRESSED_PATHS,
+    private val minBodyBytes: Long = DEFAULT_MIN_BODY_BYTES
+) : Interceptor {
+
+    companion object {
+        private const val TAG = "CompressionInterceptor"
+        private const val GZIP = "gzip"
+
+        /** Пути (окончание пути URL), тела запросов на которые сжимаются */
+        val DEFAULT_COMPRESSED_PATHS = setOf("sync/push", "reports/upload")
+
+        /** Тела меньше этого размера не сжимаются: выигрыш меньше заголовков gzip */
+        const val DEFAULT_MIN_BODY_BYTES = 1024L
+
+        /** Сколько байт тела ответа 400 просматривается в поисках указания на кодировку */
+        private const val ENCODING_ERROR_PEEK_BYTES = 4096L
+
+        /**
+         * Поддержка сжатых запросов по хостам: true — сервер объявил gzip, false — отклонил сжатый запрос
+         * (отказ не пересматривается до перезапуска процесса). Общая для всех клиентов.
+         */
+        private val gzipHosts = ConcurrentHashMap<String, Boolean>()
+    }
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val original = chain.request()
+        val path = original.url.encodedPath.trimStart('/')
+        val host = original.url.host
+        val builder = original.newBuilder()
+
+        val compressed = compressBody(original, path)
+        if (compressed != null) {
+            builder.header("Content-Encoding", GZIP)
+            builder.method(original.method, compressed)
+        }
+
+        val negotiate = original.header("Accept-Encoding") == null && original.header("Range") == null
+        if (negotiate) {
+            builder.header("Accept-Encoding", GZIP)
+        }
+
+        var response = chain.proceed(builder.build())
+        if (compressed != null && isEncodingRejected(response)) {
+            Log.w(TAG, "$path: сервер не принял сжатый запрос (HTTP ${response.code}), повтор без сжатия")
+            gzipHosts[host] = false
+            response.close()
+            // Статистика логического запроса уже записана в compressBody — повтор её не дублирует
+            builder.removeHeader("Content-Encoding")
+            builder.method(original.method, original.body)
+            response = chain.proceed(builder.build())
+        }
+        rememberRequestEncoding(host, response)
+        return if (negotiate) decompress(response, path) else response
+    }
+
+    /**
+     * Сервер отклонил кодировку тела, а не сам запрос: 415 (RFC 7694) либо 400, в котором
+     * заголовок `Accept-Encoding` или начало тела ответа называют кодировку.
+     */
+    private fun isEncodingRejected(response: Response): Boolean {
+        if (response.code == 415) return true
+        if (response.code != 400) return false
+        if (response.header("Accept-Encoding") != null) return true
+        // Ответ может быть сжат сервером (Accept-Encoding: gzip выставлен вручную, OkHttp его не распакует)
+        val text = try {
+            val peeked = response.body?.source()?.peek() ?: return false
+            val source = if (GZIP.equals(response.header("Content-Encoding"), ignoreCase = true)) {
+                GzipSource(peeked).buffer()
+            } else {
+                peeked
+            }
+            source.request(ENCODING_ERROR_PEEK_BYTES)
+            source.buffer.readUtf8(minOf(source.buffer.size, ENCODING_ERROR_PEEK_BYTES))
+        } catch (e: IOException) {
+            return false
+        }
+        return text.contains("encoding", ignoreCase = true) || text.contains(GZIP, ignoreCase = true)
+    }
+
+    /**
+     * Запоминает объявленную сервером поддержку сжатых запросов (`Accept-Encoding` в ответе)
+     */
+    private fun rememberRequestEncoding(host: String, response: Response) {
+        val accepted = response.headers("Accept-Encoding")
+            .flatMap { it.split(',') }
+            .any { it.substringBefore(';').trim().equals(GZIP, ignoreCase = true) }
+        if (accepted && gzipHosts.putIfAbsent(host, true) == null) {
+            Log.d(TAG, "$host: сервер принимает сжатые запросы (gzip)")
+        }
+    }
+
+    /**
+     * Сжатое тело запроса или null, если запрос отправляется без сжатия
+     */
+    private fun compressBody(request: Request, path: String): RequestBody? {
+        val body = request.body ?: return null
+        val declaredLength = body.contentLength()
+        val eligible = compressedPaths.any { path.endsWith(it) } &&
+            gzipHosts[request.url.host] == true &&
+            request.header("Content-Encoding") == null &&
+            !body.isOneShot() && !body.isDuplex() &&
+            !body.containsPdf() &&
+            (declaredLength < 0 || declaredLength >= minBodyBytes)
+        if (!eligible) {
+            if (declaredLength >= 0) NetworkTrafficStats.recordRequest(path, declaredLength, declaredLength)
+            return null
+        }
+
+        val raw = Buffer().also { body.writeTo(it) }
+        val rawBytes = raw.size
+        val compressed = Buffer()
+        GzipSink(compressed).buffer().use { it.writeAll(raw) }
+
+        if (rawBytes < minBodyBytes || compressed.size >= rawBytes) {
+            // Сжатие не даёт выигрыша — тело (повторно) отправляется исходным
+            NetworkTrafficStats.recordRequest(path, rawBytes, rawBytes)
+            return null
+        }
+        NetworkTrafficStats.recordRequest(path, rawBytes, compressed.size)
+        return GzipRequestBody(body.contentType(), compressed.readByteArray())
+    }
+
+    /** PDF уже сжат: такие тела (и multipart с PDF) отправляются как есть, без буферизации */
+    private fun RequestBody.containsPdf(): Boolean {
+        val type = contentType()
+        if (type != null && type.type == "application" && type.subtype == "pdf") return true
+        return this is MultipartBody && parts.any { it.body.containsPdf() }
+    }
+
+    /**
+     * Потоковая распаковка gzip-ответа с учётом объёма до и после распаковки
+     */
+    private fun decompress(response: Response, path: String): Response {
+        val body = response.body ?: return response
+        val hasBody = response.request.method != "HEAD" && response.code != 204 &&
+            response.code != 304 && body.contentLength() != 0L
+        if (!hasBody) return response
+
+        // Ответ из HTTP-кэша (в т.ч. после 304) по сети не передавался
+        val fromCache = response.cacheResponse != null &&
+            (response.networkResponse == null || response.networkResponse?.code == 304)
+
+        if (!GZIP.equals(response.header("Content-Encoding"), ignoreCase = true)) {
+            val length = body.contentLength()
+            if (length > 0) NetworkTrafficStats.recordResponse(path, length, if (fromCache) 0L else length)
+            return response
+        }
+
+        Log.d(TAG, "$path: ответ сжат сервером (gzip)")
+        val source = DecompressingSource(CountingSource(body.source()), path, fromCache)
+        return response.newBuilder()
+            .removeHeader("Content-Encoding")
+            .removeHeader("Content-Length")
+            .body(source.buffer().asResponseBody(body.contentType(), -1L))
+            .build()
+    }
+
+    private class GzipRequestBody(
+        private val contentType: MediaType?,
+        private val bytes: ByteArray
+    ) : RequestBody() {
+        override fun contentType(): MediaType? = contentType
+        override fun contentLength(): Long = bytes.size.toLong()
+        override fun writeTo(sink: BufferedSink) {
+            sink.write(bytes)
+        }
+    }
+
+    /** Считает байты, прочитанные из сети (до распаковки) */
+    private class CountingSource(delegate: Source) : ForwardingSource(delegate) {
+        var bytesRead = 0L
+            private set
+
+        override fun read(sink: Buffer, byteCount: Long): Long {
+            val read = super.read(sink, byteCount)
+            if (read > 0) bytesRead += read
+            return read
+        }
+    }
+
+    /** Распаковывает gzip и по окончании чтения (или закрытию) записывает статистику вызова */
+    private class DecompressingSource(
+        private val wire: CountingSource,
+        private val path: String,
+        private val fromCache: Boolean
+    ) : ForwardingSource(GzipSource(wire)) {
+        private var rawBytes = 0L
+        private var reported = false
+
+        override fun read(sink: Buffer, byteCount: Long): Long {
+            val read = super.read(sink, byteCount)
+            if (read == -1L) report() else rawBytes += read
+            return read
+        }
+
+        override fun close() {
+            report()
+            super.close()
+        }
+
+        private fun report() {
+            if (reported) return
+            reported = true
+            NetworkTrafficStats.recordResponse(path, rawBytes, if (fromCache) 0L else wire.bytesRead)
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.wassertech.core.network.interceptor
+
+import okhttp3.Interceptor
+import okhttp3.Response
+
+/**
+ * Сетевой interceptor, привязывающий записи HTTP-кэша к токену.
+ *
+ * OkHttp хранит ответы по URL, а кэш общий для всех аккаунтов. Если ответ на запрос
+ * с заголовком Authorization не объявляет `Vary: Authorization`, заголовок добавляется
+ * до сохранения в кэш: сохранённый ответ отдаётся только запросу с тем же токеном,
+ * а запрос другого пользователя уходит на сервер без If-None-Match.
+ * Так корректность кэша не зависит от очистки при выходе ([ru.wassertech.core.network.HttpClientRegistry.evictCache]).
+ */
+class PrivateCacheInterceptor : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val response = chain.proceed(request)
+        if (request.header("Authorization") == null) return response
+        val varies = response.headers("Vary")
+            .flatMap { it.split(',') }
+            .map { it.trim() }
+            .any { it == "*" || it.equals("Authorization", ignoreCase = true) }
+        if (varies) return response
+        return response.newBuilder()
+            .addHeader("Vary", "Authorization")
+            .build()
+    }
+}
@@ -0,0 +1,145 @@
+package ru.wassertech.core.network.sync
+
+import com.google.gson.Gson
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import okhttp3.ResponseBody
+import ru.wassertech.core.network.dto.*
+import ru.wassertech.core.network.dto.sync.SyncUserMembershipDto
+
+/**
+ * Итог потокового разбора ответа sync/pull (всё, кроме самих записей).
+ */
+data class SyncPullStreamResult(
+    val timestamp: Long,
+    val hasMore: Boolean,
+    val nextAfterId: String?,
+    /** Количество разобранных элементов по секциям ответа */
+    val counts: Map<String, Int>
+)
+
+/**
+ * Потоковый разбор ответа sync/pull.
+ *
+ * В отличие от GsonConverterFactory, тело не собирается целиком в [SyncPullResponse]:
+ * [JsonReader] читает его напрямую из OkHttp BufferedSource, а элементы массивов
+ * отдаются пачками по [batchSize] в виде частичных [SyncPullResponse] (заполнена одна секция).
+ * Пиковое потребление памяти определяется размером пачки, а не объёмом данных аккаунта.
+ *
+ * Разбор блокирующий — вызывать на Dispatchers.IO.
+ * Для запроса нужно отключать логирование тела (HttpLoggingInterceptor.Level.BODY буферизует ответ целиком).
+ */
+class SyncPullStreamReader(
+    private val batchSize: Int = DEFAULT_BATCH_SIZE,
+    private val gson: Gson = Gson()
+) {
+
+    companion object {
+        const val DEFAULT_BATCH_SIZE = 200
+    }
+
+    /**
+     * Секция ответа: тип элемента и сборка частичного ответа из пачки
+     */
+    private class Section<T>(
+        val type: Class<T>,
+        val wrap: (timestamp: Long, batch: List<T>) -> SyncPullResponse
+    )
+
+    private val sections: Map<String, Section<*>> = mapOf(
+        "clients" to Section(SyncClientDto::class.java) { ts, b -> SyncPullResponse(timestamp = ts, clients = b) },
+        "sites" to Section(SyncSiteDto::class.java) { ts, b -> SyncPullResponse(timestamp = ts, sites = b) },
+        "installations" to Section(SyncInstallationDto::class.java) { ts, b ->
+            SyncPullResponse(timestamp = ts, installations = b)
+        },
+        "components" to Section(SyncComponentDto::class.java) { ts, b -> SyncPullResponse(timestamp = ts, components = b) },
+        "maintenance_sessions" to Section(SyncMaintenanceSessionDto::class.java) { ts, b ->
+            SyncPullResponse(timestamp = ts, maintenance_sessions = b)
+        },
+        "maintenance_values" to Section(SyncMaintenanceValueDto::class.java) { ts, b ->
+            SyncPullResponse(timestamp = ts, maintenance_values = b)
+        },
+        "component_templates" to Section(SyncComponentTemplateDto::class.java) { ts, b ->
+            SyncPullResponse(timestamp = ts, component_templates = b)
+        },
+        "component_template_fields" to Section(SyncChecklistFieldDto::class.java) { ts, b ->
+            SyncPullResponse(timestamp = ts, component_template_fields = b)
+        },
+        "icon_packs" to Section(SyncIconPackDto::class.java) { ts, b -> SyncPullResponse(timestamp = ts, iconPacks = b) },
+        "icons" to Section(SyncIconDto::class.java) { ts, b -> SyncPullResponse(timestamp = ts, icons = b) },
+        "user_membership" to Section(SyncUserMembershipDto::class.java) { ts, b ->
+            SyncPullResponse(timestamp = ts, userMembership = b)
+        },
+        "deleted" to Section(DeletedRecordDto::class.java) { ts, b -> SyncPullResponse(timestamp = ts, deleted = b) }
+    )
+
+    /**
+     * Читает тело ответа и передаёт пачки записей в [onBatch] в порядке следования секций в JSON.
+     * Тело закрывается по завершении.
+     */
+    suspend fun read(
+        body: ResponseBody,
+        onBatch: suspend (SyncPullResponse) -> Unit
+    ): SyncPullStreamResult {
+        var timestamp = 0L
+        var hasMore = false
+        var nextAfterId: String? = null
+        val counts = mutableMapOf<String, Int>()
+
+        body.use {
+            JsonReader(body.source().inputStream().reader(Charsets.UTF_8)).use { reader ->
+                reader.beginObject()
+                while (reader.hasNext()) {
+                    when (val name = reader.nextName()) {
+                        "timestamp" -> timestamp = reader.nextLong()
+                        "has_more" -> hasMore = reader.nextBoolean()
+                        "next_after_id" -> nextAfterId = if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull()
+                            null
+                        } else {
+                            reader.nextString()
+                        }
+                        else -> {
+                            val section = sections[name]
+                            if (section == null || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                                reader.skipValue()
+                            } else {
+                                counts[name] = readSection(reader, section, timestamp, onBatch)
+                            }
+                        }
+                    }
+                }
+                reader.endObject()
+            }
+        }
+
+        return SyncPullStreamResult(timestamp, hasMore, nextAfterId, counts)
+    }
+
+    private suspend fun <T> readSection(
+        reader: JsonReader,
+        section: Section<T>,
+        timestamp: Long,
+        onBatch: suspend (SyncPullResponse) -> Unit
+    ): Int {
+        val adapter = gson.getAdapter(section.type)
+        val batch = ArrayList<T>(batchSize)
+        var count = 0
+
+        reader.beginArray()
+        while (reader.hasNext()) {
+            adapter.read(reader)?.let { batch += it }
+            count++
+            if (batch.size >= batchSize) {
+                onBatch(section.wrap(timestamp, batch.toList()))
+                batch.clear()
+            }
+        }
+        reader.endArray()
+
+        if (batch.isNotEmpty()) {
+            onBatch(section.wrap(timestamp, batch.toList()))
+        }
+        return count
+    }
+}
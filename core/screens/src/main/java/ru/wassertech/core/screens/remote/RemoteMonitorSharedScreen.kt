@@ -10,11 +10,14 @@ import androidx.compose.material.icons.filled.DeviceThermostat
 import androidx.compose.material.icons.filled.ErrorOutline
 import androidx.compose.material3.*
 import androidx.compose.runtime.*
+import androidx.compose.runtime.saveable.rememberSaveable
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.graphics.Brush
 import androidx.compose.ui.graphics.toArgb
+import androidx.compose.ui.layout.onSizeChanged
+import androidx.compose.ui.platform.LocalDensity
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.unit.dp
 import androidx.compose.foundation.Canvas
@@ -35,9 +38,17 @@ import com.patrykandpatrick.vico.core.entry.ChartEntryModelProducer
 import com.patrykandpatrick.vico.core.entry.FloatEntry
 import ru.wassertech.core.ui.components.AppEmptyState
 import ru.wassertech.core.screens.remote.ui.RemoteMonitorUiState
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import java.text.SimpleDateFormat
 import java.util.*
 
+/** Шаг между точками графика; определяет и максимальное число точек на ширину графика */
+private val CHART_POINT_SPACING = 2.67.dp
+
+/** Число точек до первого измерения ширины графика */
+private const val DEFAULT_MAX_CHART_POINTS = 300
+
 /**
  * Shared-экран для удалённого мониторинга температуры
  */
@@ -48,6 +59,9 @@ fun RemoteMonitorSharedScreen(
     onBackClick: () -> Unit,
     modifier: Modifier = Modifier
 ) {
+    // Период графиков — общий для обоих датчиков
+    var chartRange by rememberSaveable { mutableStateOf(TemperatureChartRange.RECENT) }
+
     Scaffold(
         topBar = {
             // Заголовок убран, используется заголовок внешнего экрана
@@ -113,6 +127,11 @@ fun RemoteMonitorSharedScreen(
                                 .fillMaxSize()
                                 .padding(16.dp)
                         ) {
+                            TemperatureRangeSelector(
+                                selected = chartRange,
+                                onSelect = { chartRange = it },
+                                modifier = Modifier.padding(bottom = 12.dp)
+                            )
                             Card(
                                 modifier = Modifier
                                     .fillMaxWidth()
@@ -174,7 +193,8 @@ fun RemoteMonitorSharedScreen(
                                         TemperatureChart(
                                             points = uiState.points1,
                                             modifier = Modifier
-                                                .fillMaxSize()
+                                                .fillMaxSize(),
+                                            range = chartRange
                                         )
                                     }
                                 }
@@ -193,6 +213,11 @@ fun RemoteMonitorSharedScreen(
                                 .padding(16.dp),
                             verticalArrangement = Arrangement.spacedBy(12.dp)
                         ) {
+                            TemperatureRangeSelector(
+                                selected = chartRange,
+                                onSelect = { chartRange = it }
+                            )
+
                             // График первого устройства
                             Card(
                                 modifier = Modifier
@@ -255,7 +280,8 @@ fun RemoteMonitorSharedScreen(
                                         TemperatureChart(
                                             points = uiState.points1,
                                             modifier = Modifier
-                                                .fillMaxSize()
+                                                .fillMaxSize(),
+                                            range = chartRange
                                         )
                                     }
                                 }
@@ -323,7 +349,8 @@ fun RemoteMonitorSharedScreen(
                                         TemperatureChart(
                                             points = uiState.points2,
                                             modifier = Modifier
-                                                .fillMaxSize()
+                                                .fillMaxSize(),
+                                            range = chartRange
                                         )
                                     }
                                 }
@@ -342,12 +369,40 @@ fun RemoteMonitorSharedScreen(
 }
 
 /**
- * Компонент графика температуры с использованием Vico
+ * Переключатель периода графиков температуры
+ */
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+private fun TemperatureRangeSelector(
+    selected: TemperatureChartRange,
+    onSelect: (TemperatureChartRange) -> Unit,
+    modifier: Modifier = Modifier
+) {
+    Row(
+        modifier = modifier.fillMaxWidth(),
+        horizontalArrangement = Arrangement.spacedBy(8.dp)
+    ) {
+        TemperatureChartRange.values().forEach { range ->
+            FilterChip(
+                selected = selected == range,
+                onClick = { onSelect(range) },
+                label = { Text(range.title) }
+            )
+        }
+    }
+}
+
+/**
+ * Компонент графика температуры с использованием Vico.
+ *
+ * Точки окна [range] прореживаются (LTTB, см. [TemperatureDecimation]) до числа,
+ * помещающегося по ширине графика; расчёт выполняется вне главного потока.
  */
 @Composable
 fun TemperatureChart(
     points: List<TemperaturePoint>,
-    modifier: Modifier = Modifier
+    modifier: Modifier = Modifier,
+    range: TemperatureChartRange = TemperatureChartRange.RECENT
 ) {
     if (points.isEmpty()) {
         Box(
@@ -362,21 +417,25 @@ fun TemperatureChart(
         return
     }
 
-    // Мемоизируем отсортированные точки и ограничиваем до последних 1000 точек (самые новые)
-    // Это ограничение нужно только для оптимизации памяти, так как сервер может вернуть больше данных
-    val sortedPoints = remember(points) {
-        val sorted = points.sortedBy { it.timestampMillis }
-        val allLimited = sorted.takeLast(1000) // Храним последние 1000 точек (самые новые)
-        android.util.Log.e(
-            "TemperatureChart",
-            "=== ОГРАНИЧЕНИЕ ТОЧЕК: было=${sorted.size}, храним=${allLimited.size} ==="
-        )
-        allLimited
+    // Ширина графика в пикселях: от неё зависит, сколько точек имеет смысл рисовать
+    var chartWidthPx by remember { mutableStateOf(0) }
+    val pointSpacingPx = with(LocalDensity.current) { CHART_POINT_SPACING.toPx() }
+    val maxPoints = if (chartWidthPx > 0) {
+        (chartWidthPx / pointSpacingPx).toInt().coerceAtLeast(3)
+    } else {
+        DEFAULT_MAX_CHART_POINTS
     }
 
-    // Для отображения берем только последние 60 точек, чтобы автоматически показывать последние данные
-    val displayPoints = remember(sortedPoints) {
-        sortedPoints.takeLast(48) // Показываем только последние 60 точек
+    // Окно и прореживание считаем на Dispatchers.Default; до готовности показываются прежние точки,
+    // а до первого расчёта — последние точки как есть, чтобы график не появлялся пустым
+    val seedCount = if (range == TemperatureChartRange.RECENT) TemperatureChartRange.RECENT_POINTS_COUNT else maxPoints
+    val displayPoints by produceState(
+        initialValue = points.subList((points.size - seedCount).coerceAtLeast(0), points.size),
+        points, range, maxPoints
+    ) {
+        value = withContext(Dispatchers.Default) {
+            TemperatureDecimation.prepare(points, range, maxPoints)
+        }
     }
 
     // Вычисляем диапазон оси Y: от min - 2 до max + 2 градуса (на основе отображаемых точек)
@@ -428,7 +487,7 @@ fun TemperatureChart(
         displayPoints.lastOrNull()?.valueCelsius
     }
 
-    Column(modifier = modifier) {
+    Column(modifier = modifier.onSizeChanged { chartWidthPx = it.width }) {
 
         // Producer создаём ОДИН РАЗ
         val chartEntryModelProducer = remember { ChartEntryModelProducer() }
@@ -438,13 +497,13 @@ fun TemperatureChart(
             entries.size,
             entries.firstOrNull()?.y,
             entries.lastOrNull()?.y,
-            points.size,
-            points.lastOrNull()?.timestampMillis
+            displayPoints.size,
+            displayPoints.lastOrNull()?.timestampMillis
         ) {
             android.util.Log.e(
                 "TemperatureChart",
                 "=== ОБНОВЛЕНИЕ ГРАФИКА: points=${points.size}, " +
-                        "sortedPoints=${sortedPoints.size}, entries=${entries.size} ==="
+                        "displayPoints=${displayPoints.size}, entries=${entries.size} ==="
             )
 
             // Устанавливаем одну линию со всеми точками
@@ -550,7 +609,7 @@ fun TemperatureChart(
             Chart(
                 chart = lineChart(
                     lines = lineSpecs,
-                    spacing = 2.67.dp // Уменьшили spacing еще в 1.5 раза для устранения скролла
+                    spacing = CHART_POINT_SPACING // Уменьшили spacing еще в 1.5 раза для устранения скролла
                 ),
                 chartModelProducer = chartEntryModelProducer,
                 startAxis = startAxis,
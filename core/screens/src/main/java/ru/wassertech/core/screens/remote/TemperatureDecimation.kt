@@ -0,0 +1,111 @@
+package ru.wassertech.core.screens.remote
+
+import kotlin.math.abs
+
+/**
+ * Период, отображаемый на графике температуры.
+ * Длиннее 10 часов периодов нет: экран держит в памяти данные только за последние 10 часов.
+ *
+ * @param windowMillis ширина окна по времени (от последней точки назад); для [RECENT] не используется
+ * @param title подпись в переключателе периода
+ */
+enum class TemperatureChartRange(val windowMillis: Long, val title: String) {
+    /** Последние [RECENT_POINTS_COUNT] точек без прореживания */
+    RECENT(0L, "Последние"),
+    /** Все данные экрана, прореживание LTTB до ширины графика */
+    HOURS_10(10L * 60 * 60 * 1000, "10 ч");
+
+    companion object {
+        const val RECENT_POINTS_COUNT = 48
+    }
+}
+
+/**
+ * Прореживание временного ряда для графика: число точек на экране ограничено шириной графика,
+ * а не объёмом данных, поэтому время отрисовки не растёт с длиной периода.
+ */
+object TemperatureDecimation {
+
+    /**
+     * Точки для отображения: выбор окна [range] и прореживание до [maxPoints].
+     * Ожидаются точки по возрастанию времени (сортировка выполняется, только если порядок нарушен).
+     */
+    fun prepare(points: List<TemperaturePoint>, range: TemperatureChartRange, maxPoints: Int): List<TemperaturePoint> {
+        val sorted = if (isSortedByTime(points)) points else points.sortedBy { it.timestampMillis }
+        if (range == TemperatureChartRange.RECENT) {
+            return sorted.takeLast(TemperatureChartRange.RECENT_POINTS_COUNT)
+        }
+        val last = sorted.lastOrNull() ?: return emptyList()
+        val window = sorted.subList(firstIndexFrom(sorted, last.timestampMillis - range.windowMillis), sorted.size)
+        return lttb(window, maxPoints)
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: [threshold] точек, сохраняющих форму кривой.
+     * Первая и последняя точки сохраняются всегда.
+     */
+    fun lttb(points: List<TemperaturePoint>, threshold: Int): List<TemperaturePoint> {
+        if (threshold < 3 || points.size <= threshold) return points
+
+        val result = ArrayList<TemperaturePoint>(threshold)
+        val bucketSize = (points.size - 2).toDouble() / (threshold - 2)
+        var selected = 0
+        result.add(points[0])
+
+        for (bucket in 0 until threshold - 2) {
+            // Среднее следующего интервала — третья вершина треугольника
+            val nextStart = ((bucket + 1) * bucketSize).toInt() + 1
+            val nextEnd = minOf(((bucket + 2) * bucketSize).toInt() + 1, points.size)
+            var avgX = 0.0
+            var avgY = 0.0
+            for (i in nextStart until nextEnd) {
+                avgX += points[i].timestampMillis
+                avgY += points[i].valueCelsius
+            }
+            val nextCount = (nextEnd - nextStart).coerceAtLeast(1)
+            avgX /= nextCount
+            avgY /= nextCount
+
+            // В текущем интервале берём точку с наибольшей площадью треугольника
+            val start = (bucket * bucketSize).toInt() + 1
+            val end = ((bucket + 1) * bucketSize).toInt() + 1
+            val ax = points[selected].timestampMillis.toDouble()
+            val ay = points[selected].valueCelsius.toDouble()
+            var maxArea = -1.0
+            var maxIndex = start
+            for (i in start until end) {
+                val area = abs(
+                    (ax - avgX) * (points[i].valueCelsius - ay) -
+                        (ax - points[i].timestampMillis) * (avgY - ay)
+                )
+                if (area > maxArea) {
+                    maxArea = area
+                    maxIndex = i
+                }
+            }
+            result.add(points[maxIndex])
+            selected = maxIndex
+        }
+
+        result.add(points.last())
+        return result
+    }
+
+    private fun isSortedByTime(points: List<TemperaturePoint>): Boolean {
+        for (i in 1 until points.size) {
+            if (points[i].timestampMillis < points[i - 1].timestampMillis) return false
+        }
+        return true
+    }
+
+    /** Индекс первой точки не раньше [fromMillis] (бинарный поиск) */
+    private fun firstIndexFrom(sorted: List<TemperaturePoint>, fromMillis: Long): Int {
+        var low = 0
+        var high = sorted.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (sorted[mid].timestampMillis < fromMillis) low = mid + 1 else high = mid
+        }
+        return low
+    }
+}
@@ -1,7 +1,9 @@
 package ru.wassertech.core.screens.remote
 
-import java.text.SimpleDateFormat
-import java.util.*
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
 
 /**
  * Доменная модель точки измерения температуры
@@ -11,18 +13,26 @@ data class TemperaturePoint(
     val valueCelsius: Float
 )
 
+/**
+ * Формат timestamp в ответе API: "YYYY-MM-DD HH:MM:SS" (локальное время).
+ * DateTimeFormatter потокобезопасен, поэтому создаётся один раз на все точки.
+ */
+private val TEMPERATURE_TIMESTAMP_FORMAT: DateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+
 /**
  * Маппер из DTO в доменную модель
  */
-fun ru.wassertech.core.network.dto.TemperatureLogItemDto.toTemperaturePoint(): TemperaturePoint {
-    // Парсим timestamp в формате "YYYY-MM-DD HH:MM:SS"
-    val format = SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-    val date = format.parse(timestamp) ?: Date()
-    val timestampMillis = date.time
+fun ru.wassertech.core.network.dto.TemperatureLogItemDto.toTemperaturePoint(
+    zone: ZoneId = ZoneId.systemDefault()
+): TemperaturePoint {
+    val timestampMillis = try {
+        LocalDateTime.parse(timestamp, TEMPERATURE_TIMESTAMP_FORMAT).atZone(zone).toInstant().toEpochMilli()
+    } catch (e: DateTimeParseException) {
+        System.currentTimeMillis()
+    }
     
     return TemperaturePoint(
         timestampMillis = timestampMillis,
         valueCelsius = value.toFloat()
     )
 }
-
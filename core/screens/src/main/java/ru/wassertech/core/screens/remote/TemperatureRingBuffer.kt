@@ -0,0 +1,67 @@
+package ru.wassertech.core.screens.remote
+
+/**
+ * Кольцевой буфер точек температуры для графика.
+ *
+ * Хранит не более [capacity] последних точек в порядке возрастания времени в примитивных массивах;
+ * новые точки дописываются в конец без копирования уже накопленных, самые старые вытесняются.
+ * Не потокобезопасен: используется из одной корутины опроса.
+ */
+class TemperatureRingBuffer(private val capacity: Int) {
+
+    private val timestamps = LongArray(capacity)
+    private val values = FloatArray(capacity)
+    private var head = 0 // Индекс самой старой точки
+    
+    var size = 0
+        private set
+
+    /** Время последней точки или null, если буфер пуст */
+    val lastTimestampMillis: Long?
+        get() = if (size == 0) null else timestamps[index(size - 1)]
+
+    /**
+     * Дописывает точки, отсортированные по времени; точки не новее последней пропускаются.
+     * @return количество добавленных точек
+     */
+    fun append(points: List<TemperaturePoint>): Int {
+        var added = 0
+        for (point in points) {
+            val last = lastTimestampMillis
+            if (last != null && point.timestampMillis <= last) continue
+            if (size == capacity) {
+                head = (head + 1) % capacity
+                size--
+            }
+            val i = index(size)
+            timestamps[i] = point.timestampMillis
+            values[i] = point.valueCelsius
+            size++
+            added++
+        }
+        return added
+    }
+
+    /**
+     * Удаляет точки старше [cutoffMillis] (выход за окно графика).
+     */
+    fun dropOlderThan(cutoffMillis: Long) {
+        while (size > 0 && timestamps[head] < cutoffMillis) {
+            head = (head + 1) % capacity
+            size--
+        }
+    }
+
+    fun clear() {
+        head = 0
+        size = 0
+    }
+
+    /** Снимок точек по возрастанию времени (для публикации в UI state) */
+    fun toList(): List<TemperaturePoint> = List(size) { n ->
+        val i = index(n)
+        TemperaturePoint(timestampMillis = timestamps[i], valueCelsius = values[i])
+    }
+
+    private fun index(n: Int): Int = (head + n) % capacity
+}
@@ -28,6 +28,8 @@ android {
 dependencies {
     // Core modules
     implementation(project(":core:network"))
+    // OkHttp — для загрузки архивов паков иконок (IconPackArchiveDownloader)
+    implementation("com.squareup.okhttp3:okhttp:4.12.0")
     
     val composeBom = platform("androidx.compose:compose-bom:2024.10.01")
     implementation(composeBom)
@@ -0,0 +1,99 @@
+package ru.wassertech.core.ui.icons
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.LruCache
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * Кэш декодированных изображений иконок из локальных файлов.
+ *
+ * - LRU, ограниченный по суммарному размеру bitmap в байтах (1/16 доступной куче);
+ * - декодирование выполняется на Dispatchers.IO, а не в композиции;
+ * - изображение уменьшается через inSampleSize до целевого размера в пикселях.
+ *
+ * Ключ — путь и целевой размер, без обращения к диску, поэтому [get] можно вызывать в композиции.
+ * Код, перезаписывающий или удаляющий файлы иконок, вызывает [invalidate]; вместе с этим растёт
+ * [generation], и показанные IconImage перечитывают изображение.
+ */
+object IconBitmapCache {
+
+    private val maxBytes: Int = (Runtime.getRuntime().maxMemory() / 16).coerceAtMost(Int.MAX_VALUE.toLong()).toInt()
+
+    private val cache = object : LruCache<String, Bitmap>(maxBytes) {
+        override fun sizeOf(key: String, value: Bitmap): Int = value.allocationByteCount
+    }
+
+    private val generationState = MutableStateFlow(0)
+
+    /** Увеличивается при каждом [invalidate]/[clear] */
+    val generation: StateFlow<Int> = generationState.asStateFlow()
+
+    private fun key(path: String, targetPx: Int): String = "$path|$targetPx"
+
+    /**
+     * Синхронная проверка кэша (без декодирования) — для первого кадра композиции.
+     */
+    fun get(path: String, targetPx: Int): Bitmap? = cache.get(key(path, targetPx))
+
+    /**
+     * Возвращает изображение из кэша или декодирует файл на Dispatchers.IO.
+     * @return null, если файла нет или его не удалось декодировать
+     */
+    suspend fun load(path: String, targetPx: Int): Bitmap? = withContext(Dispatchers.IO) {
+        val file = File(path)
+        if (!file.exists()) return@withContext null
+        val key = key(path, targetPx)
+        cache.get(key)?.let { return@withContext it }
+        try {
+            decodeSampled(file, targetPx)?.also { cache.put(key, it) }
+        } catch (e: Exception) {
+            android.util.Log.w("IconBitmapCache", "Не удалось декодировать $path: ${e.message}")
+            null
+        }
+    }
+
+    /**
+     * Удаляет из кэша все размеры изображения по пути (после перезаписи файла или удаления пака).
+     */
+    fun invalidate(path: String) {
+        val removed = cache.snapshot().keys
+            .filter { it.startsWith("$path|") }
+            .onEach { cache.remove(it) }
+        if (removed.isNotEmpty()) generationState.update { it + 1 }
+    }
+
+    fun clear() {
+        cache.evictAll()
+        generationState.update { it + 1 }
+    }
+
+    private fun decodeSampled(file: File, targetPx: Int): Bitmap? {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeFile(file.absolutePath, bounds)
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null
+
+        val options = BitmapFactory.Options().apply {
+            inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, targetPx)
+        }
+        return BitmapFactory.decodeFile(file.absolutePath, options)
+    }
+
+    /**
+     * Наибольшая степень двойки, при которой обе стороны остаются не меньше целевого размера
+     */
+    private fun calculateInSampleSize(width: Int, height: Int, targetPx: Int): Int {
+        if (targetPx <= 0) return 1
+        var sampleSize = 1
+        while (width / (sampleSize * 2) >= targetPx && height / (sampleSize * 2) >= targetPx) {
+            sampleSize *= 2
+        }
+        return sampleSize
+    }
+}
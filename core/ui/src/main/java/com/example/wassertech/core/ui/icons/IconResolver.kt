@@ -1,21 +1,29 @@
 package ru.wassertech.core.ui.icons
 
 import android.content.Context
-import android.graphics.BitmapFactory
 import androidx.annotation.DrawableRes
 import androidx.compose.foundation.Image
+import androidx.compose.foundation.background
+import androidx.compose.foundation.layout.Box
 import androidx.compose.foundation.layout.size
+import androidx.compose.foundation.shape.RoundedCornerShape
 import androidx.compose.material3.Icon
+import androidx.compose.material3.MaterialTheme
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.collectAsState
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.asImageBitmap
 import androidx.compose.ui.layout.ContentScale
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.LocalDensity
 import androidx.compose.ui.res.painterResource
 import androidx.compose.ui.unit.dp
 import ru.wassertech.core.ui.R
-import java.io.File
 
 /**
  * Утилита для разрешения иконок из ресурсов Android и локальных файлов.
@@ -135,39 +143,44 @@ object IconResolver {
         code: String? = null // Код иконки для fallback поиска ресурса
     ) {
         val context = LocalContext.current
+        val targetPx = with(LocalDensity.current) { size.roundToPx() }
 
-        android.util.Log.d("IconResolver",
-            "localImagePath=${localImagePath}"
-        )
-
-        // Пытаемся загрузить из локального файла
-        val localBitmap = remember(localImagePath) {
-            localImagePath?.let { path ->
-                try {
-                    val file = File(path)
-
-
-                    if (file.exists()) {
-                        BitmapFactory.decodeFile(file.absolutePath)?.asImageBitmap()
-                    } else {
-                        null
-                    }
-                } catch (e: Exception) {
-                    null
-                }
+        // Изображение из локального файла: сначала кэш (без обращения к диску), иначе декодирование вне main-потока.
+        // generation меняется, когда файлы иконок перезаписаны (например, после обновления пака)
+        val cacheGeneration by IconBitmapCache.generation.collectAsState()
+        var localBitmap by remember(localImagePath, targetPx, cacheGeneration) {
+            mutableStateOf(localImagePath?.let { IconBitmapCache.get(it, targetPx) })
+        }
+        var isLoading by remember(localImagePath, targetPx, cacheGeneration) {
+            mutableStateOf(localImagePath != null && localBitmap == null)
+        }
+        if (isLoading && localImagePath != null) {
+            LaunchedEffect(localImagePath, targetPx, cacheGeneration) {
+                localBitmap = IconBitmapCache.load(localImagePath, targetPx)
+                isLoading = false
             }
         }
-        android.util.Log.d("IconResolver",
-            "localBitmap=${localBitmap}"
-        )
+
         // Если есть локальное изображение, используем его
-        if (localBitmap != null) {
+        val bitmap = localBitmap
+        if (bitmap != null) {
+            val imageBitmap = remember(bitmap) { bitmap.asImageBitmap() }
             Image(
-                bitmap = localBitmap,
+                bitmap = imageBitmap,
                 contentDescription = contentDescription,
                 modifier = modifier.size(size),
                 contentScale = ContentScale.Fit
             )
+        } else if (isLoading) {
+            // Плейсхолдер того же размера, пока изображение декодируется
+            Box(
+                modifier = modifier
+                    .size(size)
+                    .background(
+                        color = MaterialTheme.colorScheme.surfaceVariant,
+                        shape = RoundedCornerShape(8.dp)
+                    )
+            )
         } else {
             // Иначе используем ресурс Android или дефолтную иконку
             val resId = remember(androidResName, entityType, code) {
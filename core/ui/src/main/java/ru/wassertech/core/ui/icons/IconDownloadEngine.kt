@@ -0,0 +1,71 @@
+package ru.wassertech.core.ui.icons
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Параллельная загрузка файлов иконок с ограничением числа одновременных запросов.
+ *
+ * - не более [parallelism] загрузок одновременно (Semaphore);
+ * - повторный запрос того же ключа, пока загрузка ещё идёт, не создаёт второй HTTP-запрос,
+ *   а дожидается результата первой.
+ *
+ * Сам HTTP-запрос выполняет переданный блок, поэтому движок общий для app-crm и app-client.
+ * Экземпляр рассчитан на использование в пределах процесса (хранится в companion репозитория).
+ */
+class IconDownloadEngine(val parallelism: Int = DEFAULT_PARALLELISM) {
+
+    companion object {
+        const val DEFAULT_PARALLELISM = 6
+    }
+
+    private val semaphore = Semaphore(parallelism)
+    private val inFlight = ConcurrentHashMap<String, CompletableDeferred<Result<File>>>()
+
+    /**
+     * Загружает один файл по ключу [key] (например, "${iconId}_image").
+     */
+    suspend fun download(key: String, block: suspend () -> Result<File>): Result<File> {
+        val deferred = CompletableDeferred<Result<File>>()
+        val existing = inFlight.putIfAbsent(key, deferred)
+        if (existing != null) {
+            return existing.await()
+        }
+        return try {
+            val result = semaphore.withPermit { block() }
+            deferred.complete(result)
+            result
+        } catch (e: CancellationException) {
+            deferred.complete(Result.failure(e))
+            throw e
+        } catch (e: Exception) {
+            Result.failure<File>(e).also { deferred.complete(it) }
+        } finally {
+            inFlight.remove(key, deferred)
+        }
+    }
+
+    /**
+     * Загружает все [items] параллельно (с ограничением [parallelism]).
+     * [onResult] вызывается по завершении каждой загрузки (из разных корутин).
+     */
+    suspend fun <T> downloadAll(
+        items: List<T>,
+        key: (T) -> String,
+        onResult: suspend (T, Result<File>) -> Unit = { _, _ -> },
+        block: suspend (T) -> Result<File>
+    ): List<Result<File>> = coroutineScope {
+        items.map { item ->
+            async {
+                download(key(item)) { block(item) }.also { onResult(item, it) }
+            }
+        }.awaitAll()
+    }
+}
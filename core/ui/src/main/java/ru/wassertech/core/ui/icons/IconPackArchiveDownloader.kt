@@ -0,0 +1,70 @@
+package ru.wassertech.core.ui.icons
+
+import android.util.Log
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.Request
+import ru.wassertech.core.network.HttpClientRegistry
+import ru.wassertech.core.network.TokenStorage
+import java.io.File
+
+/**
+ * Загрузка пака иконок одним ZIP-архивом (GET icon-packs/archive?pack_id=...) с потоковой
+ * распаковкой в [iconsDir] через [IconPackArchiveExtractor]. Общая для app-crm и app-client:
+ * приложения только сопоставляют полученные файлы со своими иконками и отмечают их в БД.
+ *
+ * @param apiBaseUrl Базовый URL API (с /api/public)
+ */
+class IconPackArchiveDownloader(
+    private val apiBaseUrl: String,
+    private val tokenStorage: TokenStorage,
+    private val iconsDir: File
+) {
+
+    companion object {
+        private const val TAG = "IconPackArchive"
+    }
+
+    /**
+     * @return Проверенные файлы архива (имя записи совпадает с именем локального файла `<iconId>_<type>.png`)
+     */
+    suspend fun download(packId: String): Result<IconPackArchiveResult> = withContext(Dispatchers.IO) {
+        try {
+            val url = "${apiBaseUrl.removeSuffix("/")}/icon-packs/archive".toHttpUrl().newBuilder()
+                .addQueryParameter("pack_id", packId)
+                .build()
+
+            Log.d(TAG, "Загрузка архива пака $packId с URL: $url")
+
+            // Логирование тела отключено: архив читается потоково
+            val okHttpClient = HttpClientRegistry.client(tokenStorage, enableLogging = false)
+            val request = Request.Builder()
+                .url(url)
+                .get()
+                .build()
+
+            okHttpClient.newCall(request).execute().use { response ->
+                if (!response.isSuccessful) {
+                    return@withContext Result.failure(
+                        Exception("HTTP ${response.code}: ${response.message}")
+                    )
+                }
+
+                val body = response.body ?: return@withContext Result.failure(
+                    Exception("Response body is null")
+                )
+
+                val result = IconPackArchiveExtractor(iconsDir).extract(body.byteStream())
+                if (result.rejected.isNotEmpty()) {
+                    Log.w(TAG, "Пак $packId: отброшено записей архива (контрольная сумма): ${result.rejected.size}")
+                }
+                Log.d(TAG, "Архив пака $packId распакован: файлов=${result.files.size}")
+                Result.success(result)
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Ошибка при загрузке архива пака $packId", e)
+            Result.failure(e)
+        }
+    }
+}
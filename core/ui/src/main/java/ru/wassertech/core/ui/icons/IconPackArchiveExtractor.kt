@@ -0,0 +1,126 @@
+package ru.wassertech.core.ui.icons
+
+import org.json.JSONObject
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.security.MessageDigest
+import java.util.zip.ZipInputStream
+
+/**
+ * Результат распаковки архива пака иконок.
+ */
+data class IconPackArchiveResult(
+    /** Проверенные файлы: имя записи архива → итоговый файл */
+    val files: Map<String, File>,
+    /** Записи, отброшенные из-за несовпадения контрольной суммы или отсутствия в манифесте */
+    val rejected: List<String>
+)
+
+/**
+ * Потоковая распаковка ZIP-архива пака иконок (один запрос на пак вместо запроса на каждую иконку).
+ *
+ * Формат архива:
+ * - `manifest.json` — `{"files": [{"name": "<iconId>_image.png", "sha256": "<hex>"}, ...]}`;
+ * - файлы иконок в корне архива, имена — как у IconRepository.getIconFile(iconId, type).
+ *
+ * Архив читается [ZipInputStream] прямо из потока ответа. Каждая запись пишется во временный `.part`
+ * с подсчётом SHA-256; после чтения архива файлы, чья сумма совпала с манифестом, переименовываются
+ * в итоговые, остальные удаляются.
+ */
+class IconPackArchiveExtractor(private val targetDir: File) {
+
+    companion object {
+        const val MANIFEST_NAME = "manifest.json"
+        private const val BUFFER_SIZE = 16 * 1024
+    }
+
+    private class ExtractedEntry(val partFile: File, val sha256: String)
+
+    fun extract(input: InputStream): IconPackArchiveResult {
+        if (!targetDir.exists()) {
+            targetDir.mkdirs()
+        }
+
+        var expected: Map<String, String>? = null
+        val extracted = mutableMapOf<String, ExtractedEntry>()
+        val buffer = ByteArray(BUFFER_SIZE)
+
+        try {
+            ZipInputStream(input.buffered()).use { zip ->
+                while (true) {
+                    val entry = zip.nextEntry ?: break
+                    val name = entry.name
+                    when {
+                        entry.isDirectory -> Unit
+                        name == MANIFEST_NAME -> expected = parseManifest(zip.readBytes())
+                        isSafeName(name) -> {
+                            val partFile = File(targetDir, "$name.part")
+                            val digest = MessageDigest.getInstance("SHA-256")
+                            FileOutputStream(partFile).use { output ->
+                                while (true) {
+                                    val read = zip.read(buffer)
+                                    if (read < 0) break
+                                    digest.update(buffer, 0, read)
+                                    output.write(buffer, 0, read)
+                                }
+                            }
+                            extracted[name] = ExtractedEntry(partFile, digest.digest().toHex())
+                        }
+                    }
+                    zip.closeEntry()
+                }
+            }
+        } catch (e: Exception) {
+            extracted.values.forEach { it.partFile.delete() }
+            throw e
+        }
+
+        val manifest = expected
+        val files = mutableMapOf<String, File>()
+        val rejected = mutableListOf<String>()
+        extracted.forEach { (name, entry) ->
+            val expectedHash = manifest?.get(name)
+            if (expectedHash != null && expectedHash.equals(entry.sha256, ignoreCase = true)) {
+                val target = File(targetDir, name)
+                if (!entry.partFile.renameTo(target)) {
+                    target.delete()
+                    if (!entry.partFile.renameTo(target)) {
+                        entry.partFile.delete()
+                        throw IOException("Не удалось сохранить файл $name")
+                    }
+                }
+                IconBitmapCache.invalidate(target.absolutePath)
+                files[name] = target
+            } else {
+                entry.partFile.delete()
+                rejected += name
+            }
+        }
+        return IconPackArchiveResult(files, rejected)
+    }
+
+    private fun parseManifest(bytes: ByteArray): Map<String, String> {
+        val array = JSONObject(String(bytes, Charsets.UTF_8)).optJSONArray("files") ?: return emptyMap()
+        val result = mutableMapOf<String, String>()
+        for (i in 0 until array.length()) {
+            val item = array.getJSONObject(i)
+            val name = item.optString("name")
+            val sha256 = item.optString("sha256")
+            if (name.isNotEmpty() && sha256.isNotEmpty()) {
+                result[name] = sha256
+            }
+        }
+        return result
+    }
+
+    /**
+     * Только плоские имена файлов: защита от записи за пределы [targetDir] (zip slip)
+     */
+    private fun isSafeName(name: String): Boolean {
+        return name.isNotBlank() && !name.contains('/') && !name.contains('\\') && name != "." && name != ".."
+    }
+
+    private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+}
@@ -2,353 +2,236 @@ package ru.wassertech.feature.reports
 
 import android.content.Context
 import android.util.Log
+import ru.wassertech.feature.reports.model.ComponentWithFieldsDTO
 import ru.wassertech.feature.reports.model.ReportDTO
-import java.io.BufferedReader
+import java.util.concurrent.ConcurrentHashMap
 
 object HtmlTemplateEngine {
 
+    /**
+     * Класс карточки компонента в шаблоне заменяется плейсхолдером один раз при компиляции,
+     * чтобы дописывать модификаторы (HEAD, без заголовка) без повторной замены по тексту.
+     */
+    private const val CARD_CLASS_ATTR = "class=\"component-card\""
+    private const val CARD_CLASS_PLACEHOLDER = "class=\"{{component.cardClass}}\""
+
+    /**
+     * Шаблоны отчётов после замены класса карточки, по пути asset. Кешируются здесь, а не в
+     * [ReportTemplateCompiler.fromAsset]: там по тому же пути лежит дерево исходного текста.
+     */
+    private val templates = ConcurrentHashMap<String, CompiledTemplate>()
+
     fun render(context: Context, templateAssetPath: String, dto: ReportDTO): String {
-        val template = context.assets.open(templateAssetPath).bufferedReader().use(BufferedReader::readText)
-        
-        var html = template
-        
-        // Заменяем плейсхолдеры компании
-        dto.companyConfig?.let { company ->
-            html = html.replace("{{company.legal_name}}", escapeHtml(company.legal_name))
-            html = html.replace("{{company.inn}}", escapeHtml(company.inn))
-            html = html.replace("{{company.phone1}}", escapeHtml(company.phone1))
-            html = html.replace("{{company.phone2}}", escapeHtml(company.phone2))
-            html = html.replace("{{company.email}}", escapeHtml(company.email))
-            html = html.replace("{{company.website}}", escapeHtml(company.website))
-            html = html.replace("{{company.sign_name}}", escapeHtml(company.sign_name))
-            html = html.replace("{{company.sign_short}}", escapeHtml(company.sign_short))
+        // Шаблон разбирается в дерево один раз на asset и переиспользуется
+        val template = templates.getOrPut(templateAssetPath) {
+            val source = ReportTemplateCompiler.readAsset(context, templateAssetPath)
+            ReportTemplateCompiler.compile(source.replace(CARD_CLASS_ATTR, CARD_CLASS_PLACEHOLDER))
         }
-        
-        // Логотип как data URI (используем logo-wassertech.png)
-        val logoDataUri = CompanyConfigLoader.logoToDataUri(context, "img/logo-wassertech.png")
-        html = html.replace("{{company.logo_data_uri}}", logoDataUri)
-        
-        // Подпись и печать как data URI
-        val signatureDataUri = CompanyConfigLoader.logoToDataUri(context, "img/signature.png")
-        html = html.replace("{{company.signature_data_uri}}", signatureDataUri)
-        
-        val stampDataUri = CompanyConfigLoader.logoToDataUri(context, "img/stamp.png")
-        html = html.replace("{{company.stamp_data_uri}}", stampDataUri)
-        
-        // Документ
-        html = html.replace("{{doc.number}}", escapeHtml(dto.reportNumber))
-        html = html.replace("{{doc.date_rus}}", escapeHtml(dto.reportDateRus))
-        
-        // Договор
-        dto.contractConfig?.let { contract ->
-            html = html.replace("{{contract.number}}", escapeHtml(contract.number))
-            html = html.replace("{{contract.date_rus}}", escapeHtml(contract.date_rus))
+        return template.render(ReportScope(context, dto), ::escapeHtml)
+    }
+
+    /**
+     * Корневой scope отчёта: плейсхолдеры документа и секции works/water/comments/conclusion.
+     * Секция componentsWithFields рендерится вручную (разделы для HEAD компонентов).
+     */
+    private class ReportScope(context: Context, private val dto: ReportDTO) : TemplateScope {
+
+        private val values: Map<String, String> = buildMap {
+            // Плейсхолдеры компании
+            dto.companyConfig?.let { company ->
+                put("company.legal_name", company.legal_name)
+                put("company.inn", company.inn)
+                put("company.phone1", company.phone1)
+                put("company.phone2", company.phone2)
+                put("company.email", company.email)
+                put("company.website", company.website)
+                put("company.sign_name", company.sign_name)
+                put("company.sign_short", company.sign_short)
+            }
+
+            // Логотип, подпись и печать как data URI (используем logo-wassertech.png)
+            put("company.logo_data_uri", CompanyConfigLoader.logoToDataUri(context, "img/logo-wassertech.png"))
+            put("company.signature_data_uri", CompanyConfigLoader.logoToDataUri(context, "img/signature.png"))
+            put("company.stamp_data_uri", CompanyConfigLoader.logoToDataUri(context, "img/stamp.png"))
+
+            // Документ
+            put("doc.number", dto.reportNumber)
+            put("doc.date_rus", dto.reportDateRus)
+
+            // Договор
+            dto.contractConfig?.let { contract ->
+                put("contract.number", contract.number)
+                put("contract.date_rus", contract.date_rus)
+            }
+
+            // Клиент
+            put("client.name", dto.clientName)
+            put("client.sign_name", dto.clientSignName ?: "")
+
+            // Объект и установка
+            put("site.name", dto.siteName ?: "")
+            put("installation.name", dto.installationName)
+
+            // Комментарии и заключение (опционально)
+            put("comments", dto.comments?.takeIf { it.isNotBlank() } ?: "")
+            dto.conclusions?.takeIf { it.isNotBlank() }?.let { put("conclusion", it) }
         }
-        
-        // Клиент
-        html = html.replace("{{client.name}}", escapeHtml(dto.clientName))
-        html = html.replace("{{client.sign_name}}", escapeHtml(dto.clientSignName ?: ""))
-        
-        // Объект и установка
-        html = html.replace("{{site.name}}", escapeHtml(dto.siteName ?: ""))
-        html = html.replace("{{installation.name}}", escapeHtml(dto.installationName))
-        
-        // Выполненные работы
-        val worksBlockRegex = Regex("\\{\\{#works\\}\\}([\\s\\S]*?)\\{\\{/works\\}\\}")
-        val worksElseBlockRegex = Regex("\\{\\{^works\\}\\}([\\s\\S]*?)\\{\\{/works\\}\\}")
-        
-        if (dto.works.isNotEmpty()) {
-            // Находим шаблон внутри блока {{#works}}...{{/works}}
-            val worksTemplateMatch = worksBlockRegex.find(html)
-            if (worksTemplateMatch != null) {
-                val template = worksTemplateMatch.groupValues[1]
-                // Заменяем {{.}} на реальные значения
-                val worksHtml = dto.works.joinToString("") { work ->
-                    template.replace("{{.}}", escapeHtml(work))
-                }
-                html = html.replace(worksBlockRegex, worksHtml)
+
+        private val sections: Map<String, List<TemplateScope>> = mapOf(
+            // Выполненные работы
+            "works" to dto.works.map { work -> TemplateScope.of(mapOf("." to work)) },
+            // Результаты анализов воды
+            "water" to dto.waterAnalyses.map { item ->
+                TemplateScope.of(
+                    mapOf(
+                        "name" to item.name,
+                        "value" to item.value,
+                        "unit" to item.unit,
+                        "norm" to item.norm
+                    )
+                )
+            },
+            "comments" to TemplateScope.flag(dto.comments?.isNotBlank() == true),
+            "conclusion" to TemplateScope.flag(dto.conclusions?.isNotBlank() == true)
+        )
+
+        override fun value(name: String): String? = values[name]
+
+        override fun section(name: String): List<TemplateScope>? = sections[name]
+
+        override fun renderSection(
+            section: TemplateNode.Section,
+            renderer: TemplateRenderer,
+            scopes: List<TemplateScope>
+        ): Boolean {
+            if (section.name != "componentsWithFields" || section.inverted) return false
+            // Внутри ищем блок {{#component}}...{{/component}}; без него весь блок удаляется
+            val componentSection = section.childSection("component")
+            if (dto.componentsWithFields.isNotEmpty() && componentSection != null) {
+                renderComponentSections(dto.componentsWithFields, componentSection, renderer, scopes)
             }
-            // Удаляем блок {{^works}}...{{/works}}
-            html = html.replace(worksElseBlockRegex, "")
-        } else {
-            // Удаляем блок {{#works}}...{{/works}}
-            html = html.replace(worksBlockRegex, "")
-            // Оставляем содержимое блока {{^works}}...{{/works}}
-            html = html.replace(worksElseBlockRegex, "$1")
+            return true
         }
-        
-        // Комментарии (опционально)
-        if (dto.comments?.isNotBlank() == true) {
-            html = html.replace("{{comments}}", escapeHtml(dto.comments))
-            html = html.replace(Regex("\\{\\{#comments\\}\\}([\\s\\S]*?)\\{\\{/comments\\}\\}"), "$1")
-        } else {
-            html = html.replace(Regex("\\{\\{#comments\\}\\}([\\s\\S]*?)\\{\\{/comments\\}\\}"), "")
-            html = html.replace("{{comments}}", "")
+    }
+
+    /**
+     * Компоненты с полями - разделы для HEAD компонентов.
+     *
+     * Разделяем компоненты на группы:
+     * 1. HEAD компоненты в начале (непрерывная последовательность)
+     * 2. COMMON компоненты в середине (HEAD в середине списка тоже попадают сюда,
+     *    но отрисовываются во всю ширину)
+     * 3. HEAD компоненты в конце (непрерывная последовательность)
+     */
+    private fun renderComponentSections(
+        components: List<ComponentWithFieldsDTO>,
+        componentSection: TemplateNode.Section,
+        renderer: TemplateRenderer,
+        scopes: List<TemplateScope>
+    ) {
+        val out = renderer.out
+
+        // HEAD компоненты в начале
+        val startIndex = components.indexOfFirst { it.componentType != "HEAD" }
+            .let { if (it < 0) components.size else it }
+        // HEAD компоненты в конце
+        var endIndex = components.indexOfLast { it.componentType != "HEAD" }
+
+        // Если все компоненты HEAD, они должны быть только в начале
+        val allHead = startIndex == components.size
+        if (allHead) {
+            endIndex = components.size - 1
+        }
+
+        val headAtStart = components.subList(0, startIndex)
+        val headAtEnd = if (allHead) emptyList() else components.subList(endIndex + 1, components.size)
+        val commonOnly = if (!allHead && startIndex <= endIndex) components.subList(startIndex, endIndex + 1) else emptyList()
+
+        fun appendComponent(component: ComponentWithFieldsDTO, isHead: Boolean, hideHeader: Boolean) {
+            out.append("        ")
+            renderer.render(componentSection.children, scopes + ComponentScope(component, isHead, hideHeader))
+            out.append("\n")
         }
-        
-        // Результаты анализов воды
-        val waterBlockRegex = Regex("\\{\\{#water\\}\\}([\\s\\S]*?)\\{\\{/water\\}\\}")
-        val waterElseBlockRegex = Regex("\\{\\{^water\\}\\}([\\s\\S]*?)\\{\\{/water\\}\\}")
-        
-        if (dto.waterAnalyses.isNotEmpty()) {
-            // Находим шаблон внутри блока {{#water}}...{{/water}}
-            val waterTemplateMatch = waterBlockRegex.find(html)
-            if (waterTemplateMatch != null) {
-                val template = waterTemplateMatch.groupValues[1]
-                // Заменяем плейсхолдеры на реальные значения для каждого элемента
-                val waterHtml = dto.waterAnalyses.joinToString("") { item ->
-                    template.replace("{{name}}", escapeHtml(item.name))
-                        .replace("{{value}}", escapeHtml(item.value))
-                        .replace("{{unit}}", escapeHtml(item.unit))
-                        .replace("{{norm}}", escapeHtml(item.norm))
-                }
-                html = html.replace(waterBlockRegex, waterHtml)
+
+        // 1. Раздел HEAD компонентов в начале
+        if (headAtStart.isNotEmpty()) {
+            out.append("<!-- HEAD компоненты в начале -->\n")
+            out.append("<section class=\"section head-components-section\">\n")
+            out.append("    <h2 class=\"section-header-red\">").append(escapeHtml(headAtStart.first().componentName)).append("</h2>\n")
+            out.append("    <div class=\"components-grid\">\n")
+            headAtStart.forEachIndexed { index, component ->
+                appendComponent(component, isHead = true, hideHeader = index == 0) // Первый компонент без заголовка
             }
-            // Удаляем блок {{^water}}...{{/water}}
-            html = html.replace(waterElseBlockRegex, "")
-        } else {
-            // Удаляем блок {{#water}}...{{/water}}
-            html = html.replace(waterBlockRegex, "")
-            // Оставляем содержимое блока {{^water}}...{{/water}}
-            html = html.replace(waterElseBlockRegex, "$1")
+            out.append("    </div>\n")
+            out.append("</section>\n\n")
         }
-        
-        // Заключение (опционально)
-        if (dto.conclusions?.isNotBlank() == true) {
-            html = html.replace("{{conclusion}}", escapeHtml(dto.conclusions))
-            html = html.replace(Regex("\\{\\{#conclusion\\}\\}([\\s\\S]*?)\\{\\{/conclusion\\}\\}"), "$1")
-        } else {
-            html = html.replace(Regex("\\{\\{#conclusion\\}\\}([\\s\\S]*?)\\{\\{/conclusion\\}\\}"), "")
+
+        // 2. Раздел COMMON компонентов (и HEAD компонентов в середине)
+        if (commonOnly.isNotEmpty()) {
+            out.append("<!-- COMMON компоненты и HEAD в середине -->\n")
+            out.append("<section class=\"section\">\n")
+            out.append("    <h2 class=\"section-header-red\">Результаты проверки компонентов</h2>\n")
+            out.append("    <div class=\"components-grid\">\n")
+            commonOnly.forEach { component ->
+                // HEAD компоненты в середине обрабатываются с isHead=true для отрисовки во всю ширину
+                appendComponent(component, isHead = component.componentType == "HEAD", hideHeader = false)
+            }
+            out.append("    </div>\n")
+            out.append("</section>\n\n")
         }
-        
-        // Компоненты с полями - новая логика с разделами для HEAD компонентов
-        // Ищем блок {{#componentsWithFields}}...{{/componentsWithFields}}
-        val componentsBlockRegex = Regex("\\{\\{#componentsWithFields\\}\\}([\\s\\S]*?)\\{\\{/componentsWithFields\\}\\}")
-        // Внутри ищем блок {{#component}}...{{/component}}
-        val componentBlockRegex = Regex("\\{\\{#component\\}\\}([\\s\\S]*?)\\{\\{/component\\}\\}")
-        // Внутри компонента ищем блок {{#fields}}...{{/fields}}
-        val fieldBlockRegex = Regex("\\{\\{#fields\\}\\}([\\s\\S]*?)\\{\\{/fields\\}\\}")
-        
-        if (dto.componentsWithFields.isNotEmpty()) {
-            Log.d("HtmlTemplate", "Processing ${dto.componentsWithFields.size} components")
-            // Логируем типы компонентов для отладки
-            val headCount = dto.componentsWithFields.count { it.componentType == "HEAD" }
-            val commonCount = dto.componentsWithFields.count { it.componentType == "COMMON" }
-            Log.d("HtmlTemplate", "HEAD components: $headCount, COMMON components: $commonCount")
-            dto.componentsWithFields.forEachIndexed { index, comp ->
-                Log.d("HtmlTemplate", "  Component[$index]: ${comp.componentName}, type=${comp.componentType}, fields=${comp.fields.size}")
+
+        // 3. Раздел HEAD компонентов в конце
+        if (headAtEnd.isNotEmpty()) {
+            out.append("<!-- HEAD компоненты в конце -->\n")
+            out.append("<section class=\"section head-components-section\">\n")
+            out.append("    <h2 class=\"section-header-red\">").append(escapeHtml(headAtEnd.first().componentName)).append("</h2>\n")
+            out.append("    <div class=\"components-grid\">\n")
+            headAtEnd.forEachIndexed { index, component ->
+                appendComponent(component, isHead = true, hideHeader = index == 0) // Первый компонент без заголовка
             }
-            val componentsBlockMatch = componentsBlockRegex.find(html)
-            if (componentsBlockMatch != null) {
-                val componentsBlockContent = componentsBlockMatch.groupValues[1]
-                val componentBlockMatch = componentBlockRegex.find(componentsBlockContent)
-                
-                if (componentBlockMatch != null) {
-                    val componentTemplate = componentBlockMatch.groupValues[1]
-                    val fieldBlockMatch = fieldBlockRegex.find(componentTemplate)
-                    
-                    // Функция для генерации HTML компонента
-                    fun generateComponentHtml(
-                        component: ru.wassertech.feature.reports.model.ComponentWithFieldsDTO,
-                        isHead: Boolean,
-                        hideHeader: Boolean = false
-                    ): String {
-                        var componentHtml = componentTemplate
-                            .replace("{{component.name}}", escapeHtml(component.componentName))
-                            .replace("{{component.type}}", escapeHtml(component.componentType ?: ""))
-                        
-                        // Добавляем классы
-                        var classAttr = "component-card"
-                        if (isHead) {
-                            classAttr += " component-card-head"
-                        }
-                        if (hideHeader) {
-                            classAttr += " component-card-no-header"
-                        }
-                        componentHtml = componentHtml.replace(
-                            "class=\"component-card\"",
-                            "class=\"$classAttr\""
-                        )
-                        
-                        // Обрабатываем поля компонента
-                        if (fieldBlockMatch != null && component.fields.isNotEmpty()) {
-                            val fieldTemplate = fieldBlockMatch.groupValues[1]
-                            val unitBlockRegex = Regex("\\{\\{#field\\.unit\\}\\}([\\s\\S]*?)\\{\\{/field\\.unit\\}\\}")
-                            val fieldsHtml = component.fields.joinToString("") { field ->
-                                var fieldHtml = fieldTemplate
-                                    .replace("{{field.label}}", escapeHtml(field.label))
-                                    .replace("{{field.value}}", escapeHtml(field.value))
-                                    .replace("{{field.checkboxClass}}", field.checkboxClass ?: "")
-                                
-                                // Обработка условного блока для единиц измерения
-                                if (field.unit != null && field.unit.isNotBlank()) {
-                                    val unitBlockMatch = unitBlockRegex.find(fieldHtml)
-                                    if (unitBlockMatch != null) {
-                                        val unitContent = unitBlockMatch.groupValues[1]
-                                        fieldHtml = fieldHtml.replace(unitBlockRegex, unitContent.replace("{{field.unit}}", escapeHtml(field.unit)))
-                                    } else {
-                                        fieldHtml = fieldHtml.replace("{{field.unit}}", escapeHtml(field.unit))
-                                    }
-                                } else {
-                                    fieldHtml = fieldHtml.replace(unitBlockRegex, "")
-                                    fieldHtml = fieldHtml.replace("{{field.unit}}", "")
-                                }
-                                
-                                fieldHtml
-                            }
-                            componentHtml = componentHtml.replace(fieldBlockRegex, fieldsHtml)
-                        } else {
-                            componentHtml = componentHtml.replace(fieldBlockRegex, "")
-                        }
-                        
-                        return componentHtml
-                    }
-                    
-                    // Разделяем компоненты на группы:
-                    // 1. HEAD компоненты в начале (непрерывная последовательность)
-                    // 2. COMMON компоненты в середине
-                    // 3. HEAD компоненты в конце (непрерывная последовательность)
-                    // ВАЖНО: HEAD компоненты в середине списка (между COMMON) также обрабатываются как COMMON
-                    // для упрощения логики, но они должны отрисовываться во всю ширину
-                    
-                    // Находим HEAD компоненты в начале (непрерывная последовательность)
-                    val headAtStart = mutableListOf<ru.wassertech.feature.reports.model.ComponentWithFieldsDTO>()
-                    var startIndex = 0
-                    for (component in dto.componentsWithFields) {
-                        if (component.componentType == "HEAD") {
-                            headAtStart.add(component)
-                            startIndex++
-                        } else {
-                            break
-                        }
-                    }
-                    
-                    // Находим HEAD компоненты в конце (непрерывная последовательность)
-                    val headAtEnd = mutableListOf<ru.wassertech.feature.reports.model.ComponentWithFieldsDTO>()
-                    var endIndex = dto.componentsWithFields.size - 1
-                    for (i in dto.componentsWithFields.size - 1 downTo 0) {
-                        val component = dto.componentsWithFields[i]
-                        if (component.componentType == "HEAD") {
-                            headAtEnd.add(0, component) // Добавляем в начало списка для сохранения порядка
-                            endIndex = i - 1
-                        } else {
-                            break
-                        }
-                    }
-                    
-                    // Проверяем, не пересекаются ли HEAD в начале и конце
-                    // Если startIndex > endIndex + 1, значит все компоненты HEAD
-                    val allHead = startIndex > endIndex + 1
-                    
-                    // Если все компоненты HEAD, они должны быть только в начале
-                    if (allHead) {
-                        headAtEnd.clear()
-                        endIndex = dto.componentsWithFields.size - 1
-                    }
-                    
-                    // COMMON компоненты - это все компоненты между HEAD в начале и конце
-                    // ВАЖНО: HEAD компоненты в середине списка также включаются в commonOnly,
-                    // но они будут обработаны с флагом isHead=true в generateComponentHtml
-                    val commonOnly = if (!allHead && startIndex <= endIndex) {
-                        dto.componentsWithFields.filterIndexed { index, component ->
-                            // Пропускаем HEAD компоненты в начале и конце
-                            // Включаем все компоненты между ними (и COMMON, и HEAD в середине)
-                            index >= startIndex && index <= endIndex
-                        }
-                    } else {
-                        emptyList()
-                    }
-                    
-                    // Генерируем HTML для разделов
-                    val sectionsHtml = StringBuilder()
-                    
-                    // 1. Раздел HEAD компонентов в начале
-                    if (headAtStart.isNotEmpty()) {
-                        val firstHeadName = headAtStart.first().componentName
-                        sectionsHtml.append("<!-- HEAD компоненты в начале -->\n")
-                        sectionsHtml.append("<section class=\"section head-components-section\">\n")
-                        sectionsHtml.append("    <h2 class=\"section-header-red\">${escapeHtml(firstHeadName)}</h2>\n")
-                        sectionsHtml.append("    <div class=\"components-grid\">\n")
-                        
-                        headAtStart.forEachIndexed { index, component ->
-                            val hideHeader = index == 0 // Первый компонент без заголовка
-                            sectionsHtml.append("        ")
-                            sectionsHtml.append(generateComponentHtml(component, true, hideHeader))
-                            sectionsHtml.append("\n")
-                        }
-                        
-                        sectionsHtml.append("    </div>\n")
-                        sectionsHtml.append("</section>\n\n")
-                    }
-                    
-                    // 2. Раздел COMMON компонентов (и HEAD компонентов в середине)
-                    if (commonOnly.isNotEmpty()) {
-                        sectionsHtml.append("<!-- COMMON компоненты и HEAD в середине -->\n")
-                        sectionsHtml.append("<section class=\"section\">\n")
-                        sectionsHtml.append("    <h2 class=\"section-header-red\">Результаты проверки компонентов</h2>\n")
-                        sectionsHtml.append("    <div class=\"components-grid\">\n")
-                        
-                        commonOnly.forEach { component ->
-                            // HEAD компоненты в середине обрабатываются с isHead=true для отрисовки во всю ширину
-                            val isHead = component.componentType == "HEAD"
-                            sectionsHtml.append("        ")
-                            sectionsHtml.append(generateComponentHtml(component, isHead))
-                            sectionsHtml.append("\n")
-                        }
-                        
-                        sectionsHtml.append("    </div>\n")
-                        sectionsHtml.append("</section>\n\n")
-                    }
-                    
-                    // 3. Раздел HEAD компонентов в конце
-                    if (headAtEnd.isNotEmpty()) {
-                        val firstHeadName = headAtEnd.first().componentName
-                        sectionsHtml.append("<!-- HEAD компоненты в конце -->\n")
-                        sectionsHtml.append("<section class=\"section head-components-section\">\n")
-                        sectionsHtml.append("    <h2 class=\"section-header-red\">${escapeHtml(firstHeadName)}</h2>\n")
-                        sectionsHtml.append("    <div class=\"components-grid\">\n")
-                        
-                        headAtEnd.forEachIndexed { index, component ->
-                            val hideHeader = index == 0 // Первый компонент без заголовка
-                            sectionsHtml.append("        ")
-                            sectionsHtml.append(generateComponentHtml(component, true, hideHeader))
-                            sectionsHtml.append("\n")
-                        }
-                        
-                        sectionsHtml.append("    </div>\n")
-                        sectionsHtml.append("</section>\n\n")
-                    }
-                    
-                    // Заменяем весь блок componentsWithFields
-                    val componentRange = componentBlockMatch.range
-                    val beforeComponent = componentsBlockContent.substring(0, componentRange.first)
-                    val afterComponent = componentsBlockContent.substring(componentRange.last + 1)
-                    
-                    // Удаляем старую структуру секции, оставляем только контент разделов
-                    val finalContent = sectionsHtml.toString()
-                    
-                    Log.d("HtmlTemplate", "Generated sections HTML length: ${finalContent.length}")
-                    Log.d("HtmlTemplate", "Head at start: ${headAtStart.size}, Common: ${commonOnly.size}, Head at end: ${headAtEnd.size}")
-                    headAtStart.forEachIndexed { idx, comp ->
-                        Log.d("HtmlTemplate", "  Head at start[$idx]: ${comp.componentName}, fields=${comp.fields.size}")
-                    }
-                    headAtEnd.forEachIndexed { idx, comp ->
-                        Log.d("HtmlTemplate", "  Head at end[$idx]: ${comp.componentName}, fields=${comp.fields.size}")
-                    }
-                    
-                    // Заменяем весь блок componentsWithFields
-                    html = componentsBlockRegex.replace(html, finalContent)
-                } else {
-                    // Если не найден блок component, удаляем весь блок componentsWithFields
-                    html = html.replace(componentsBlockRegex, "")
-                }
+            out.append("    </div>\n")
+            out.append("</section>\n\n")
+        }
+
+        Log.d("HtmlTemplate", "Head at start: ${headAtStart.size}, Common: ${commonOnly.size}, Head at end: ${headAtEnd.size}")
+    }
+
+    /** Scope карточки компонента: имя, тип, классы и секция fields */
+    private class ComponentScope(
+        private val component: ComponentWithFieldsDTO,
+        isHead: Boolean,
+        hideHeader: Boolean
+    ) : TemplateScope {
+
+        private val cardClass = buildString {
+            append("component-card")
+            if (isHead) append(" component-card-head")
+            if (hideHeader) append(" component-card-no-header")
+        }
+
+        override fun value(name: String): String? = when (name) {
+            "component.name" -> component.componentName
+            "component.type" -> component.componentType ?: ""
+            "component.cardClass" -> cardClass
+            else -> null
+        }
+
+        override fun section(name: String): List<TemplateScope>? = when (name) {
+            "fields" -> component.fields.map { field ->
+                val unit = field.unit?.takeIf { it.isNotBlank() }
+                TemplateScope.of(
+                    values = mapOf(
+                        "field.label" to field.label,
+                        "field.value" to field.value,
+                        "field.checkboxClass" to (field.checkboxClass ?: ""),
+                        "field.unit" to (unit ?: "")
+                    ),
+                    // Условный блок для единиц измерения
+                    sections = mapOf("field.unit" to TemplateScope.flag(unit != null))
+                )
             }
-        } else {
-            // Если нет компонентов, удаляем весь блок
-            html = html.replace(componentsBlockRegex, "")
+            else -> null
         }
-        
-        return html
     }
 
     private fun escapeHtml(s: String): String =
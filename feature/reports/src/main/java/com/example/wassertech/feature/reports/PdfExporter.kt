@@ -15,6 +15,7 @@ import android.os.ParcelFileDescriptor
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
 import java.io.File
 import java.io.FileOutputStream
 import kotlin.coroutines.resume
@@ -24,12 +25,19 @@ object PdfExporter {
     
     private const val PDF_RENDER_METHOD_KEY = "pdf_render_method"
 
+    /** Страховочный таймаут сигнала готовности страницы */
+    private const val PAGE_READY_TIMEOUT_MS = 15_000L
+
+    /** Ожидание стабильного contentHeight: шаг — кадр, не больше ~2 с */
+    private const val FRAME_DELAY_MS = 16L
+    private const val CONTENT_HEIGHT_MAX_FRAMES = 120
+
     /**
      * Renders provided HTML into a PDF file using a WebView.
      * Method can be "bitmap" (via WebViewPdfExporter) or "direct" (via PrintDocumentAdapter).
      *
-     * Note: webView will be created and destroyed inside this call. Call from a coroutine (Dispatcher.Main
-     * if you want WebView on UI thread is recommended, but WebViewPdfExporter posts to main internally).
+     * Note: the WebView is reused between calls (see ReportWebViewRenderer); concurrent exports are queued.
+     * Call from a coroutine on Dispatchers.Main.
      */
     suspend fun exportHtmlToPdf(
         context: Context, 
@@ -81,8 +89,6 @@ object PdfExporter {
                 throw IllegalStateException("Context должен быть Activity для создания WebView")
             }
             
-            // WebView должен быть создан на Main потоке
-            val webView = WebView(context)
             val baseUrl = "file:///android_asset/"
             
             // Вычисляем размеры A4 в пикселях (210mm x 297mm при 300 DPI)
@@ -92,254 +98,197 @@ object PdfExporter {
             val a4WidthPx = (a4WidthMm * densityDpi / 25.4f).toInt()
             val a4HeightPx = (a4HeightMm * densityDpi / 25.4f).toInt()
             
-            // Создаем невидимый контейнер и добавляем его в Activity
             // WebView не должен иметь огромную высоту - это вызывает OOM
             // WebViewPdfExporter использует contentHeight для расчета страниц и рендерит по частям
             // Достаточно установить разумную высоту (несколько страниц), чтобы contentHeight вычислялся правильно
-            val container = FrameLayout(context).apply {
-                layoutParams = ViewGroup.LayoutParams(a4WidthPx, a4HeightPx * 3) // Достаточно для вычисления contentHeight
-                visibility = android.view.View.INVISIBLE // Невидимый, но с правильными размерами
-                addView(webView, ViewGroup.LayoutParams(a4WidthPx, a4HeightPx * 3))
-            }
-            
-            // Добавляем контейнер в Activity (в корневой ViewGroup)
-            val rootView = activity.findViewById<ViewGroup>(android.R.id.content)
-            rootView.addView(container)
-            
-            // Настраиваем WebView
-            webView.settings.apply {
-                javaScriptEnabled = true  // ВКЛЮЧАЕМ JavaScript для измерения границ компонентов!
-                domStorageEnabled = false
-                loadWithOverviewMode = true
-                useWideViewPort = true
-                setSupportZoom(false)
-                builtInZoomControls = false
+            // WebView берётся прогретый из ReportWebViewRenderer (создаётся один раз, задания идут по очереди)
+            ReportWebViewRenderer.withWebView(activity, a4WidthPx, a4HeightPx * 3) { webView ->
+                // Прерываем загрузку шаблона при прогреве, чтобы её onPageFinished не завершил ожидание раньше времени
+                webView.stopLoading()
+                val container = webView.parent as ViewGroup
+                
+                // Измеряем контейнер и WebView с правильными размерами
+                // Используем UNSPECIFIED для высоты, чтобы WebView мог определить свою высоту
+                container.measure(
+                    android.view.View.MeasureSpec.makeMeasureSpec(a4WidthPx, android.view.View.MeasureSpec.EXACTLY),
+                    android.view.View.MeasureSpec.makeMeasureSpec(0, android.view.View.MeasureSpec.UNSPECIFIED)
+                )
+                container.layout(0, 0, a4WidthPx, container.measuredHeight)
+                
+                webView.measure(
+                    android.view.View.MeasureSpec.makeMeasureSpec(a4WidthPx, android.view.View.MeasureSpec.EXACTLY),
+                    android.view.View.MeasureSpec.makeMeasureSpec(0, android.view.View.MeasureSpec.UNSPECIFIED)
+                )
+                webView.layout(0, 0, a4WidthPx, webView.measuredHeight)
+
+                renderToPdf(context, webView, baseUrl, html, outFile, reportNumber, a4WidthPx, a4HeightPx)
             }
+        }
+    }
+
+    private suspend fun renderToPdf(
+        context: Context,
+        webView: WebView,
+        baseUrl: String,
+        html: String,
+        outFile: File,
+        reportNumber: String?,
+        a4WidthPx: Int,
+        a4HeightPx: Int
+    ) {
+        // Загружаем HTML и ждём сигнала готовности из страницы (без фиксированных задержек)
+        Log.d("PDF", "Starting HTML load, HTML length: ${html.length}")
+        awaitPageReady(webView, baseUrl, html)
+        
+        // contentHeight обновляется после кадра отрисовки — ждём, пока он появится и перестанет меняться
+        val finalContentHeight = awaitContentHeight(webView)
+        val density = context.resources.displayMetrics.density
+        val contentHeightPx = (finalContentHeight * density).toInt()
+        
+        Log.d("PDF", "Final contentHeight (CSS): $finalContentHeight, contentHeightPx: $contentHeightPx")
+        Log.d("PDF", "WebView width: ${webView.width}, height: ${webView.height}, measuredHeight: ${webView.measuredHeight}")
+        
+        if (finalContentHeight == 0) {
+            Log.w("PDF", "Warning: WebView contentHeight is 0 after loading")
+        } else {
+            // НЕ устанавливаем огромную высоту WebView - это вызывает OOM!
+            // WebViewPdfExporter использует contentHeight для расчета страниц и рендерит их по частям через Canvas
+            // Достаточно убедиться, что WebView имеет правильную ширину и contentHeight вычислен
+            // WebView может иметь небольшую физическую высоту, но contentHeight будет правильным
+            Log.d("PDF", "ContentHeight ready: $finalContentHeight (CSS), $contentHeightPx (device px)")
+            Log.d("PDF", "WebView dimensions: width=${webView.width}, height=${webView.height}, contentHeight=${webView.contentHeight}")
             
-            // Включаем логирование JavaScript console.log в logcat
-            webView.webChromeClient = object : android.webkit.WebChromeClient() {
-                override fun onConsoleMessage(consoleMessage: android.webkit.ConsoleMessage?): Boolean {
-                    consoleMessage?.let {
-                        Log.d("WebViewJS", "${it.message()} -- From line ${it.lineNumber()} of ${it.sourceId()}")
-                    }
-                    return true
-                }
+            // Убеждаемся, что WebView имеет правильную ширину для рендеринга
+            if (webView.width != a4WidthPx) {
+                val webViewParams = webView.layoutParams as? FrameLayout.LayoutParams
+                    ?: FrameLayout.LayoutParams(a4WidthPx, a4HeightPx * 3)
+                webViewParams.width = a4WidthPx
+                webView.layoutParams = webViewParams
+                webView.measure(
+                    android.view.View.MeasureSpec.makeMeasureSpec(a4WidthPx, android.view.View.MeasureSpec.EXACTLY),
+                    android.view.View.MeasureSpec.makeMeasureSpec(a4HeightPx * 3, android.view.View.MeasureSpec.AT_MOST)
+                )
+                webView.layout(0, 0, a4WidthPx, webView.measuredHeight)
             }
-            
-            // Измеряем контейнер и WebView с правильными размерами
-            // Используем UNSPECIFIED для высоты, чтобы WebView мог определить свою высоту
-            container.measure(
-                android.view.View.MeasureSpec.makeMeasureSpec(a4WidthPx, android.view.View.MeasureSpec.EXACTLY),
-                android.view.View.MeasureSpec.makeMeasureSpec(0, android.view.View.MeasureSpec.UNSPECIFIED)
-            )
-            container.layout(0, 0, a4WidthPx, container.measuredHeight)
-            
-            webView.measure(
-                android.view.View.MeasureSpec.makeMeasureSpec(a4WidthPx, android.view.View.MeasureSpec.EXACTLY),
-                android.view.View.MeasureSpec.makeMeasureSpec(0, android.view.View.MeasureSpec.UNSPECIFIED)
-            )
-            webView.layout(0, 0, a4WidthPx, webView.measuredHeight)
-
-            try {
-                // Загружаем HTML
-                Log.d("PDF", "Starting HTML load, HTML length: ${html.length}")
-                awaitWebViewLoaded(webView, baseUrl, html)
-                
-                // Даем время WebView для полного рендеринга контента
-                // Проверяем, что контент действительно загружен и стабилизировался
-                var attempts = 0
-                var lastContentHeight = 0
-                var stableCount = 0
-                
-                while (attempts < 30) {
-                    delay(300)
-                    attempts++
-                    val currentHeight = webView.contentHeight
-                    Log.d("PDF", "Waiting for contentHeight, attempt $attempts, contentHeight: $currentHeight")
-                    
-                    if (currentHeight > 0) {
-                        if (currentHeight == lastContentHeight) {
-                            stableCount++
-                            if (stableCount >= 3) {
-                                Log.d("PDF", "Content height stabilized at $currentHeight")
-                                break
-                            }
-                        } else {
-                            stableCount = 0
-                        }
-                        lastContentHeight = currentHeight
-                    }
-                }
-                
-                // Дополнительная задержка для завершения рендеринга
-                delay(2000)
-                
-                // Пересчитываем layout после загрузки контента
-                webView.post {
-                    webView.requestLayout()
-                }
-                delay(1000)
-                
-                // Принудительно пересчитываем размеры WebView на основе contentHeight
-                val finalContentHeight = webView.contentHeight
-                val density = context.resources.displayMetrics.density
-                val contentHeightPx = (finalContentHeight * density).toInt()
-                
-                Log.d("PDF", "Final contentHeight (CSS): $finalContentHeight, contentHeightPx: $contentHeightPx")
-                Log.d("PDF", "WebView width: ${webView.width}, height: ${webView.height}, measuredHeight: ${webView.measuredHeight}")
-                
-                if (finalContentHeight == 0) {
-                    Log.w("PDF", "Warning: WebView contentHeight is 0 after loading")
-                } else {
-                    // НЕ устанавливаем огромную высоту WebView - это вызывает OOM!
-                    // WebViewPdfExporter использует contentHeight для расчета страниц и рендерит их по частям через Canvas
-                    // Достаточно убедиться, что WebView имеет правильную ширину и contentHeight вычислен
-                    // WebView может иметь небольшую физическую высоту, но contentHeight будет правильным
-                    Log.d("PDF", "ContentHeight ready: $finalContentHeight (CSS), $contentHeightPx (device px)")
-                    Log.d("PDF", "WebView dimensions: width=${webView.width}, height=${webView.height}, contentHeight=${webView.contentHeight}")
-                    
-                    // Убеждаемся, что WebView имеет правильную ширину для рендеринга
-                    if (webView.width != a4WidthPx) {
-                        val webViewParams = webView.layoutParams as? FrameLayout.LayoutParams
-                            ?: FrameLayout.LayoutParams(a4WidthPx, a4HeightPx * 3)
-                        webViewParams.width = a4WidthPx
-                        webView.layoutParams = webViewParams
-                        webView.measure(
-                            android.view.View.MeasureSpec.makeMeasureSpec(a4WidthPx, android.view.View.MeasureSpec.EXACTLY),
-                            android.view.View.MeasureSpec.makeMeasureSpec(a4HeightPx * 3, android.view.View.MeasureSpec.AT_MOST)
-                        )
-                        webView.layout(0, 0, a4WidthPx, webView.measuredHeight)
-                        delay(500)
-                    }
-                }
+        }
 
-                val attrs = PrintAttributes.Builder()
-                    .setMediaSize(PrintAttributes.MediaSize.ISO_A4)
-                    .setResolution(PrintAttributes.Resolution("pdf", "pdf", 300, 300))
-                    .setMinMargins(PrintAttributes.Margins.NO_MARGINS)
-                    .build()
+        val attrs = PrintAttributes.Builder()
+            .setMediaSize(PrintAttributes.MediaSize.ISO_A4)
+            .setResolution(PrintAttributes.Resolution("pdf", "pdf", 300, 300))
+            .setMinMargins(PrintAttributes.Margins.NO_MARGINS)
+            .build()
 
-                Log.d("PDF", "Starting PDF export, contentHeight: ${webView.contentHeight}, width: ${webView.width}")
-                
-                // Убеждаемся, что мы на главном потоке
-                if (android.os.Looper.myLooper() != android.os.Looper.getMainLooper()) {
-                    throw IllegalStateException("PDF export must be called on main thread")
-                }
+        Log.d("PDF", "Starting PDF export, contentHeight: ${webView.contentHeight}, width: ${webView.width}")
+        
+        // Убеждаемся, что мы на главном потоке
+        if (android.os.Looper.myLooper() != android.os.Looper.getMainLooper()) {
+            throw IllegalStateException("PDF export must be called on main thread")
+        }
+        
+        // Call exporter and suspend until callback с таймаутом
+        withTimeout(60000) { // Увеличен таймаут до 60 секунд для экспорта
+            suspendCancellableCoroutine<Unit> { cont ->
+                Log.d("PDF", "Calling WebViewPdfExporter.export()")
                 
-                // Call exporter and suspend until callback с таймаутом
-                withTimeout(60000) { // Увеличен таймаут до 60 секунд для экспорта
-                    suspendCancellableCoroutine<Unit> { cont ->
-                        Log.d("PDF", "Calling WebViewPdfExporter.export()")
-                        
-                        try {
-                            WebViewPdfExporter.export(
-                                webView,
-                                attrs,
-                                outFile,
-                                reportNumber,
-                                object : WebViewPdfExporter.Callback {
-                                    override fun onSuccess() {
-                                        Log.d("PDF", "PDF export successful, file size: ${outFile.length()} bytes")
-                                        if (cont.isActive) {
-                                            cont.resume(Unit)
-                                        } else {
-                                            Log.w("PDF", "Coroutine is not active, cannot resume")
-                                        }
-                                    }
-
-                                    override fun onError(t: Throwable) {
-                                        Log.e("PDF", "PDF export error", t)
-                                        if (cont.isActive) {
-                                            cont.resumeWithException(t)
-                                        } else {
-                                            Log.w("PDF", "Coroutine is not active, cannot resume with exception")
-                                        }
-                                    }
+                try {
+                    WebViewPdfExporter.export(
+                        webView,
+                        attrs,
+                        outFile,
+                        reportNumber,
+                        object : WebViewPdfExporter.Callback {
+                            override fun onSuccess() {
+                                Log.d("PDF", "PDF export successful, file size: ${outFile.length()} bytes")
+                                if (cont.isActive) {
+                                    cont.resume(Unit)
+                                } else {
+                                    Log.w("PDF", "Coroutine is not active, cannot resume")
                                 }
-                            )
-                            Log.d("PDF", "WebViewPdfExporter.export() called, waiting for callback")
-                        } catch (e: Exception) {
-                            Log.e("PDF", "Exception calling WebViewPdfExporter.export()", e)
-                            if (cont.isActive) {
-                                cont.resumeWithException(e)
                             }
-                        }
 
-                        // Optional: if coroutine cancelled, there's no cancel in exporter — destroy webview anyway.
-                        cont.invokeOnCancellation {
-                            Log.w("PDF", "PDF export coroutine cancelled")
-                            // WebView методы должны вызываться на главном потоке
-                            if (android.os.Looper.myLooper() == android.os.Looper.getMainLooper()) {
-                                try { webView.stopLoading() } catch (_: Exception) {}
-                            } else {
-                                android.os.Handler(android.os.Looper.getMainLooper()).post {
-                                    try { webView.stopLoading() } catch (_: Exception) {}
+                            override fun onError(t: Throwable) {
+                                Log.e("PDF", "PDF export error", t)
+                                if (cont.isActive) {
+                                    cont.resumeWithException(t)
+                                } else {
+                                    Log.w("PDF", "Coroutine is not active, cannot resume with exception")
                                 }
                             }
                         }
+                    )
+                    Log.d("PDF", "WebViewPdfExporter.export() called, waiting for callback")
+                } catch (e: Exception) {
+                    Log.e("PDF", "Exception calling WebViewPdfExporter.export()", e)
+                    if (cont.isActive) {
+                        cont.resumeWithException(e)
                     }
                 }
-                Log.d("PDF", "PDF export completed")
-            } finally {
-                try {
-                    webView.stopLoading()
-                    // Удаляем контейнер из Activity
-                    rootView.removeView(container)
-                    webView.destroy()
-                } catch (_: Exception) {}
-            }
-        }
-    }
 
-    private suspend fun awaitWebViewLoaded(webView: WebView, baseUrl: String, html: String) {
-        // Упрощенный подход: просто загружаем и ждем фиксированное время
-        // WebView может не вызывать onPageFinished для data URLs
-        suspendCancellableCoroutine<Unit> { cont ->
-            var isResumed = false
-            
-            webView.webViewClient = object : android.webkit.WebViewClient() {
-                override fun onPageFinished(view: WebView?, url: String?) {
-                    view?.postDelayed({
-                        if (cont.isActive && !isResumed) {
-                            isResumed = true
-                            cont.resume(Unit)
+                // Optional: if coroutine cancelled, there's no cancel in exporter — destroy webview anyway.
+                cont.invokeOnCancellation {
+                    Log.w("PDF", "PDF export coroutine cancelled")
+                    // WebView методы должны вызываться на главном потоке
+                    if (android.os.Looper.myLooper() == android.os.Looper.getMainLooper()) {
+                        try { webView.stopLoading() } catch (_: Exception) {}
+                    } else {
+                        android.os.Handler(android.os.Looper.getMainLooper()).post {
+                            try { webView.stopLoading() } catch (_: Exception) {}
                         }
-                    }, 800) // Увеличена задержка для рендеринга
-                }
-
-                override fun onReceivedError(
-                    view: WebView?,
-                    errorCode: Int,
-                    description: String?,
-                    failingUrl: String?
-                ) {
-                    // Не считаем ошибку критичной - продолжаем
-                    if (cont.isActive && !isResumed) {
-                        isResumed = true
-                        cont.resume(Unit)
                     }
                 }
             }
-            
-            // Загружаем HTML
-            try {
-                webView.loadDataWithBaseURL(baseUrl, html, "text/html", "utf-8", null)
-            } catch (e: Exception) {
-                // Если не получилось с baseUrl, пробуем без него
-                webView.loadData(html, "text/html", "utf-8")
-            }
-            
-            // Fallback: если onPageFinished не вызывается, продолжаем через 3 секунды
-            webView.postDelayed({
-                if (cont.isActive && !isResumed) {
-                    isResumed = true
-                    cont.resume(Unit)
-                }
-            }, 3000)
+        }
+        Log.d("PDF", "PDF export completed")
+    }
 
-            cont.invokeOnCancellation {
-                try { webView.stopLoading() } catch (_: Exception) {}
+    /**
+     * Загружает [html] и ждёт сигнала из страницы: документ загружен, шрифты готовы, layout посчитан.
+     * Сигнал приходит через [ReportWebViewRenderer.PageReadyBridge] с номером загрузки, поэтому
+     * завершение предыдущей страницы (about:blank, прогрев шаблона) не принимается за готовность.
+     * Если сигнала нет за [PAGE_READY_TIMEOUT_MS] (например, JS в странице упал), экспорт продолжается.
+     */
+    private suspend fun awaitPageReady(webView: WebView, baseUrl: String, html: String) {
+        val ready = ReportWebViewRenderer.PageReadyBridge.expect()
+        val page = injectReadySignal(html, ready.token)
+        try {
+            webView.loadDataWithBaseURL(baseUrl, page, "text/html", "utf-8", null)
+        } catch (e: Exception) {
+            // Если не получилось с baseUrl, пробуем без него
+            webView.loadData(page, "text/html", "utf-8")
+        }
+        val signalled = withTimeoutOrNull(PAGE_READY_TIMEOUT_MS) { ready.signal.await() }
+        if (signalled == null) {
+            Log.w("PDF", "Page ready signal not received in $PAGE_READY_TIMEOUT_MS ms, continuing")
+        } else {
+            Log.d("PDF", "Page ready signal received")
+        }
+    }
+
+    /** Скрипт готовности в конец body: после load и загрузки шрифтов читает высоту (форсирует layout) и сообщает */
+    private fun injectReadySignal(html: String, token: Int): String {
+        val bridge = ReportWebViewRenderer.PageReadyBridge.NAME
+        val script = "<script>(function(){function ready(){" +
+            "var fonts=document.fonts?document.fonts.ready:Promise.resolve();" +
+            "fonts.then(function(){var h=document.body?document.body.scrollHeight:0;$bridge.onReady($token,h);});}" +
+            "if(document.readyState==='complete'){ready();}else{window.addEventListener('load',ready);}})();</script>"
+        val bodyEnd = html.lastIndexOf("</body>", ignoreCase = true)
+        return if (bodyEnd >= 0) html.substring(0, bodyEnd) + script + html.substring(bodyEnd) else html + script
+    }
+
+    /**
+     * contentHeight WebView после сигнала готовности: значение > 0, одинаковое в двух кадрах подряд
+     */
+    private suspend fun awaitContentHeight(webView: WebView): Int {
+        var last = 0
+        repeat(CONTENT_HEIGHT_MAX_FRAMES) { frame ->
+            val current = webView.contentHeight
+            if (current > 0 && current == last) {
+                Log.d("PDF", "Content height stabilized at $current after $frame frames")
+                return current
             }
+            last = current
+            delay(FRAME_DELAY_MS)
         }
+        return webView.contentHeight
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package ru.wassertech.feature.reports
+
+/**
+ * Источник данных для сборки отчёта о ТО.
+ *
+ * Реализуется в модуле приложения поверх Room: все данные сессии
+ * (сессия → установка → объект → клиент → компоненты → шаблоны → поля → значения)
+ * загружаются одним транзакционным запросом, без рефлексии и поштучных обращений к DAO.
+ */
+interface ReportDataSource {
+    /**
+     * Загрузить данные сессии для отчёта.
+     * @return null, если сессия не найдена
+     */
+    suspend fun loadSessionReportData(sessionId: String): SessionReportData?
+}
+
+/**
+ * Снимок данных сессии ТО, необходимых ReportAssembler.
+ *
+ * @param installationComponents компоненты установки сессии (в порядке orderIndex)
+ * @param components все компоненты, участвующие в отчёте, по id:
+ *        компоненты установки и компоненты, для которых в сессии есть значения
+ */
+data class SessionReportData(
+    val sessionId: String,
+    val startedAtEpoch: Long?,
+    val technician: String?,
+    val notes: String?,
+    val installationName: String?,
+    val siteName: String?,
+    val client: ReportClientData?,
+    val installationComponents: List<ReportComponentData>,
+    val components: Map<String, ReportComponentData>,
+    val observations: List<ReportObservationData>,
+    val values: List<ReportValueData>
+)
+
+/**
+ * Данные клиента для шапки отчёта
+ */
+data class ReportClientData(
+    val name: String,
+    val addressFull: String?,
+    val phone: String?,
+    val contactPerson: String?
+)
+
+/**
+ * Компонент с типом шаблона и полями ТО
+ *
+ * @param type имя enum ComponentType самого компонента
+ * @param componentType тип из шаблона: "HEAD" для заглавных компонентов, иначе "COMMON"
+ */
+data class ReportComponentData(
+    val id: String,
+    val name: String,
+    val type: String,
+    val orderIndex: Int,
+    val componentType: String,
+    val fields: List<ReportFieldData>
+)
+
+/**
+ * Поле ТО из шаблона компонента
+ *
+ * @param type имя enum FieldType ("TEXT", "NUMBER", "CHECKBOX", ...)
+ */
+data class ReportFieldData(
+    val key: String,
+    val label: String?,
+    val unit: String?,
+    val type: String
+)
+
+/**
+ * Наблюдение старого формата (таблица observations)
+ */
+data class ReportObservationData(
+    val componentId: String,
+    val fieldKey: String,
+    val valueText: String?,
+    val valueNumber: Double?,
+    val valueBool: Boolean?
+)
+
+/**
+ * Значение ТО (таблица maintenance_values)
+ */
+data class ReportValueData(
+    val componentId: String,
+    val fieldKey: String,
+    val valueText: String?,
+    val valueBool: Boolean?
+)
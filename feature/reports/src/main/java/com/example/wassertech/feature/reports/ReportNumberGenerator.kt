@@ -13,8 +13,10 @@ object ReportNumberGenerator {
     
     /**
      * Генерирует номер отчета в формате АXXXXX/mmyy
-     * Номер увеличивается последовательно, формат месяца/года обновляется каждый месяц
+     * Номер увеличивается последовательно, формат месяца/года обновляется каждый месяц.
+     * Синхронизирован: при пакетной генерации отчёты собираются параллельно.
      */
+    @Synchronized
     fun generateReportNumber(context: Context): String {
         val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
         val calendar = Calendar.getInstance()
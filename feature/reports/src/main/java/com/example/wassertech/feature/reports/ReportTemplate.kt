@@ -0,0 +1,247 @@
+package ru.wassertech.feature.reports
+
+import android.content.Context
+import android.util.LruCache
+import java.io.BufferedReader
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Узел дерева скомпилированного шаблона.
+ */
+sealed class TemplateNode {
+    /** Обычный текст шаблона */
+    class Text(val text: String) : TemplateNode()
+
+    /** Плейсхолдер {{name}}; raw — исходный тег, выводится как есть, если значение не найдено */
+    class Variable(val name: String, val raw: String) : TemplateNode()
+
+    /** Секция {{#name}}...{{/name}} или инвертированная {{^name}}...{{/name}} */
+    class Section(
+        val name: String,
+        val inverted: Boolean,
+        val children: List<TemplateNode>,
+        val openRaw: String,
+        val closeRaw: String
+    ) : TemplateNode() {
+        /** Первая вложенная секция с указанным именем (на верхнем уровне children) */
+        fun childSection(name: String): Section? =
+            children.firstOrNull { it is Section && it.name == name } as Section?
+    }
+}
+
+/**
+ * Данные для рендеринга шаблона.
+ *
+ * Поиск значений идёт от самого вложенного scope к корневому; null означает
+ * «не найдено здесь». Если плейсхолдер или секция не найдены ни в одном scope,
+ * они выводятся в исходном виде (как при прежней замене через String.replace).
+ */
+interface TemplateScope {
+    /** Значение плейсхолдера {{name}} (без экранирования) */
+    fun value(name: String): String? = null
+
+    /** Элементы секции {{#name}}: пустой список — секция ложна, null — не найдена */
+    fun section(name: String): List<TemplateScope>? = null
+
+    /**
+     * Собственный рендеринг секции (например, раскладка компонентов по разделам).
+     * @return true, если секция отрендерена
+     */
+    fun renderSection(section: TemplateNode.Section, renderer: TemplateRenderer, scopes: List<TemplateScope>): Boolean = false
+
+    companion object {
+        /** Пустой scope (элемент секции без собственных значений) */
+        val EMPTY: TemplateScope = object : TemplateScope {}
+
+        /** Секция-условие: один пустой элемент, если true, иначе пусто */
+        fun flag(condition: Boolean): List<TemplateScope> = if (condition) listOf(EMPTY) else emptyList()
+
+        /** Scope на основе готовой карты значений и секций */
+        fun of(
+            values: Map<String, String>,
+            sections: Map<String, List<TemplateScope>> = emptyMap()
+        ): TemplateScope = object : TemplateScope {
+            override fun value(name: String): String? = values[name]
+            override fun section(name: String): List<TemplateScope>? = sections[name]
+        }
+    }
+}
+
+/**
+ * Однопроходный рендерер: обходит дерево и пишет результат в один StringBuilder.
+ */
+class TemplateRenderer internal constructor(
+    val out: StringBuilder,
+    private val escaper: (String) -> String
+) {
+    fun render(nodes: List<TemplateNode>, scopes: List<TemplateScope>) {
+        for (node in nodes) {
+            when (node) {
+                is TemplateNode.Text -> out.append(node.text)
+                is TemplateNode.Variable -> {
+                    val value = lookupValue(node.name, scopes)
+                    if (value != null) out.append(escape(value)) else out.append(node.raw)
+                }
+                is TemplateNode.Section -> renderSection(node, scopes)
+            }
+        }
+    }
+
+    /** Экранировать значение так же, как плейсхолдеры */
+    fun escape(value: String): String = escaper(value)
+
+    private fun renderSection(section: TemplateNode.Section, scopes: List<TemplateScope>) {
+        for (i in scopes.indices.reversed()) {
+            if (scopes[i].renderSection(section, this, scopes)) return
+        }
+        val items = lookupSection(section.name, scopes)
+        when {
+            items == null -> {
+                out.append(section.openRaw)
+                render(section.children, scopes)
+                out.append(section.closeRaw)
+            }
+            section.inverted -> if (items.isEmpty()) render(section.children, scopes)
+            else -> for (item in items) render(section.children, scopes + item)
+        }
+    }
+
+    private fun lookupValue(name: String, scopes: List<TemplateScope>): String? {
+        for (i in scopes.indices.reversed()) {
+            scopes[i].value(name)?.let { return it }
+        }
+        return null
+    }
+
+    private fun lookupSection(name: String, scopes: List<TemplateScope>): List<TemplateScope>? {
+        for (i in scopes.indices.reversed()) {
+            scopes[i].section(name)?.let { return it }
+        }
+        return null
+    }
+}
+
+/**
+ * Скомпилированный шаблон (дерево узлов). Неизменяем, безопасен для повторного
+ * и параллельного использования.
+ */
+class CompiledTemplate internal constructor(
+    val nodes: List<TemplateNode>,
+    private val sourceLength: Int
+) {
+    fun render(scope: TemplateScope, escape: (String) -> String = { it }): String {
+        val out = StringBuilder(sourceLength + sourceLength / 2)
+        TemplateRenderer(out, escape).render(nodes, listOf(scope))
+        return out.toString()
+    }
+}
+
+/**
+ * Компилятор Mustache-подобных шаблонов отчётов: {{name}}, {{.}}, {{#name}}...{{/name}},
+ * {{^name}}...{{/name}}.
+ *
+ * Шаблон разбирается в дерево один раз и кешируется: asset-шаблоны — по пути,
+ * короткие строки (параграфы DOCX) — в LRU. Незакрытые секции и лишние закрывающие
+ * теги не считаются ошибкой и остаются в тексте как есть.
+ */
+object ReportTemplateCompiler {
+
+    private const val OPEN = "{{"
+    private const val CLOSE = "}}"
+
+    /** Максимальное число кешированных строковых шаблонов */
+    private const val INLINE_CACHE_SIZE = 256
+
+    private val assetCache = ConcurrentHashMap<String, CompiledTemplate>()
+    private val inlineCache = LruCache<String, CompiledTemplate>(INLINE_CACHE_SIZE)
+
+    /** Скомпилированный шаблон из assets (кешируется по пути) */
+    fun fromAsset(context: Context, assetPath: String): CompiledTemplate =
+        assetCache.getOrPut(assetPath) { compile(readAsset(context, assetPath)) }
+
+    /** Исходный текст шаблона из assets (для шаблонов, которые преобразуются перед [compile]) */
+    fun readAsset(context: Context, assetPath: String): String =
+        context.assets.open(assetPath).bufferedReader().use(BufferedReader::readText)
+
+    /** Скомпилированный шаблон из строки (с кешированием) */
+    fun fromString(source: String): CompiledTemplate =
+        inlineCache.get(source) ?: compile(source).also { inlineCache.put(source, it) }
+
+    /** Сбросить кеши (например, после обновления шаблонов) */
+    fun clear() {
+        assetCache.clear()
+        inlineCache.evictAll()
+    }
+
+    fun compile(source: String): CompiledTemplate {
+        val root = Frame(null, null)
+        var frame = root
+        var pos = 0
+        while (pos < source.length) {
+            val open = source.indexOf(OPEN, pos)
+            if (open < 0) break
+            val close = source.indexOf(CLOSE, open + OPEN.length)
+            if (close < 0) break
+            if (open > pos) frame.nodes.add(TemplateNode.Text(source.substring(pos, open)))
+            val raw = source.substring(open, close + CLOSE.length)
+            val tag = source.substring(open + OPEN.length, close).trim()
+            when {
+                tag.startsWith("#") || tag.startsWith("^") ->
+                    frame = Frame(frame, raw, tag.substring(1).trim(), tag[0] == '^')
+                tag.startsWith("/") -> {
+                    val name = tag.substring(1).trim()
+                    val parent = frame.parent
+                    if (parent != null && frame.name == name) {
+                        parent.nodes.add(
+                            TemplateNode.Section(frame.name, frame.inverted, mergeText(frame.nodes), frame.openRaw!!, raw)
+                        )
+                        frame = parent
+                    } else {
+                        // Лишний закрывающий тег — оставляем как текст
+                        frame.nodes.add(TemplateNode.Text(raw))
+                    }
+                }
+                else -> frame.nodes.add(TemplateNode.Variable(tag, raw))
+            }
+            pos = close + CLOSE.length
+        }
+        if (pos < source.length) frame.nodes.add(TemplateNode.Text(source.substring(pos)))
+
+        // Незакрытые секции разворачиваем обратно в текст
+        while (frame.parent != null) {
+            val parent = frame.parent!!
+            parent.nodes.add(TemplateNode.Text(frame.openRaw!!))
+            parent.nodes.addAll(frame.nodes)
+            frame = parent
+        }
+        return CompiledTemplate(mergeText(root.nodes), source.length)
+    }
+
+    /** Склеить соседние текстовые узлы */
+    private fun mergeText(nodes: List<TemplateNode>): List<TemplateNode> {
+        val result = ArrayList<TemplateNode>(nodes.size)
+        val text = StringBuilder()
+        for (node in nodes) {
+            if (node is TemplateNode.Text) {
+                text.append(node.text)
+                continue
+            }
+            if (text.isNotEmpty()) {
+                result.add(TemplateNode.Text(text.toString()))
+                text.setLength(0)
+            }
+            result.add(node)
+        }
+        if (text.isNotEmpty()) result.add(TemplateNode.Text(text.toString()))
+        return result
+    }
+
+    private class Frame(
+        val parent: Frame?,
+        val openRaw: String?,
+        val name: String = "",
+        val inverted: Boolean = false
+    ) {
+        val nodes = mutableListOf<TemplateNode>()
+    }
+}
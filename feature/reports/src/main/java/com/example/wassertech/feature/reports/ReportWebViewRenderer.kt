@@ -0,0 +1,201 @@
+package ru.wassertech.feature.reports
+
+import android.app.Activity
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.MutableContextWrapper
+import android.content.res.Configuration
+import android.os.Looper
+import android.util.Log
+import android.view.View
+import android.view.ViewGroup
+import android.webkit.JavascriptInterface
+import android.webkit.WebView
+import android.widget.FrameLayout
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+
+/**
+ * Переиспользуемый off-screen WebView для генерации PDF-отчётов.
+ *
+ * Создание WebView (инициализация Chromium) стоит секунды, поэтому один экземпляр живёт между
+ * экспортами: [warmUp] создаёт его заранее и загружает шаблон отчёта (CSS, шрифты), а задания
+ * [PdfExporter] выполняются по очереди через [withWebView] — следующий акт рендерится в «горячем» WebView.
+ *
+ * WebView создаётся на [MutableContextWrapper]: на время задания базовым контекстом становится
+ * Activity (WebView добавляется в её иерархию View), между заданиями — Application, чтобы не удерживать Activity.
+ * Все методы вызываются на главном потоке.
+ */
+object ReportWebViewRenderer {
+
+    private const val TAG = "ReportWebViewRenderer"
+    private const val BASE_URL = "file:///android_asset/"
+    private const val BLANK_URL = "about:blank"
+
+    /** Очередь заданий: Mutex справедливый, задания выполняются в порядке поступления */
+    private val mutex = Mutex()
+
+    /**
+     * Сигнал готовности страницы из JS (см. PdfExporter): страница вызывает `onReady(token, height)`
+     * после загрузки документа и шрифтов. Задания идут по одному, поэтому ожидание одно; сигнал
+     * с чужим номером (от предыдущей страницы) игнорируется. Вызывается на потоке JavaBridge.
+     */
+    internal object PageReadyBridge {
+        const val NAME = "ReportPageReady"
+
+        class Pending(val token: Int, val signal: CompletableDeferred<Unit>)
+
+        private var nextToken = 0
+        @Volatile
+        private var pending: Pending? = null
+
+        fun expect(): Pending = Pending(++nextToken, CompletableDeferred()).also { pending = it }
+
+        @JavascriptInterface
+        fun onReady(token: Int, heightCss: Int) {
+            val current = pending ?: return
+            if (current.token != token) return
+            Log.d(TAG, "Страница отчёта готова: height=$heightCss")
+            current.signal.complete(Unit)
+        }
+    }
+
+    private var contextWrapper: MutableContextWrapper? = null
+    private var webView: WebView? = null
+    private var callbacksRegistered = false
+
+    /**
+     * Заранее создаёт WebView и загружает в него шаблон [templateAssetPath] (если указан),
+     * чтобы первый экспорт не ждал инициализации Chromium. Повторные вызовы ничего не делают.
+     */
+    fun warmUp(context: Context, templateAssetPath: String? = null) {
+        checkMainThread()
+        if (webView != null || mutex.isLocked) return
+        val view = obtainWebView(context)
+        templateAssetPath?.let { view.loadUrl(BASE_URL + it) }
+        Log.d(TAG, "WebView прогрет${templateAssetPath?.let { ": $it" } ?: ""}")
+    }
+
+    /**
+     * Выполняет [block] с подготовленным WebView размером [widthPx] x [heightPx], добавленным
+     * невидимым в иерархию [activity]. Задания выполняются строго по одному.
+     * Если задание завершилось ошибкой, WebView уничтожается и следующее задание получит новый.
+     */
+    suspend fun <T> withWebView(
+        activity: Activity,
+        widthPx: Int,
+        heightPx: Int,
+        block: suspend (WebView) -> T
+    ): T = mutex.withLock {
+        checkMainThread()
+        val view = obtainWebView(activity)
+        contextWrapper?.baseContext = activity
+
+        val container = FrameLayout(activity).apply {
+            layoutParams = ViewGroup.LayoutParams(widthPx, heightPx)
+            visibility = View.INVISIBLE // Невидимый, но с правильными размерами
+        }
+        (view.parent as? ViewGroup)?.removeView(view)
+        container.addView(view, FrameLayout.LayoutParams(widthPx, heightPx))
+        val rootView = activity.findViewById<ViewGroup>(android.R.id.content)
+        rootView.addView(container)
+
+        var succeeded = false
+        try {
+            val result = block(view)
+            succeeded = true
+            result
+        } finally {
+            try {
+                view.stopLoading()
+                container.removeView(view)
+                rootView.removeView(container)
+            } catch (e: Exception) {
+                Log.w(TAG, "Не удалось отсоединить WebView", e)
+            }
+            if (succeeded) {
+                // Освобождаем DOM отчёта, движок остаётся прогретым
+                contextWrapper?.baseContext = activity.applicationContext
+                view.loadUrl(BLANK_URL)
+            } else {
+                destroyWebView()
+            }
+        }
+    }
+
+    /**
+     * Уничтожает WebView (при нехватке памяти); следующий экспорт создаст новый.
+     */
+    fun release() {
+        checkMainThread()
+        if (mutex.isLocked) return // Идёт экспорт — освободим при следующей нехватке памяти
+        destroyWebView()
+    }
+
+    private fun obtainWebView(context: Context): WebView {
+        webView?.let { return it }
+
+        val appContext = context.applicationContext
+        val wrapper = MutableContextWrapper(appContext)
+        val view = WebView(wrapper).apply {
+            settings.apply {
+                javaScriptEnabled = true  // JavaScript нужен для измерения границ компонентов
+                domStorageEnabled = false
+                loadWithOverviewMode = true
+                useWideViewPort = true
+                setSupportZoom(false)
+                builtInZoomControls = false
+            }
+            // Сигнал готовности страницы; добавляется до первой загрузки, чтобы быть доступным во всех страницах
+            addJavascriptInterface(PageReadyBridge, PageReadyBridge.NAME)
+            // Включаем логирование JavaScript console.log в logcat
+            webChromeClient = object : android.webkit.WebChromeClient() {
+                override fun onConsoleMessage(consoleMessage: android.webkit.ConsoleMessage?): Boolean {
+                    consoleMessage?.let {
+                        Log.d("WebViewJS", "${it.message()} -- From line ${it.lineNumber()} of ${it.sourceId()}")
+                    }
+                    return true
+                }
+            }
+        }
+        contextWrapper = wrapper
+        webView = view
+        registerMemoryCallbacks(appContext)
+        Log.d(TAG, "Создан WebView для отчётов")
+        return view
+    }
+
+    private fun destroyWebView() {
+        val view = webView ?: return
+        webView = null
+        contextWrapper = null
+        try {
+            (view.parent as? ViewGroup)?.removeView(view)
+            view.stopLoading()
+            view.destroy()
+        } catch (e: Exception) {
+            Log.w(TAG, "Ошибка при уничтожении WebView", e)
+        }
+        Log.d(TAG, "WebView для отчётов уничтожен")
+    }
+
+    private fun registerMemoryCallbacks(appContext: Context) {
+        if (callbacksRegistered) return
+        callbacksRegistered = true
+        appContext.registerComponentCallbacks(object : ComponentCallbacks2 {
+            override fun onTrimMemory(level: Int) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) release()
+            }
+
+            override fun onConfigurationChanged(newConfig: Configuration) = Unit
+
+            @Deprecated("Deprecated in Java")
+            override fun onLowMemory() = release()
+        })
+    }
+
+    private fun checkMainThread() {
+        check(Looper.myLooper() == Looper.getMainLooper()) { "ReportWebViewRenderer используется только на главном потоке" }
+    }
+}
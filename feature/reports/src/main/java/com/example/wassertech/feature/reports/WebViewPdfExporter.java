@@ -23,6 +23,11 @@ import java.util.List;
  * - Page height: 1123px (CSS) for A4 at 794px width
  * - Slice bitmap by CSS page boundaries converted to device pixels
  * - Prevent component splitting across pages
+ *
+ * Render modes:
+ * - VECTOR (default): webView.draw() straight onto the PdfDocument page canvas, translated and
+ *   clipped to the page boundary. Text stays selectable, no per-page bitmap is allocated.
+ * - BITMAP: per-page ARGB_8888 rasterization; used as a fallback if vector export fails.
  */
 public final class WebViewPdfExporter {
 
@@ -36,6 +41,11 @@ public final class WebViewPdfExporter {
         void onError(Throwable t);
     }
 
+    public enum RenderMode {
+        VECTOR,
+        BITMAP
+    }
+
     private WebViewPdfExporter() { /* no instances */ }
 
     /**
@@ -49,21 +59,33 @@ public final class WebViewPdfExporter {
                               final File outFile,
                               final String reportNumber,
                               final Callback cb) {
-        Log.d(TAG, "export() called, isMainThread: " + (Looper.myLooper() == Looper.getMainLooper()));
+        export(webView, attrs, outFile, reportNumber, RenderMode.VECTOR, cb);
+    }
+
+    /**
+     * Export with an explicit render mode. VECTOR falls back to BITMAP if vector rendering throws.
+     */
+    public static void export(final WebView webView,
+                              final PrintAttributes attrs,
+                              final File outFile,
+                              final String reportNumber,
+                              final RenderMode mode,
+                              final Callback cb) {
+        Log.d(TAG, "export() called, mode: " + mode + ", isMainThread: " + (Looper.myLooper() == Looper.getMainLooper()));
 
         // Если WebView уже загружен, выполняем экспорт напрямую
         // Иначе устанавливаем WebViewClient для ожидания onPageFinished
         if (webView.getProgress() == 100) {
             // WebView уже загружен, выполняем экспорт
             Log.d(TAG, "WebView already loaded, performing export directly");
-            performExportAsync(webView, attrs, outFile, reportNumber, cb);
+            performExportAsync(webView, attrs, outFile, reportNumber, mode, cb);
         } else {
             // Устанавливаем WebViewClient для ожидания загрузки
             webView.setWebViewClient(new WebViewClient() {
                 @Override
                 public void onPageFinished(WebView view, String url) {
                     Log.d(TAG, "WebView onPageFinished! HTML полностью загружен: " + url);
-                    performExportAsync(webView, attrs, outFile, reportNumber, cb);
+                    performExportAsync(webView, attrs, outFile, reportNumber, mode, cb);
                 }
             });
         }
@@ -73,6 +95,7 @@ public final class WebViewPdfExporter {
                                           final PrintAttributes attrs,
                                           final File outFile,
                                           final String reportNumber,
+                                          final RenderMode mode,
                                           final Callback cb) {
         // Ждём стабилизации рендера и проверяем готовность WebView
         new Handler(Looper.getMainLooper()).postDelayed(() -> {
@@ -92,12 +115,12 @@ public final class WebViewPdfExporter {
                     Log.w(TAG, "WebView not fully loaded (progress: " + progress + "), waiting more...");
                     // Даём еще время для загрузки
                     new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        performMeasurementAndExport(webView, attrs, outFile, reportNumber, cb);
+                        performMeasurementAndExport(webView, attrs, outFile, reportNumber, mode, cb);
                     }, 2000);
                     return;
                 }
                 
-                performMeasurementAndExport(webView, attrs, outFile, reportNumber, cb);
+                performMeasurementAndExport(webView, attrs, outFile, reportNumber, mode, cb);
             } catch (Throwable t) {
                 Log.e(TAG, "PDF export failed", t);
                 cb.onError(t);
@@ -106,7 +129,7 @@ public final class WebViewPdfExporter {
     }
     
     private static void performMeasurementAndExport(WebView webView, PrintAttributes attrs, 
-                                                   File outFile, String reportNumber, Callback cb) {
+                                                   File outFile, String reportNumber, RenderMode mode, Callback cb) {
         final long measurementStartTime = System.currentTimeMillis();
         
         Log.d(TAG, "Запуск асинхронного замера PdfContentMeasurer.measureContentAsync...");
@@ -158,7 +181,16 @@ public final class WebViewPdfExporter {
                     // Выполняем экспорт (на главном потоке, так как мы в callback)
                     try {
                         long exportStartTime = System.currentTimeMillis();
-                        performExport(webView, attrs, outFile, reportNumber, result);
+                        if (mode == RenderMode.VECTOR) {
+                            try {
+                                performExport(webView, attrs, outFile, reportNumber, result, RenderMode.VECTOR);
+                            } catch (Throwable vectorError) {
+                                Log.w(TAG, "Vector export failed, falling back to bitmap rendering", vectorError);
+                                performExport(webView, attrs, outFile, reportNumber, result, RenderMode.BITMAP);
+                            }
+                        } else {
+                            performExport(webView, attrs, outFile, reportNumber, result, RenderMode.BITMAP);
+                        }
                         long exportElapsed = System.currentTimeMillis() - exportStartTime;
                         Log.d(TAG, "performExport() завершён успешно за " + exportElapsed + "ms");
                         Log.d(TAG, "Total PDF export time: " + (System.currentTimeMillis() - measurementStartTime) + "ms");
@@ -179,8 +211,9 @@ public final class WebViewPdfExporter {
     }
 
     private static void performExport(WebView webView, PrintAttributes attrs, File outFile, String reportNumber,
-                                     PdfContentMeasurer.MeasurementResult measurementResult) throws IOException {
-        Log.d(TAG, "Starting performExport, contentHeight: " + measurementResult.contentHeightCss + " CSS px");
+                                     PdfContentMeasurer.MeasurementResult measurementResult,
+                                     RenderMode mode) throws IOException {
+        Log.d(TAG, "Starting performExport (" + mode + "), contentHeight: " + measurementResult.contentHeightCss + " CSS px");
         
         // Используем фиксированные размеры A4 в CSS пикселях
         float pageHeightCss = A4_HEIGHT_CSS;
@@ -230,31 +263,11 @@ public final class WebViewPdfExporter {
             // Получаем Canvas для рисования
             android.graphics.Canvas canvas = page.getCanvas();
             
-            // ВАЖНО: Страница PDF всегда A4 (pageHeightDevicePx), но битмап создаем с фактической высотой контента
-            // Это исходная рабочая логика, которая правильно срезала контент для каждой страницы
-            // Создаём Bitmap для рендеринга контента на этой странице
-            android.graphics.Bitmap bitmap = android.graphics.Bitmap.createBitmap(
-                    pageWidthDevicePx, 
-                    pageHeightDevicePxActual, // Фактическая высота контента на странице
-                    android.graphics.Bitmap.Config.ARGB_8888
-            );
-            android.graphics.Canvas bitmapCanvas = new android.graphics.Canvas(bitmap);
-            
-            // Заливаем фон белым цветом
-            bitmapCanvas.drawColor(android.graphics.Color.WHITE);
-            
-            // Смещаем Canvas вверх на -pageStartDevicePx
-            // Это означает: контент WebView, который находится на позиции pageStartDevicePx,
-            // будет нарисован на позиции 0 в битмапе (вверху битмапа)
-            bitmapCanvas.translate(0, -pageStartDevicePx);
-            
-            // Рисуем WebView на Bitmap Canvas
-            // Благодаря translate и размеру битмапа, нарисуется только нужная часть контента 
-            // (от pageStartDevicePx до pageStartDevicePx + pageHeightDevicePxActual)
-            webView.draw(bitmapCanvas);
-            
-            // Рисуем Bitmap на PDF Canvas (начинаем с позиции 0,0 - верх страницы A4)
-            canvas.drawBitmap(bitmap, 0, 0, null);
+            if (mode == RenderMode.VECTOR) {
+                drawPageVector(webView, canvas, pageWidthDevicePx, pageStartDevicePx, pageHeightDevicePxActual);
+            } else {
+                drawPageBitmap(webView, canvas, pageWidthDevicePx, pageStartDevicePx, pageHeightDevicePxActual);
+            }
             
             // Если контент не заполняет всю страницу A4, заливаем оставшуюся часть белым
             if (pageHeightDevicePxActual < pageHeightDevicePx) {
@@ -263,9 +276,6 @@ public final class WebViewPdfExporter {
                 canvas.drawRect(0, pageHeightDevicePxActual, pageWidthDevicePx, pageHeightDevicePx, whitePaint);
             }
             
-            // Освобождаем память
-            bitmap.recycle();
-            
             // Debug линии отключены (убраны синие и зеленые линии)
             // PdfDebugDrawer.drawDebugLines(...) - закомментировано
             
@@ -425,4 +435,58 @@ public final class WebViewPdfExporter {
             pdfDocument.close();
         }
     }
+
+    /**
+     * Vector page: WebView is drawn directly onto the PDF page canvas.
+     * Content is shifted up by the page start and clipped to the page content height,
+     * so only this page's slice is recorded; text and shapes stay vector.
+     */
+    private static void drawPageVector(WebView webView, android.graphics.Canvas canvas,
+                                       int pageWidthDevicePx, int pageStartDevicePx, int pageHeightDevicePxActual) {
+        int saveCount = canvas.save();
+        try {
+            canvas.clipRect(0, 0, pageWidthDevicePx, pageHeightDevicePxActual);
+            canvas.drawColor(android.graphics.Color.WHITE);
+            canvas.translate(0, -pageStartDevicePx);
+            webView.draw(canvas);
+        } finally {
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    /**
+     * Bitmap page (fallback): the page slice is rasterized into an ARGB_8888 bitmap
+     * and the bitmap is drawn onto the PDF page.
+     */
+    private static void drawPageBitmap(WebView webView, android.graphics.Canvas canvas,
+                                       int pageWidthDevicePx, int pageStartDevicePx, int pageHeightDevicePxActual) {
+        // ВАЖНО: Страница PDF всегда A4 (pageHeightDevicePx), но битмап создаем с фактической высотой контента
+        // Это исходная рабочая логика, которая правильно срезала контент для каждой страницы
+        // Создаём Bitmap для рендеринга контента на этой странице
+        android.graphics.Bitmap bitmap = android.graphics.Bitmap.createBitmap(
+                pageWidthDevicePx, 
+                pageHeightDevicePxActual, // Фактическая высота контента на странице
+                android.graphics.Bitmap.Config.ARGB_8888
+        );
+        android.graphics.Canvas bitmapCanvas = new android.graphics.Canvas(bitmap);
+        
+        // Заливаем фон белым цветом
+        bitmapCanvas.drawColor(android.graphics.Color.WHITE);
+        
+        // Смещаем Canvas вверх на -pageStartDevicePx
+        // Это означает: контент WebView, который находится на позиции pageStartDevicePx,
+        // будет нарисован на позиции 0 в битмапе (вверху битмапа)
+        bitmapCanvas.translate(0, -pageStartDevicePx);
+        
+        // Рисуем WebView на Bitmap Canvas
+        // Благодаря translate и размеру битмапа, нарисуется только нужная часть контента 
+        // (от pageStartDevicePx до pageStartDevicePx + pageHeightDevicePxActual)
+        webView.draw(bitmapCanvas);
+        
+        // Рисуем Bitmap на PDF Canvas (начинаем с позиции 0,0 - верх страницы A4)
+        canvas.drawBitmap(bitmap, 0, 0, null);
+        
+        // Освобождаем память
+        bitmap.recycle();
+    }
 }
\ No newline at end of file